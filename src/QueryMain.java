@@ -16,11 +16,22 @@ public class QueryMain{
 
     public static void main(String[] args){
 
-	if(args.length !=2){
-	    System.out.println("usage: java QueryMain <queryfilename> <resultfile>");
+	if(args.length !=2 && args.length !=3){
+	    System.out.println("usage: java QueryMain <queryfilename> <resultfile> [LRU|CLOCK|MRU]");
 	    System.exit(1);
 	}
 
+	/** replacement policy of the buffer pool **/
+
+	int policy = BufferPool.LRU;
+	if(args.length == 3){
+	    policy = BufferPool.policyOf(args[2]);
+	    if(policy == -1){
+		System.out.println("unknown replacement policy: "+args[2]);
+		System.exit(1);
+	    }
+	}
+
 
 	/** Enter the number of bytes per page **/
 
@@ -70,6 +81,17 @@ public class QueryMain{
 	SQLQuery sqlquery = p.getSQLQuery();
 	int numJoin = sqlquery.getNumJoin();
 
+	/** the joins, the duplicate elimination and the grouping
+	 ** share the buffers
+	 **/
+	int numBuffOps = numJoin;
+	if(sqlquery.isDistinct()){
+	    numBuffOps++;
+	}
+	if(sqlquery.getGroupByList() != null && !sqlquery.getGroupByList().isEmpty()){
+	    numBuffOps++;
+	}
+
 
 	/** If there are joins then assigns buffers to each join operator
 	    while preparing the plan
@@ -79,13 +101,13 @@ public class QueryMain{
 	**/
 
 
-	if(numJoin !=0){
+	if(numBuffOps !=0){
 	    System.out.println("enter the number of buffers available");
 
 	    try {
 		temp = in.readLine();
 		int numBuff = Integer.parseInt(temp);
-		BufferManager bm = new BufferManager(numBuff,numJoin);
+		BufferManager bm = new BufferManager(numBuff,numBuffOps,policy);
 	    } catch (Exception e) {
 		e.printStackTrace();
 	 }
@@ -96,8 +118,8 @@ public class QueryMain{
 	/** Let check the number of buffers available is enough or not **/
 
 	int numBuff = BufferManager.getBuffersPerJoin();
-	if(numJoin>0 && numBuff<3){
-	    System.out.println("Minimum 3 buffers are required per a join operator ");
+	if(numBuffOps>0 && numBuff<3){
+	    System.out.println("Minimum 3 buffers are required per a join, distinct or group by operator ");
 	    System.exit(1);
 	}
 
@@ -116,12 +138,12 @@ public class QueryMain{
 **/
 
 
-	/** Use random Optimization algorithm to get a random optimized
-	    execution plan
+	/** Use dynamic programming to get the cheapest join order;
+	    large queries fall back to the random optimization algorithm
 **/
 
-	RandomOptimizer ro = new RandomOptimizer(sqlquery);
-	Operator logicalroot = ro.getOptimizedPlan();
+	DynamicOptimizer dyo = new DynamicOptimizer(sqlquery);
+	Operator logicalroot = dyo.getOptimizedPlan();
 	if(logicalroot==null){
 	    System.out.println("root is null");
 	    System.exit(1);
@@ -132,6 +154,8 @@ public class QueryMain{
 	/** preparing the execution plan **/
 
 	Operator root = RandomOptimizer.makeExecPlan(logicalroot);
+	root = RandomOptimizer.fuseSelectProject(root);
+	root = RandomOptimizer.parallelize(root,Exchange.getDefaultDegree());
 
 /** Print final Plan **/
 	System.out.println("----------------------Execution Plan----------------");
@@ -194,6 +218,7 @@ long starttime = System.currentTimeMillis();
 long endtime = System.currentTimeMillis();
 double executiontime = (endtime - starttime)/1000.0;
 System.out.println("Execution time = "+ executiontime);
+BufferManager.getBufferPool().printStats();
 
     }
 
@@ -215,7 +240,11 @@ System.out.println("Execution time = "+ executiontime);
     protected static void printSchema(Schema schema){
 	for(int i=0;i<numAtts;i++){
 	    Attribute attr = schema.getAttribute(i);
-	    out.print(attr.getTabName()+"."+attr.getColName()+"  ");
+	    if(attr.isAggregate()){
+		out.print(Attribute.aggName(attr.getAggType())+"("+attr.getTabName()+"."+attr.getColName()+")  ");
+	    }else{
+		out.print(attr.getTabName()+"."+attr.getColName()+"  ");
+	    }
 	}
 	out.println();
     }
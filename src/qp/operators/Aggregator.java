@@ -0,0 +1,135 @@
+/** computes the aggregates of a group of tuples **/
+
+package qp.operators;
+
+import qp.utils.*;
+import java.util.Vector;
+
+/**
+ * Computes the output tuple of a group from the tuples of the group. Every
+ * column of the output is either a grouping attribute, whose value is taken
+ * from the first tuple of the group, or an aggregate (MAX, MIN, SUM, COUNT
+ * or AVG) of an attribute of the input.
+ *
+ * The state of a group is kept in a Group, so that one Aggregator serves all
+ * the groups of an operator.
+ */
+
+public class Aggregator{
+
+    int[] attrIndex;   // index in the input of the attribute of every output column
+    int[] aggType;     // aggregate function of every output column
+    int[] outType;     // data type of every output column
+
+
+    public Aggregator(Schema inschema, Schema outschema){
+	int numcols = outschema.getNumCols();
+	attrIndex = new int[numcols];
+	aggType = new int[numcols];
+	outType = new int[numcols];
+	for(int i=0;i<numcols;i++){
+	    Attribute attr = outschema.getAttribute(i);
+	    Attribute inattr = (Attribute) attr.clone();
+	    inattr.setAggType(Attribute.NONE);
+	    attrIndex[i] = inschema.indexOf(inattr);
+	    aggType[i] = attr.getAggType();
+	    outType[i] = attr.getType();
+	}
+    }
+
+    public Group newGroup(){
+	return new Group(attrIndex.length);
+    }
+
+    /** adds the tuple to the group **/
+
+    public void add(Group g, Tuple t){
+	for(int i=0;i<attrIndex.length;i++){
+	    Object data = t.dataAt(attrIndex[i]);
+	    switch(aggType[i]){
+	    case Attribute.NONE:
+		if(g.count == 0){
+		    g.values[i] = data;
+		}
+		break;
+	    case Attribute.MAX:
+		if(g.count == 0 || compare(data,g.values[i]) > 0){
+		    g.values[i] = data;
+		}
+		break;
+	    case Attribute.MIN:
+		if(g.count == 0 || compare(data,g.values[i]) < 0){
+		    g.values[i] = data;
+		}
+		break;
+	    case Attribute.SUM:
+	    case Attribute.AVG:
+		g.sums[i] += ((Number) data).doubleValue();
+		break;
+	    }
+	}
+	g.count++;
+    }
+
+    /** the output tuple of the group. A group without tuples, the
+     ** result of an aggregation without grouping attributes on an
+     ** empty input, has a COUNT and SUM of 0 and null for the others
+     **/
+
+    public Tuple result(Group g){
+	Vector data = new Vector(attrIndex.length);
+	for(int i=0;i<attrIndex.length;i++){
+	    switch(aggType[i]){
+	    case Attribute.COUNT:
+		data.add(Integer.valueOf((int) g.count));
+		break;
+	    case Attribute.SUM:
+		if(outType[i] == Attribute.INT){
+		    data.add(Integer.valueOf((int) g.sums[i]));
+		}else{
+		    data.add(Float.valueOf((float) g.sums[i]));
+		}
+		break;
+	    case Attribute.AVG:
+		/** no average of an empty group **/
+		if(g.count == 0){
+		    data.add(null);
+		}else{
+		    data.add(Float.valueOf((float) (g.sums[i]/g.count)));
+		}
+		break;
+	    default:
+		data.add(g.values[i]);
+		break;
+	    }
+	}
+	return new Tuple(data);
+    }
+
+
+    private static int compare(Object left, Object right){
+	if(left instanceof Integer){
+	    return ((Integer) left).compareTo((Integer) right);
+	}else if(left instanceof Float){
+	    return ((Float) left).compareTo((Float) right);
+	}else{
+	    return ((String) left).compareTo((String) right);
+	}
+    }
+
+
+    /** the state of the aggregates of one group **/
+
+    public static class Group{
+	Object[] values;   // grouping values, MAX and MIN
+	double[] sums;     // SUM and AVG
+	long count;        // number of tuples in the group
+
+	Group(int numcols){
+	    values = new Object[numcols];
+	    sums = new double[numcols];
+	    count = 0;
+	}
+    }
+
+}
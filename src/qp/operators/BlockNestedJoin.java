@@ -3,8 +3,10 @@
 package qp.operators;
 
 import qp.utils.*;
+import qp.optimizer.BufferManager;
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.lang.*;
 
 /**
@@ -25,13 +27,16 @@ public class BlockNestedJoin extends Join{
 
     String rfname;    // The file name where the right table is materialize
 
-    static int filenum=0;   // To get unique filenum for this operation
+    static AtomicInteger filenum = new AtomicInteger();   // To get unique filenum for this operation
+
+    static final int READ_AHEAD = 4;   // Pages of the right file prefetched and written behind
 
     Block block; // Block for left table
     Batch outbatch;   // Output buffer
     Batch leftbatch;  // Buffer for left input stream
     Batch rightbatch;  // Buffer for right input stream
-    ObjectInputStream in; // File pointer to the right hand materialized file
+    HeapFile rfile; // The right hand materialized file, read through the buffer pool
+    int rpage;      // Page of rfile that is pinned, -1 if none
 
     int lcurs;    // Cursor for left side buffer
     int rcurs;    // Cursor for right side buffer
@@ -87,14 +92,17 @@ public class BlockNestedJoin extends Join{
              **/
 
             //if(right.getOpType() != OpType.SCAN){
-            filenum++;
-            rfname = "BNJtemp-" + String.valueOf(filenum);
+            rfname = "BNJtemp-" + String.valueOf(filenum.incrementAndGet());
             try{
-                ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(rfname));
+                PageWriter out = new AsyncPageWriter(rfname,right.getSchema(),READ_AHEAD);
+                startBuildKeys();
                 while( (rightpage = right.next()) != null){
-                    out.writeObject(rightpage);
+                    addBuildKeys(rightpage,rightindex);
+                    out.write(rightpage);
                 }
                 out.close();
+                rfile = new HeapFile(rfname,right.getSchema());
+                rpage = -1;
             }catch(IOException io){
                 System.out.println("BlockNestedJoin:writing the temporary file error");
                 return false;
@@ -103,6 +111,10 @@ public class BlockNestedJoin extends Join{
             if(!right.close())
                 return false;
         }
+        /** the left blocks then only hold tuples that may join, and
+         ** the right file is scanned once per block
+         **/
+        pushBuildKeys();
         if(left.open())
             return true;
         else
@@ -148,14 +160,7 @@ public class BlockNestedJoin extends Join{
                 /** Whenever a new left page came , we have to start the
                  ** scanning of right table
                  **/
-                try{
-
-                    in = new ObjectInputStream(new FileInputStream(rfname));
-                    eosr=false;
-                }catch(IOException io){
-                    System.err.println("BlockNestedJoin:error in reading the file");
-                    System.exit(1);
-                }
+                eosr=false;
 
             }
 
@@ -163,53 +168,42 @@ public class BlockNestedJoin extends Join{
 
                 try{
                     if(rcurs==0 && lcurs==0){
-                        rightbatch = (Batch) in.readObject();
+                        rightbatch = nextRightPage();
                     }
 
                     for(i=lcurs;i<block.size();i++){
-                        for(j=rcurs;j<rightbatch.size();j++){
+                        /** only the right tuples with the key of the left one are looked at **/
+                        Object key = block.elementAt(i).dataAt(leftindex);
+                        for(j=rightbatch.nextMatch(rcurs,rightindex,key);j<rightbatch.size();j=rightbatch.nextMatch(j+1,rightindex,key)){
                             Tuple lefttuple = block.elementAt(i);
                             Tuple righttuple = rightbatch.elementAt(j);
-                            if(lefttuple.checkJoin(righttuple,leftindex,rightindex)){
-                                Tuple outtuple = lefttuple.joinWith(righttuple);
-
-                                //Debug.PPrint(outtuple);
-                                //System.out.println();
-                                outbatch.add(outtuple);
-                                if(outbatch.isFull()){
-                                    if(i==block.size()-1 && j==rightbatch.size()-1){//case 1
-                                        lcurs=0;
-                                        rcurs=0;
-                                    }else if(i!=block.size()-1 && j==rightbatch.size()-1){//case 2
-                                        lcurs = i+1;
-                                        rcurs = 0;
-                                    }else if(i==block.size()-1 && j!=rightbatch.size()-1){//case 3
-                                        lcurs = i;
-                                        rcurs = j+1;
-                                    }else{
-                                        lcurs = i;
-                                        rcurs =j+1;
-                                    }
-                                    return outbatch;
+                            Tuple outtuple = lefttuple.joinWith(righttuple);
+
+                            //Debug.PPrint(outtuple);
+                            //System.out.println();
+                            outbatch.add(outtuple);
+                            if(outbatch.isFull()){
+                                if(i==block.size()-1 && j==rightbatch.size()-1){//case 1
+                                    lcurs=0;
+                                    rcurs=0;
+                                }else if(i!=block.size()-1 && j==rightbatch.size()-1){//case 2
+                                    lcurs = i+1;
+                                    rcurs = 0;
+                                }else if(i==block.size()-1 && j!=rightbatch.size()-1){//case 3
+                                    lcurs = i;
+                                    rcurs = j+1;
+                                }else{
+                                    lcurs = i;
+                                    rcurs =j+1;
                                 }
+                                return outbatch;
                             }
                         }
                         rcurs =0;
                     }
                     lcurs=0;
                 }catch(EOFException e){
-                    try{
-                        in.close();
-                    }catch (IOException io){
-                        System.out.println("BlockNestedJoin:Error in temporary file reading");
-                    }
                     eosr=true;
-                }catch(ClassNotFoundException c){
-                    System.out.println("BlockNestedJoin:Some error in deserialization ");
-                    System.exit(1);
-                }catch(IOException io){
-                    System.out.println("BlockNestedJoin:temporary file reading error");
-                    System.exit(1);
                 }
             }
         }
@@ -218,9 +212,48 @@ public class BlockNestedJoin extends Join{
 
 
 
+    /** Unpins the current page of the right file and pins the next
+     ** one in the buffer pool. The end of the file is signalled with
+     ** EOFException as when the file is read as a stream. Every
+     ** READ_AHEAD pages the next READ_AHEAD are prefetched, and the
+     ** first page of the next rescan near the end of the file, so that
+     ** the pool reads them while the block is joined with these
+     **/
+
+    private Batch nextRightPage() throws EOFException{
+        BufferPool pool = BufferManager.getBufferPool();
+        if(rpage >= 0){
+            pool.unpin(rfile,rpage,false);
+        }
+        rpage++;
+        if(rpage >= rfile.getNumPages()){
+            rpage = -1;
+            throw new EOFException();
+        }
+        Batch page = pool.pin(rfile,rpage);
+        if(rpage % READ_AHEAD == 0){
+            pool.prefetch(rfile,rpage+1,READ_AHEAD);
+            if(rpage + READ_AHEAD >= rfile.getNumPages()){
+                pool.prefetch(rfile,0,1);
+            }
+        }
+        return page;
+    }
+
+
+
     /** Close the operator */
     public boolean close(){
 
+        if(rfile != null){
+            BufferPool pool = BufferManager.getBufferPool();
+            if(rpage >= 0){
+                pool.unpin(rfile,rpage,false);
+                rpage = -1;
+            }
+            pool.discard(rfname);
+            rfile = null;
+        }
         File f = new File(rfname);
         f.delete();
         return true;
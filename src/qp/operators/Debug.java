@@ -3,6 +3,7 @@
 package qp.operators;
 
 import qp.utils.*;
+import java.util.Vector;
 
 public class Debug{
 
@@ -14,7 +15,11 @@ public class Debug{
     public static void PPrint(Attribute attr){
 	String tabname = attr.getTabName();
 	String colname = attr.getColName();
-	System.out.print(tabname+"."+colname);
+	if(attr.isAggregate()){
+	    System.out.print(Attribute.aggName(attr.getAggType())+"("+tabname+"."+colname+")");
+	}else{
+	    System.out.print(tabname+"."+colname);
+	}
     }
 
 
@@ -87,6 +92,12 @@ public class Debug{
 	    case JoinType.HASHJOIN:
 		System.out.print("HashJoin(");
 		break;
+	    case JoinType.HYBRIDHASH:
+		System.out.print("HybridHash(");
+		break;
+	    case JoinType.INDEXNESTED:
+		System.out.print("IndexNested(");
+		break;
 	    }
 	    //System.out.print("Join(");
 	    PPrint(((Join)node).getLeft());
@@ -97,26 +108,88 @@ public class Debug{
 	    System.out.print(")");
 
 	}else if(optype==OpType.SELECT){
-	    System.out.print("Select(");
+	    if(node instanceof IndexScan){
+		System.out.print("IndexScan(");
+	    }else{
+		System.out.print("Select(");
+	    }
 	    PPrint(((Select)node).getBase());
-	    System.out.print("  '");
-	    PPrint(((Select)node).getCondition());
-	    System.out.print("'  ");
+	    PPrint(((Select)node).getConditions());
 	    System.out.print(")");
 
 	}else if(optype==OpType.PROJECT){
-	    System.out.print("Project(");
-	    PPrint(((Project)node).getBase());
+	    if(node instanceof FilterProject){
+		System.out.print("FilterProject(");
+		PPrint(((FilterProject)node).getBase());
+		PPrint(((FilterProject)node).getConditions());
+	    }else{
+		System.out.print("Project(");
+		PPrint(((Project)node).getBase());
+	    }
 	    System.out.print(")");
 
 	}else if(optype==OpType.DISTINCT){
-		System.out.print("Distinct(");
-		PPrint(((Distinct)node).getBase());
-		System.out.print(")");
+	    switch(((Distinct)node).getDistinctType()){
+	    case DistinctType.SORT:
+		System.out.print("SortDistinct(");
+		break;
+	    case DistinctType.HASH:
+		System.out.print("HashDistinct(");
+		break;
+	    }
+	    PPrint(((Distinct)node).getBase());
+	    System.out.print(")");
+
+	}else if(optype==OpType.GROUPBY){
+	    switch(((GroupBy)node).getGroupByType()){
+	    case GroupByType.SORT:
+		System.out.print("SortAggregate(");
+		break;
+	    case GroupByType.HASH:
+		System.out.print("HashAggregate(");
+		break;
+	    }
+	    PPrint(((GroupBy)node).getBase());
+	    System.out.print(")");
+
+	}else if(optype==OpType.EXCHANGE){
+	    /** the inputs of a gather are copies of one plan, of which
+	     ** the first is printed
+	     **/
+	    Exchange ex = (Exchange) node;
+	    switch(ex.getMode()){
+	    case Exchange.GATHER:
+		System.out.print("Gather["+ex.getInputs().length+"](");
+		break;
+	    case Exchange.REPARTITION:
+		System.out.print("Repartition["+ex.getNumPorts()+"](");
+		break;
+	    case Exchange.BROADCAST:
+		System.out.print("Broadcast["+ex.getNumPorts()+"](");
+		break;
+	    }
+	    PPrint(ex.getInputs()[0]);
+	    System.out.print(")");
 
 	}else if(optype==OpType.SCAN){
-	    System.out.print(((Scan)node).getTabName());
+	    if(node instanceof ParallelScan){
+		System.out.print("ParallelScan("+((Scan)node).getTabName()+")");
+	    }else{
+		System.out.print(((Scan)node).getTabName());
+	    }
+	}
+    }
+
+
+	/** print the conditions of a selection **/
+
+    private static void PPrint(Vector conditions){
+	for(int i=0;i<conditions.size();i++){
+	    System.out.print("  '");
+	    PPrint((Condition) conditions.elementAt(i));
+	    System.out.print("'");
 	}
+	System.out.print("  ");
     }
 
 
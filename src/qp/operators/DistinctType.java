@@ -0,0 +1,15 @@
+/** Enumeration of duplicate elimination algorithm types **/
+
+
+package qp.operators;
+
+public class DistinctType{
+
+   public static final int SORT = 0;
+   public static final int HASH = 1;
+
+   public static int numDistinctTypes(){
+	return 2;
+    }
+
+}
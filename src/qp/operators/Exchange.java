@@ -0,0 +1,402 @@
+/** exchange of tuples between threads **/
+
+package qp.operators;
+
+import qp.utils.*;
+import java.util.concurrent.*;
+
+/**
+ * Volcano exchange operator. The inputs of an exchange are run each on
+ * a producer thread of its own, which sends their batches to one or more
+ * ports through bounded queues; a port is the Exchange operator in the
+ * plan, and its next returns the batches sent to it. The producers are
+ * started by the first port that is opened.
+ *
+ * A gather has several inputs and one port that returns all of their
+ * batches, in the order they are ready. A repartition has one input and
+ * a port per partition, and sends every tuple to the port of the hash of
+ * its key. A broadcast has one input and sends all of its tuples to
+ * every port.
+ *
+ * The consumers of the ports of a repartition or a broadcast have to run
+ * concurrently, each on a thread of a gather, as a producer waits for
+ * the port whose queue is full.
+ *
+ * The queues and the pages a repartition fills for its ports are memory
+ * of the query: bufferPages gives their number, which the optimizer
+ * takes out of the buffers of a join it runs on several threads.
+ */
+
+public class Exchange extends Operator{
+
+    public static final int GATHER = 0;
+    public static final int REPARTITION = 1;
+    public static final int BROADCAST = 2;
+
+    static final int QUEUE_SIZE = 2;      // Batches a queue holds, per input
+    static final int HASH_LEVEL = 8;      // hash function of HashJoin.partitionOf for the partitions
+
+    static int defaultDegree = Runtime.getRuntime().availableProcessors();
+
+    /** marks the end of an input in a queue **/
+
+    static final Batch END_OF_INPUT = new Batch(0);
+
+    Channel channel;   // The producers shared by the ports
+    int port;          // Port of the channel read by this operator
+    boolean eos;       // Whether all the inputs have ended
+    int numended;      // Inputs that have sent the end
+
+
+    private Exchange(Channel channel, int port){
+	super(OpType.EXCHANGE);
+	this.channel = channel;
+	this.port = port;
+	setSchema(channel.inputs[0].getSchema());
+    }
+
+
+    /** one port returning the batches of all the inputs **/
+
+    public static Exchange gather(Operator[] inputs){
+	Channel ch = new Channel(GATHER,inputs,1,-1);
+	return ch.ports[0];
+    }
+
+    /** numports ports, each returning the tuples of the input whose
+     ** key in column keyindex falls into its partition
+     **/
+
+    public static Exchange[] repartition(Operator input, int keyindex, int numports){
+	Channel ch = new Channel(REPARTITION,new Operator[]{input},numports,keyindex);
+	return ch.ports;
+    }
+
+    /** numports ports, each returning all the tuples of the input **/
+
+    public static Exchange[] broadcast(Operator input, int numports){
+	Channel ch = new Channel(BROADCAST,new Operator[]{input},numports,-1);
+	return ch.ports;
+    }
+
+
+    /** number of threads the optimizer runs a join on, and an
+     ** ExternalSort of an operator is run on
+     **/
+
+    public static void setDefaultDegree(int num){
+	defaultDegree = Math.max(1,num);
+    }
+
+    public static int getDefaultDegree(){
+	return defaultDegree;
+    }
+
+
+    /** number of pages held by the queues of an exchange, and the pages
+     ** a repartition fills for every port
+     **/
+
+    public static int bufferPages(int mode, int numinputs, int numports){
+	int pages = QUEUE_SIZE*numinputs*numports;
+	if(mode == REPARTITION){
+	    pages = pages + numinputs*numports;
+	}
+	return pages;
+    }
+
+
+    public int getMode(){
+	return channel.mode;
+    }
+
+    public Operator[] getInputs(){
+	return channel.inputs;
+    }
+
+    public int getNumPorts(){
+	return channel.ports.length;
+    }
+
+
+    public boolean open(){
+	eos = false;
+	numended = 0;
+	return channel.start(port);
+    }
+
+
+    public Batch next(){
+	if(eos){
+	    return null;
+	}
+	try{
+	    while(true){
+		Batch batch = channel.queues[port].take();
+		if(channel.error != null){
+		    System.err.println("Exchange: "+channel.error);
+		    System.exit(1);
+		}
+		if(batch != END_OF_INPUT){
+		    return batch;
+		}
+		numended++;
+		if(numended == channel.inputs.length){
+		    break;
+		}
+	    }
+	}catch(InterruptedException e){
+	    System.err.println("Exchange: interrupted");
+	    System.exit(1);
+	}
+	eos = true;
+	return null;
+    }
+
+
+    /** A gather passes the filter on to its inputs. The producers of a
+     ** repartition or a broadcast apply it to the tuples they send to
+     ** this port only, as the other ports still need the tuples it
+     ** leaves out; it only applies to the tuples sent after it is pushed
+     **/
+
+    public boolean pushFilter(Attribute attr, BloomFilter keys){
+	int index = schema.indexOf(attr);
+	if(index == -1){
+	    return false;
+	}
+	if(channel.mode == GATHER){
+	    boolean taken = true;
+	    for(int i=0;i<channel.inputs.length;i++){
+		if(!channel.inputs[i].pushFilter(attr,keys))
+		    taken = false;
+	    }
+	    if(taken){
+		return true;
+	    }
+	}
+	channel.addFilter(port,Predicate.semiJoin(index,keys));
+	return true;
+    }
+
+
+    /** the producers no longer wait for the port; they are stopped
+     ** when all the ports are closed
+     **/
+
+    public boolean close(){
+	eos = true;
+	return channel.closePort(port);
+    }
+
+
+    /** The producers and the queues of an exchange **/
+
+    static class Channel{
+	int mode;
+	Operator[] inputs;
+	int keyindex;        // Column of the key of a repartition
+	Exchange[] ports;
+	BlockingQueue<Batch>[] queues;
+	boolean[] opened;    // Ports opened and not closed yet
+	boolean[] closed;    // Ports closed by their consumer, in this run
+	volatile Predicate[] filters;   // Semi-join filters of the ports, null if none
+	int numopen;         // Number of the opened ports
+	boolean running;     // Whether the producers are started
+	volatile String error;   // Error of a producer, if any
+
+	@SuppressWarnings("unchecked")
+	Channel(int mode, Operator[] inputs, int numports, int keyindex){
+	    this.mode = mode;
+	    this.inputs = inputs;
+	    this.keyindex = keyindex;
+	    ports = new Exchange[numports];
+	    filters = new Predicate[numports];
+	    queues = new BlockingQueue[numports];
+	    opened = new boolean[numports];
+	    for(int i=0;i<numports;i++){
+		ports[i] = new Exchange(this,i);
+	    }
+	}
+
+
+	/** starts the producers unless a port has already done it **/
+
+	synchronized boolean start(int port){
+	    if(!opened[port]){
+		opened[port] = true;
+		numopen++;
+	    }
+	    if(running){
+		return true;
+	    }
+	    running = true;
+	    error = null;
+	    final boolean[] portclosed = new boolean[ports.length];
+	    final BlockingQueue<Batch>[] portqueues = queues;
+	    for(int i=0;i<queues.length;i++){
+		queues[i] = new ArrayBlockingQueue<>(QUEUE_SIZE*inputs.length);
+	    }
+	    closed = portclosed;
+	    for(int i=0;i<inputs.length;i++){
+		final Operator input = inputs[i];
+		Thread producer = new Thread(new Runnable(){
+			public void run(){
+			    produce(input,portqueues,portclosed);
+			}
+		    },"Exchange-"+i);
+		producer.setDaemon(true);
+		producer.start();
+	    }
+	    return true;
+	}
+
+
+	/** once all the ports are closed the producers stop, and the
+	 ** next port opened starts them again
+	 **/
+
+	synchronized boolean closePort(int port){
+	    if(!opened[port]){
+		return true;
+	    }
+	    opened[port] = false;
+	    addFilter(port,null);
+	    /** the producers see the port closed once they next take
+	     ** the lock of its queue, which clear takes after the write
+	     **/
+	    closed[port] = true;
+	    queues[port].clear();
+	    numopen--;
+	    if(numopen == 0){
+		running = false;
+		queues = newQueues(ports.length);
+	    }
+	    return true;
+	}
+
+
+	/** a port's filter is conjoined with the ones before; null drops
+	 ** them. The array is replaced, so that a producer reading it
+	 ** while a filter is added sees the old filters or the new ones
+	 **/
+
+	synchronized void addFilter(int port, Predicate p){
+	    Predicate[] newfilters = filters.clone();
+	    if(p == null || newfilters[port] == null){
+		newfilters[port] = p;
+	    }else{
+		newfilters[port] = Predicate.and(newfilters[port],p);
+	    }
+	    filters = newfilters;
+	}
+
+
+	@SuppressWarnings("unchecked")
+	private static BlockingQueue<Batch>[] newQueues(int n){
+	    return new BlockingQueue[n];
+	}
+
+
+	/** runs an input and sends its batches to the ports **/
+
+	void produce(Operator input, BlockingQueue<Batch>[] queues, boolean[] closed){
+	    try{
+		if(!input.open()){
+		    error = "error in opening the input";
+		}else{
+		    boolean more = true;
+		    Batch inbatch;
+		    if(mode == REPARTITION){
+			int capacity = Batch.getPageSize()/input.getSchema().getTupleSize();
+			Batch[] buffers = new Batch[ports.length];
+			for(int p=0;p<ports.length;p++){
+			    buffers[p] = new Batch(capacity);
+			}
+			while(more && (inbatch = input.next()) != null){
+			    Predicate[] keys = filters;
+			    for(int i=0;i<inbatch.size();i++){
+				int p = HashJoin.partitionOf(inbatch.dataAt(i,keyindex),HASH_LEVEL,ports.length);
+				if(keys[p] != null && !keys[p].eval(inbatch.elementAt(i)))
+				    continue;
+				buffers[p].add(inbatch.elementAt(i));
+				if(buffers[p].isFull()){
+				    more = send(queues,closed,p,buffers[p]);
+				    buffers[p] = new Batch(capacity);
+				}
+			    }
+			}
+			for(int p=0;more && p<ports.length;p++){
+			    if(!buffers[p].isEmpty()){
+				more = send(queues,closed,p,buffers[p]);
+			    }
+			}
+		    }else if(mode == BROADCAST){
+			while(more && (inbatch = input.next()) != null){
+			    Predicate[] keys = filters;
+			    /** every port gets a batch of its own, as the
+			     ** consumers may change the batch
+			     **/
+			    for(int p=0;more && p<ports.length;p++){
+				Batch copy = new Batch(inbatch.size());
+				for(int i=0;i<inbatch.size();i++){
+				    if(keys[p] == null || keys[p].eval(inbatch.elementAt(i)))
+					copy.add(inbatch.elementAt(i));
+				}
+				if(!copy.isEmpty()){
+				    more = send(queues,closed,p,copy);
+				}
+			    }
+			}
+		    }else{
+			while(more && (inbatch = input.next()) != null){
+			    Predicate[] keys = filters;
+			    if(keys[0] != null){
+				Batch kept = new Batch(inbatch.size());
+				for(int i=0;i<inbatch.size();i++){
+				    if(keys[0].eval(inbatch.elementAt(i)))
+					kept.add(inbatch.elementAt(i));
+				}
+				inbatch = kept;
+			    }
+			    if(!inbatch.isEmpty()){
+				more = send(queues,closed,0,inbatch);
+			    }
+			}
+		    }
+		    input.close();
+		}
+		for(int p=0;p<ports.length;p++){
+		    send(queues,closed,p,END_OF_INPUT);
+		}
+	    }catch(InterruptedException e){
+		return;
+	    }catch(RuntimeException e){
+		error = "error in the input: "+e;
+		for(int p=0;p<ports.length;p++){
+		    queues[p].offer(END_OF_INPUT);
+		}
+	    }
+	}
+
+
+	/** puts the batch into the queue of the port unless the port is
+	 ** closed. Returns false once all the ports are closed
+	 **/
+
+	boolean send(BlockingQueue<Batch>[] queues, boolean[] closed, int port, Batch batch) throws InterruptedException{
+	    while(!closed[port]){
+		if(queues[port].offer(batch,10,TimeUnit.MILLISECONDS)){
+		    return true;
+		}
+	    }
+	    synchronized(this){
+		for(int p=0;p<closed.length;p++){
+		    if(!closed[p])
+			return true;
+		}
+	    }
+	    return false;
+	}
+    }
+}
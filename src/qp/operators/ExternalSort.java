@@ -2,45 +2,152 @@ package qp.operators;
 
 import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Stack;
-
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import qp.utils.AsyncPageReader;
+import qp.utils.AsyncPageWriter;
 import qp.utils.Batch;
+import qp.utils.BloomFilter;
+import qp.utils.PageReader;
+import qp.utils.PageWriter;
+import qp.utils.Schema;
 import qp.utils.Tuple;
 
 /**
  * 2 phases to External sort -
  * Phase 1 - Create ceiling (no of pages/no of batches) sorted runs (Generates a (buffer size) sorted run)
  * Phase 2 - Merge the runs together (Merge using B-1 buffer pages until 1 sorted run is produced)
+ *
+ * The merge keeps one input page per run and a priority queue of run cursors, and writes
+ * the output page whenever it fills up, so that a pass never holds more than numBuff pages.
+ *
+ * The last merge is not written out: open() merges until at most finalFanIn runs are left,
+ * and next() merges these on the fly, so that the operator consuming the sorted table reads
+ * it in the same pass as the final merge. With a final fan-in of 1 the table is merged into a
+ * single run file first.
+ *
+ * Runs are generated either by filling the buffers and sorting them (FILL_AND_SORT) or by
+ * replacement selection (REPLACEMENT_SELECTION), which produces runs of about twice the
+ * buffer size on random input and thus fewer runs to merge.
+ *
+ * A sort runs on one thread unless setNumThreads asks for more; SortMergeJoin, SortDistinct
+ * and SortAggregate ask for Exchange.getDefaultDegree() threads. With more than one thread,
+ * the runs of FILL_AND_SORT are sorted and written by a pool of workers while the next run
+ * is read in, and the merges of a pass, which are independent of each other, run on the pool
+ * too. The numBuff pages are shared out: the runs being sorted and the one being read get
+ * numBuff / (threads + 1) pages each and the merges running together numBuff / threads pages
+ * each, so the runs are shorter and a pass merges fewer runs than with one thread. The number
+ * of threads is lowered until every run has at least MIN_RUN_PAGES pages. Replacement
+ * selection reads and writes one run at a time and stays on the calling thread.
+ *
+ * The run files are written behind and read ahead in the background, so that the sorting and
+ * merging overlap with the file I/O. These pages are taken out of numBuff: with ioDepth(pages)
+ * pages ahead, every run file being merged and the output take 1 + ioDepth(pages) pages, which
+ * gives the fan-in mergeFanIn(pages), and a generated run is ioDepth pages shorter. The depth is
+ * READ_AHEAD while a merge still takes MIN_FAN_IN runs with it, less when buffers are tight, and
+ * none at all with few buffers.
  */
 public class ExternalSort extends Operator{
 
+    /** enumeration of the run generation strategies **/
+    public static final int FILL_AND_SORT = 0;
+    public static final int REPLACEMENT_SELECTION = 1;
+
+    private static final int READ_AHEAD = 4; // pages read ahead and written behind per run file, at most
+    private static final int MIN_FAN_IN = 16; // runs a merge keeps when its files are read ahead
+    private static final int MIN_RUN_PAGES = 2; // pages of a run generated by a worker, at least
+
     private Operator table;
-    private Stack fileStack;
     private ArrayList<Tuple> memory;
+    private ArrayList<String> runs; // run files of the current pass
 
     private String fileName;
+    private static AtomicInteger filenum = new AtomicInteger(); // To get unique file names for every sort
 
     private int numBuff; //number of buffers
-    private double runNum = 0;
     private int batchSize; // number of tuples in one page
-    private int joinIndex;
-    private int numPasses; // number of passes
+    private int[] sortIndex; // columns of the sort key, most significant first
+    private int numPasses; // number of merge passes done
+    private int numRuns; // number of runs produced by phase one
+    private int runGeneration = FILL_AND_SORT;
+    private int numThreads = 1;
+    private int threads; // threads of the current sort, numThreads limited by the buffers
+    private ExecutorService workers; // sorts the runs and merges the groups, if threads > 1
+    private int finalFanIn; // maximum number of runs merged by next()
+    private PriorityQueue<RunCursor> finalMerge; // cursors of the runs merged by next()
     private Batch batch;
-    private boolean flag;
+    private int batchCursor; // next tuple of batch to be read in replacement selection
+    private BloomFilter.Builder keys; // gathers the values of the first sort column, if not null
 
     public ExternalSort(Operator table, int numBuff, int joinIndex, String fileName ) {
+        this(table, numBuff, new int[] {joinIndex}, fileName);
+    }
+
+    /**
+     * Sorts on several columns, comparing on sortIndex[1] when the tuples are equal on
+     * sortIndex[0] and so on
+     */
+    public ExternalSort(Operator table, int numBuff, int[] sortIndex, String fileName ) {
         super(OpType.SORT);
         this.table = table;
         this.numBuff = numBuff;
-        this.joinIndex = joinIndex;
-        this.fileName = fileName;
+        this.sortIndex = sortIndex;
+        this.fileName = fileName + filenum.incrementAndGet() + "-";
+        this.finalFanIn = mergeFanIn(numBuff);
+        setSchema(table.getSchema());
+    }
+
+    /**
+     * Pages read ahead of every run file, and written behind the output run, by a merge or a
+     * run generation with the given number of pages
+     */
+    public static int ioDepth(int pages) {
+        for (int depth = READ_AHEAD; depth > 0; depth--) {
+            if (pages / (depth + 1) - 1 >= MIN_FAN_IN) {
+                return depth;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Number of runs merged together with the given number of pages, one input page per run
+     * and one output page, each with its read ahead or write behind pages
+     */
+    public static int mergeFanIn(int pages) {
+        return Math.max(2, pages / (ioDepth(pages) + 1) - 1);
+    }
+
+    /**
+     * Threads a sort with the given buffers and run generation runs on when numThreads are
+     * asked for: a run of a worker takes at least MIN_RUN_PAGES pages, and replacement
+     * selection stays on the calling thread
+     */
+    public static int sortThreads(int numBuff, int numThreads, int runGeneration) {
+        if (runGeneration == REPLACEMENT_SELECTION) {
+            return 1;
+        }
+        return Math.max(1, Math.min(numThreads, numBuff / MIN_RUN_PAGES - 1));
+    }
+
+    /**
+     * Pages of the runs generated with the given number of pages, those of replacement
+     * selection being twice its heap on random input
+     */
+    public static int runPages(int pages, int runGeneration) {
+        if (runGeneration == REPLACEMENT_SELECTION) {
+            return 2 * Math.max(1, pages - 2 - ioDepth(pages));
+        }
+        return Math.max(1, pages - ioDepth(pages));
     }
 
     public boolean open() {
@@ -48,43 +155,176 @@ public class ExternalSort extends Operator{
             return false;
         }
 
+        batchSize = Batch.getPageSize() / table.getSchema().getTupleSize();
         memory = new ArrayList<>();
-        fileStack = new Stack();
+        runs = new ArrayList<>();
+        numPasses = 0;
+        threads = sortThreads(numBuff, numThreads, runGeneration);
+        if (threads > 1) {
+            workers = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "ExternalSort-" + fileName);
+                t.setDaemon(true);
+                return t;
+            });
+        }
         phaseOne(); //Create sorted runs
-        flag = true;
-        phaseTwo(); //Merge Sorted Runs
+        phaseTwo(); //Merge Sorted Runs until the final merge is left
+        if (workers != null) {
+            workers.shutdown();
+            workers = null;
+        }
+        finalMerge = null;
 
         return true;
     }
 
     /**
-     * Generate sorted runs
+     * Returns the next page of the sorted table, merging the remaining runs on the fly.
+     * The runs of the final merge are opened by the first call, so that a sort that is open
+     * holds no buffers until it is read, as while SortMergeJoin sorts its other input
      */
-    private void phaseOne() {
+    public Batch next() {
+        if (finalMerge == null) {
+            if (runs == null) {
+                return null;
+            }
+            finalMerge = openCursors(runs, ioDepth(numBuff));
+        }
+        if (finalMerge.isEmpty()) {
+            return null;
+        }
+        Batch output = new Batch(batchSize);
+        while (!output.isFull() && !finalMerge.isEmpty()) {
+            RunCursor cursor = finalMerge.poll();
+            output.add(cursor.current());
+            if (cursor.advance()) {
+                finalMerge.add(cursor);
+            }
+        }
+        return output;
+    }
 
-        if (runNum == 0) {
-            batch = table.next();
+    /**
+     * Number of runs that are at most left for the final merge done by next().
+     * It has to be set before the sort is opened.
+     */
+    public void setFinalFanIn(int finalFanIn) {
+        this.finalFanIn = Math.max(1, Math.min(finalFanIn, mergeFanIn(numBuff)));
+    }
 
-            if (batch != null) {
-                batchSize = batch.size();
+    public int getFinalFanIn() {
+        return finalFanIn;
+    }
+
+    public int getNumPasses() {
+        return numPasses;
+    }
+
+    public int getNumRuns() {
+        return numRuns;
+    }
+
+    public void setRunGeneration(int runGeneration) {
+        this.runGeneration = runGeneration;
+    }
+
+    public int getRunGeneration() {
+        return runGeneration;
+    }
+
+    /**
+     * Number of threads that sort the runs and merge them, 1 by default. The threads share
+     * the numBuff pages of the sort. It has to be set before the sort is opened.
+     */
+    public void setNumThreads(int numThreads) {
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    /**
+     * Adds the values of the first sort column of the input to the builder while the runs
+     * are generated, so that a join has the keys of this input once the sort is open
+     */
+    public void setKeyBuilder(BloomFilter.Builder keys) {
+        this.keys = keys;
+    }
+
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    /**
+     * Compares two tuples on the sort key
+     */
+    private int compare(Tuple leftTuple, Tuple rightTuple) {
+        for (int i = 0;i < sortIndex.length;i++) {
+            int result = Tuple.compareTuples(leftTuple, rightTuple, sortIndex[i]);
+            if (result != 0) {
+                return result;
             }
         }
+        return 0;
+    }
 
-        while (batch != null) {
-
-            if (batch == null && memory.size() == 0) {
-                break;
+    /**
+     * Generate sorted runs
+     */
+    private void phaseOne() {
+        batch = nextBatch();
+
+        if (runGeneration == REPLACEMENT_SELECTION) {
+            replacementSelection();
+        } else if (workers != null) {
+            /** at most threads runs are being sorted while the next one is read **/
+            final int share = numBuff / (threads + 1);
+            int runPages = runPages(share, FILL_AND_SORT);
+            ArrayList<Future<String>> pending = new ArrayList<>();
+            while (batch != null) {
+                loadTuplesIntoMemory(runPages);
+                final ArrayList<Tuple> chunk = memory;
+                final String currentFileName = runFileName(0, runs.size() + pending.size());
+                memory = new ArrayList<>();
+                if (pending.size() == threads) {
+                    runs.add(waitFor(pending.remove(0)));
+                }
+                pending.add(workers.submit(() -> {
+                    sortRun(chunk);
+                    return writeRunToFile(chunk, currentFileName, ioDepth(share));
+                }));
+            }
+            for (int i = 0; i < pending.size(); i++) {
+                runs.add(waitFor(pending.get(i)));
+            }
+        } else {
+            while (batch != null) {
+                loadTuplesIntoMemory(runPages(numBuff, FILL_AND_SORT));
+                sortRun(memory);
+                runs.add(writeRunToFile(memory, runFileName(0, runs.size()), ioDepth(numBuff)));
             }
-            loadTuplesIntoMemory();
-            sortRuns();
-            writeRunsToFile(runNum); // each run is assigned a number
-            runNum++;
+        }
+
+        /** an empty table still results in one (empty) sorted run **/
+        if (runs.isEmpty()) {
+            runs.add(writeRunToFile(memory, runFileName(0, 0), 0));
+        }
+        numRuns = runs.size();
+    }
+
+    /**
+     * Result of a task of the workers
+     */
+    private static String waitFor(Future<String> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException | ExecutionException e) {
+            System.err.println("External Sort: Error in a worker: " + e);
+            System.exit(1);
+            return null;
         }
     }
 
-    private void loadTuplesIntoMemory() {
+    private void loadTuplesIntoMemory(int pages) {
 
-        for (int i = 0;i < numBuff;i++) {
+        for (int i = 0;i < pages;i++) {
 
             if (batch != null) {
                 for (int j = 0;j < batch.size();j++) {
@@ -94,148 +334,339 @@ public class ExternalSort extends Operator{
             else {
                 return;
             }
-            batch = table.next();
+            batch = nextBatch();
         }
     }
 
     /**
-     * Internal sort the runs
+     * Generates the runs with a heap of numBuff - 2 pages of tuples (one page is kept for input
+     * and one for output), less the pages written behind. The smallest tuple of the current run is written out and replaced by
+     * the next input tuple; an input tuple smaller than the last one written has to wait for the
+     * next run.
      */
-    private void sortRuns() {
-        Collections.sort(memory, (leftTuple,rightTuple) -> Tuple.compareTuples(leftTuple,rightTuple,joinIndex));
+    private void replacementSelection() {
+        int depth = ioDepth(numBuff);
+        int heapCapacity = runPages(numBuff, REPLACEMENT_SELECTION) / 2 * batchSize;
+        PriorityQueue<HeapEntry> heap = new PriorityQueue<>(heapCapacity, (leftEntry, rightEntry) -> {
+            if (leftEntry.run != rightEntry.run) {
+                return leftEntry.run - rightEntry.run;
+            }
+            return compare(leftEntry.tuple, rightEntry.tuple);
+        });
+
+        batchCursor = 0;
+        Tuple next;
+        while (heap.size() < heapCapacity && (next = nextInputTuple()) != null) {
+            heap.add(new HeapEntry(0, next));
+        }
+
+        int currentRun = 0;
+        RunWriter out = null;
+        while (!heap.isEmpty()) {
+            HeapEntry smallest = heap.poll();
+            if (out == null || smallest.run != currentRun) {
+                if (out != null) {
+                    out.close();
+                }
+                currentRun = smallest.run;
+                String currentFileName = runFileName(0, runs.size());
+                runs.add(currentFileName);
+                out = new RunWriter(currentFileName, schema, batchSize, depth);
+            }
+            out.add(smallest.tuple);
+
+            next = nextInputTuple();
+            if (next != null) {
+                if (compare(next, smallest.tuple) >= 0) {
+                    heap.add(new HeapEntry(currentRun, next));
+                } else {
+                    heap.add(new HeapEntry(currentRun + 1, next));
+                }
+            }
+        }
+        if (out != null) {
+            out.close();
+        }
     }
 
     /**
-     * writeSortedRuns transfers whatever data in the memory to a new file, differentiated by the current run.
-     * Output is the batch that transfers over the data from memory to file. After each batch is taken, the memory erases that
-     * particular batch.
-     * @param currentRun
+     * Next page of the input table, null at the end of the table
      */
+    private Batch nextBatch() {
+        Batch next = table.next();
+        if (next != null && keys != null) {
+            for (int i = 0; i < next.size(); i++) {
+                keys.add(next.dataAt(i, sortIndex[0]));
+            }
+        }
+        return next;
+    }
 
-    private void writeRunsToFile(double currentRun){
-
-        if (flag == false) {
-            fileStack.push(currentRun);
+    /**
+     * Next tuple of the input table, null at the end of the table
+     */
+    private Tuple nextInputTuple() {
+        while (batch != null && batchCursor >= batch.size()) {
+            batch = nextBatch();
+            batchCursor = 0;
+        }
+        if (batch == null) {
+            return null;
         }
+        Tuple next = batch.elementAt(batchCursor);
+        batchCursor++;
+        return next;
+    }
 
-        try {
-            String currentFileName = fileName + String.valueOf(currentRun);
-            ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(currentFileName));
+    /**
+     * Internal sort of a run
+     */
+    private void sortRun(List<Tuple> run) {
+        Collections.sort(run, (leftTuple,rightTuple) -> compare(leftTuple,rightTuple));
+    }
 
-            while(!memory.isEmpty()) { // still have tuples in memory
-                Batch output = new Batch(batchSize); // write existing tuples to a new batch
+    private String runFileName(int pass, int run) {
+        return fileName + pass + "." + run;
+    }
 
-                while(!output.isFull()) {
-                    if (memory.isEmpty()) {
-                        break;
-                    }
-                    output.add(memory.get(0)); // while the existing batch is not full, write the tuples into it
-                    memory.remove(0);
+    /**
+     * writeRunToFile transfers the tuples of a run to a new file, page by page,
+     * and empties the run afterwards.
+     * @param run the sorted tuples
+     * @param currentFileName the run file to be written
+     * @param depth the pages written behind
+     * @return the name of the run file
+     */
+    private String writeRunToFile(List<Tuple> run, String currentFileName, int depth){
 
-                }
-                out.writeObject(output);
-            }
-            out.close();
-        } catch (IOException io) {
-            System.err.println("External Sort: Error in writing file");
-            System.exit(1); // Terminates the system
+        RunWriter out = new RunWriter(currentFileName, schema, batchSize, depth);
+        for (int i = 0; i < run.size(); i++) {
+            out.add(run.get(i));
         }
+        out.close();
+        run.clear();
+        return currentFileName;
     }
 
+    /**
+     * Merge groups of mergeFanIn(B) runs, pass after pass, until no more than finalFanIn runs are left.
+     * A pass with more runs than one merge takes is merged by the workers if there are any,
+     * each merge with its share of the buffers
+     */
     private void phaseTwo() {
-        numPasses = calculateNumPasses();
-        mergeRuns(); // as explained in lecture slides
-        close();
+        while (runs.size() > finalFanIn) {
+            numPasses++;
+            ArrayList<String> merged = new ArrayList<>();
+            ArrayList<Future<String>> pending = new ArrayList<>();
+            int pages = numBuff;
+            int numInputBuffers = mergeFanIn(pages);
+            boolean parallel = workers != null && runs.size() > numInputBuffers;
+            if (parallel) {
+                pages = numBuff / threads;
+                numInputBuffers = mergeFanIn(pages);
+            }
+            final int depth = ioDepth(pages);
+
+            for (int start = 0; start < runs.size(); start += numInputBuffers) {
+                int end = Math.min(start + numInputBuffers, runs.size());
+                final List<String> group = runs.subList(start, end);
+                final String outFileName = runFileName(numPasses, merged.size() + pending.size());
+                if (parallel) {
+                    pending.add(workers.submit(() -> mergeRuns(group, outFileName, depth)));
+                } else {
+                    merged.add(mergeRuns(group, outFileName, depth));
+                }
+            }
+            for (int i = 0; i < pending.size(); i++) {
+                merged.add(waitFor(pending.get(i)));
+            }
+            runs = merged;
+        }
     }
 
-    private int calculateNumPasses() {
-        int num = 0;
-        double numInputBuffers = numBuff - 1;
-        double numRuns;
-        numRuns = runNum;
+    /**
+     * Merges the given runs into a new run with one input buffer per run and one output buffer,
+     * each with depth pages ahead or behind. The input runs are deleted once they are merged.
+     */
+    private String mergeRuns(List<String> group, String outFileName, int depth) {
+        PriorityQueue<RunCursor> heap = openCursors(group, depth);
+
+        RunWriter out = new RunWriter(outFileName, schema, batchSize, depth);
+        while (!heap.isEmpty()) {
+            RunCursor cursor = heap.poll();
+            out.add(cursor.current());
+            if (cursor.advance()) {
+                heap.add(cursor);
+            }
+        }
+        out.close();
 
+        for (int i = 0; i < group.size(); i++) {
+            File f = new File(group.get(i));
+            f.delete();
+        }
+        return outFileName;
+    }
 
-        while (numRuns!= 1) {
-            numRuns = Math.ceil(numRuns/numInputBuffers);
-            num++;
+    /**
+     * Opens a cursor on every run and orders the non empty ones on their current tuple
+     */
+    private PriorityQueue<RunCursor> openCursors(List<String> group, int depth) {
+        PriorityQueue<RunCursor> heap = new PriorityQueue<>(Math.max(1, group.size()),
+                (leftCursor, rightCursor) -> compare(leftCursor.current(), rightCursor.current()));
+
+        for (int i = 0; i < group.size(); i++) {
+            RunCursor cursor = new RunCursor(group.get(i), schema, depth);
+            if (cursor.advance()) {
+                heap.add(cursor);
+            }
         }
+        return heap;
+    }
 
-        return num;
+    /**
+     * Deletes the run files that are left
+     */
+    public boolean close() {
+        if (finalMerge != null) {
+            while (!finalMerge.isEmpty()) {
+                finalMerge.poll().close();
+            }
+            finalMerge = null;
+        }
+        if (runs != null) {
+            for (int i = 0; i < runs.size(); i++) {
+                File f = new File(runs.get(i));
+                f.delete();
+            }
+            runs = null;
+        }
+        return true;
     }
 
-    private void mergeRuns() {
+    /**
+     * A tuple in the replacement selection heap, tagged with the run it belongs to
+     */
+    private static class HeapEntry {
 
-        double numInputBuffers = numBuff - 1;
-        int readRunIntoMemoryPointer = 0;
-        int writeRunIntoFilePointer = 0;
+        private int run;
+        private Tuple tuple;
 
-        /**
-         * runNum slowly decreases with increasing passes. Runs become bigger.
-         */
-        while (runNum != 1) {
-            for (int i = 0; i < numPasses;i++) {
-
-                for(int j = 0;j < numInputBuffers;j++) {
-                    if (!readRunIntoMemory(readRunIntoMemoryPointer)) {
-                        break;
-                    }
-                    readRunIntoMemoryPointer++;
-                }
-                sortRuns();
-                writeRunsToFile(writeRunIntoFilePointer);
-                writeRunIntoFilePointer++;
-            }
-            readRunIntoMemoryPointer = 0; // reset
-            writeRunIntoFilePointer = 0; // reset
-            runNum = Math.ceil(runNum/numInputBuffers);
-            close();
+        HeapEntry(int run, Tuple tuple) {
+            this.run = run;
+            this.tuple = tuple;
         }
-
     }
 
-    private boolean readRunIntoMemory(int run) {
-        ObjectInputStream in = null;
-        try {
-            String currentFile = fileName + String.valueOf(run);
-            in = new ObjectInputStream(new FileInputStream(currentFile));
-
-            Batch input;
-            input = (Batch) in.readObject();
+    /**
+     * Writes a run one page at a time through a single output buffer
+     */
+    private static class RunWriter {
 
-            while (input != null) {
+        private PageWriter out;
+        private Batch output;
+        private int batchSize;
 
-                for (int i = 0;i < input.size();i++) {
-                    memory.add(input.elementAt(i)); // read tuples in batch into memory
+        RunWriter(String runFileName, Schema schema, int batchSize, int depth) {
+            this.batchSize = batchSize;
+            output = new Batch(batchSize);
+            try {
+                if (depth > 0) {
+                    out = new AsyncPageWriter(runFileName, schema, depth);
+                } else {
+                    out = new PageWriter(runFileName, schema);
                 }
-                input = (Batch) in.readObject(); // read next batch
+            } catch (IOException io) {
+                System.err.println("External Sort: Error in writing file");
+                System.exit(1); // Terminates the system
+            }
+        }
+
+        void add(Tuple tuple) {
+            output.add(tuple);
+            if (output.isFull()) {
+                flush();
             }
-        } catch (EOFException e) {
+        }
+
+        private void flush() {
             try {
-                in.close();
-                return true;
+                out.write(output);
             } catch (IOException io) {
+                System.err.println("External Sort: Error in writing file");
                 System.exit(1);
             }
-        } catch (ClassNotFoundException ce) {
-            System.err.println("External Sort: Class type not Batch when reading in file");
-            System.exit(1);
+            output = new Batch(batchSize);
         }
-        catch (IOException io) {
-            System.err.println("External Sort:Error in reading file");
-            System.exit(1);
-            return false;
+
+        void close() {
+            if (!output.isEmpty()) {
+                flush();
+            }
+            try {
+                out.close();
+            } catch (IOException io) {
+                System.err.println("External Sort: Error in writing file");
+                System.exit(1);
+            }
         }
-        return true;
     }
 
-    public boolean close() {
-        while((double) fileStack.peek() != runNum - 1) {
-            System.out.println(fileName);
-            File f = new File(fileName + (int) fileStack.peek());
-            f.delete();
-            fileStack.pop();
+    /**
+     * Reads a sorted run one page at a time and points to its current tuple
+     */
+    private static class RunCursor {
+
+        private String runFileName;
+        private PageReader in;
+        private Batch page;
+        private int index;
+
+        RunCursor(String runFileName, Schema schema, int depth) {
+            this.runFileName = runFileName;
+            try {
+                if (depth > 0) {
+                    in = new AsyncPageReader(runFileName, schema, depth);
+                } else {
+                    in = new PageReader(runFileName, schema);
+                }
+            } catch (IOException io) {
+                System.err.println("External Sort:Error in reading file " + runFileName);
+                System.exit(1);
+            }
+        }
+
+        Tuple current() {
+            return page.elementAt(index);
+        }
+
+        /**
+         * Moves to the next tuple of the run, reading in the next page when needed
+         * @return false when the run is exhausted
+         */
+        boolean advance() {
+            index++;
+            while (page == null || index >= page.size()) {
+                try {
+                    page = in.readBatch();
+                    index = 0;
+                } catch (EOFException e) {
+                    close();
+                    return false;
+                } catch (IOException io) {
+                    System.err.println("External Sort:Error in reading file");
+                    System.exit(1);
+                }
+            }
+            return true;
+        }
+
+        void close() {
+            try {
+                in.close();
+            } catch (IOException io) {
+                System.err.println("External Sort:Error in closing file " + runFileName);
+            }
         }
-        return true;
     }
 }
-
@@ -0,0 +1,91 @@
+/** selections and a projection in one operator **/
+
+package qp.operators;
+
+import qp.utils.*;
+import java.util.Vector;
+
+/**
+ * Project over a chain of Selects, fused into one operator by the plan
+ * rewrite after the execution plan is made. Every page of the input is
+ * read once: all the conditions are evaluated and the projected tuples
+ * of the qualifying ones are produced in the same loop, instead of one
+ * output page per Select and a copy of every tuple in between.
+ *
+ * A page of columns is filtered by narrowing its selection vector and
+ * is passed on as a view on the projected columns.
+ */
+
+public class FilterProject extends Project{
+
+    Vector conditions;    // the conditions of the fused Selects
+    Predicate predicate;  // the conditions compiled on the base schema
+
+    public FilterProject(Operator base, Vector conditions, Vector as, int type){
+	super(base,as,type);
+	this.conditions = conditions;
+    }
+
+    public Vector getConditions(){
+	return conditions;
+    }
+
+
+    public boolean open(){
+	predicate = Predicate.compile(conditions,base.getSchema());
+	return super.open();
+    }
+
+
+    /** returns the projected tuples satisfying all the conditions
+     ** from the next input page that has any
+     **/
+
+    public Batch next(){
+	while(true){
+	    inbatch = base.next();
+	    if(inbatch == null){
+		return null;
+	    }
+	    if(inbatch instanceof ColumnBatch){
+		ColumnBatch columns = (ColumnBatch) inbatch;
+		int[] rows = columns.selection();
+		int n = predicate.filter(columns,rows,columns.size());
+		if(n == 0){
+		    continue;
+		}
+		columns.select(rows,n);
+		return columns.project(attrIndex,batchsize);
+	    }
+	    outbatch = new Batch(batchsize);
+	    for(int i=0;i<inbatch.size();i++){
+		Tuple basetuple = inbatch.elementAt(i);
+		if(!predicate.eval(basetuple)){
+		    continue;
+		}
+		Vector present = new Vector(attrIndex.length);
+		for(int j=0;j<attrIndex.length;j++){
+		    present.add(basetuple.dataAt(attrIndex[j]));
+		}
+		outbatch.add(new Tuple(present));
+	    }
+	    if(!outbatch.isEmpty()){
+		return outbatch;
+	    }
+	}
+    }
+
+
+    public Object clone(){
+	Operator newbase = (Operator) base.clone();
+	Vector newcons = new Vector();
+	for(int i=0;i<conditions.size();i++)
+	    newcons.add((Condition) ((Condition) conditions.elementAt(i)).clone());
+	Vector newattr = new Vector();
+	for(int i=0;i<attrSet.size();i++)
+	    newattr.add((Attribute) ((Attribute) attrSet.elementAt(i)).clone());
+	FilterProject newfp = new FilterProject(newbase,newcons,newattr,optype);
+	newfp.setSchema(newbase.getSchema().subSchema(newattr));
+	return newfp;
+    }
+}
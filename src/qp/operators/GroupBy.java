@@ -0,0 +1,151 @@
+/** groups the result and computes aggregates of every group **/
+
+package qp.operators;
+
+import qp.utils.*;
+import java.util.Vector;
+
+/**
+ * Logical grouping node. The output has one tuple per group of input
+ * tuples with equal values of the grouping attributes, holding the
+ * attributes of attrSet: grouping attributes and aggregates of input
+ * attributes. Without grouping attributes the whole input is one group.
+ *
+ * The grouping is done by one of its subclasses, SortAggregate or
+ * HashAggregate, which replaces this node in the execution plan
+ * according to the group by type chosen by the optimizer.
+ */
+
+public class GroupBy extends Operator{
+
+    Operator base;
+    Vector groupbyList;   // grouping attributes
+    Vector attrSet;       // attributes of the output
+    int batchsize;        // number of tuples per outbatch
+    int numBuff;          // Number of buffers available
+
+    int groupbytype;      // GroupByType.SORT/HASH
+
+    /** index of the grouping attributes in the base operator **/
+
+    int[] groupIndex;
+
+
+    public GroupBy(Operator base, Vector groupbyList, Vector as, int type){
+	super(type);
+	this.base = base;
+	this.groupbyList = groupbyList;
+	this.attrSet = as;
+    }
+
+    public void setBase(Operator base){
+	this.base = base;
+    }
+
+    public Operator getBase(){
+	return base;
+    }
+
+    public Vector getGroupByList(){
+	return groupbyList;
+    }
+
+    public Vector getProjAttr(){
+	return attrSet;
+    }
+
+    /** number of buffers available to this operator **/
+
+    public void setNumBuff(int num){
+	this.numBuff = num;
+    }
+
+    public int getNumBuff(){
+	return numBuff;
+    }
+
+    public int getGroupByType(){
+	return groupbytype;
+    }
+
+    /** type of grouping **/
+
+    public void setGroupByType(int type){
+	this.groupbytype = type;
+    }
+
+
+    /** finds the index of the grouping attributes in the base operator **/
+
+    protected void findGroupIndex(){
+	Schema baseSchema = base.getSchema();
+	groupIndex = new int[groupbyList.size()];
+	for(int i=0;i<groupbyList.size();i++){
+	    groupIndex[i] = baseSchema.indexOf((Attribute) groupbyList.elementAt(i));
+	}
+    }
+
+    /** the values of the grouping attributes of the tuple **/
+
+    protected Vector groupKey(Tuple t){
+	Vector key = new Vector(groupIndex.length);
+	for(int i=0;i<groupIndex.length;i++){
+	    key.add(t.dataAt(groupIndex[i]));
+	}
+	return key;
+    }
+
+
+    /** Schema of the output: the grouping attributes are taken from the
+     ** base schema, an aggregate gets the type of its result
+     **/
+
+    public static Schema groupSchema(Schema baseSchema, Vector attrlist){
+	Vector newVec = new Vector();
+	int newtupsize = 0;
+	for(int i=0;i<attrlist.size();i++){
+	    Attribute resAttr = (Attribute) attrlist.elementAt(i);
+	    Attribute baseAttr = (Attribute) resAttr.clone();
+	    baseAttr.setAggType(Attribute.NONE);
+	    baseAttr = baseSchema.getAttribute(baseSchema.indexOf(baseAttr));
+	    Attribute outAttr = baseAttr;
+	    if(resAttr.isAggregate()){
+		outAttr = (Attribute) baseAttr.clone();
+		outAttr.setAggType(resAttr.getAggType());
+		outAttr.setKeyType(-1);
+		switch(resAttr.getAggType()){
+		case Attribute.COUNT:
+		    outAttr.setType(Attribute.INT);
+		    outAttr.setAttrSize(4);
+		    break;
+		case Attribute.AVG:
+		    outAttr.setType(Attribute.REAL);
+		    outAttr.setAttrSize(4);
+		    break;
+		}
+	    }
+	    newVec.add(outAttr);
+	    newtupsize = newtupsize + outAttr.getAttrSize();
+	}
+	Schema newsche = new Schema(newVec);
+	newsche.setTupleSize(newtupsize);
+	return newsche;
+    }
+
+
+    public Object clone(){
+	Operator newbase = (Operator) base.clone();
+	Vector newgroupby = new Vector();
+	for(int i=0;i<groupbyList.size();i++)
+	    newgroupby.add((Attribute) ((Attribute) groupbyList.elementAt(i)).clone());
+	Vector newattr = new Vector();
+	for(int i=0;i<attrSet.size();i++)
+	    newattr.add((Attribute) ((Attribute) attrSet.elementAt(i)).clone());
+	GroupBy newgb = new GroupBy(newbase,newgroupby,newattr,optype);
+	newgb.setSchema(groupSchema(newbase.getSchema(),newattr));
+	newgb.setGroupByType(groupbytype);
+	newgb.setNumBuff(numBuff);
+	return newgb;
+    }
+
+}
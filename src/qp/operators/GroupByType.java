@@ -0,0 +1,15 @@
+/** Enumeration of grouping and aggregation algorithm types **/
+
+
+package qp.operators;
+
+public class GroupByType{
+
+   public static final int SORT = 0;
+   public static final int HASH = 1;
+
+   public static int numGroupByTypes(){
+	return 2;
+    }
+
+}
@@ -0,0 +1,222 @@
+/** hash based grouping and aggregation **/
+
+package qp.operators;
+
+import qp.utils.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Computes the aggregates in a hash table of groups while the input is
+ * streamed through. The hash table holds the groups of a limited number of
+ * pages; once it is full, the tuples of groups that are in the table still
+ * update them, while the tuples of new groups are written to partition
+ * files by a hash of their grouping values. After the input is read the
+ * groups of the table are written out and every partition is aggregated
+ * in the same way, with a different hash function for the next level.
+ */
+
+public class HashAggregate extends GroupBy{
+
+    static final int MAXLEVEL = 8;   // Levels of partitioning before giving up on memory
+
+    String fnameprefix;     // Prefix of the partition files of this operator
+    static AtomicInteger filenum = new AtomicInteger();   // To get unique filenum for this operation
+    int partnum;            // To get unique partition file names
+
+    int numPartitions;      // Number of partitions the overflow is spread on
+    int capacity;           // Number of groups kept in memory
+    Aggregator aggregator;
+
+    HashMap<Vector,Aggregator.Group> hashtable;   // Groups being aggregated
+    Iterator<Aggregator.Group> outcurs;           // Cursor for the groups being written out
+
+    ArrayList<String> partitions;   // Partition files still to be aggregated
+    ArrayList<Integer> levels;      // Level of partitioning of every partition file
+
+    boolean eos;  // Whether end of stream is reached
+
+    public HashAggregate(GroupBy gb){
+	super(gb.getBase(),gb.getGroupByList(),gb.getProjAttr(),gb.getOpType());
+	schema = gb.getSchema();
+	groupbytype = gb.getGroupByType();
+	numBuff = gb.getNumBuff();
+    }
+
+
+    /** Aggregates the input, partitioning the tuples of the
+     ** groups that do not fit into memory
+     **/
+
+    public boolean open(){
+	int tuplesize = schema.getTupleSize();
+	batchsize = Batch.getPageSize()/tuplesize;
+
+	/** one buffer for input, one for output, one per partition
+	 ** and the rest for the hash table
+	 **/
+	numPartitions = Math.max(2,(numBuff-2)/2);
+	capacity = Math.max(1,numBuff-2-numPartitions)*batchsize;
+
+	findGroupIndex();
+	aggregator = new Aggregator(base.getSchema(),schema);
+
+	fnameprefix = "HAtemp-" + String.valueOf(filenum.incrementAndGet()) + "-";
+	partnum = 0;
+	partitions = new ArrayList<>();
+	levels = new ArrayList<>();
+	eos = false;
+
+	if(!base.open()){
+	    return false;
+	}
+	if(!aggregate(base,null,0)){
+	    return false;
+	}
+	/** without grouping attributes there is one result even for
+	 ** an empty input
+	 **/
+	if(groupIndex.length == 0 && hashtable.isEmpty()){
+	    hashtable.put(new Vector(),aggregator.newGroup());
+	}
+	outcurs = hashtable.values().iterator();
+	return true;
+    }
+
+
+    /** writes out the groups of the hash table, moving on to
+     ** the next partition when the hash table is exhausted
+     **/
+
+    public Batch next(){
+	if(eos){
+	    close();
+	    return null;
+	}
+	Batch outbatch = new Batch(batchsize);
+	while(!outbatch.isFull()){
+	    if(outcurs.hasNext()){
+		outbatch.add(aggregator.result(outcurs.next()));
+		continue;
+	    }
+	    if(!nextPartition()){
+		eos = true;
+		if(outbatch.isEmpty()){
+		    close();
+		    return null;
+		}
+		return outbatch;
+	    }
+	}
+	return outbatch;
+    }
+
+
+    /** Close the operator and removes the partition files */
+
+    public boolean close(){
+	if(partitions != null){
+	    for(int i=0;i<partitions.size();i++){
+		File f = new File(partitions.get(i));
+		f.delete();
+	    }
+	    partitions.clear();
+	}
+	hashtable = null;
+	outcurs = Collections.emptyIterator();
+	return true;
+    }
+
+
+    /** Aggregates the tuples of the input, either an operator or a partition
+     ** file, into a new hash table. Tuples of groups that do not fit are
+     ** written into partition files of the next level
+     **/
+
+    private boolean aggregate(Operator op, PageReader in, int level){
+	hashtable = new HashMap<>();
+	PageWriter[] outs = null;
+	try{
+	    Batch page = nextInput(op,in);
+	    while(page != null){
+		for(int i=0;i<page.size();i++){
+		    Tuple t = page.elementAt(i);
+		    Vector key = groupKey(t);
+		    Aggregator.Group g = hashtable.get(key);
+		    if(g == null && (hashtable.size() < capacity || level >= MAXLEVEL)){
+			g = aggregator.newGroup();
+			hashtable.put(key,g);
+		    }
+		    if(g != null){
+			aggregator.add(g,t);
+			continue;
+		    }
+		    /** the hash table is full, spill the tuple **/
+		    if(outs == null){
+			outs = new PageWriter[numPartitions];
+		    }
+		    int p = HashJoin.partitionOf(key,level,numPartitions);
+		    if(outs[p] == null){
+			String fname = fnameprefix + partnum;
+			partnum++;
+			outs[p] = new PageWriter(fname,base.getSchema());
+			partitions.add(fname);
+			levels.add(Integer.valueOf(level+1));
+		    }
+		    outs[p].add(t);
+		}
+		page = nextInput(op,in);
+	    }
+	    if(outs != null){
+		for(int i=0;i<numPartitions;i++){
+		    if(outs[i] != null){
+			outs[i].close();
+		    }
+		}
+	    }
+	}catch(IOException io){
+	    System.out.println("HashAggregate:writing the temporary file error");
+	    return false;
+	}
+	return true;
+    }
+
+
+    private Batch nextInput(Operator op, PageReader in) throws IOException{
+	if(op != null){
+	    return op.next();
+	}
+	try{
+	    return in.readBatch();
+	}catch(EOFException e){
+	    return null;
+	}
+    }
+
+
+    /** Aggregates the next partition file. Returns false if no partition is left **/
+
+    private boolean nextPartition(){
+	if(partitions.isEmpty()){
+	    return false;
+	}
+	String fname = partitions.remove(partitions.size()-1);
+	int level = levels.remove(levels.size()-1).intValue();
+	try{
+	    PageReader in = new PageReader(fname,base.getSchema());
+	    boolean done = aggregate(null,in,level);
+	    in.close();
+	    new File(fname).delete();
+	    if(!done){
+		System.exit(1);
+	    }
+	}catch(IOException io){
+	    System.out.println("HashAggregate:temporary file reading error");
+	    System.exit(1);
+	}
+	outcurs = hashtable.values().iterator();
+	return true;
+    }
+
+}
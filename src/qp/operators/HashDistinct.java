@@ -0,0 +1,244 @@
+/** hash based duplicate elimination **/
+
+package qp.operators;
+
+import qp.utils.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Eliminates duplicates with a hash table on the projected tuples.
+ *
+ * If the distinct tuples of the input fit into numBuff - 2 pages, the
+ * input is read once and the hash table is written out. Otherwise the
+ * input is partitioned on disk into numBuff - 1 partitions by a hash of
+ * the whole tuple, so that equal tuples end up in the same partition,
+ * and the partitions are deduplicated one after the other. A partition
+ * whose distinct tuples still do not fit is partitioned again with a
+ * different hash function.
+ */
+
+public class HashDistinct extends Distinct{
+
+    static final int MAXLEVEL = 8;   // Levels of partitioning before giving up on memory
+
+    String fnameprefix;     // Prefix of the partition files of this operator
+    static AtomicInteger filenum = new AtomicInteger();   // To get unique filenum for this operation
+    int partnum;            // To get unique partition file names
+
+    Operator input;         // The projected base operator
+    int capacity;           // Number of distinct tuples kept in memory
+
+    HashSet<Vector> hashtable;    // Distinct tuples seen so far
+    Iterator<Vector> outcurs;     // Cursor for the tuples of the hash table being written out
+
+    ArrayList<String> partitions;   // Partition files still to be deduplicated
+    ArrayList<Integer> levels;      // Level of partitioning of every partition file
+
+    boolean eos;  // Whether end of stream is reached
+
+    public HashDistinct(Distinct dn){
+        super(dn.getBase(),dn.getProjAttr(),dn.getOpType());
+        schema = dn.getSchema();
+        distincttype = dn.getDistinctType();
+        numBuff = dn.getNumBuff();
+    }
+
+
+    /** Reads the input into the hash table and partitions it
+     ** on disk if it does not fit into memory
+     **/
+
+    public boolean open(){
+        int tuplesize = schema.getTupleSize();
+        batchsize = Batch.getPageSize()/tuplesize;
+        capacity = Math.max(1,numBuff-2)*batchsize;
+
+        fnameprefix = "HDtemp-" + String.valueOf(filenum.incrementAndGet()) + "-";
+        partnum = 0;
+        partitions = new ArrayList<>();
+        levels = new ArrayList<>();
+        eos = false;
+
+        input = projectedBase();
+        if(!input.open()){
+            return false;
+        }
+
+        hashtable = new HashSet<>();
+        Batch inpage;
+        while((inpage = input.next()) != null){
+            if(!addToHashtable(inpage)){
+                /** the input does not fit, partition the rest of it **/
+                if(!partition(inpage,input,null,0)){
+                    return false;
+                }
+                break;
+            }
+        }
+        outcurs = hashtable.iterator();
+        return true;
+    }
+
+
+    /** writes out the distinct tuples of the hash table, moving on
+     ** to the next partition when the hash table is exhausted
+     **/
+
+    public Batch next(){
+        if(eos){
+            close();
+            return null;
+        }
+        Batch outbatch = new Batch(batchsize);
+        while(!outbatch.isFull()){
+            if(outcurs.hasNext()){
+                outbatch.add(new Tuple(outcurs.next()));
+                continue;
+            }
+            if(!nextPartition()){
+                eos = true;
+                if(outbatch.isEmpty()){
+                    close();
+                    return null;
+                }
+                return outbatch;
+            }
+        }
+        return outbatch;
+    }
+
+
+    /** Close the operator and removes the partition files */
+
+    public boolean close(){
+        if(partitions != null){
+            for(int i=0;i<partitions.size();i++){
+                File f = new File(partitions.get(i));
+                f.delete();
+            }
+            partitions.clear();
+        }
+        hashtable = null;
+        outcurs = Collections.emptyIterator();
+        return true;
+    }
+
+
+    /** adds the tuples of the page to the hash table, and returns false
+     ** as soon as the hash table is full, leaving the rest of the page
+     **/
+
+    private boolean addToHashtable(Batch page){
+        for(int i=0;i<page.size();i++){
+            if(hashtable.size() >= capacity && !hashtable.contains(page.elementAt(i).data())){
+                return false;
+            }
+            hashtable.add(page.elementAt(i).data());
+        }
+        return true;
+    }
+
+
+    /** Loads the next partition file into the hash table, partitioning
+     ** it again if it does not fit. Returns false if no partition is left
+     **/
+
+    private boolean nextPartition(){
+        while(!partitions.isEmpty()){
+            String fname = partitions.remove(partitions.size()-1);
+            int level = levels.remove(levels.size()-1).intValue();
+            hashtable = new HashSet<>();
+            PageReader in = null;
+            try{
+                in = new PageReader(fname,schema);
+                boolean fits = true;
+                try{
+                    while(true){
+                        Batch page = in.readBatch();
+                        if(level < MAXLEVEL && !addToHashtable(page)){
+                            fits = false;
+                            if(!partition(page,null,in,level+1)){
+                                System.exit(1);
+                            }
+                            break;
+                        }else if(level >= MAXLEVEL){
+                            /** the hash functions do not split the partition any further **/
+                            for(int i=0;i<page.size();i++){
+                                hashtable.add(page.elementAt(i).data());
+                            }
+                        }
+                    }
+                }catch(EOFException e){
+                }
+                in.close();
+                new File(fname).delete();
+                if(fits){
+                    outcurs = hashtable.iterator();
+                    return true;
+                }
+            }catch(IOException io){
+                System.out.println("HashDistinct:temporary file reading error");
+                System.exit(1);
+            }
+        }
+        return false;
+    }
+
+
+    /** Writes the tuples of the hash table, the tuples of the page that are
+     ** not in the hash table and the rest of the input (either an operator
+     ** or a partition file) into numBuff - 1 partition files
+     **/
+
+    private boolean partition(Batch page, Operator op, PageReader in, int level){
+        int numPartitions = Math.max(2,numBuff-1);
+        PageWriter[] outs = new PageWriter[numPartitions];
+        try{
+            for(int i=0;i<numPartitions;i++){
+                String fname = fnameprefix + partnum;
+                partnum++;
+                outs[i] = new PageWriter(fname,schema);
+                partitions.add(fname);
+                levels.add(Integer.valueOf(level));
+            }
+            Iterator<Vector> it = hashtable.iterator();
+            while(it.hasNext()){
+                Tuple t = new Tuple(it.next());
+                outs[partitionOf(t,level,numPartitions)].add(t);
+            }
+            while(page != null){
+                for(int i=0;i<page.size();i++){
+                    Tuple t = page.elementAt(i);
+                    if(!hashtable.contains(t.data())){
+                        outs[partitionOf(t,level,numPartitions)].add(t);
+                    }
+                }
+                if(op != null){
+                    page = op.next();
+                }else{
+                    try{
+                        page = in.readBatch();
+                    }catch(EOFException e){
+                        page = null;
+                    }
+                }
+            }
+            for(int i=0;i<numPartitions;i++){
+                outs[i].close();
+            }
+        }catch(IOException io){
+            System.out.println("HashDistinct:writing the temporary file error");
+            return false;
+        }
+        hashtable = new HashSet<>();
+        return true;
+    }
+
+
+    private static int partitionOf(Tuple t, int level, int numPartitions){
+        return HashJoin.partitionOf(t.data(),level,numPartitions);
+    }
+
+}
@@ -0,0 +1,364 @@
+/** hash join algorithm **/
+
+package qp.operators;
+
+import qp.utils.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Equi-join that builds a hash table on the right (build) input and probes it
+ * with the left (probe) input.
+ *
+ * If the right input fits into numBuff - 2 pages the join is done entirely in
+ * memory while the left input is streamed. Otherwise the Grace hash join is used:
+ * both inputs are partitioned into numBuff - 1 partitions on disk and each pair
+ * of partitions is joined in turn. A right partition that still does not fit
+ * into memory is processed in chunks of numBuff - 2 pages, rescanning the
+ * matching left partition for every chunk.
+ */
+
+public class HashJoin extends Join{
+
+    int batchsize;  //Number of tuples per out batch
+
+    /** The following fields are useful during execution of
+     ** the HashJoin operation
+     **/
+    int leftindex;     // Index of the join attribute in left table
+    int rightindex;    // Index of the join attribute in right table
+
+    String fnameprefix;    // Prefix of the partition files of this operator
+    static AtomicInteger filenum = new AtomicInteger();   // To get unique filenum for this operation
+
+    int numPartitions;   // Number of partitions in the Grace hash join
+    boolean inMemory;    // Whether the right table fits into memory
+
+    HashMap<Object,ArrayList<Tuple>> hashtable;  // Hash table on the build chunk in memory
+
+    int partcurs;        // Partition that is currently joined
+    boolean lastChunk;   // Whether the current build chunk is the last one of the partition
+    PageReader buildin;  // File pointer to the right partition being loaded
+    PageReader probein;  // File pointer to the left partition being probed
+
+    Batch outbatch;   // Output buffer
+    Batch probebatch; // Buffer for the probe input
+    Tuple probetuple; // Probe tuple whose matches are being output
+    ArrayList<Tuple> matches;  // Build tuples matching the probe tuple
+    int pcurs;    // Cursor for the probe buffer
+    int mcurs;    // Cursor for the matches of the probe tuple
+    boolean eos;  // Whether end of stream is reached
+
+    public HashJoin(Join jn){
+        super(jn.getLeft(),jn.getRight(),jn.getCondition(),jn.getOpType());
+        schema = jn.getSchema();
+        jointype = jn.getJoinType();
+        numBuff = jn.getNumBuff();
+    }
+
+
+    /** During open finds the index of the join attributes,
+     ** builds the hash table on the right input if it fits into memory,
+     ** otherwise partitions both inputs into files
+     **/
+
+    public boolean open(){
+
+        /** select number of tuples per batch **/
+        int tuplesize=schema.getTupleSize();
+        batchsize=Batch.getPageSize()/tuplesize;
+
+        Attribute leftattr = con.getLhs();
+        Attribute rightattr =(Attribute) con.getRhs();
+        leftindex = left.getSchema().indexOf(leftattr);
+        rightindex = right.getSchema().indexOf(rightattr);
+
+        numPartitions = numBuff - 1;
+        fnameprefix = "HJtemp-" + String.valueOf(filenum.incrementAndGet());
+
+        eos = false;
+        probebatch = null;
+        matches = null;
+        pcurs = 0;
+        mcurs = 0;
+
+        if(!right.open()){
+            return false;
+        }
+
+        /** Read the right input until either it ends or it
+         ** exceeds the buffers available for the hash table
+         **/
+        ArrayList<Batch> buffered = new ArrayList<>();
+        Batch rightpage;
+        inMemory = true;
+        startBuildKeys();
+        while((rightpage = right.next()) != null){
+            if(rightpage.isEmpty()){
+                continue;
+            }
+            addBuildKeys(rightpage,rightindex);
+            buffered.add(rightpage);
+            if(buffered.size() > numBuff - 2){
+                inMemory = false;
+                break;
+            }
+        }
+
+        if(inMemory){
+            hashtable = new HashMap<>();
+            for(int i=0;i<buffered.size();i++){
+                addToHashtable(buffered.get(i));
+            }
+            if(!right.close())
+                return false;
+            pushBuildKeys();
+            return left.open();
+        }
+
+        /** Grace hash join: partition both the inputs **/
+        if(!partition(right, buffered, rightindex, "R"))
+            return false;
+        if(!right.close())
+            return false;
+
+        pushBuildKeys();
+        if(!left.open())
+            return false;
+        if(!partition(left, new ArrayList<>(), leftindex, "L"))
+            return false;
+
+        partcurs = -1;
+        lastChunk = true;
+        return true;
+    }
+
+
+    /** from the probe input selects the tuples matching the
+     ** hash table and returns a page of output tuples
+     **/
+
+    public Batch next(){
+        if(eos){
+            close();
+            return null;
+        }
+        outbatch = new Batch(batchsize);
+
+        while(!outbatch.isFull()){
+            if(matches != null && mcurs < matches.size()){
+                outbatch.add(probetuple.joinWith(matches.get(mcurs)));
+                mcurs++;
+                continue;
+            }
+            if(probebatch == null || pcurs >= probebatch.size()){
+                probebatch = nextProbeBatch();
+                pcurs = 0;
+                if(probebatch == null){
+                    eos = true;
+                    if(outbatch.isEmpty()){
+                        close();
+                        return null;
+                    }
+                    return outbatch;
+                }
+                continue;
+            }
+            /** the probe tuple is built only if it has matches **/
+            matches = hashtable.get(probebatch.dataAt(pcurs,leftindex));
+            if(matches != null){
+                probetuple = probebatch.elementAt(pcurs);
+            }
+            pcurs++;
+            mcurs = 0;
+        }
+        return outbatch;
+    }
+
+
+    /** Close the operator and removes the partition files */
+
+    public boolean close(){
+        if(!inMemory){
+            closeStream(buildin);
+            closeStream(probein);
+            buildin = null;
+            probein = null;
+            for(int i=0;i<numPartitions;i++){
+                File f = new File(partitionFile("L",i));
+                f.delete();
+                f = new File(partitionFile("R",i));
+                f.delete();
+            }
+        }
+        return true;
+    }
+
+
+    /** Hash function used to distribute the tuples among the
+     ** partitions. It is different from the one of HashMap so that
+     ** the keys of a partition still spread over the hash table.
+     ** The level allows a different function for every recursion level
+     **/
+
+    static int partitionOf(Object key, int level, int numPartitions){
+        int h = key.hashCode() * 0x9E3779B9 + level * 0x7F4A7C15;
+        h ^= (h >>> 16);
+        h *= 0x85EBCA6B;
+        h ^= (h >>> 13);
+        return (h & 0x7FFFFFFF) % numPartitions;
+    }
+
+
+    private String partitionFile(String side, int partition){
+        return fnameprefix + side + "-" + partition;
+    }
+
+
+    private void addToHashtable(Batch page){
+        for(int i=0;i<page.size();i++){
+            Tuple t = page.elementAt(i);
+            Object key = t.dataAt(rightindex);
+            ArrayList<Tuple> bucket = hashtable.get(key);
+            if(bucket == null){
+                bucket = new ArrayList<>();
+                hashtable.put(key,bucket);
+            }
+            bucket.add(t);
+        }
+    }
+
+
+    /** Writes the pages already read and the rest of the input into
+     ** numPartitions files, using one output buffer per partition
+     **/
+
+    private boolean partition(Operator input, ArrayList<Batch> buffered, int index, String side){
+        int capacity = Batch.getPageSize()/input.getSchema().getTupleSize();
+        PageWriter[] outs = new PageWriter[numPartitions];
+        Batch[] buffers = new Batch[numPartitions];
+        try{
+            for(int i=0;i<numPartitions;i++){
+                outs[i] = new PageWriter(partitionFile(side,i),input.getSchema());
+                buffers[i] = new Batch(capacity);
+            }
+            int bufcurs = 0;
+            Batch inpage;
+            while(true){
+                if(bufcurs < buffered.size()){
+                    inpage = buffered.get(bufcurs);
+                    buffered.set(bufcurs,null);
+                    bufcurs++;
+                }else if((inpage = input.next()) == null){
+                    break;
+                }else if(input == right){
+                    addBuildKeys(inpage,index);
+                }
+                for(int j=0;j<inpage.size();j++){
+                    Tuple t = inpage.elementAt(j);
+                    int p = partitionOf(t.dataAt(index),0,numPartitions);
+                    buffers[p].add(t);
+                    if(buffers[p].isFull()){
+                        outs[p].write(buffers[p]);
+                        buffers[p] = new Batch(capacity);
+                    }
+                }
+            }
+            for(int i=0;i<numPartitions;i++){
+                if(!buffers[i].isEmpty()){
+                    outs[i].write(buffers[i]);
+                }
+                outs[i].close();
+            }
+        }catch(IOException io){
+            System.out.println("HashJoin:writing the temporary file error");
+            return false;
+        }
+        return true;
+    }
+
+
+    /** Returns the next page of the probe input; in case of the Grace
+     ** hash join this moves on to the next build chunk or partition
+     ** when the current left partition is exhausted
+     **/
+
+    private Batch nextProbeBatch(){
+        if(inMemory){
+            return left.next();
+        }
+        while(true){
+            if(probein != null){
+                try{
+                    return probein.readBatch();
+                }catch(EOFException e){
+                    closeStream(probein);
+                    probein = null;
+                }catch(IOException io){
+                    System.out.println("HashJoin:temporary file reading error");
+                    System.exit(1);
+                }
+            }
+            /** left partition exhausted: load the next build chunk **/
+            if(lastChunk){
+                partcurs++;
+                if(partcurs >= numPartitions){
+                    return null;
+                }
+                try{
+                    buildin = new PageReader(partitionFile("R",partcurs),right.getSchema());
+                }catch(IOException io){
+                    System.err.println("HashJoin:error in reading the file");
+                    System.exit(1);
+                }
+            }
+            loadBuildChunk();
+            if(hashtable.isEmpty()){
+                continue;
+            }
+            try{
+                probein = new PageReader(partitionFile("L",partcurs),left.getSchema());
+            }catch(IOException io){
+                System.err.println("HashJoin:error in reading the file");
+                System.exit(1);
+            }
+        }
+    }
+
+
+    /** Loads at most numBuff - 2 pages of the current right
+     ** partition into the hash table
+     **/
+
+    private void loadBuildChunk(){
+        hashtable = new HashMap<>();
+        lastChunk = false;
+        try{
+            for(int i=0;i<numBuff-2;i++){
+                Batch page = buildin.readBatch();
+                addToHashtable(page);
+            }
+            return;
+        }catch(EOFException e){
+            closeStream(buildin);
+            buildin = null;
+        }catch(IOException io){
+            System.out.println("HashJoin:temporary file reading error");
+            System.exit(1);
+        }
+        lastChunk = true;
+    }
+
+
+    private void closeStream(PageReader in){
+        if(in == null)
+            return;
+        try{
+            in.close();
+        }catch(IOException io){
+            System.out.println("HashJoin:Error in temporary file reading");
+        }
+    }
+
+}
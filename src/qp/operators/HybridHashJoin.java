@@ -0,0 +1,517 @@
+/** hybrid hash join algorithm **/
+
+package qp.operators;
+
+import qp.utils.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Equi-join that builds a hash table on the right (build) input and probes
+ * it with the left (probe) input, like HashJoin, but without writing the
+ * whole of both inputs to disk when the right input does not fit into memory.
+ *
+ * The right input is hashed into numBuckets(numBuff) buckets, which are all
+ * kept in memory at first. Whenever the buckets in memory and the output
+ * pages of the buckets on disk need more than numBuff - 2 pages, the largest
+ * bucket in memory is written to a file and its tuples go to the file from
+ * then on. The left input is then read once: a tuple of a bucket in memory is
+ * joined at once, the others are written to the file of the left side of their
+ * bucket. If the right input is only slightly larger than memory, most of it
+ * stays in memory and only a few buckets are written.
+ *
+ * Each pair of bucket files is then joined in the same way with the hash
+ * function of the next level, so a bucket that still does not fit into
+ * memory is partitioned again. Beyond MAX_LEVEL levels (the bucket holds few
+ * distinct keys), the right bucket is joined in chunks of numBuff - 2 pages,
+ * rescanning the left bucket for every chunk.
+ */
+
+public class HybridHashJoin extends Join{
+
+    /** Levels of partitioning before the chunks are used **/
+    public static final int MAX_LEVEL = 3;
+
+    int batchsize;  //Number of tuples per out batch
+
+    /** The following fields are useful during execution of
+     ** the HybridHashJoin operation
+     **/
+    int leftindex;     // Index of the join attribute in left table
+    int rightindex;    // Index of the join attribute in right table
+
+    String fnameprefix;    // Prefix of the bucket files of this operator
+    static AtomicInteger filenum = new AtomicInteger();   // To get unique filenum for this operation
+    int numfiles;          // Number of pairs of bucket files made so far
+
+    HashMap<Object,ArrayList<Tuple>> hashtable;  // Hash table on the buckets in memory
+
+    /** partitioning of the probe input of the current level **/
+    int level;               // Level of the hash function
+    int numBuckets;          // Number of buckets
+    int[] bucketfile;        // Number of the files of a bucket on disk, -1 if in memory
+    PageWriter[] probeout;   // Left bucket files being written
+
+    /** pairs of bucket files still to be joined **/
+    ArrayDeque<int[]> pending;   // {file number, level}
+
+    int curfile;          // Pair of bucket files being joined, -1 for the inputs
+    boolean chunked;      // Whether the right bucket is joined in chunks
+    boolean lastChunk;    // Whether the current chunk is the last one of the bucket
+    PageReader buildin;   // File pointer to the right bucket being loaded in chunks
+    PageReader probein;   // File pointer to the left bucket being probed
+    boolean probing;      // Whether the left input is being read
+
+    Batch outbatch;   // Output buffer
+    Batch probebatch; // Buffer for the probe input
+    Tuple probetuple; // Probe tuple whose matches are being output
+    ArrayList<Tuple> matches;  // Build tuples matching the probe tuple
+    int pcurs;    // Cursor for the probe buffer
+    int mcurs;    // Cursor for the matches of the probe tuple
+    boolean eos;  // Whether end of stream is reached
+
+    int spilledBuckets;   // Number of buckets written to disk, over all levels
+
+    public HybridHashJoin(Join jn){
+        super(jn.getLeft(),jn.getRight(),jn.getCondition(),jn.getOpType());
+        schema = jn.getSchema();
+        jointype = jn.getJoinType();
+        numBuff = jn.getNumBuff();
+    }
+
+
+    /** Number of buckets of the right input: about half of the
+     ** buffers, so that writing a bucket to disk frees more pages
+     ** than the one output page it then takes
+     **/
+
+    public static int numBuckets(int numBuff){
+        return Math.max(2,(numBuff-2)/2);
+    }
+
+
+    /** number of buckets written to disk during the last execution **/
+
+    public int getSpilledBuckets(){
+        return spilledBuckets;
+    }
+
+
+    /** During open finds the index of the join attributes and hashes
+     ** the right input into the buckets, writing some of them to disk
+     ** if they do not fit into memory
+     **/
+
+    public boolean open(){
+
+        /** select number of tuples per batch **/
+        int tuplesize=schema.getTupleSize();
+        batchsize=Batch.getPageSize()/tuplesize;
+
+        Attribute leftattr = con.getLhs();
+        Attribute rightattr =(Attribute) con.getRhs();
+        leftindex = left.getSchema().indexOf(leftattr);
+        rightindex = right.getSchema().indexOf(rightattr);
+
+        fnameprefix = "HHJtemp-" + String.valueOf(filenum.incrementAndGet()) + "-";
+        numfiles = 0;
+        pending = new ArrayDeque<>();
+        spilledBuckets = 0;
+        curfile = -1;
+        chunked = false;
+
+        eos = false;
+        probebatch = null;
+        matches = null;
+        pcurs = 0;
+        mcurs = 0;
+
+        if(!right.open()){
+            return false;
+        }
+        startBuildKeys();
+        if(!build(new OperatorPages(right),0)){
+            return false;
+        }
+        if(!right.close()){
+            return false;
+        }
+        pushBuildKeys();
+        if(!left.open()){
+            return false;
+        }
+        probing = true;
+        return true;
+    }
+
+
+    /** from the probe input selects the tuples matching the
+     ** hash table and returns a page of output tuples
+     **/
+
+    public Batch next(){
+        if(eos){
+            close();
+            return null;
+        }
+        outbatch = new Batch(batchsize);
+
+        while(!outbatch.isFull()){
+            if(matches != null && mcurs < matches.size()){
+                outbatch.add(probetuple.joinWith(matches.get(mcurs)));
+                mcurs++;
+                continue;
+            }
+            if(probebatch == null || pcurs >= probebatch.size()){
+                probebatch = nextProbeBatch();
+                pcurs = 0;
+                if(probebatch == null){
+                    eos = true;
+                    if(outbatch.isEmpty()){
+                        close();
+                        return null;
+                    }
+                    return outbatch;
+                }
+                continue;
+            }
+            Object key = probebatch.dataAt(pcurs,leftindex);
+            if(probeout != null){
+                /** the tuples of the buckets on disk are joined later **/
+                int b = HashJoin.partitionOf(key,level,numBuckets);
+                if(bucketfile[b] != -1){
+                    addToFile(probeout[b],probebatch.elementAt(pcurs));
+                    pcurs++;
+                    matches = null;
+                    continue;
+                }
+            }
+            /** the probe tuple is built only if it has matches **/
+            matches = hashtable.get(key);
+            if(matches != null){
+                probetuple = probebatch.elementAt(pcurs);
+            }
+            pcurs++;
+            mcurs = 0;
+        }
+        return outbatch;
+    }
+
+
+    /** Close the operator and removes the bucket files */
+
+    public boolean close(){
+        closeStream(buildin);
+        closeStream(probein);
+        buildin = null;
+        probein = null;
+        closeWriters();
+        for(int i=0;i<numfiles;i++){
+            File f = new File(bucketFile("L",i));
+            f.delete();
+            f = new File(bucketFile("R",i));
+            f.delete();
+        }
+        numfiles = 0;
+        return true;
+    }
+
+
+    private String bucketFile(String side, int num){
+        return fnameprefix + side + "-" + num;
+    }
+
+
+    /** Hashes the right pages into the buckets of the level; the
+     ** largest bucket in memory is written to disk whenever the
+     ** buckets do not fit into numBuff - 2 pages any more. The
+     ** buckets in memory make the hash table, and the files of the
+     ** left side of the others are opened for the probe input
+     **/
+
+    private boolean build(PageSource input, int lev){
+        level = lev;
+        numBuckets = numBuckets(numBuff);
+        int capacity = Math.max(1,Batch.getPageSize()/right.getSchema().getTupleSize());
+        int budget = numBuff - 2;
+
+        ArrayList<ArrayList<Tuple>> buckets = new ArrayList<>();
+        bucketfile = new int[numBuckets];
+        PageWriter[] buildout = new PageWriter[numBuckets];
+        for(int i=0;i<numBuckets;i++){
+            buckets.add(new ArrayList<Tuple>());
+            bucketfile[i] = -1;
+        }
+        int inmemory = 0;    // tuples in the buckets in memory
+        int ondisk = 0;      // buckets on disk, one output page each
+
+        try{
+            Batch page;
+            while((page = input.nextPage()) != null){
+                for(int j=0;j<page.size();j++){
+                    Tuple t = page.elementAt(j);
+                    int b = HashJoin.partitionOf(t.dataAt(rightindex),level,numBuckets);
+                    if(bucketfile[b] != -1){
+                        buildout[b].add(t);
+                        continue;
+                    }
+                    buckets.get(b).add(t);
+                    inmemory++;
+                    while(ondisk < numBuckets && (inmemory + capacity - 1)/capacity + ondisk > budget){
+                        /** write the largest bucket in memory to disk **/
+                        int largest = -1;
+                        for(int i=0;i<numBuckets;i++){
+                            if(bucketfile[i] == -1 && (largest == -1 || buckets.get(i).size() > buckets.get(largest).size())){
+                                largest = i;
+                            }
+                        }
+                        bucketfile[largest] = numfiles++;
+                        buildout[largest] = new PageWriter(bucketFile("R",bucketfile[largest]),right.getSchema());
+                        ArrayList<Tuple> spilled = buckets.get(largest);
+                        for(int i=0;i<spilled.size();i++){
+                            buildout[largest].add(spilled.get(i));
+                        }
+                        inmemory -= spilled.size();
+                        buckets.set(largest,null);
+                        ondisk++;
+                        spilledBuckets++;
+                    }
+                }
+            }
+            for(int i=0;i<numBuckets;i++){
+                if(buildout[i] != null){
+                    buildout[i].close();
+                }
+            }
+
+            hashtable = new HashMap<>();
+            for(int i=0;i<numBuckets;i++){
+                if(bucketfile[i] == -1){
+                    addToHashtable(buckets.get(i));
+                }
+            }
+            buckets = null;
+
+            probeout = null;
+            if(ondisk > 0){
+                probeout = new PageWriter[numBuckets];
+                for(int i=0;i<numBuckets;i++){
+                    if(bucketfile[i] != -1){
+                        probeout[i] = new PageWriter(bucketFile("L",bucketfile[i]),left.getSchema());
+                    }
+                }
+            }
+        }catch(IOException io){
+            System.out.println("HybridHashJoin:writing the temporary file error");
+            return false;
+        }
+        return true;
+    }
+
+
+    private void addToHashtable(ArrayList<Tuple> tuples){
+        for(int i=0;i<tuples.size();i++){
+            Tuple t = tuples.get(i);
+            Object key = t.dataAt(rightindex);
+            ArrayList<Tuple> bucket = hashtable.get(key);
+            if(bucket == null){
+                bucket = new ArrayList<>();
+                hashtable.put(key,bucket);
+            }
+            bucket.add(t);
+        }
+    }
+
+
+    private void addToFile(PageWriter out, Tuple t){
+        try{
+            out.add(t);
+        }catch(IOException io){
+            System.out.println("HybridHashJoin:writing the temporary file error");
+            System.exit(1);
+        }
+    }
+
+
+    /** The left bucket files of the level are complete: their pairs
+     ** are joined at the next level
+     **/
+
+    private void closeWriters(){
+        if(probeout == null){
+            return;
+        }
+        for(int i=0;i<numBuckets;i++){
+            if(probeout[i] != null){
+                try{
+                    probeout[i].close();
+                }catch(IOException io){
+                    System.out.println("HybridHashJoin:writing the temporary file error");
+                    System.exit(1);
+                }
+                pending.add(new int[]{bucketfile[i],level+1});
+            }
+        }
+        probeout = null;
+    }
+
+
+    /** Returns the next page of the probe input; when it ends moves on
+     ** to the next chunk or the next pair of bucket files
+     **/
+
+    private Batch nextProbeBatch(){
+        while(true){
+            if(probing){
+                Batch page = (curfile == -1) ? left.next() : readPage(probein);
+                if(page != null){
+                    return page;
+                }
+                probing = false;
+                closeStream(probein);
+                probein = null;
+                closeWriters();
+                if(chunked && !lastChunk){
+                    loadChunk();
+                    startProbe();
+                    continue;
+                }
+                if(curfile != -1){
+                    /** the pair of files is joined **/
+                    new File(bucketFile("L",curfile)).delete();
+                    new File(bucketFile("R",curfile)).delete();
+                }
+            }
+            int[] pair = pending.poll();
+            if(pair == null){
+                return null;
+            }
+            curfile = pair[0];
+            try{
+                if(pair[1] > MAX_LEVEL){
+                    /** the keys of the bucket do not spread over the buckets **/
+                    chunked = true;
+                    buildin = new PageReader(bucketFile("R",curfile),right.getSchema());
+                    loadChunk();
+                }else{
+                    chunked = false;
+                    PageReader in = new PageReader(bucketFile("R",curfile),right.getSchema());
+                    boolean built = build(new FilePages(in),pair[1]);
+                    in.close();
+                    if(!built){
+                        System.exit(1);
+                    }
+                }
+            }catch(IOException io){
+                System.err.println("HybridHashJoin:error in reading the file");
+                System.exit(1);
+            }
+            startProbe();
+        }
+    }
+
+
+    private void startProbe(){
+        try{
+            probein = new PageReader(bucketFile("L",curfile),left.getSchema());
+        }catch(IOException io){
+            System.err.println("HybridHashJoin:error in reading the file");
+            System.exit(1);
+        }
+        probing = true;
+    }
+
+
+    /** Loads at most numBuff - 2 pages of the current right
+     ** bucket into the hash table
+     **/
+
+    private void loadChunk(){
+        hashtable = new HashMap<>();
+        lastChunk = false;
+        for(int i=0;i<numBuff-2;i++){
+            Batch page = readPage(buildin);
+            if(page == null){
+                closeStream(buildin);
+                buildin = null;
+                lastChunk = true;
+                return;
+            }
+            ArrayList<Tuple> tuples = new ArrayList<>();
+            for(int j=0;j<page.size();j++){
+                tuples.add(page.elementAt(j));
+            }
+            addToHashtable(tuples);
+        }
+        /** the chunk is the last one if the file ends right after it **/
+        try{
+            if(buildin.atEnd()){
+                closeStream(buildin);
+                buildin = null;
+                lastChunk = true;
+            }
+        }catch(IOException io){
+            System.out.println("HybridHashJoin:temporary file reading error");
+            System.exit(1);
+        }
+    }
+
+
+    /** next page of the file, null at its end **/
+
+    private Batch readPage(PageReader in){
+        try{
+            return in.readBatch();
+        }catch(EOFException e){
+            return null;
+        }catch(IOException io){
+            System.out.println("HybridHashJoin:temporary file reading error");
+            System.exit(1);
+            return null;
+        }
+    }
+
+
+    private void closeStream(PageReader in){
+        if(in == null)
+            return;
+        try{
+            in.close();
+        }catch(IOException io){
+            System.out.println("HybridHashJoin:Error in temporary file reading");
+        }
+    }
+
+
+    /** The pages of the right input or of a right bucket file **/
+
+    private interface PageSource{
+        Batch nextPage() throws IOException;
+    }
+
+    private class OperatorPages implements PageSource{
+        Operator input;
+        OperatorPages(Operator input){
+            this.input = input;
+        }
+        public Batch nextPage(){
+            Batch page = input.next();
+            if(page != null){
+                addBuildKeys(page,rightindex);
+            }
+            return page;
+        }
+    }
+
+    private class FilePages implements PageSource{
+        PageReader in;
+        FilePages(PageReader in){
+            this.in = in;
+        }
+        public Batch nextPage(){
+            return readPage(in);
+        }
+    }
+
+}
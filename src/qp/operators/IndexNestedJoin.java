@@ -0,0 +1,176 @@
+/** index nested loops join algorithm **/
+
+package qp.operators;
+
+import qp.utils.*;
+import qp.optimizer.BufferManager;
+import java.io.*;
+import java.util.*;
+
+/**
+ * The right input is a base table with a B+ tree index on its join
+ * attribute (built with BuildIndex). The right table is never scanned:
+ * for every tuple of the left input the index is searched with the
+ * value of the left join attribute, and the matching tuples are read
+ * from the pages of the right table through the buffer pool.
+ */
+
+public class IndexNestedJoin extends Join{
+
+    int batchsize;     // Number of tuples per out batch
+
+    int leftindex;     // Index of the join attribute in left table
+
+    BPlusTree index;   // Index on the join attribute of the right table
+    HeapFile rfile;    // Heap file of the right table
+    int rpage;         // Page of rfile that is pinned, -1 if none
+    Batch rightbatch;  // The pinned page of rfile
+
+    Batch leftbatch;   // Buffer for left input stream
+    int lcurs;         // Cursor for left side buffer
+    ArrayList<BPlusTree.Entry> matches;   // Record ids matching the left tuple at lcurs
+    int mcurs;         // Cursor for matches
+    boolean eosl;      // Whether end of stream (left table) is reached
+
+    public IndexNestedJoin(Join jn){
+	super(jn.getLeft(),jn.getRight(),jn.getCondition(),jn.getOpType());
+	schema = jn.getSchema();
+	jointype = jn.getJoinType();
+	numBuff = jn.getNumBuff();
+    }
+
+
+    /** File name of the index usable to probe the right operator on the
+     ** attribute, null if the right operator is not a base table or has
+     ** no index on it
+     **/
+
+    public static String indexFileOf(Operator right, Attribute rightattr){
+	if(right.getOpType() != OpType.SCAN){
+	    return null;
+	}
+	String tabname = ((Scan) right).getTabName();
+	if(!BPlusTree.exists(tabname,rightattr.getColName())){
+	    return null;
+	}
+	return BPlusTree.indexFileName(tabname,rightattr.getColName());
+    }
+
+
+    /** Opens the index and the heap file of the right table,
+     ** and the left input
+     **/
+
+    public boolean open(){
+	int tuplesize = schema.getTupleSize();
+	batchsize = Batch.getPageSize()/tuplesize;
+
+	Attribute leftattr = con.getLhs();
+	Attribute rightattr = (Attribute) con.getRhs();
+	leftindex = left.getSchema().indexOf(leftattr);
+
+	String idxfile = indexFileOf(right,rightattr);
+	if(idxfile == null){
+	    System.out.println("IndexNestedJoin: no index on "+rightattr.getTabName()+"."+rightattr.getColName());
+	    return false;
+	}
+	/** the scan is opened only for its heap file and is never read **/
+	if(!right.open()){
+	    return false;
+	}
+	rfile = ((Scan) right).getHeapFile();
+	if(rfile == null){
+	    System.out.println("IndexNestedJoin: "+((Scan) right).getTabName()+".tbl is not in binary pages");
+	    return false;
+	}
+	try{
+	    index = new BPlusTree(idxfile);
+	}catch(IOException io){
+	    System.out.println("IndexNestedJoin: error in reading "+idxfile);
+	    return false;
+	}
+	rpage = -1;
+
+	leftbatch = null;
+	lcurs = 0;
+	matches = null;
+	mcurs = 0;
+	eosl = false;
+	return left.open();
+    }
+
+
+    /** probes the index with every left tuple and returns a page of
+     ** output tuples
+     **/
+
+    public Batch next(){
+	if(eosl){
+	    close();
+	    return null;
+	}
+	Batch outbatch = new Batch(batchsize);
+	while(!outbatch.isFull()){
+	    if(matches != null && mcurs < matches.size()){
+		BPlusTree.Entry e = matches.get(mcurs);
+		mcurs++;
+		Tuple righttuple = pinRightPage(e.getPageNo()).elementAt(e.getSlot());
+		outbatch.add(leftbatch.elementAt(lcurs-1).joinWith(righttuple));
+		continue;
+	    }
+	    if(leftbatch == null || lcurs >= leftbatch.size()){
+		leftbatch = left.next();
+		lcurs = 0;
+		if(leftbatch == null){
+		    eosl = true;
+		    if(outbatch.isEmpty()){
+			close();
+			return null;
+		    }
+		    return outbatch;
+		}
+		continue;
+	    }
+	    Tuple lefttuple = leftbatch.elementAt(lcurs);
+	    lcurs++;
+	    matches = index.search(lefttuple.dataAt(leftindex));
+	    mcurs = 0;
+	}
+	return outbatch;
+    }
+
+
+    /** Keeps the page of the right table pinned while the matches
+     ** fall on it; the record ids of a key are in the order of the file
+     **/
+
+    private Batch pinRightPage(int pageno){
+	if(rpage != pageno){
+	    BufferPool pool = BufferManager.getBufferPool();
+	    if(rpage >= 0){
+		pool.unpin(rfile,rpage,false);
+	    }
+	    rightbatch = pool.pin(rfile,pageno);
+	    rpage = pageno;
+	}
+	return rightbatch;
+    }
+
+
+    /** Close the operator */
+
+    public boolean close(){
+	if(rfile != null){
+	    if(rpage >= 0){
+		BufferManager.getBufferPool().unpin(rfile,rpage,false);
+		rpage = -1;
+	    }
+	    rightbatch = null;
+	    rfile = null;
+	    right.close();
+	}
+	index = null;
+	return true;
+    }
+
+}
@@ -0,0 +1,192 @@
+/** selection on a base table through an index **/
+
+package qp.operators;
+
+import qp.utils.*;
+import qp.optimizer.BufferManager;
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Select whose base is a Scan of a table with a B+ tree index on the
+ * column of the condition (built with BuildIndex). Instead of reading
+ * the whole table, the range of keys satisfying the condition is read
+ * from the leaves of the index. The record ids found are sorted on the
+ * page number, so that only the pages holding qualifying tuples are
+ * read, each of them once, through the buffer pool.
+ *
+ * NOTEQUAL conditions select nearly the whole table and are not served
+ * by an index.
+ */
+
+public class IndexScan extends Select{
+
+    BPlusTree index;    // Index on the column of the condition
+    HeapFile heapfile;  // Heap file of the base table
+
+    long[] rids;        // Record ids (page number, slot) of the qualifying tuples
+    int numrids;        // Number of record ids found
+    int ridcurs;        // Next record id to be read
+    int rpage;          // Page of heapfile that is pinned, -1 if none
+    Batch pinnedpage;   // The pinned page of heapfile
+
+
+    public IndexScan(Scan base, Condition con, int type){
+	super(base,con,type);
+    }
+
+
+    /** File name of the index usable for the condition on the base
+     ** operator, null if there is none
+     **/
+
+    public static String indexFileOf(Operator base, Condition con){
+	if(base.getOpType() != OpType.SCAN || con.getExprType() == Condition.NOTEQUAL){
+	    return null;
+	}
+	String tabname = ((Scan) base).getTabName();
+	String colname = con.getLhs().getColName();
+	if(!BPlusTree.exists(tabname,colname)){
+	    return null;
+	}
+	return BPlusTree.indexFileName(tabname,colname);
+    }
+
+
+    /** Finds the record ids of the qualifying tuples in the index **/
+
+    public boolean open(){
+	eos = false;
+	int tuplesize = schema.getTupleSize();
+	batchsize = Batch.getPageSize()/tuplesize;
+
+	String idxfile = indexFileOf(base,con);
+	if(idxfile == null){
+	    System.out.println("IndexScan: no index on "+con.getLhs().getTabName()+"."+con.getLhs().getColName());
+	    return false;
+	}
+	/** the scan is opened only for its heap file and is never read **/
+	if(!base.open()){
+	    return false;
+	}
+	heapfile = ((Scan) base).getHeapFile();
+	if(heapfile == null){
+	    System.out.println("IndexScan: "+((Scan) base).getTabName()+".tbl is not in binary pages");
+	    return false;
+	}
+	try{
+	    index = new BPlusTree(idxfile);
+	}catch(IOException io){
+	    System.out.println("IndexScan: error in reading "+idxfile);
+	    return false;
+	}
+
+	Object key = searchKey();
+	int exprtype = con.getExprType();
+	BPlusTree.Cursor cursor;
+	if(exprtype == Condition.LESSTHAN || exprtype == Condition.LTOE){
+	    cursor = index.first();
+	}else{
+	    cursor = index.seek(key,exprtype != Condition.GREATERTHAN);
+	}
+
+	rids = new long[16];
+	numrids = 0;
+	BPlusTree.Entry e;
+	while((e = cursor.next()) != null){
+	    int c = index.compare(e.getKey(),key);
+	    if((exprtype == Condition.EQUAL && c > 0)
+	       || (exprtype == Condition.LESSTHAN && c >= 0)
+	       || (exprtype == Condition.LTOE && c > 0)){
+		break;
+	    }
+	    if(numrids == rids.length){
+		rids = Arrays.copyOf(rids,2*numrids);
+	    }
+	    rids[numrids] = ((long) e.getPageNo() << 32) | e.getSlot();
+	    numrids++;
+	}
+	Arrays.sort(rids,0,numrids);
+	ridcurs = 0;
+	rpage = -1;
+	return true;
+    }
+
+
+    /** The value of the condition with the type of the column **/
+
+    private Object searchKey(){
+	String value = (String) con.getRhs();
+	switch(schema.typeOf(con.getLhs())){
+	case Attribute.INT:
+	    return Integer.valueOf(value);
+	case Attribute.REAL:
+	    return Float.valueOf(value);
+	default:
+	    return value;
+	}
+    }
+
+
+    /** returns the next page of qualifying tuples in the order of the file **/
+
+    public Batch next(){
+	if(eos){
+	    close();
+	    return null;
+	}
+	outbatch = new Batch(batchsize);
+	while(!outbatch.isFull() && ridcurs < numrids){
+	    int pageno = (int) (rids[ridcurs] >>> 32);
+	    int slot = (int) rids[ridcurs];
+	    ridcurs++;
+	    if(pageno != rpage){
+		BufferPool pool = BufferManager.getBufferPool();
+		if(rpage >= 0){
+		    pool.unpin(heapfile,rpage,false);
+		}
+		pinnedpage = pool.pin(heapfile,pageno);
+		rpage = pageno;
+	    }
+	    outbatch.add(pinnedpage.elementAt(slot));
+	}
+	if(ridcurs >= numrids){
+	    eos = true;
+	}
+	return outbatch;
+    }
+
+
+    /** the tuples are fetched from the index, not read from the scan **/
+
+    public boolean pushFilter(Attribute attr, BloomFilter keys){
+	return false;
+    }
+
+
+    /** Close the operator */
+
+    public boolean close(){
+	if(heapfile != null){
+	    if(rpage >= 0){
+		BufferManager.getBufferPool().unpin(heapfile,rpage,false);
+		rpage = -1;
+	    }
+	    pinnedpage = null;
+	    heapfile = null;
+	    base.close();
+	}
+	index = null;
+	rids = null;
+	return true;
+    }
+
+
+    public Object clone(){
+	Scan newbase = (Scan) base.clone();
+	Condition newcon = (Condition) con.clone();
+	IndexScan newsel = new IndexScan(newbase,newcon,optype);
+	newsel.setSchema(newbase.getSchema());
+	return newsel;
+    }
+}
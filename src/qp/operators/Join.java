@@ -16,6 +16,9 @@ public class Join extends Operator{
     int jointype;  // JoinType.NestedJoin/SortMerge/HashJoin
     int nodeIndex;   // Each join node is given a number
 
+    static boolean semiJoinFilters = true;  // Whether the build keys are passed to the probe input
+    BloomFilter.Builder buildkeys;  // Keys of the build input read so far, null if not gathered
+
     public Join(Operator left, Operator right, Condition cn, int type){
 	super(type);
 	this.left=left;
@@ -82,6 +85,66 @@ public class Join extends Operator{
 	return con;
     }
 
+
+	/** whether the joins that read their right input first pass
+	    its join keys as a Bloom filter to the left input **/
+
+    public static void setSemiJoinFilters(boolean on){
+	semiJoinFilters = on;
+    }
+
+    public static boolean hasSemiJoinFilters(){
+	return semiJoinFilters;
+    }
+
+
+    /** Starts gathering the join keys of the build (right) input,
+     ** before it is read
+     **/
+
+    protected void startBuildKeys(){
+	buildkeys = semiJoinFilters ? new BloomFilter.Builder() : null;
+    }
+
+    /** adds the keys of a page of the build input **/
+
+    protected void addBuildKeys(Batch page, int index){
+	if(buildkeys == null)
+	    return;
+	for(int i=0;i<page.size();i++){
+	    buildkeys.add(page.dataAt(i,index));
+	}
+    }
+
+    /** Once the build input is read, asks the left input to leave
+     ** out the tuples whose key is not one of the build keys, before
+     ** it is opened. Only the left tuples that join are then written
+     ** to the partitions or runs of the join
+     **/
+
+    protected void pushBuildKeys(){
+	if(buildkeys == null)
+	    return;
+	left.pushFilter(con.getLhs(),buildkeys.build());
+	buildkeys = null;
+    }
+
+
+    /** a tuple of the join output comes from a tuple of the input
+     ** with the attribute, which cannot be in the output unless its
+     ** value is a key of the filter
+     **/
+
+    public boolean pushFilter(Attribute attr, BloomFilter filter){
+	if(left.getSchema().indexOf(attr) != -1){
+	    return left.pushFilter(attr,filter);
+	}
+	if(right.getSchema().indexOf(attr) != -1){
+	    return right.pushFilter(attr,filter);
+	}
+	return false;
+    }
+
     public Object clone(){
 	Operator newleft = (Operator) left.clone();
 	Operator newright =(Operator) right.clone();
@@ -12,14 +12,18 @@ public class JoinType{
 
 
 
-   public static final int NESTEDJOIN = 2;
+   /** the first numJoinTypes() types are the ones the
+       optimizer chooses from **/
+
    public static final int BLOCKNESTED = 0;
-   public static final int SORTMERGE = 1;
-   public static final int HASHJOIN = 3;
-   public static final int INDEXNESTED = 4;
+   public static final int HASHJOIN = 1;
+   public static final int SORTMERGE = 2;
+   public static final int INDEXNESTED = 3;
+   public static final int HYBRIDHASH = 4;
+   public static final int NESTEDJOIN = 5;
 
    public static int numJoinTypes(){
-	return 1;
+	return 5;
 
         // return k for k joins
     }
@@ -3,8 +3,10 @@
 package qp.operators;
 
 import qp.utils.*;
+import qp.optimizer.BufferManager;
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.lang.*;
 
 public class NestedJoin extends Join{
@@ -20,12 +22,13 @@ public class NestedJoin extends Join{
 
     String rfname;    // The file name where the right table is materialize
 
-    static int filenum=0;   // To get unique filenum for this operation
+    static AtomicInteger filenum = new AtomicInteger();   // To get unique filenum for this operation
 
     Batch outbatch;   // Output buffer
     Batch leftbatch;  // Buffer for left input stream
     Batch rightbatch;  // Buffer for right input stream
-    ObjectInputStream in; // File pointer to the right hand materialized file
+    HeapFile rfile; // The right hand materialized file, read through the buffer pool
+    int rpage;      // Page of rfile that is pinned, -1 if none
 
     int lcurs;    // Cursor for left side buffer
     int rcurs;    // Cursor for right side buffer
@@ -80,14 +83,15 @@ public class NestedJoin extends Join{
 	     **/
 
 	    //if(right.getOpType() != OpType.SCAN){
-	    filenum++;
-	    rfname = "NJtemp-" + String.valueOf(filenum);
+	    rfname = "NJtemp-" + String.valueOf(filenum.incrementAndGet());
 	    try{
-		ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(rfname));
+		PageWriter out = new PageWriter(rfname,right.getSchema());
 		while( (rightpage = right.next()) != null){
-		    out.writeObject(rightpage);
+		    out.write(rightpage);
 		}
 		out.close();
+		rfile = new HeapFile(rfname,right.getSchema());
+		rpage = -1;
 	    }catch(IOException io){
 		System.out.println("NestedJoin:writing the temporay file error");
 		return false;
@@ -133,14 +137,7 @@ public class NestedJoin extends Join{
 		/** Whenver a new left page came , we have to start the
 		 ** scanning of right table
 		 **/
-		try{
-
-		    in = new ObjectInputStream(new FileInputStream(rfname));
-		    eosr=false;
-		}catch(IOException io){
-		    System.err.println("NestedJoin:error in reading the file");
-		    System.exit(1);
-		}
+		eosr=false;
 
 	    }
 
@@ -148,53 +145,42 @@ public class NestedJoin extends Join{
 
 		try{
 		    if(rcurs==0 && lcurs==0){
-			rightbatch = (Batch) in.readObject();
+			rightbatch = nextRightPage();
 		    }
 
 		    for(i=lcurs;i<leftbatch.size();i++){
-			for(j=rcurs;j<rightbatch.size();j++){
+			/** only the right tuples with the key of the left one are looked at **/
+			Object key = leftbatch.dataAt(i,leftindex);
+			for(j=rightbatch.nextMatch(rcurs,rightindex,key);j<rightbatch.size();j=rightbatch.nextMatch(j+1,rightindex,key)){
 			    Tuple lefttuple = leftbatch.elementAt(i);
 			    Tuple righttuple = rightbatch.elementAt(j);
-			    if(lefttuple.checkJoin(righttuple,leftindex,rightindex)){
-				Tuple outtuple = lefttuple.joinWith(righttuple);
-
-				//Debug.PPrint(outtuple);
-				//System.out.println();
-				outbatch.add(outtuple);
-				if(outbatch.isFull()){
-				    if(i==leftbatch.size()-1 && j==rightbatch.size()-1){//case 1
-					lcurs=0;
-					rcurs=0;
-				    }else if(i!=leftbatch.size()-1 && j==rightbatch.size()-1){//case 2
-					lcurs = i+1;
-					rcurs = 0;
-				    }else if(i==leftbatch.size()-1 && j!=rightbatch.size()-1){//case 3
-					lcurs = i;
-					rcurs = j+1;
-				    }else{
-					lcurs = i;
-					rcurs =j+1;
-				    }
-				    return outbatch;
+			    Tuple outtuple = lefttuple.joinWith(righttuple);
+
+			    //Debug.PPrint(outtuple);
+			    //System.out.println();
+			    outbatch.add(outtuple);
+			    if(outbatch.isFull()){
+				if(i==leftbatch.size()-1 && j==rightbatch.size()-1){//case 1
+				    lcurs=0;
+				    rcurs=0;
+				}else if(i!=leftbatch.size()-1 && j==rightbatch.size()-1){//case 2
+				    lcurs = i+1;
+				    rcurs = 0;
+				}else if(i==leftbatch.size()-1 && j!=rightbatch.size()-1){//case 3
+				    lcurs = i;
+				    rcurs = j+1;
+				}else{
+				    lcurs = i;
+				    rcurs =j+1;
 				}
+				return outbatch;
 			    }
 			}
 			rcurs =0;
 		    }
 		    lcurs=0;
 		}catch(EOFException e){
-		    try{
-			in.close();
-		    }catch (IOException io){
-			System.out.println("NestedJoin:Error in temporary file reading");
-		    }
 		    eosr=true;
-		}catch(ClassNotFoundException c){
-		    System.out.println("NestedJoin:Some error in deserialization ");
-		    System.exit(1);
-		}catch(IOException io){
-		    System.out.println("NestedJoin:temporary file reading error");
-		    System.exit(1);
 		}
 	    }
 	}
@@ -203,9 +189,38 @@ public class NestedJoin extends Join{
 
 
 
+    /** Unpins the current page of the right file and pins the next
+     ** one in the buffer pool. The end of the file is signalled with
+     ** EOFException as when the file is read as a stream
+     **/
+
+    private Batch nextRightPage() throws EOFException{
+	BufferPool pool = BufferManager.getBufferPool();
+	if(rpage >= 0){
+	    pool.unpin(rfile,rpage,false);
+	}
+	rpage++;
+	if(rpage >= rfile.getNumPages()){
+	    rpage = -1;
+	    throw new EOFException();
+	}
+	return pool.pin(rfile,rpage);
+    }
+
+
+
     /** Close the operator */
     public boolean close(){
 
+	if(rfile != null){
+	    BufferPool pool = BufferManager.getBufferPool();
+	    if(rpage >= 0){
+		pool.unpin(rfile,rpage,false);
+		rpage = -1;
+	    }
+	    pool.discard(rfname);
+	    rfile = null;
+	}
 	File f = new File(rfname);
 	f.delete();
 	return true;
@@ -10,4 +10,6 @@ public class OpType{
     public static final int JOIN = 3;
     public static final int SORT=4;
     public static final int DISTINCT=5;
+    public static final int GROUPBY=6;
+    public static final int EXCHANGE=7;
 }
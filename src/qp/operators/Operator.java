@@ -50,6 +50,17 @@ public class Operator{
     }
 
 
+    /** Asks the operator to leave out of its output the tuples whose
+     ** value of the attribute is not in the filter, a join passing the
+     ** keys of its build input to its probe input. The filter is kept
+     ** until the operator is closed. Returns false if it is not taken
+     **/
+
+    public boolean pushFilter(Attribute attr, BloomFilter filter){
+	return false;
+    }
+
+
     public Object clone(){
 	return new Operator(optype);
     }
@@ -0,0 +1,227 @@
+/** scans a base table on several threads **/
+
+package qp.operators;
+
+import qp.utils.*;
+import java.io.File;
+import java.util.concurrent.*;
+
+/**
+ * Scan of a table in binary pages that splits the pages of the file into
+ * ranges and decodes the ranges on a pool of worker threads. The workers
+ * hand the out batches to the parent through bounded queues, so they
+ * run at most a few batches ahead of it.
+ *
+ * In ordered mode every range has its own queue, and the parent empties
+ * them in the order of the ranges: the batches come in the order of the
+ * file, as with Scan. Otherwise all the workers share one queue and the
+ * batches come in the order they are ready.
+ *
+ * The workers are only started by the first call of next, so the scan
+ * can still be opened just for its heap file. A table written with Java
+ * serialization is read sequentially as by Scan.
+ */
+
+public class ParallelScan extends Scan{
+
+    static final int QUEUE_SIZE = 4;      // Batches a queue holds
+    static final int RANGES_PER_THREAD = 4;
+    static final int MIN_PAGES = 64;      // Smallest table scanned in parallel
+
+    static int defaultThreads = Runtime.getRuntime().availableProcessors();
+
+    int numThreads;     // Number of worker threads
+    boolean ordered;    // Whether the batches come in the order of the file
+
+    ExecutorService workers;
+    BlockingQueue<Batch>[] queues;   // one per range if ordered, else one shared
+    int numRanges;
+    int rangecurs;      // Range whose queue is read in ordered mode
+    int rangesdone;     // Ranges read to their end in unordered mode
+    volatile String error;   // Error of a worker, if any
+
+    /** marks the end of a range in a queue **/
+
+    static final Batch END_OF_RANGE = new Batch(0);
+
+
+    public ParallelScan(String tabname, int type, int numThreads, boolean ordered){
+	super(tabname,type);
+	this.numThreads = Math.max(1,numThreads);
+	this.ordered = ordered;
+    }
+
+    public ParallelScan(String tabname, int type){
+	this(tabname,type,defaultThreads,true);
+    }
+
+    /** number of threads of the scans the optimizer creates **/
+
+    public static void setDefaultThreads(int num){
+	defaultThreads = Math.max(1,num);
+    }
+
+    public static int getDefaultThreads(){
+	return defaultThreads;
+    }
+
+    /** whether the optimizer should scan the table in parallel: only
+     ** a table in binary pages with enough pages to keep the threads busy
+     **/
+
+    public static boolean isWorthwhile(String tabname){
+	String filename = tabname+".tbl";
+	if(defaultThreads < 2 || !PageReader.isPageFile(filename)){
+	    return false;
+	}
+	return new File(filename).length()/Batch.getPageSize() >= MIN_PAGES;
+    }
+
+    public int getNumThreads(){
+	return numThreads;
+    }
+
+    public boolean isOrdered(){
+	return ordered;
+    }
+
+
+    public boolean open(){
+	workers = null;
+	queues = null;
+	error = null;
+	return super.open();
+    }
+
+
+    protected Batch readPage(){
+	if(heapfile == null){
+	    /** serialized table, or closed **/
+	    return super.readPage();
+	}
+	if(workers == null){
+	    start();
+	}
+	try{
+	    while(true){
+		BlockingQueue<Batch> queue = ordered ? queues[rangecurs] : queues[0];
+		Batch batch = queue.take();
+		if(error != null){
+		    System.err.println("ParallelScan: "+error);
+		    System.exit(1);
+		}
+		if(batch != END_OF_RANGE){
+		    return batch;
+		}
+		if(ordered){
+		    rangecurs++;
+		    if(rangecurs == numRanges){
+			break;
+		    }
+		}else{
+		    rangesdone++;
+		    if(rangesdone == numRanges){
+			break;
+		    }
+		}
+	    }
+	}catch(InterruptedException e){
+	    System.err.println("ParallelScan: interrupted while reading "+filename);
+	    System.exit(1);
+	}
+	close();
+	return null;
+    }
+
+
+    /** splits the file into ranges of pages and submits them to the workers **/
+
+    @SuppressWarnings("unchecked")
+    private void start(){
+	int numpages = heapfile.getNumPages();
+	numRanges = Math.max(1,Math.min(numpages,numThreads*RANGES_PER_THREAD));
+	int rangesize = (numpages + numRanges - 1)/numRanges;
+	numRanges = numpages == 0 ? 1 : (numpages + rangesize - 1)/rangesize;
+
+	queues = new BlockingQueue[ordered ? numRanges : 1];
+	for(int i=0;i<queues.length;i++){
+	    queues[i] = new ArrayBlockingQueue<>(ordered ? QUEUE_SIZE : QUEUE_SIZE*numThreads);
+	}
+	rangecurs = 0;
+	rangesdone = 0;
+
+	workers = Executors.newFixedThreadPool(numThreads, new ThreadFactory(){
+		public Thread newThread(Runnable r){
+		    Thread t = new Thread(r,"ParallelScan-"+tabname);
+		    t.setDaemon(true);
+		    return t;
+		}
+	    });
+	/** the ranges are taken in order, so the ones running are always
+	 ** the first unfinished ones and the parent never waits on a range
+	 ** that cannot run
+	 **/
+	final HeapFile file = heapfile;
+	for(int r=0;r<numRanges;r++){
+	    final int first = r*rangesize;
+	    final int last = Math.min(numpages,first+rangesize);
+	    final BlockingQueue<Batch> queue = ordered ? queues[r] : queues[0];
+	    workers.execute(new Runnable(){
+		    public void run(){
+			scanRange(file,first,last,queue);
+		    }
+		});
+	}
+	workers.shutdown();
+    }
+
+
+    /** decodes the pages first..last-1 into out batches **/
+
+    private void scanRange(HeapFile file, int first, int last, BlockingQueue<Batch> queue){
+	try{
+	    ColumnBatch tuples = new ColumnBatch(schema,batchsize);
+	    for(int p=first;p<last;p++){
+		ColumnBatch page = (ColumnBatch) file.readPage(p);
+		int curs = 0;
+		while(curs < page.size()){
+		    int count = Math.min(page.size()-curs, tuples.capacity()-tuples.size());
+		    tuples.append(page,curs,count);
+		    curs += count;
+		    if(tuples.isFull()){
+			queue.put(tuples);
+			tuples = new ColumnBatch(schema,batchsize);
+		    }
+		}
+	    }
+	    if(!tuples.isEmpty()){
+		queue.put(tuples);
+	    }
+	    queue.put(END_OF_RANGE);
+	}catch(InterruptedException e){
+	    /** the scan is closed **/
+	}catch(RuntimeException e){
+	    error = "error in reading "+filename+": "+e;
+	    queue.offer(END_OF_RANGE);
+	}
+    }
+
+
+    /** stops the workers still running **/
+
+    public boolean close(){
+	if(workers != null){
+	    workers.shutdownNow();
+	    workers = null;
+	}
+	queues = null;
+	return super.close();
+    }
+
+
+    public Object clone(){
+	ParallelScan newscan = new ParallelScan(tabname,optype,numThreads,ordered);
+	newscan.setSchema((Schema) schema.clone());
+	return newscan;
+    }
+}
@@ -0,0 +1,300 @@
+/** selection conditions compiled against a schema **/
+
+package qp.operators;
+
+import qp.utils.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Vector;
+
+/**
+ * A selection condition, or a conjunction of them, prepared once for the
+ * schema of the tuples it is applied to: the index of the column is
+ * resolved and the constant is parsed into the type of the column when
+ * the predicate is compiled, so that evaluating it on a tuple is a
+ * single comparison. Every column type has its own evaluator class.
+ *
+ * A predicate is evaluated either on one Tuple with eval, or on a whole
+ * ColumnBatch with filter, which runs one loop per comparison operator
+ * over the primitive column.
+ */
+
+public abstract class Predicate{
+
+    int index;      // index of the column in the schema
+    int exprtype;   // Condition.LESSTHAN/GREATERTHAN/...
+
+
+    /** whether the tuple satisfies the predicate **/
+
+    public abstract boolean eval(Tuple t);
+
+    /** Keeps of the first n stored row numbers in rows the ones whose
+     ** row of the batch satisfies the predicate, in the same order at
+     ** the start of rows. Returns the number of rows kept
+     **/
+
+    public abstract int filter(ColumnBatch batch, int[] rows, int n);
+
+
+    /** compiles a selection condition on the given schema **/
+
+    public static Predicate compile(Condition con, Schema schema){
+	int index = schema.indexOf(con.getLhs());
+	if(index == -1){
+	    System.out.println("Predicate: "+con.getLhs().getTabName()+"."+con.getLhs().getColName()+" is not in the schema");
+	    System.exit(1);
+	}
+	String value = (String) con.getRhs();
+	switch(schema.typeOf(index)){
+	case Attribute.INT:
+	    return new IntPredicate(index,con.getExprType(),Integer.parseInt(value));
+	case Attribute.REAL:
+	    return new RealPredicate(index,con.getExprType(),Float.parseFloat(value));
+	default:
+	    return new StringPredicate(index,con.getExprType(),value);
+	}
+    }
+
+    /** compiles the conjunction of the selection conditions **/
+
+    public static Predicate compile(Vector conditions, Schema schema){
+	if(conditions.size() == 1){
+	    return compile((Condition) conditions.elementAt(0),schema);
+	}
+	Predicate[] terms = new Predicate[conditions.size()];
+	for(int i=0;i<terms.length;i++){
+	    terms[i] = compile((Condition) conditions.elementAt(i),schema);
+	}
+	return new Conjunction(terms);
+    }
+
+
+    /** the value of the column is a key of the filter **/
+
+    public static Predicate semiJoin(int index, BloomFilter keys){
+	return new SemiJoinPredicate(index,keys);
+    }
+
+    /** both of the predicates, the first one first **/
+
+    public static Predicate and(Predicate first, Predicate second){
+	return new Conjunction(new Predicate[]{first,second});
+    }
+
+
+    Predicate(int index, int exprtype){
+	this.index = index;
+	this.exprtype = exprtype;
+	if(exprtype < Condition.LESSTHAN || exprtype > Condition.NOTEQUAL){
+	    System.out.println("Predicate:Incorrect condition operator");
+	    System.exit(1);
+	}
+    }
+
+
+    /** INT column compared with an int constant **/
+
+    static class IntPredicate extends Predicate{
+	int value;
+
+	IntPredicate(int index, int exprtype, int value){
+	    super(index,exprtype);
+	    this.value = value;
+	}
+
+	public boolean eval(Tuple t){
+	    int v = ((Integer) t.dataAt(index)).intValue();
+	    switch(exprtype){
+	    case Condition.LESSTHAN: return v < value;
+	    case Condition.GREATERTHAN: return v > value;
+	    case Condition.LTOE: return v <= value;
+	    case Condition.GTOE: return v >= value;
+	    case Condition.EQUAL: return v == value;
+	    default: return v != value;
+	    }
+	}
+
+	public int filter(ColumnBatch batch, int[] rows, int n){
+	    int[] col = batch.getIntColumn(index);
+	    int k = value;
+	    int m = 0;
+	    switch(exprtype){
+	    case Condition.LESSTHAN:
+		for(int i=0;i<n;i++){ int r = rows[i]; if(col[r] < k) rows[m++] = r; }
+		break;
+	    case Condition.GREATERTHAN:
+		for(int i=0;i<n;i++){ int r = rows[i]; if(col[r] > k) rows[m++] = r; }
+		break;
+	    case Condition.LTOE:
+		for(int i=0;i<n;i++){ int r = rows[i]; if(col[r] <= k) rows[m++] = r; }
+		break;
+	    case Condition.GTOE:
+		for(int i=0;i<n;i++){ int r = rows[i]; if(col[r] >= k) rows[m++] = r; }
+		break;
+	    case Condition.EQUAL:
+		for(int i=0;i<n;i++){ int r = rows[i]; if(col[r] == k) rows[m++] = r; }
+		break;
+	    default:
+		for(int i=0;i<n;i++){ int r = rows[i]; if(col[r] != k) rows[m++] = r; }
+		break;
+	    }
+	    return m;
+	}
+    }
+
+
+    /** REAL column compared with a float constant **/
+
+    static class RealPredicate extends Predicate{
+	float value;
+
+	RealPredicate(int index, int exprtype, float value){
+	    super(index,exprtype);
+	    this.value = value;
+	}
+
+	public boolean eval(Tuple t){
+	    float v = ((Float) t.dataAt(index)).floatValue();
+	    switch(exprtype){
+	    case Condition.LESSTHAN: return v < value;
+	    case Condition.GREATERTHAN: return v > value;
+	    case Condition.LTOE: return v <= value;
+	    case Condition.GTOE: return v >= value;
+	    case Condition.EQUAL: return v == value;
+	    default: return v != value;
+	    }
+	}
+
+	public int filter(ColumnBatch batch, int[] rows, int n){
+	    float[] col = batch.getFloatColumn(index);
+	    float k = value;
+	    int m = 0;
+	    switch(exprtype){
+	    case Condition.LESSTHAN:
+		for(int i=0;i<n;i++){ int r = rows[i]; if(col[r] < k) rows[m++] = r; }
+		break;
+	    case Condition.GREATERTHAN:
+		for(int i=0;i<n;i++){ int r = rows[i]; if(col[r] > k) rows[m++] = r; }
+		break;
+	    case Condition.LTOE:
+		for(int i=0;i<n;i++){ int r = rows[i]; if(col[r] <= k) rows[m++] = r; }
+		break;
+	    case Condition.GTOE:
+		for(int i=0;i<n;i++){ int r = rows[i]; if(col[r] >= k) rows[m++] = r; }
+		break;
+	    case Condition.EQUAL:
+		for(int i=0;i<n;i++){ int r = rows[i]; if(col[r] == k) rows[m++] = r; }
+		break;
+	    default:
+		for(int i=0;i<n;i++){ int r = rows[i]; if(col[r] != k) rows[m++] = r; }
+		break;
+	    }
+	    return m;
+	}
+    }
+
+
+    /** STRING column compared with a string constant **/
+
+    static class StringPredicate extends Predicate{
+	String value;
+	byte[] bytes;   // UTF-8 bytes of value, compared with the column bytes
+
+	StringPredicate(int index, int exprtype, String value){
+	    super(index,exprtype);
+	    this.value = value;
+	    this.bytes = value.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private boolean holds(int flag){
+	    switch(exprtype){
+	    case Condition.LESSTHAN: return flag < 0;
+	    case Condition.GREATERTHAN: return flag > 0;
+	    case Condition.LTOE: return flag <= 0;
+	    case Condition.GTOE: return flag >= 0;
+	    case Condition.EQUAL: return flag == 0;
+	    default: return flag != 0;
+	    }
+	}
+
+	public boolean eval(Tuple t){
+	    return holds(((String) t.dataAt(index)).compareTo(value));
+	}
+
+	public int filter(ColumnBatch batch, int[] rows, int n){
+	    int m = 0;
+	    for(int i=0;i<n;i++){
+		int r = rows[i];
+		if(holds(batch.compareString(index,r,bytes)))
+		    rows[m++] = r;
+	    }
+	    return m;
+	}
+    }
+
+
+    /** column whose value passes a Bloom filter of join keys; the
+     ** values of a column are hashed as their boxed hashCode would be
+     **/
+
+    static class SemiJoinPredicate extends Predicate{
+	BloomFilter keys;
+
+	SemiJoinPredicate(int index, BloomFilter keys){
+	    super(index,Condition.EQUAL);
+	    this.keys = keys;
+	}
+
+	public boolean eval(Tuple t){
+	    return keys.mightContain(t.dataAt(index));
+	}
+
+	public int filter(ColumnBatch batch, int[] rows, int n){
+	    int m = 0;
+	    switch(batch.typeOf(index)){
+	    case Attribute.INT:
+		int[] col = batch.getIntColumn(index);
+		for(int i=0;i<n;i++){ int r = rows[i]; if(keys.mightContainHash(col[r])) rows[m++] = r; }
+		break;
+	    case Attribute.REAL:
+		float[] fcol = batch.getFloatColumn(index);
+		for(int i=0;i<n;i++){ int r = rows[i]; if(keys.mightContainHash(Float.hashCode(fcol[r]))) rows[m++] = r; }
+		break;
+	    default:
+		for(int i=0;i<n;i++){ int r = rows[i]; if(keys.mightContainHash(batch.getString(index,r).hashCode())) rows[m++] = r; }
+		break;
+	    }
+	    return m;
+	}
+    }
+
+
+    /** all of the predicates, evaluated in their order **/
+
+    static class Conjunction extends Predicate{
+	Predicate[] terms;
+
+	Conjunction(Predicate[] terms){
+	    super(0,Condition.EQUAL);
+	    this.terms = terms;
+	}
+
+	public boolean eval(Tuple t){
+	    for(int i=0;i<terms.length;i++){
+		if(!terms[i].eval(t))
+		    return false;
+	    }
+	    return true;
+	}
+
+	/** every term only looks at the rows kept by the ones before it **/
+
+	public int filter(ColumnBatch batch, int[] rows, int n){
+	    for(int i=0;i<terms.length && n>0;i++){
+		n = terms[i].filter(batch,rows,n);
+	    }
+	    return n;
+	}
+    }
+
+}
@@ -37,6 +37,12 @@ public class Project extends Operator{
 	this.base = base;
     }
 
+    /** the projected attributes are those of the base **/
+
+    public boolean pushFilter(Attribute attr, BloomFilter filter){
+	return base.pushFilter(attr,filter);
+    }
+
     public Operator getBase(){
 	return base;
     }
@@ -84,7 +90,6 @@ public class Project extends Operator{
 
     public Batch next(){
 	//System.out.println("Project:-----------------in next-----------------");
-	outbatch = new Batch(batchsize);
 
 	/** all the tuples in the inbuffer goes to the output
 	    buffer
@@ -97,6 +102,11 @@ public class Project extends Operator{
 	if(inbatch == null){
 	    return null;
 	}
+	if(inbatch instanceof ColumnBatch){
+	    /** a view on the projected columns, without copying the rows **/
+	    return ((ColumnBatch) inbatch).project(attrIndex,batchsize);
+	}
+	outbatch = new Batch(batchsize);
 	//System.out.println("Project:---------------base tuples---------");
 	for(int i=0;i<inbatch.size();i++){
 	    Tuple basetuple = inbatch.elementAt(i);
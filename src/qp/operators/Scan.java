@@ -16,9 +16,14 @@ public class Scan extends Operator {
 
     int batchsize; // Number of tuples per out batch;
 
-    ObjectInputStream in;      // Input file being scanned
+    ObjectInputStream in;      // Input file being scanned, if written with Java serialization
+    HeapFile heapfile;         // Input file being scanned, if written in binary pages
+    int pagecurs;              // Number of the next page of heapfile
+    ColumnBatch inpage;        // Page of the binary file being read
+    int incurs;                // Next tuple of inpage
 
     boolean eos;            // To indicate whether end of stream reached or not
+    Predicate filter;       // Semi-join filters pushed by the joins above, null if none
 
 
     /** Constructor - just save filename  */
@@ -45,9 +50,18 @@ public class Scan extends Operator {
 
 	//System.out.println("Scan:----------Scanning:"+tabname);
 	eos = false;
+	in = null;
+	heapfile = null;
+	pagecurs = 0;
+	inpage = null;
+	incurs = 0;
 
 	try {
-            in = new ObjectInputStream(new FileInputStream(filename));
+	    if(PageReader.isPageFile(filename)){
+		heapfile = new HeapFile(filename,schema);
+	    }else{
+		in = new ObjectInputStream(new FileInputStream(filename));
+	    }
         } catch (Exception e) {
             System.err.println(" Error reading " + filename);
             return false;
@@ -57,12 +71,42 @@ public class Scan extends Operator {
     }
 
 
-    /** Next operator - get a tuple from the file
-    **
-    **
-    ***/
+    /** Next operator - get a tuple from the file. The tuples that
+     ** do not pass the semi-join filters are left out
+     **/
 
     public Batch next() {
+	Predicate keys = filter;
+	if(keys == null){
+	    return readPage();
+	}
+	while(true){
+	    Batch page = readPage();
+	    if(page == null){
+		return null;
+	    }
+	    if(page instanceof ColumnBatch){
+		ColumnBatch columns = (ColumnBatch) page;
+		int[] rows = columns.selection();
+		columns.select(rows,keys.filter(columns,rows,columns.size()));
+	    }else{
+		Batch tuples = new Batch(batchsize);
+		for(int i=0;i<page.size();i++){
+		    if(keys.eval(page.elementAt(i)))
+			tuples.add(page.elementAt(i));
+		}
+		page = tuples;
+	    }
+	    if(!page.isEmpty() || eos){
+		return page;
+	    }
+	}
+    }
+
+
+    /** the next page of the file **/
+
+    protected Batch readPage() {
 
 	/** The file reached its end and no more to read **/
 
@@ -71,6 +115,10 @@ public class Scan extends Operator {
 	    return null;
 	}
 
+	if(heapfile != null){
+	    return nextFromPages(new ColumnBatch(schema,batchsize));
+	}
+
 	Batch tuples = new Batch(batchsize);
 
 	while(!tuples.isFull()){
@@ -96,14 +144,67 @@ public class Scan extends Operator {
 	return tuples;
     }
 
+    /** The pages of the file need not hold batchsize tuples, so the
+     ** columns of the pages are copied into the out batch
+     **/
+
+    protected Batch nextFromPages(ColumnBatch tuples){
+	while(!tuples.isFull()){
+	    if(inpage == null || incurs >= inpage.size()){
+		if(pagecurs >= heapfile.getNumPages()){
+		    eos=true;
+		    return tuples;
+		}
+		inpage = (ColumnBatch) heapfile.readPage(pagecurs);
+		pagecurs++;
+		incurs = 0;
+		continue;
+	    }
+	    int count = Math.min(inpage.size()-incurs, tuples.capacity()-tuples.size());
+	    tuples.append(inpage,incurs,count);
+	    incurs += count;
+	}
+	return tuples;
+    }
+
+    /** The heap file of the table while the scan is open, or null if
+     ** the table is written with Java serialization. Its pages can be
+     ** read in any order by their page number
+     **/
+
+    public HeapFile getHeapFile(){
+	return heapfile;
+    }
+
+
+    /** the tuples are filtered as they are read **/
+
+    public boolean pushFilter(Attribute attr, BloomFilter keys){
+	int index = schema.indexOf(attr);
+	if(index == -1){
+	    return false;
+	}
+	Predicate p = Predicate.semiJoin(index,keys);
+	filter = (filter == null) ? p : Predicate.and(filter,p);
+	return true;
+    }
+
     /** Close the file.. This routine is called when the end of filed
      ** is already reached
      **/
 
 
     public boolean close() {
+	filter = null;
 	try {
-            in.close();
+	    if(heapfile != null){
+		/** the mapping is released once the heap file is no longer referenced **/
+		heapfile = null;
+		inpage = null;
+		eos = true;
+	    }else if(in != null){
+		in.close();
+	    }
         } catch (IOException e) {
             System.err.println("Scan: Error closing " + filename);
             return false;
@@ -9,6 +9,7 @@ public class Select extends Operator{
 
     Operator base;  // base operator
       Condition con; //select condition
+    Vector conditions;  // all the conditions the tuples satisfy, con is the first
 	int batchsize;  // number of tuples per outbatch
 
     /** The following fields are required during
@@ -19,6 +20,8 @@ public class Select extends Operator{
     Batch inbatch;   // This is the current input buffer
     Batch outbatch;  // This is the current output buffer
     int start;       // Cursor position in the input buffer
+    Predicate predicate;  // The conditions compiled on the schema
+    Predicate filter;     // Semi-join filters the base did not take, null if none
 
 
 	/** constructor **/
@@ -27,9 +30,20 @@ public class Select extends Operator{
 	super(type);
 	this.base=base;
 	this.con=con;
+	conditions = new Vector();
+	conditions.add(con);
 
     }
 
+    /** selection of the tuples satisfying all the conditions **/
+
+    public Select(Operator base, Vector conditions, int type){
+	super(type);
+	this.base=base;
+	this.con=(Condition) conditions.elementAt(0);
+	this.conditions=conditions;
+    }
+
     public void setBase(Operator base){
 	this.base = base;
     }
@@ -40,12 +54,36 @@ public class Select extends Operator{
 
     public void setCondition(Condition cn){
 	this.con=cn;
+	conditions = new Vector();
+	conditions.add(cn);
     }
 
     public Condition getCondition(){
 	return con;
     }
 
+    public Vector getConditions(){
+	return conditions;
+    }
+
+
+    /** the filter is applied by the base if it can, and otherwise
+     ** with the conditions
+     **/
+
+    public boolean pushFilter(Attribute attr, BloomFilter keys){
+	if(base.pushFilter(attr,keys)){
+	    return true;
+	}
+	int index = schema.indexOf(attr);
+	if(index == -1){
+	    return false;
+	}
+	Predicate p = Predicate.semiJoin(index,keys);
+	filter = (filter == null) ? p : Predicate.and(filter,p);
+	return true;
+    }
+
 
     /** Opens the connection to the base operator
      **/
@@ -58,6 +96,11 @@ public class Select extends Operator{
 	int tuplesize=schema.getTupleSize();
 	batchsize=Batch.getPageSize()/tuplesize;
 
+	/** the conditions are compiled once, not looked up per tuple **/
+	predicate = Predicate.compile(conditions,schema);
+	if(filter != null){
+	    predicate = Predicate.and(predicate,filter);
+	}
 
 	if(base.open())
 	    return true;
@@ -96,6 +139,16 @@ public class Select extends Operator{
 		    eos = true;
 		    return outbatch;
 		}
+		if(inbatch instanceof ColumnBatch && outbatch.isEmpty()){
+		    /** a page of columns is filtered in place, without
+		     ** building its tuples, and passed on as it is
+		     **/
+		    ColumnBatch columns = (ColumnBatch) inbatch;
+		    filterColumns(columns);
+		    if(!columns.isEmpty())
+			return columns;
+		    continue;
+		}
 	    }
 
 	    /** Continue this for loop until this page is fully observed
@@ -132,6 +185,7 @@ public class Select extends Operator{
      **/
 
     public boolean close(){
+	filter = null;
 	/**
 	if(base.close())
 	    return true;
@@ -148,89 +202,27 @@ public class Select extends Operator{
 		**/
 
     protected boolean checkCondition(Tuple tuple){
-	Attribute attr = con.getLhs();
-	int index = schema.indexOf(attr);
-	int datatype = schema.typeOf(attr);
-	Object srcValue = tuple.dataAt(index);
-	String checkValue =(String) con.getRhs();
-	int exprtype = con.getExprType();
-
-	if(datatype == Attribute.INT){
-	    int srcVal = ((Integer)srcValue).intValue();
-	    int checkVal = Integer.parseInt(checkValue);
-	    if(exprtype==Condition.LESSTHAN){
-		if(srcVal < checkVal)
-		    return true;
-	    }else if(exprtype==Condition.GREATERTHAN){
-		if(srcVal>checkVal)
-		    return true;
-	    }else if(exprtype==Condition.LTOE){
-		if(srcVal<= checkVal)
-		    return true;
-	    }else if(exprtype==Condition.GTOE){
-		if(srcVal>=checkVal)
-		    return true;
-	    }else if(exprtype==Condition.EQUAL){
-		if(srcVal==checkVal)
-		    return true;
-	    }else if(exprtype==Condition.NOTEQUAL){
-		if(srcVal != checkVal)
-		    return true;
-	    }else{
-		System.out.println("Select:Incorrect condition operator");
-	    }
-	}else if(datatype==Attribute.STRING){
-	    String srcVal = (String)srcValue;
-	    int flag = srcVal.compareTo(checkValue);
-
-	    if(exprtype==Condition.LESSTHAN){
-		if(flag<0) return true;
-
-	    }else if(exprtype==Condition.GREATERTHAN){
-		if(flag>0) return true;
-	    }else if(exprtype==Condition.LTOE){
-		if(flag<=0) return true;
-	    }else if(exprtype==Condition.GTOE){
-		if(flag>=0) return true;
-	    }else if(exprtype==Condition.EQUAL){
-		if(flag ==0) return true;
-	    }else if(exprtype==Condition.NOTEQUAL){
-		if(flag !=0) return true;
-	    }else{
-		System.out.println("Select: Incorrect condition operator");
-	    }
-
-	}else if(datatype==Attribute.REAL){
-	    float srcVal = ((Float) srcValue).floatValue();
-	    float checkVal = Float.parseFloat(checkValue);
-	    if(exprtype==Condition.LESSTHAN){
-		if(srcVal<checkVal) return true;
-	    }else if(exprtype==Condition.GREATERTHAN){
-		if(srcVal>checkVal) return true;
-	    }else if(exprtype==Condition.LTOE){
-		if(srcVal<=checkVal) return true;
-	    }else if(exprtype==Condition.GTOE){
-		if(srcVal>=checkVal) return true;
-	    }else if(exprtype==Condition.EQUAL){
-		if(srcVal==checkVal) return true;
-	    }else if(exprtype==Condition.NOTEQUAL){
-		if(srcVal!=checkVal) return true;
-	    }else{
-		System.out.println("Select:Incorrect condition operator");
-	    }
-	}
-	return false;
+	return predicate.eval(tuple);
     }
 
 
+    /** Narrows the selection vector of the page to the rows satisfying
+     ** the conditions, reading the values straight from the columns
+     **/
 
-
+    protected void filterColumns(ColumnBatch batch){
+	int[] rows = batch.selection();
+	int n = predicate.filter(batch,rows,batch.size());
+	batch.select(rows,n);
+    }
 
 
     public Object clone(){
 	Operator newbase = (Operator) base.clone();
-	Condition newcon = (Condition) con.clone();
-	Select newsel = new Select(newbase,newcon,optype);
+	Vector newcons = new Vector();
+	for(int i=0;i<conditions.size();i++)
+	    newcons.add((Condition) ((Condition) conditions.elementAt(i)).clone());
+	Select newsel = new Select(newbase,newcons,optype);
 	newsel.setSchema(newbase.getSchema());
 	return newsel;
     }
@@ -0,0 +1,116 @@
+/** sort based grouping and aggregation **/
+
+package qp.operators;
+
+import qp.utils.*;
+import java.util.Vector;
+
+/**
+ * Sorts the input on the grouping attributes with ExternalSort, so that
+ * the tuples of a group come one after the other, and computes the
+ * aggregates of a group while reading it. Only the group being read is
+ * kept in memory. Without grouping attributes the input is not sorted.
+ */
+
+public class SortAggregate extends GroupBy{
+
+    Operator sorted;        // The input sorted on the grouping attributes
+    Aggregator aggregator;
+
+    Batch inbatch;          // Page of the sorted input
+    int incurs;             // Cursor for the sorted input page
+    Vector groupkey;        // Grouping values of the group being read
+    Aggregator.Group group; // Aggregates of the group being read
+    boolean empty;          // Whether no input tuple has been read
+    boolean eos;            // Whether end of stream is reached
+
+    public SortAggregate(GroupBy gb){
+	super(gb.getBase(),gb.getGroupByList(),gb.getProjAttr(),gb.getOpType());
+	schema = gb.getSchema();
+	groupbytype = gb.getGroupByType();
+	numBuff = gb.getNumBuff();
+    }
+
+
+    public boolean open(){
+	int tuplesize = schema.getTupleSize();
+	batchsize = Batch.getPageSize()/tuplesize;
+
+	findGroupIndex();
+	aggregator = new Aggregator(base.getSchema(),schema);
+	if(groupIndex.length == 0){
+	    sorted = base;
+	}else{
+	    ExternalSort sort = new ExternalSort(base, numBuff, groupIndex, "SAtemp-");
+	    sort.setNumThreads(Exchange.getDefaultDegree());
+	    sort.setRunGeneration(SortMergeJoin.runGeneration(numBuff,Exchange.getDefaultDegree()));
+	    sorted = sort;
+	}
+
+	inbatch = null;
+	incurs = 0;
+	groupkey = null;
+	group = null;
+	empty = true;
+	eos = false;
+	return sorted.open();
+    }
+
+
+    public Batch next(){
+	if(eos){
+	    close();
+	    return null;
+	}
+	Batch outbatch = new Batch(batchsize);
+	while(!outbatch.isFull()){
+	    if(inbatch == null || incurs >= inbatch.size()){
+		inbatch = sorted.next();
+		incurs = 0;
+		if(inbatch == null){
+		    eos = true;
+		    if(group != null){
+			outbatch.add(aggregator.result(group));
+			group = null;
+		    }else if(empty && groupIndex.length == 0){
+			/** without grouping attributes there is one
+			 ** result even for an empty input
+			 **/
+			outbatch.add(aggregator.result(aggregator.newGroup()));
+		    }
+		    if(outbatch.isEmpty()){
+			close();
+			return null;
+		    }
+		    return outbatch;
+		}
+		continue;
+	    }
+	    Tuple t = inbatch.elementAt(incurs);
+	    incurs++;
+	    empty = false;
+	    Vector key = groupKey(t);
+	    if(group != null && !key.equals(groupkey)){
+		outbatch.add(aggregator.result(group));
+		group = null;
+	    }
+	    if(group == null){
+		group = aggregator.newGroup();
+		groupkey = key;
+	    }
+	    aggregator.add(group,t);
+	}
+	return outbatch;
+    }
+
+
+    /** Close the operator and removes the sorted runs */
+
+    public boolean close(){
+	if(sorted != null && sorted != base){
+	    sorted.close();
+	}
+	return true;
+    }
+
+}
@@ -0,0 +1,91 @@
+/** sort based duplicate elimination **/
+
+package qp.operators;
+
+import qp.utils.*;
+
+/**
+ * Sorts the projected input on all its columns with ExternalSort and
+ * drops every tuple equal to the one before it. The final merge of the
+ * sort is read directly, so the sorted table is never written out as a
+ * whole.
+ */
+
+public class SortDistinct extends Distinct{
+
+    ExternalSort sorted;   // The projected input sorted on all columns
+
+    Batch inbatch;     // Page of the sorted input
+    int incurs;        // Cursor for the sorted input page
+    Tuple lasttuple;   // Last tuple written out
+    boolean eos;       // Whether end of stream is reached
+
+    public SortDistinct(Distinct dn){
+        super(dn.getBase(),dn.getProjAttr(),dn.getOpType());
+        schema = dn.getSchema();
+        distincttype = dn.getDistinctType();
+        numBuff = dn.getNumBuff();
+    }
+
+
+    public boolean open(){
+        int tuplesize = schema.getTupleSize();
+        batchsize = Batch.getPageSize()/tuplesize;
+
+        int[] sortIndex = new int[schema.getNumCols()];
+        for(int i=0;i<sortIndex.length;i++){
+            sortIndex[i] = i;
+        }
+        sorted = new ExternalSort(projectedBase(), numBuff, sortIndex, "SDtemp-");
+        sorted.setNumThreads(Exchange.getDefaultDegree());
+        sorted.setRunGeneration(SortMergeJoin.runGeneration(numBuff,Exchange.getDefaultDegree()));
+
+        inbatch = null;
+        incurs = 0;
+        lasttuple = null;
+        eos = false;
+        return sorted.open();
+    }
+
+
+    public Batch next(){
+        if(eos){
+            close();
+            return null;
+        }
+        Batch outbatch = new Batch(batchsize);
+        while(!outbatch.isFull()){
+            if(inbatch == null || incurs >= inbatch.size()){
+                inbatch = sorted.next();
+                incurs = 0;
+                if(inbatch == null){
+                    eos = true;
+                    if(outbatch.isEmpty()){
+                        close();
+                        return null;
+                    }
+                    return outbatch;
+                }
+                continue;
+            }
+            Tuple t = inbatch.elementAt(incurs);
+            incurs++;
+            if(lasttuple == null || !lasttuple.data().equals(t.data())){
+                outbatch.add(t);
+                lasttuple = t;
+            }
+        }
+        return outbatch;
+    }
+
+
+    /** Close the operator and removes the sorted runs */
+
+    public boolean close(){
+        if(sorted != null){
+            sorted.close();
+        }
+        return true;
+    }
+
+}
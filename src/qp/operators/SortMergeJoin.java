@@ -1,47 +1,50 @@
+
 package qp.operators;
 
-import java.io.EOFException;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.util.ArrayList;
 
 import qp.utils.Attribute;
 import qp.utils.Batch;
 import qp.utils.Tuple;
 
+/**
+ * Sorts both tables on the join attribute with ExternalSort and merges them.
+ *
+ * In the pipelined mode (the default) each sort stops before its final merge pass and
+ * the join pulls the sorted tuples from the final merge directly, so that the last pass
+ * of the sorts and the join are done together and neither sorted table is written out.
+ * The buffers are shared between the final merges of both sorts and the output buffer.
+ * Otherwise both tables are first merged into a single sorted run each.
+ *
+ * The right tuples that share a join value with the current left tuple are kept in
+ * memory while they are joined with the left tuples of that value.
+ */
 public class SortMergeJoin extends Join {
 
-    private ObjectInputStream inputLeft;
-    private ObjectInputStream inputRight;
-
     private String leftTableName = "LSTTemp-";
     private String rightTableName = "RSTTemp-";
 
+    private ExternalSort leftTable;
+    private ExternalSort rightTable;
+    private boolean pipelined = true;
+
     private int leftAttrIndex;
     private int rightAttrIndex;
 
+    private int batchSize;
 
-    private int batchSize, leftBatchSize, rightBatchSize;
-
-
-    private int leftTablePointer;
-    private int rightTablePointer;
+    private Batch leftBatch;  // current page of the sorted left table
+    private Batch rightBatch; // current page of the sorted right table
+    private int leftCursor;
+    private int rightCursor;
 
-    private Batch leftBatch;
-    private ArrayList<Batch> rightBuffer;
-    private Batch rightOutputBatch;
+    private Tuple leftTuple;  // current left tuple
+    private Tuple rightTuple; // first right tuple after the current right group
+    private ArrayList<Tuple> rightGroup; // right tuples with the same join value
+    private int groupCursor;
+    private boolean inGroup;   // whether leftTuple is being joined with rightGroup
+    private boolean eos;
 
-    private int currentLeftBatchIndex;
-    private int currentRightBufferIteration;
-    private Batch outputBatch;
-
-    /**
-     * 2 phases to External sort -
-     * Phase 1 - Create ceiling (no of pages/no of batches) sorted runs (Generates a (buffer size) sorted run)
-     * Phase 2 - Merge the runs together (Merge using B-1 buffer pages until 1 sorted run is produced)
-     */
     public SortMergeJoin(Join jn) {
         super(jn.getLeft(), jn.getRight(), jn.getCondition(), jn.getOpType());
         schema = jn.getSchema();
@@ -49,25 +52,46 @@ public class SortMergeJoin extends Join {
         numBuff = jn.getNumBuff();
     }
 
-    public boolean open() {
-        int tupleSize, leftTupleSize, rightTupleSize;
-        ExternalSort leftTable;
-        ExternalSort rightTable;
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
 
-        // Number of tuples per batch
-        tupleSize = getSchema().getTupleSize();
-        batchSize = Batch.getPageSize() / tupleSize;
+    public boolean isPipelined() {
+        return pipelined;
+    }
 
-        leftTupleSize = getLeft().getSchema().getTupleSize();
-        rightTupleSize = getRight().getSchema().getTupleSize();
+    /**
+     * Number of runs each sort leaves for the final merge that feeds the join,
+     * one buffer is kept for the output and the runs are read ahead as in a merge
+     * of ExternalSort
+     */
+    public static int finalFanIn(int numBuff, boolean pipelined) {
+        if (!pipelined) {
+            return 1;
+        }
+        return Math.max(1, ExternalSort.mergeFanIn(numBuff) / 2);
+    }
 
-        leftBatchSize = Batch.getPageSize() / leftTupleSize; // no of tuples in 1 left batch
-        rightBatchSize = Batch.getPageSize() / rightTupleSize; // no of tuples in 1 right batch
+    /**
+     * Replacement selection gives runs of about 2(B-2) pages against B pages when filling
+     * and sorting the buffers, so it is used once there are more than 4 buffers. A sort that
+     * runs on several threads fills and sorts the buffers instead, as its runs are then
+     * sorted by a pool of workers while the next one is read in
+     */
+    public static int runGeneration(int numBuff, int numThreads) {
+        if (ExternalSort.sortThreads(numBuff, numThreads, ExternalSort.FILL_AND_SORT) > 1) {
+            return ExternalSort.FILL_AND_SORT;
+        }
+        if (2 * (numBuff - 2) > numBuff) {
+            return ExternalSort.REPLACEMENT_SELECTION;
+        }
+        return ExternalSort.FILL_AND_SORT;
+    }
 
-        // to extract tuples from the 1 left sorted table file and 1 right sorted table file, have to make use of buffers
-        // to extract the tuples via batches
-        leftBatch = new Batch(leftBatchSize); // just 1 buffer for left table
-        rightBuffer = new ArrayList<>(); // assign numBuff - 2 to right Buffer to accomodate large right table
+    public boolean open() {
+        // Number of tuples per batch
+        int tupleSize = getSchema().getTupleSize();
+        batchSize = Batch.getPageSize() / tupleSize;
 
         Attribute leftAttr = getCondition().getLhs();
         Attribute rightAttr = (Attribute) getCondition().getRhs();
@@ -75,30 +99,45 @@ public class SortMergeJoin extends Join {
         leftAttrIndex = getLeft().getSchema().indexOf(leftAttr);
         rightAttrIndex = getRight().getSchema().indexOf(rightAttr);
 
-        currentLeftBatchIndex = 0; // keeps track of the ith left batch index
-        currentRightBufferIteration = 0; // keeps track of the ith right buffer iteration
-        leftTablePointer = 0;
-        rightTablePointer = 0;
-
         leftTable = new ExternalSort(left, numBuff, leftAttrIndex, leftTableName);
         rightTable = new ExternalSort(right, numBuff, rightAttrIndex, rightTableName);
-
-
-        if (!leftTable.open() || !rightTable.open()) {
+        int numThreads = Exchange.getDefaultDegree();
+        leftTable.setNumThreads(numThreads);
+        rightTable.setNumThreads(numThreads);
+        leftTable.setRunGeneration(runGeneration(numBuff, numThreads));
+        rightTable.setRunGeneration(runGeneration(numBuff, numThreads));
+        leftTable.setFinalFanIn(finalFanIn(numBuff, pipelined));
+        rightTable.setFinalFanIn(finalFanIn(numBuff, pipelined));
+
+        /*
+         * The right table is sorted first, so that its join values are passed to the left
+         * table and only the left tuples that may join are written to the runs. The final
+         * merge of a sort is only opened when it is first read, so each sort has all the
+         * buffers while it runs and the two final merges then share them
+         */
+        startBuildKeys();
+        rightTable.setKeyBuilder(buildkeys);
+        if (!rightTable.open()) {
             System.err.println("SortMergeJoin: Error in opening tables");
             return false;
         }
-
-        // file name ends with 0.0 (have to double check with what is created in directory
-        try {
-            inputLeft = new ObjectInputStream(new FileInputStream(leftTableName + "0.0"));
-            inputRight = new ObjectInputStream(new FileInputStream(rightTableName + "0.0"));
-        } catch (IOException io) {
-            System.err.println("SortMergeJoin: Error in reading in input files");
-            System.exit(1);
+        pushBuildKeys();
+        if (!leftTable.open()) {
+            System.err.println("SortMergeJoin: Error in opening tables");
+            return false;
         }
 
-        initialize();
+        leftBatch = null;
+        rightBatch = null;
+        leftCursor = 0;
+        rightCursor = 0;
+        rightGroup = new ArrayList<>();
+        groupCursor = 0;
+        inGroup = false;
+
+        leftTuple = nextLeftTuple();
+        rightTuple = nextRightTuple();
+        eos = false;
         return true;
     }
 
@@ -108,342 +147,102 @@ public class SortMergeJoin extends Join {
      * @return a batch of tuple result pair
      */
     public Batch next() {
-
-        outputBatch = new Batch(batchSize);
-
-        if (endOfLeftTable() || endOfRightTable()) {
-
-        } else {
-            Tuple rightTuple = loadNextRightTuple(rightTablePointer);
-            Tuple leftTuple = loadNextLeftTuple(leftTablePointer);
-
-            // always check for EOF
-            while (!(outputBatch.isFull() || endOfLeftTable() || endOfRightTable())) {
-
-                if (leftIsGreaterThanRight(leftTuple, rightTuple)) {
-                    rightTablePointer++;
-
-                    if (endOfRightTable()) {
-                        break;
-                    }
-                    rightTuple = loadNextRightTuple(rightTablePointer);
-
-                } else if (rightIsGreaterThanLeft(leftTuple, rightTuple)) {
-                    leftTablePointer++;
-
-                    if (endOfLeftTable()) {
-                        break;
-                    }
-                    leftTuple = loadNextLeftTuple(leftTablePointer);
-
-                } else {
-
-                    combineTuplesIntoOutput(leftTuple, rightTuple, outputBatch);
-
-                    if (outputBatch.isFull()) {
-                        int testLeft = leftTablePointer + 1;
-
-                        Tuple testLeftTuple = loadNextLeftTuple(testLeft);
-                        if (leftIsEqualToRight(testLeftTuple,rightTuple)) {
-                            leftTablePointer++;
-                        } else {
-                            rightTablePointer++;
-                        }
-                        return outputBatch;
-                    }
-                    rightTablePointer++;
-
-                    if (endOfRightTable()) {
-                        break;
-                    }
-                    rightTuple = loadNextRightTuple(rightTablePointer);
-
-                    while (!endOfRightTable() && !endOfLeftTable() && leftIsEqualToRight(leftTuple, rightTuple)) {
-
-                        combineTuplesIntoOutput(leftTuple, rightTuple, outputBatch);
-
-                        if (outputBatch.isFull()) {
-                            int testLeft = leftTablePointer + 1;
-
-                            Tuple testLeftTuple = loadNextLeftTuple(testLeft);
-                            if (leftIsEqualToRight(testLeftTuple,rightTuple)) {
-                                leftTablePointer++;
-                            } else {
-                                rightTablePointer++;
-                            }
-                            return outputBatch;
-                        }
-                        rightTablePointer++;
-
-                        if (endOfRightTable()) {
-                            break;
-                        }
-
-                        rightTuple = loadNextRightTuple(rightTablePointer);
-
-                    }
-
-                    leftTablePointer++;
-                    leftTuple = loadNextLeftTuple(leftTablePointer);
-
-                    while (!endOfRightTable() && !endOfLeftTable() && leftIsEqualToRight(leftTuple, rightTuple)) {
-
-                        combineTuplesIntoOutput(leftTuple, rightTuple, outputBatch);
-
-                        if (outputBatch.isFull()) {
-                            int testLeft = leftTablePointer + 1;
-
-                            Tuple testLeftTuple = loadNextLeftTuple(testLeft);
-                            if (leftIsEqualToRight(testLeftTuple,rightTuple)) {
-                                leftTablePointer++;
-                            } else {
-                                rightTablePointer++;
-                            }
-                            return outputBatch;
-                        }
-                        leftTablePointer++;
-
-                        if (endOfLeftTable()) {
-                            break;
-                        }
-
-                        leftTuple = loadNextLeftTuple(leftTablePointer);
-
-                    }
-                    if (endOfRightTable() || endOfLeftTable()) {
-                        break;
-                    }
-                }
-            }
-        }
-        if (outputBatch.isEmpty()) {
+        if (eos) {
+            close();
             return null;
-        } else {
-            return outputBatch;
         }
-    }
-
-    public boolean close() {
-        return (left.close() && right.close());
-    }
 
-    private boolean leftIsGreaterThanRight(Tuple leftTuple, Tuple rightTuple) {
-        int comparison = Tuple.compareTuples(leftTuple, rightTuple, leftAttrIndex, rightAttrIndex);
-
-        return comparison > 0;
-    }
+        Batch outputBatch = new Batch(batchSize);
 
-    private boolean rightIsGreaterThanLeft(Tuple leftTuple, Tuple rightTuple) {
-
-        int comparison = Tuple.compareTuples(leftTuple, rightTuple, leftAttrIndex, rightAttrIndex);
-
-        return comparison < 0;
-
-    }
-
-    private boolean leftIsEqualToRight(Tuple leftTuple, Tuple rightTuple) {
-
-        int comparison = Tuple.compareTuples(leftTuple, rightTuple, leftAttrIndex, rightAttrIndex);
-
-        return comparison == 0;
-
-    }
-
-    private void combineTuplesIntoOutput(Tuple leftTuple, Tuple rightTuple, Batch outputBatch) {
-        Tuple combine = leftTuple.joinWith(rightTuple);
-        outputBatch.add(combine);
-    }
-
-    private boolean endOfLeftTable() {
-
-        try {
-            loadNextLeftTuple(leftTablePointer);
-            return false;
-        } catch (IndexOutOfBoundsException ie) {
-            return true;
-        }
-    }
-
-    private boolean endOfRightTable() {
-
-        try {
-            loadNextRightTuple(rightTablePointer);
-            return false;
-        } catch (IndexOutOfBoundsException ie) {
-            return true;
-        }
-    }
-
-    private Tuple loadNextLeftTuple(int index) {
-        int batchIndex, tupleIndexInBatch;
-
-        batchIndex = index / leftBatchSize; // access the ith batch that contains the tuple
-        tupleIndexInBatch = index % leftBatchSize; // access the exact location of the tuple in the batch
-
-        leftBatch = readLeftBatch(batchIndex);
-
-        if (batchIndex != currentLeftBatchIndex) {
-            currentLeftBatchIndex++;
-        }
-        if (leftBatch == null) {
-            return null;
-        }
-
-        return leftBatch.elementAt(tupleIndexInBatch);
-    }
-
-    private Tuple loadNextRightTuple(int index) {
-        int batchIndex, tupleIndexInBatch, bufferIteration;
-
-        batchIndex = index / rightBatchSize; // batchIndex is the ith batch in buffer that the tuple is located
-
-
-        tupleIndexInBatch = index % rightBatchSize;
-        bufferIteration = batchIndex / (numBuff - 2); // a number of buffers exist in 1 iteration.
+        while (!outputBatch.isFull()) {
+            if (inGroup) {
+                if (groupCursor < rightGroup.size()) {
+                    outputBatch.add(leftTuple.joinWith(rightGroup.get(groupCursor)));
+                    groupCursor++;
+                    continue;
+                }
+                /** the left tuple is joined with the whole group, move to the next left tuple
+                 ** which joins with the same group if it has the same join value
+                 **/
+                Tuple previous = leftTuple;
+                leftTuple = nextLeftTuple();
+                groupCursor = 0;
+                if (leftTuple == null || Tuple.compareTuples(leftTuple, previous, leftAttrIndex) != 0) {
+                    inGroup = false;
+                }
+                continue;
+            }
 
+            if (leftTuple == null || rightTuple == null) {
+                eos = true;
+                break;
+            }
 
-        if (bufferIteration != currentRightBufferIteration) {
-            currentRightBufferIteration++;
+            int comparison = Tuple.compareTuples(leftTuple, rightTuple, leftAttrIndex, rightAttrIndex);
+            if (comparison < 0) {
+                leftTuple = nextLeftTuple();
+            } else if (comparison > 0) {
+                rightTuple = nextRightTuple();
+            } else {
+                loadRightGroup();
+                inGroup = true;
+                groupCursor = 0;
+            }
         }
 
-        Batch output = readRightBuffer(batchIndex, bufferIteration); // outputs the buffer in the array of buffers(batches)
-        rightOutputBatch = output;
-
-        if (output == null) {
+        if (outputBatch.isEmpty()) {
+            close();
             return null;
         }
-
-        return rightOutputBatch.elementAt(tupleIndexInBatch);
+        return outputBatch;
     }
 
-    private Batch readLeftBatch(int batchIndex) {
-        Batch output = new Batch(leftBatchSize);
-
-        if (currentLeftBatchIndex == batchIndex) {
-            return leftBatch;
-        } else {
-
-            try {
-                output = (Batch) inputLeft.readObject();
-            } catch (EOFException eof) {
-
-                try {
-                    inputLeft.close();
-                    File inputFile = new File(leftTableName + "0.0");
-                    inputFile.delete();
-                } catch (IOException io) {
-                    System.err.println("SortMergeJoin: Error in reading left batches" + io);
-                    System.exit(1);
-                }
-            } catch (ClassNotFoundException ce) {
-                System.err.println("SortMergeJoin: Error in reading left batches" + ce);
-                System.exit(1);
-            } catch (IOException io) {
-                return null;
-            }
+    public boolean close() {
+        if (leftTable != null) {
+            leftTable.close();
         }
-        return output;
-    }
-
-    private Batch readRightBuffer(int batchIndex, int bufferIteration) {
-        Batch output;
-        if (bufferIteration == currentRightBufferIteration) {
-            return rightBuffer.get(batchIndex % (numBuff - 2));
-        } else {
-            rightBuffer.clear();
-            for (int i = 0; i < (numBuff - 2); i++) {
-                try {
-                    Batch batch = (Batch) inputRight.readObject();
-
-                    if (batch == null) {
-                        break;
-                    }
-                    rightBuffer.add(batch);
-                }
-                catch (EOFException eof) {
-                    try {
-                        inputRight.close();
-                        File inputFile = new File(rightTableName + "0.0");
-                        inputFile.delete();
-                    } catch (IOException io) {
-                        System.err.println("SortMergeJoin: Error in reading right batches" + io);
-                        System.exit(1);
-                    }
-                } catch (ClassNotFoundException ce) {
-                    System.err.println("SortMergeJoin: Error in reading right batches" + ce);
-                    System.exit(1);
-                } catch (IOException io) {
-                    return null;
-                }
-            }
-            currentRightBufferIteration++;
-            output = rightBuffer.get(batchIndex % (numBuff - 2));
+        if (rightTable != null) {
+            rightTable.close();
         }
-
-        return output;
+        return true;
     }
 
     /**
-     * initialize buffers before proceeding with merging
+     * Collects the right tuples with the same join value as rightTuple,
+     * leaving rightTuple on the first tuple after them
      */
-    private void initialize() {
-        initializeLeftBatch();
-        initializeRightBuffer();
+    private void loadRightGroup() {
+        rightGroup.clear();
+        Tuple first = rightTuple;
+        while (rightTuple != null && Tuple.compareTuples(rightTuple, first, rightAttrIndex) == 0) {
+            rightGroup.add(rightTuple);
+            rightTuple = nextRightTuple();
+        }
     }
 
-    private void initializeLeftBatch() {
-
-        try {
-            leftBatch = (Batch) inputLeft.readObject();
-
+    private Tuple nextLeftTuple() {
+        while (leftBatch == null || leftCursor >= leftBatch.size()) {
+            leftBatch = leftTable.next();
+            leftCursor = 0;
             if (leftBatch == null) {
-                return;
-            }
-        } catch (EOFException eof) {
-
-            try {
-                inputLeft.close();
-                File inputFile = new File(leftTableName + "0.0");
-                inputFile.delete();
-            } catch (IOException io) {
-                System.err.println("SortMergeJoin: Error in reading left batches" + io);
-                System.exit(1);
+                return null;
             }
-        } catch (ClassNotFoundException ce) {
-            System.err.println("SortMergeJoin: Error in reading left batches" + ce);
-            System.exit(1);
-        } catch (IOException io) {
-            return;
         }
+        Tuple next = leftBatch.elementAt(leftCursor);
+        leftCursor++;
+        return next;
     }
 
-    private void initializeRightBuffer() {
-        for (int i = 0; i < (numBuff - 2); i++) {
-            try {
-                Batch batch = (Batch) inputRight.readObject();
-
-                if (batch == null) {
-                    break;
-                }
-
-                rightBuffer.add(batch);
-
-            } catch (EOFException eof) {
-                try {
-                    inputRight.close();
-                    File inputFile = new File(rightTableName + "0.0");
-                    inputFile.delete();
-                } catch (IOException io) {
-                    System.err.println("SortMergeJoin: Error in reading right batches" + io);
-                    System.exit(1);
-                }
-            } catch (ClassNotFoundException ce) {
-                System.err.println("SortMergeJoin: Error in reading right batches" + ce);
-                System.exit(1);
-            } catch (IOException io) {
-                return;
+    private Tuple nextRightTuple() {
+        while (rightBatch == null || rightCursor >= rightBatch.size()) {
+            rightBatch = rightTable.next();
+            rightCursor = 0;
+            if (rightBatch == null) {
+                return null;
             }
         }
+        Tuple next = rightBatch.elementAt(rightCursor);
+        rightCursor++;
+        return next;
     }
 }
-
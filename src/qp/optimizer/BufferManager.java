@@ -4,6 +4,8 @@ all the join operators
 
 package qp.optimizer;
 
+import qp.utils.BufferPool;
+
 
 public class BufferManager{
 
@@ -12,15 +14,33 @@ public class BufferManager{
 
     static int buffPerJoin;
 
+    /** pool of numBuffer frames shared by the operators that
+     ** read pages of temporary files again and again
+     **/
+    static BufferPool pool;
+
 
     public BufferManager(int numBuffer, int numJoin){
+	this(numBuffer,numJoin,BufferPool.LRU);
+    }
+
+    public BufferManager(int numBuffer, int numJoin, int policy){
 	this.numBuffer = numBuffer;
 	this.numJoin = numJoin;
 	buffPerJoin = numBuffer/numJoin;
+	pool = new BufferPool(Math.max(numBuffer,1),policy);
     }
 
     public static int getBuffersPerJoin(){
 	return buffPerJoin;
     }
 
+    public static BufferPool getBufferPool(){
+	if(pool == null){
+	    /** no buffers were given for the query **/
+	    pool = new BufferPool(Math.max(numBuffer,3),BufferPool.LRU);
+	}
+	return pool;
+    }
+
 }
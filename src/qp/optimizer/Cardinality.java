@@ -0,0 +1,395 @@
+/** estimates the number of tuples in the results of the operators **/
+
+package qp.optimizer;
+
+import qp.utils.*;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * Cardinality estimation for a plan, from its leaves to its root. For
+ * every attribute of the results estimated so far it keeps the number
+ * of distinct values in the current result and, for the attributes of
+ * analyzed tables, the distribution of the values in the table. The
+ * attributes are identified by their table, column and aggregate, not
+ * by the Attribute object, as the plans are cloned.
+ *
+ * Selections: the conditions on one attribute are combined into one
+ * range, so that a<10 and a>5 are not taken as independent; conditions
+ * on different attributes of the same tuple are often correlated, and
+ * their selectivities are combined with exponential backoff, the most
+ * selective fully, the next one with its square root, and so on.
+ *
+ * Joins: the equi-join of two attributes matches the common values of
+ * their distributions if both are known, and otherwise assumes that the
+ * values of the attribute with fewer distinct values are all among the
+ * values of the other (containment). Several conditions between the
+ * same inputs are combined with backoff as for selections. After a
+ * join both attributes have the smaller number of distinct values, and
+ * the other attributes keep the distinct values of the tuples that
+ * survive, as given by distinctAfter.
+ */
+
+public class Cardinality{
+
+    Hashtable distinct;   // Number of distinct values of each attribute in the current result
+    Hashtable columns;    // Distribution of each attribute in its table, if analyzed
+
+
+    public Cardinality(){
+	distinct = new Hashtable();
+	columns = new Hashtable();
+    }
+
+
+    /** The key of the attribute in the tables **/
+
+    public static String keyOf(Attribute attr){
+	String key = attr.getTabName()+"."+attr.getColName();
+	if(attr.isAggregate()){
+	    key = Attribute.aggName(attr.getAggType())+"("+key+")";
+	}
+	return key;
+    }
+
+
+    /** number of distinct values of the attribute, -1 if not known **/
+
+    public int getDistinct(Attribute attr){
+	Integer d = (Integer) distinct.get(keyOf(attr));
+	return (d == null) ? -1 : d.intValue();
+    }
+
+    public void setDistinct(Attribute attr, int numdistinct){
+	distinct.put(keyOf(attr),Integer.valueOf(numdistinct));
+    }
+
+    /** distribution of the attribute in its table, null if not known **/
+
+    public ColumnStats getColumn(Attribute attr){
+	return (ColumnStats) columns.get(keyOf(attr));
+    }
+
+    public void setColumn(Attribute attr, ColumnStats stats){
+	if(stats != null){
+	    columns.put(keyOf(attr),stats);
+	}
+    }
+
+
+    /** the table with the given statistics; returns its number of tuples **/
+
+    public int scan(Schema schema, Catalog.TableStats stats){
+	for(int i=0;i<schema.getNumCols();i++){
+	    Attribute attr = schema.getAttribute(i);
+	    setDistinct(attr,stats.getDistinct(i));
+	    setColumn(attr,stats.getColumn(i));
+	}
+	return stats.getNumTuples();
+    }
+
+
+    /** Selection of the intuples tuples of the schema on the conditions,
+     ** all of which hold; returns the number of tuples selected
+     **/
+
+    public int select(Schema schema, Vector conditions, int intuples){
+	if(intuples <= 0){
+	    return 0;
+	}
+	/** the conditions grouped on their attribute **/
+	Vector keys = new Vector();
+	Vector groups = new Vector();
+	for(int i=0;i<conditions.size();i++){
+	    Condition con = (Condition) conditions.elementAt(i);
+	    String key = keyOf(con.getLhs());
+	    int g = keys.indexOf(key);
+	    if(g == -1){
+		keys.add(key);
+		groups.add(new Vector());
+		g = keys.size()-1;
+	    }
+	    ((Vector) groups.elementAt(g)).add(con);
+	}
+
+	double[] sels = new double[keys.size()];
+	for(int g=0;g<keys.size();g++){
+	    Vector group = (Vector) groups.elementAt(g);
+	    Attribute attr = ((Condition) group.elementAt(0)).getLhs();
+	    sels[g] = attributeSelectivity(attr,group);
+	}
+	double sel = backoff(sels);
+	int outtuples = (int) Math.ceil(intuples*sel);
+
+	/** the distinct values of the selected tuples **/
+	for(int i=0;i<schema.getNumCols();i++){
+	    Attribute attr = schema.getAttribute(i);
+	    int d = getDistinct(attr);
+	    if(d < 0){
+		continue;
+	    }
+	    int g = keys.indexOf(keyOf(attr));
+	    int newd;
+	    if(g != -1){
+		/** the values of the attribute that satisfy its conditions **/
+		newd = (int) Math.ceil(d*sels[g]);
+		if(isEquality((Vector) groups.elementAt(g))){
+		    newd = 1;
+		}
+	    }else{
+		newd = distinctAfter(d,intuples,outtuples);
+	    }
+	    setDistinct(attr,Math.max(outtuples == 0 ? 0 : 1,Math.min(newd,outtuples)));
+	}
+	return outtuples;
+    }
+
+
+    /** Equi-join of lefttuples tuples of the left schema with righttuples
+     ** tuples of the right schema on the conditions; returns the number
+     ** of tuples in the result
+     **/
+
+    public int join(Schema leftschema, Schema rightschema, Vector conditions, int lefttuples, int righttuples){
+	if(lefttuples <= 0 || righttuples <= 0){
+	    return 0;
+	}
+	double[] sels = new double[conditions.size()];
+	for(int i=0;i<conditions.size();i++){
+	    sels[i] = joinSelectivity((Condition) conditions.elementAt(i));
+	}
+	double sel = backoff(sels);
+	int outtuples = (int) Math.min(Integer.MAX_VALUE-1,Math.ceil(((double) lefttuples)*righttuples*sel));
+
+	/** tuples of each input with a match in the other, assuming
+	 ** containment on the most selective condition
+	 **/
+	Condition first = (Condition) conditions.elementAt(0);
+	int dl = Math.max(1,getDistinct(first.getLhs()));
+	int dr = Math.max(1,getDistinct((Attribute) first.getRhs()));
+	int leftmatched = (int) Math.min(outtuples,Math.ceil(lefttuples*Math.min(1.0,((double) dr)/dl)));
+	int rightmatched = (int) Math.min(outtuples,Math.ceil(righttuples*Math.min(1.0,((double) dl)/dr)));
+
+	for(int i=0;i<leftschema.getNumCols();i++){
+	    Attribute attr = leftschema.getAttribute(i);
+	    int d = getDistinct(attr);
+	    if(d >= 0){
+		setDistinct(attr,Math.min(distinctAfter(d,lefttuples,leftmatched),Math.max(1,outtuples)));
+	    }
+	}
+	for(int i=0;i<rightschema.getNumCols();i++){
+	    Attribute attr = rightschema.getAttribute(i);
+	    int d = getDistinct(attr);
+	    if(d >= 0){
+		setDistinct(attr,Math.min(distinctAfter(d,righttuples,rightmatched),Math.max(1,outtuples)));
+	    }
+	}
+	/** the joined attributes have the values common to both **/
+	for(int i=0;i<conditions.size();i++){
+	    Condition con = (Condition) conditions.elementAt(i);
+	    Attribute leftattr = con.getLhs();
+	    Attribute rightattr = (Attribute) con.getRhs();
+	    int common = Math.min(Math.max(0,getDistinct(leftattr)),Math.max(0,getDistinct(rightattr)));
+	    common = Math.min(common,Math.max(1,outtuples));
+	    setDistinct(leftattr,common);
+	    setDistinct(rightattr,common);
+	}
+	return outtuples;
+    }
+
+
+    /** Number of combinations of the values of the attributes in the
+     ** intuples tuples, as for a grouping or a duplicate elimination
+     **/
+
+    public int combinations(Vector attrs, int intuples){
+	double combinations = 1;
+	for(int i=0;i<attrs.size();i++){
+	    int d = getDistinct((Attribute) attrs.elementAt(i));
+	    if(d > 0){
+		combinations = combinations*d;
+	    }
+	}
+	return (int) Math.min((double) intuples,combinations);
+    }
+
+
+    /** Distinct values of an attribute with d distinct values in n
+     ** tuples, in k of the tuples chosen at random: each value is in
+     ** n/d tuples, and is missed with probability (1-k/n)^(n/d)
+     **/
+
+    public static int distinctAfter(int d, int n, int k){
+	if(k >= n || d <= 0){
+	    return d;
+	}
+	if(k <= 0){
+	    return 0;
+	}
+	double missed = Math.pow(1.0 - ((double) k)/n,((double) n)/d);
+	return (int) Math.max(1,Math.min(k,Math.ceil(d*(1.0 - missed))));
+    }
+
+
+    /** The selectivities combined with exponential backoff: the smallest
+     ** fully, the next with its square root, the next with its fourth
+     ** root and so on
+     **/
+
+    static double backoff(double[] sels){
+	double[] sorted = sels.clone();
+	Arrays.sort(sorted);
+	double sel = 1.0;
+	double exponent = 1.0;
+	for(int i=0;i<sorted.length;i++){
+	    sel = sel*Math.pow(sorted[i],exponent);
+	    exponent = exponent/2;
+	}
+	return sel;
+    }
+
+
+    private static boolean isEquality(Vector group){
+	for(int i=0;i<group.size();i++){
+	    if(((Condition) group.elementAt(i)).getExprType() == Condition.EQUAL){
+		return true;
+	    }
+	}
+	return false;
+    }
+
+
+    /** Fraction of the tuples satisfying all the conditions on the
+     ** attribute. With the distribution of the attribute the conditions
+     ** make one range of values; without it a condition selects one in
+     ** d values, all but one of d values, or half of the tuples
+     **/
+
+    double attributeSelectivity(Attribute attr, Vector group){
+	ColumnStats stats = getColumn(attr);
+	if(stats == null){
+	    return distinctSelectivity(attr,group);
+	}
+
+	/** the range [low, high] of the values, and the values excluded **/
+	Object low = null, high = null;
+	boolean lowincl = true, highincl = true;
+	Vector excluded = new Vector();
+	for(int i=0;i<group.size();i++){
+	    Condition con = (Condition) group.elementAt(i);
+	    Object value = (con.getRhs() instanceof String) ? stats.valueOf((String) con.getRhs()) : null;
+	    if(value == null){
+		return distinctSelectivity(attr,group);
+	    }
+	    int type = con.getExprType();
+	    if(type == Condition.NOTEQUAL){
+		excluded.add(value);
+		continue;
+	    }
+	    if(type == Condition.EQUAL || type == Condition.GREATERTHAN || type == Condition.GTOE){
+		boolean incl = (type != Condition.GREATERTHAN);
+		int cmp = (low == null) ? 1 : compare(value,low);
+		if(cmp > 0 || (cmp == 0 && !incl)){
+		    low = value;
+		    lowincl = incl;
+		}
+	    }
+	    if(type == Condition.EQUAL || type == Condition.LESSTHAN || type == Condition.LTOE){
+		boolean incl = (type != Condition.LESSTHAN);
+		int cmp = (high == null) ? -1 : compare(value,high);
+		if(cmp < 0 || (cmp == 0 && !incl)){
+		    high = value;
+		    highincl = incl;
+		}
+	    }
+	}
+
+	double sel;
+	if(low != null && high != null && compare(low,high) == 0 && lowincl && highincl){
+	    sel = stats.selectivity(Condition.EQUAL,low);
+	}else if(low != null && high != null && compare(low,high) >= 0){
+	    sel = 0;
+	}else{
+	    /** the tuples not null, less those below low and above high **/
+	    sel = 1.0 - stats.nullFraction();
+	    if(low != null){
+		sel -= stats.selectivity(lowincl ? Condition.LESSTHAN : Condition.LTOE,low);
+	    }
+	    if(high != null){
+		sel -= stats.selectivity(highincl ? Condition.GREATERTHAN : Condition.GTOE,high);
+	    }
+	}
+	for(int i=0;i<excluded.size();i++){
+	    Object value = excluded.elementAt(i);
+	    boolean inrange = (low == null || compare(value,low) > 0 || (lowincl && compare(value,low) == 0))
+		&& (high == null || compare(value,high) < 0 || (highincl && compare(value,high) == 0));
+	    if(inrange){
+		sel -= stats.selectivity(Condition.EQUAL,value);
+	    }
+	}
+	return Math.max(0,Math.min(1.0,sel));
+    }
+
+
+    /** selectivity of the conditions from the number of distinct values
+     ** of the attribute alone
+     **/
+
+    private double distinctSelectivity(Attribute attr, Vector group){
+	int d = Math.max(1,getDistinct(attr));
+	double sel = 1.0;
+	for(int i=0;i<group.size();i++){
+	    Condition con = (Condition) group.elementAt(i);
+	    switch(con.getExprType()){
+	    case Condition.EQUAL:
+		sel = sel/d;
+		break;
+	    case Condition.NOTEQUAL:
+		sel = sel*(1.0 - 1.0/d);
+		break;
+	    default:
+		sel = sel*0.5;
+		break;
+	    }
+	}
+	return sel;
+    }
+
+
+    /** Fraction of the pairs of tuples satisfying the join condition **/
+
+    double joinSelectivity(Condition con){
+	Attribute leftattr = con.getLhs();
+	Attribute rightattr = (Attribute) con.getRhs();
+	ColumnStats leftstats = getColumn(leftattr);
+	ColumnStats rightstats = getColumn(rightattr);
+	int dl = Math.max(1,getDistinct(leftattr));
+	int dr = Math.max(1,getDistinct(rightattr));
+	double sel;
+	if(con.getExprType() != Condition.EQUAL){
+	    /** as for a selection on a constant **/
+	    sel = (con.getExprType() == Condition.NOTEQUAL) ? 1.0 - 1.0/Math.max(dl,dr) : 0.5;
+	}else if(leftstats != null && rightstats != null){
+	    sel = ColumnStats.joinSelectivity(leftstats,rightstats);
+	    /** the distributions are of the tables; the inputs may hold
+	     ** fewer values after selections
+	     **/
+	    double tablesel = 1.0/Math.max(Math.max(1,leftstats.getNumDistinct()),Math.max(1,rightstats.getNumDistinct()));
+	    double inputsel = 1.0/Math.max(dl,dr);
+	    sel = sel*inputsel/tablesel;
+	}else{
+	    sel = 1.0/Math.max(dl,dr);
+	}
+	return Math.max(0,Math.min(1.0,sel));
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static int compare(Object a, Object b){
+	if(a instanceof Number && b instanceof Number){
+	    return Double.compare(((Number) a).doubleValue(),((Number) b).doubleValue());
+	}
+	return ((Comparable<Object>) a).compareTo(b);
+    }
+}
@@ -0,0 +1,228 @@
+/** the system catalog: statistics of the tables **/
+
+package qp.optimizer;
+
+import qp.utils.ColumnStats;
+import java.util.Hashtable;
+import java.util.StringTokenizer;
+import java.io.*;
+
+/**
+ * Statistics of the tables. The system catalog, the file SYSTEM_CATALOG
+ * in the directory of the tables, holds the statistics of the analyzed
+ * tables: for every column its distribution, as a ColumnStats. A table
+ * that is not in the system catalog has only the number of tuples and
+ * the number of distinct values of each column, read from its
+ * <tablename>.stat file.
+ *
+ * The files are read the first time a table is looked up and again only
+ * when they have been modified since; the optimizer costs many plans on
+ * the same tables, and so does not parse the files for every plan. The
+ * version is increased whenever the statistics of a table are (re)read
+ * or stored, so that results computed from older statistics can be told
+ * apart.
+ */
+
+public class Catalog{
+
+    public static final String SYSTEM_CATALOG = "system.cat";
+
+
+    /** Statistics of one table **/
+
+    public static class TableStats implements Serializable{
+	private static final long serialVersionUID = 1L;
+
+	int numtuples;           // Number of tuples in the table
+	int[] distinct;          // Number of distinct values of each column
+	ColumnStats[] columns;   // Distribution of each column, null if not analyzed
+	int numpages;            // Number of pages of the table file, 0 if not known
+	int pagesize;            // Size of these pages
+	transient long modified; // Time the .stat file was last modified
+
+	TableStats(){
+	}
+
+	public TableStats(int numtuples, ColumnStats[] columns){
+	    this.numtuples = numtuples;
+	    this.columns = columns;
+	    distinct = new int[columns.length];
+	    for(int i=0;i<columns.length;i++){
+		distinct[i] = columns[i].getNumDistinct();
+	    }
+	}
+
+	public int getNumTuples(){
+	    return numtuples;
+	}
+
+	public int getNumCols(){
+	    return distinct.length;
+	}
+
+	/** the table file is in numpages pages of pagesize bytes **/
+
+	public void setPages(int numpages, int pagesize){
+	    this.numpages = numpages;
+	    this.pagesize = pagesize;
+	}
+
+	/** number of pages of the table when read in pages of the
+	 ** given size, 0 if not known
+	 **/
+
+	public int getNumPages(int pagesize){
+	    return (pagesize == this.pagesize) ? numpages : 0;
+	}
+
+	public int getDistinct(int col){
+	    return distinct[col];
+	}
+
+	/** the distribution of the column, null if not known **/
+
+	public ColumnStats getColumn(int col){
+	    return (columns == null) ? null : columns[col];
+	}
+    }
+
+
+    static Hashtable tables = new Hashtable();    // Statistics read from .stat files
+    static Hashtable analyzed = new Hashtable();  // Contents of the system catalog
+    static long catalogmodified = 0;              // Time the system catalog was read
+    static int version = 0;
+
+
+    /** the statistics of the table, from the system catalog if it has
+     ** them and otherwise from the .stat file. numcols is the number of
+     ** columns of the table; exits on a missing or malformed .stat file
+     ** as before
+     **/
+
+    public static synchronized TableStats lookup(String tablename, int numcols){
+	readSystemCatalog();
+	TableStats stats = (TableStats) analyzed.get(tablename);
+	if(stats != null && stats.getNumCols() == numcols){
+	    return stats;
+	}
+
+	String filename = tablename+".stat";
+	long modified = new File(filename).lastModified();
+	stats = (TableStats) tables.get(tablename);
+	if(stats != null && stats.modified == modified && stats.distinct.length == numcols){
+	    return stats;
+	}
+	stats = read(filename,numcols);
+	stats.modified = modified;
+	tables.put(tablename,stats);
+	version++;
+	return stats;
+    }
+
+
+    /** stores the statistics of the table in the system catalog **/
+
+    public static synchronized void store(String tablename, TableStats stats) throws IOException{
+	readSystemCatalog();
+	analyzed.put(tablename,stats);
+	ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(SYSTEM_CATALOG));
+	out.writeObject(analyzed);
+	out.close();
+	catalogmodified = new File(SYSTEM_CATALOG).lastModified();
+	version++;
+    }
+
+
+    /** forgets the statistics of the table, e.g. after it is changed **/
+
+    public static synchronized void invalidate(String tablename){
+	if(tables.remove(tablename) != null){
+	    version++;
+	}
+    }
+
+
+    public static synchronized int getVersion(){
+	return version;
+    }
+
+
+    /** reads the system catalog unless it is unchanged since it was
+     ** last read. A catalog that cannot be read is left out
+     **/
+
+    private static void readSystemCatalog(){
+	File file = new File(SYSTEM_CATALOG);
+	long modified = file.lastModified();
+	if(modified == catalogmodified){
+	    return;
+	}
+	catalogmodified = modified;
+	analyzed = new Hashtable();
+	version++;
+	if(!file.exists()){
+	    return;
+	}
+	try{
+	    ObjectInputStream in = new ObjectInputStream(new FileInputStream(file));
+	    analyzed = (Hashtable) in.readObject();
+	    in.close();
+	}catch(Exception e){
+	    System.out.println("Catalog: error in reading "+SYSTEM_CATALOG+", using the .stat files");
+	}
+    }
+
+
+    /** The first line of the file is the number of tuples, the second
+     ** the number of distinct values of each column
+     **/
+
+    private static TableStats read(String filename, int numcols){
+	TableStats stats = new TableStats();
+	BufferedReader in=null;
+	try{
+	    in = new BufferedReader(new FileReader(filename));
+	}catch(IOException io){
+	    System.out.println("Error in opening file"+filename);
+	    System.exit(1);
+	}
+	String line=null;
+
+	try{
+	    line = in.readLine();
+	}catch(IOException io){
+	    System.out.println("Error in readin first line of "+filename);
+	    System.exit(1);
+	}
+	StringTokenizer tokenizer = new StringTokenizer(line);
+	if(tokenizer.countTokens() != 1){
+	    System.out.println("incorrect format of statastics file "+filename);
+	    System.exit(1);
+	}
+	stats.numtuples = Integer.parseInt(tokenizer.nextToken());
+
+	try{
+	    line = in.readLine();
+	}catch(IOException io){
+	    System.out.println("error in reading second line of "+filename);
+	    System.exit(1);
+	}
+	tokenizer = new StringTokenizer(line);
+	if(tokenizer.countTokens() != numcols){
+	    System.out.println("incorrect format of statastics file "+filename);
+	    System.exit(1);
+	}
+	stats.distinct = new int[numcols];
+	for(int i=0;i<numcols;i++){
+	    stats.distinct[i] = Integer.parseInt(tokenizer.nextToken());
+	}
+
+	try{
+	    in.close();
+	}catch(IOException io){
+	    System.out.println("error in closing the file "+filename);
+	    System.exit(1);
+	}
+	return stats;
+    }
+}
@@ -0,0 +1,157 @@
+/** performs dynamic programming optimization of the join order **/
+
+
+package qp.optimizer;
+
+import qp.utils.*;
+import qp.operators.*;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * Selinger style bottom-up optimizer. The tables of the query are
+ * numbered and every set of tables is a bitmask; for every set that the
+ * join conditions connect, the cheapest plan joining its tables is kept.
+ * The plans of a set are made by splitting it into two connected sets in
+ * every way, joining their best plans with every join type, and costing
+ * the result with PlanCost. Both sides of a split may be joins, so bushy
+ * plans are found as well as left-deep ones, and the plans do not depend
+ * on any random choice.
+ *
+ * The scans and selections of the tables, the grouping and the
+ * projection are made as for RandomOptimizer. A query with more than
+ * MAXTABLES tables, or whose join conditions do not form a tree over its
+ * tables, is left to RandomOptimizer.
+ */
+
+public class DynamicOptimizer{
+
+    /** Largest number of tables whose join order is enumerated **/
+
+    public static final int MAXTABLES = 12;
+
+
+    SQLQuery sqlquery;
+
+
+    public DynamicOptimizer(SQLQuery sqlquery){
+	this.sqlquery = sqlquery;
+    }
+
+
+    /** returns the cheapest plan of the query **/
+
+    public Operator getOptimizedPlan(){
+	Vector fromlist = sqlquery.getFromList();
+	Vector joinlist = sqlquery.getJoinList();
+	int numtab = fromlist.size();
+	if(numtab > MAXTABLES || joinlist.size() != numtab-1){
+	    return new RandomOptimizer(sqlquery).getOptimizedPlan();
+	}
+
+	RandomInitialPlan rip = new RandomInitialPlan(sqlquery);
+	Hashtable access = rip.prepareAccessPlans();
+
+	/** the tables of the two sides of every join condition **/
+	int[] lhsof = new int[joinlist.size()];
+	int[] rhsof = new int[joinlist.size()];
+	for(int i=0;i<joinlist.size();i++){
+	    Condition cn = (Condition) joinlist.elementAt(i);
+	    lhsof[i] = 1 << fromlist.indexOf(cn.getLhs().getTabName());
+	    rhsof[i] = 1 << fromlist.indexOf(((Attribute) cn.getRhs()).getTabName());
+	}
+
+	int full = (1 << numtab) - 1;
+	Operator[] best = new Operator[full+1];
+	int[] bestcost = new int[full+1];
+	for(int i=0;i<numtab;i++){
+	    best[1 << i] = (Operator) access.get((String) fromlist.elementAt(i));
+	    bestcost[1 << i] = new PlanCost().getCost(best[1 << i]);
+	}
+
+	/** every subset of a set is a smaller number, so its plan is
+	 ** known by the time the set is looked at
+	 **/
+	for(int set=1;set<=full;set++){
+	    if(Integer.bitCount(set) < 2){
+		continue;
+	    }
+	    bestcost[set] = Integer.MAX_VALUE;
+	    for(int left=(set-1)&set;left>0;left=(left-1)&set){
+		int right = set ^ left;
+		if(best[left] == null || best[right] == null){
+		    continue;
+		}
+		int cond = connecting(left,right,lhsof,rhsof);
+		if(cond == -1){
+		    continue;
+		}
+		Join jn = bestJoin(best[left],best[right],(Condition) joinlist.elementAt(cond),
+				   cond,(lhsof[cond] & left) != 0);
+		if(jn == null){
+		    continue;
+		}
+		int cost = new PlanCost().getCost(jn);
+		if(best[set] == null || cost < bestcost[set]){
+		    best[set] = jn;
+		    bestcost[set] = cost;
+		}
+	    }
+	}
+
+	if(best[full] == null){
+	    return new RandomOptimizer(sqlquery).getOptimizedPlan();
+	}
+	Operator root = rip.completePlan(best[full]);
+	RandomOptimizer.chooseOperatorTypes(root);
+	return root;
+    }
+
+
+    /** the join condition between the two sets of tables, -1 if none **/
+
+    private static int connecting(int left, int right, int[] lhsof, int[] rhsof){
+	for(int i=0;i<lhsof.length;i++){
+	    if(((lhsof[i] & left) != 0 && (rhsof[i] & right) != 0)
+	       || ((lhsof[i] & right) != 0 && (rhsof[i] & left) != 0)){
+		return i;
+	    }
+	}
+	return -1;
+    }
+
+
+    /** The join of the two plans with the join type of least cost, or
+     ** null if none is feasible. The condition is flipped if its left
+     ** hand side is in the right plan
+     **/
+
+    private static Join bestJoin(Operator left, Operator right, Condition cn, int cond, boolean lhsleft){
+	if(!lhsleft){
+	    cn = (Condition) cn.clone();
+	    cn.flip();
+	}
+	Join jn = new Join(left,right,cn,OpType.JOIN);
+	jn.setNodeIndex(cond);
+	jn.setSchema(left.getSchema().joinWith(right.getSchema()));
+
+	int mincost = Integer.MAX_VALUE;
+	int mintype = -1;
+	for(int type=0;type<JoinType.numJoinTypes();type++){
+	    if(type == JoinType.INDEXNESTED && IndexNestedJoin.indexFileOf(right,(Attribute) cn.getRhs()) == null){
+		continue;
+	    }
+	    jn.setJoinType(type);
+	    int cost = new PlanCost().getCost(jn);
+	    if(cost < mincost){
+		mincost = cost;
+		mintype = type;
+	    }
+	}
+	if(mintype == -1){
+	    return null;
+	}
+	jn.setJoinType(mintype);
+	return jn;
+    }
+}
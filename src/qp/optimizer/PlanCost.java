@@ -5,8 +5,10 @@ package qp.optimizer;
 
 import qp.operators.*;
 import qp.utils.*;
-import java.util.Hashtable;
-import java.util.StringTokenizer;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Vector;
 import java.util.Enumeration;
 import java.io.*;
 public class PlanCost{
@@ -23,16 +25,21 @@ public class PlanCost{
     boolean isFeasible;
 
 
-    /** Hashtable stores mapping from Attribute name to
-     ** number of distinct values of that attribute
+    /** number of distinct values and distribution of the attributes
+     ** of the results estimated so far
      **/
 
-     Hashtable ht;
+     Cardinality card;
+
+
+    /** signatures of the subtrees of the plan being costed **/
+
+    IdentityHashMap<Operator,String> signatures;
 
 
 
     public PlanCost(){
-	ht = new Hashtable();
+	card = new Cardinality();
 	cost=0;
     }
 
@@ -41,6 +48,9 @@ public class PlanCost{
 
     public int getCost(Operator root){
 	isFeasible = true;
+	checkMemo();
+	signatures = new IdentityHashMap<>();
+	sign(root);
 	numtuple = calculateCost(root);
 	if(isFeasible==true){
 	    return cost;
@@ -57,9 +67,52 @@ public class PlanCost{
     }
 
 
-    /** returns number of tuples in the root **/
+    /** returns number of tuples in the root. A subtree costed before,
+     ** in this plan or another one, is not costed again: its cost is
+     ** added and its statistics are taken from the memo
+     **/
 
     protected int calculateCost(Operator node){
+	String sig = (signatures == null) ? null : signatures.get(node);
+	if(sig == null || isFeasible == false){
+	    return estimate(node);
+	}
+	Schema schema = node.getSchema();
+	SubPlan sub = recall(sig);
+	if(sub != null){
+	    cost = cost + sub.cost;
+	    if(!sub.feasible){
+		isFeasible = false;
+	    }
+	    for(int i=0;i<schema.getNumCols();i++){
+		if(sub.distinct[i] >= 0){
+		    card.setDistinct(schema.getAttribute(i),sub.distinct[i]);
+		}
+		card.setColumn(schema.getAttribute(i),sub.columns[i]);
+	    }
+	    return sub.numtuples;
+	}
+
+	int before = cost;
+	int tuples = estimate(node);
+	sub = new SubPlan();
+	sub.cost = cost - before;
+	sub.numtuples = tuples;
+	sub.feasible = isFeasible;
+	sub.distinct = new int[schema.getNumCols()];
+	sub.columns = new ColumnStats[schema.getNumCols()];
+	for(int i=0;i<schema.getNumCols();i++){
+	    sub.distinct[i] = card.getDistinct(schema.getAttribute(i));
+	    sub.columns[i] = card.getColumn(schema.getAttribute(i));
+	}
+	remember(sig,sub);
+	return tuples;
+    }
+
+
+    /** costs the operator and its subtree **/
+
+    private int estimate(Operator node){
 
 
 	if(node.getOpType()==OpType.JOIN){
@@ -71,6 +124,8 @@ public class PlanCost{
 	    return getStatistics((Project)node);
 	}else if(node.getOpType() == OpType.DISTINCT){
 		return getStatistics((Distinct)node);
+	}else if(node.getOpType() == OpType.GROUPBY){
+	    return getStatistics((GroupBy)node);
 	}else if(node.getOpType() == OpType.SCAN){
 	    return getStatistics((Scan)node);
 	}
@@ -86,35 +141,124 @@ public class PlanCost{
 	return calculateCost(node.getBase());
     }
 
-	protected int getStatistics(Distinct node){
-    	if(node == null || node.getBase() == null || node.getBase().getSchema() == null){ return -1; }
+    /** Duplicate elimination on the projected tuples: as for the joins,
+     ** reading the input is charged to the operator. The sort based one
+     ** pays for ExternalSort, the hash based one reads the input once if
+     ** the distinct tuples fit into memory and otherwise writes and reads
+     ** every page once more to partition the input
+     **/
+
+    protected int getStatistics(Distinct node){
+	int intuples = calculateCost(node.getBase());
+
+	if(isFeasible==false){
+	    return -1;
+	}
+
+	Schema schema = node.getSchema();
+	int capacity = Batch.getPageSize()/schema.getTupleSize();
+	int inpages = (int) Math.ceil(((double) intuples)/(double) capacity);
 
-		int lines = calculateCost(node.getBase());
-		//System.out.println("Distinct lines to sort: " + lines);
+	/** number of distinct tuples, assuming independent attributes **/
+	int outtuples = card.combinations(schema.getAttList(),intuples);
+	int outpages = (int) Math.ceil(((double) outtuples)/(double) capacity);
 
-		//Loads needed to store all tuples in memory
-		double loadsNeeded = Math.ceil(
+	int numbuff = BufferManager.getBuffersPerJoin();
+	if(numbuff < 3){
+	    isFeasible = false;
+	    return -1;
+	}
 
-				(double)((int)Math.ceil(
-				(double)lines / (double)(node.getBase().getSchema().getTupleSize())
-				))
+	int distinctcost;
+	switch(node.getDistinctType()){
+	case DistinctType.HASH:
+	    if(outpages <= numbuff - 2){
+		distinctcost = inpages;
+	    }else{
+		distinctcost = 3*inpages;
+	    }
+	    break;
+	case DistinctType.SORT:
+	    distinctcost = sortCost(inpages,numbuff,ExternalSort.mergeFanIn(numbuff));
+	    break;
+	default:
+	    distinctcost = 0;
+	    break;
+	}
+	cost = cost + distinctcost;
+	return outtuples;
+    }
 
-				/ BufferManager.numBuffer
 
-		);
+    /** Grouping: one output tuple per combination of the values of
+     ** the grouping attributes. The sort based grouping pays for
+     ** ExternalSort on the input, the hash based one reads the input and
+     ** writes and reads the tuples of the groups that do not fit into
+     ** memory once more
+     **/
 
-		//Sorting cost dependent on the number of loads
-		double dCostToAdd = Math.ceil(
-				Math.log(loadsNeeded) / Math.log(BufferManager.numBuffer - 1)
-		);
-		int iCostToAdd = (int)(dCostToAdd + 1.0D);
-		//System.out.println("Distinct SortCost: " + iCostToAdd);
-		//System.out.println("Distinct CostBefore: " + cost);
-		cost += iCostToAdd;
-		//System.out.println("Distinct CostAfter: " + cost);
-		return lines;
+    protected int getStatistics(GroupBy node){
+	int intuples = calculateCost(node.getBase());
+
+	if(isFeasible==false){
+	    return -1;
 	}
 
+	Schema schema = node.getSchema();
+	Schema baseschema = node.getBase().getSchema();
+	Vector groupbylist = node.getGroupByList();
+	int incapacity = Batch.getPageSize()/baseschema.getTupleSize();
+	int inpages = (int) Math.ceil(((double) intuples)/(double) incapacity);
+	int outcapacity = Batch.getPageSize()/schema.getTupleSize();
+
+	/** number of groups, assuming independent attributes **/
+	int outtuples = card.combinations(groupbylist,intuples);
+	int outpages = (int) Math.ceil(((double) outtuples)/(double) outcapacity);
+
+	/** every aggregate has at most one value per group **/
+	for(int i=0;i<schema.getNumCols();i++){
+	    Attribute attr = schema.getAttribute(i);
+	    int distinct = card.getDistinct(attr);
+	    if(distinct == -1 || distinct > outtuples){
+		card.setDistinct(attr,Math.max(1,outtuples));
+	    }
+	}
+
+	/** grouping on the whole input needs no buffers **/
+	if(groupbylist.isEmpty()){
+	    return outtuples;
+	}
+
+	int numbuff = BufferManager.getBuffersPerJoin();
+	if(numbuff < 3){
+	    isFeasible = false;
+	    return -1;
+	}
+
+	int groupbycost;
+	switch(node.getGroupByType()){
+	case GroupByType.HASH:
+	    /** same split of the buffers as HashAggregate **/
+	    int partitions = Math.max(2,(numbuff-2)/2);
+	    int tablepages = Math.max(1,numbuff-2-partitions);
+	    if(outpages <= tablepages){
+		groupbycost = inpages;
+	    }else{
+		double spilled = 1.0 - ((double) tablepages)/outpages;
+		groupbycost = inpages + (int) Math.ceil(2*inpages*spilled);
+	    }
+	    break;
+	case GroupByType.SORT:
+	    groupbycost = sortCost(inpages,numbuff,ExternalSort.mergeFanIn(numbuff));
+	    break;
+	default:
+	    groupbycost = 0;
+	    break;
+	}
+	cost = cost + groupbycost;
+	return outtuples;
+    }
+
 
 	/** calculates the statistics, and cost of join operation **/
 
@@ -149,15 +293,13 @@ public class PlanCost{
 	int rightattrind = rightschema.indexOf(rightjoinAttr);
 	leftjoinAttr = leftschema.getAttribute(leftattrind);
 	rightjoinAttr = rightschema.getAttribute(rightattrind);
-	/** number of distinct values of left and right join attribute **/
-	int leftattrdistn = ((Integer)ht.get(leftjoinAttr)).intValue();
-	int rightattrdistn = ((Integer)ht.get(rightjoinAttr)).intValue();
-
-	int outtuples = (int) Math.ceil(((double) lefttuples*righttuples)/(double) Math.max(leftattrdistn,rightattrdistn));
+	/** number of distinct values of the right join attribute **/
+	int rightattrdistn = Math.max(1,card.getDistinct(rightjoinAttr));
 
-	int mindistinct = Math.min(leftattrdistn,rightattrdistn);
-	ht.put(leftjoinAttr,new Integer(mindistinct));
-	ht.put(leftjoinAttr,new Integer(mindistinct));
+	/** the join also updates the distinct values of both inputs **/
+	Vector conditions = new Vector();
+	conditions.add(con);
+	int outtuples = card.join(leftschema,rightschema,conditions,lefttuples,righttuples);
 
 
 	/** now calculate the cost of the operation**/
@@ -178,10 +320,53 @@ public class PlanCost{
 	    joincost = leftpages + (int) Math.ceil(leftpages / (double) (numbuff - 2)) * rightpages;
 	    break;
 	case JoinType.SORTMERGE:
-	    joincost = leftpages + rightpages;
+	    /** the final merge pass of both sorts feeds the join **/
+	    int fanin = SortMergeJoin.finalFanIn(numbuff,true);
+	    joincost = sortCost(leftpages,numbuff,fanin) + sortCost(rightpages,numbuff,fanin);
 	    break;
 	case JoinType.HASHJOIN:
-	    joincost = 0;
+	    /** in-memory if the right table fits in numbuff-2 pages,
+	     ** otherwise Grace: partition both (read + write) and then
+	     ** read every left partition once per build chunk
+	     **/
+	    if(rightpages <= numbuff - 2){
+		joincost = leftpages + rightpages;
+	    }else{
+		int partpages = (int) Math.ceil(rightpages / (double) (numbuff - 1));
+		int chunks = (int) Math.ceil(partpages / (double) (numbuff - 2));
+		joincost = 2*(leftpages + rightpages) + rightpages + chunks*leftpages;
+	    }
+	    break;
+	case JoinType.HYBRIDHASH:
+	    /** with 3 buffers the output pages of the two buckets
+	     ** would not fit beside the one page for the hash table
+	     **/
+	    if(numbuff < 4 && rightpages > numbuff - 2){
+		isFeasible = false;
+		return -1;
+	    }
+	    joincost = (int) Math.ceil(hybridHashCost(leftpages,rightpages,numbuff,0));
+	    break;
+	case JoinType.INDEXNESTED:
+	    /** the right table is not scanned: every left tuple reads
+	     ** the nodes on the path to a leaf and one page per match
+	     **/
+	    String idxfile = IndexNestedJoin.indexFileOf(node.getRight(),rightjoinAttr);
+	    if(idxfile == null || leftjoinAttr.getType() != rightjoinAttr.getType()){
+		isFeasible = false;
+		return -1;
+	    }
+	    int height;
+	    try{
+		height = new BPlusTree(idxfile).getHeight();
+	    }catch(IOException io){
+		isFeasible = false;
+		return -1;
+	    }
+	    int matches = (int) Math.ceil(((double) righttuples)/(double) Math.max(1,rightattrdistn));
+	    /** the pages charged to the scan of the right table are given back **/
+	    int scanpages = scanPages((Scan) node.getRight(),righttuples);
+	    joincost = Math.max(0,leftpages + lefttuples*(height + matches)) - scanpages;
 	    break;
 	default:
 	    joincost=0;
@@ -194,137 +379,316 @@ public class PlanCost{
 
 
 
+    /** I/O cost of ExternalSort on the given number of pages when the
+     ** final merge of at most fanin runs is read by the parent operator:
+     ** the input is read and the runs are written once, every merge pass
+     ** reads and writes all pages, and the final merge reads them once more.
+     ** The sort runs on as many threads as the sorts of the operators
+     **/
+
+    protected int sortCost(int pages, int numbuff, int fanin){
+	if(pages == 0){
+	    return 0;
+	}
+	int numthreads = Exchange.getDefaultDegree();
+	int rungen = SortMergeJoin.runGeneration(numbuff,numthreads);
+	int threads = ExternalSort.sortThreads(numbuff,numthreads,rungen);
+	/** the pages read ahead and written behind are taken out of the
+	 ** buffers, which the threads share out as in ExternalSort
+	 **/
+	int runsize = ExternalSort.runPages(threads > 1 ? numbuff/(threads+1) : numbuff,rungen);
+	int numruns = (int) Math.ceil(pages / (double) runsize);
+	int passes = 0;
+	while(numruns > fanin){
+	    int merge = ExternalSort.mergeFanIn(numbuff);
+	    if(threads > 1 && numruns > merge){
+		merge = ExternalSort.mergeFanIn(numbuff/threads);
+	    }
+	    numruns = (int) Math.ceil(numruns / (double) merge);
+	    passes++;
+	}
+	return pages + 2*pages*(1+passes);
+    }
+
+
+
+    /** I/O cost of HybridHashJoin at the given level: both inputs are
+     ** read, and the buckets that do not fit beside the output pages of
+     ** the others are written and joined at the next level. Past
+     ** MAX_LEVEL the right bucket is joined in chunks
+     **/
+
+    protected double hybridHashCost(double leftpages, double rightpages, int numbuff, int level){
+	if(rightpages <= numbuff - 2){
+	    return leftpages + rightpages;
+	}
+	if(level > HybridHashJoin.MAX_LEVEL){
+	    return rightpages + Math.ceil(rightpages / (numbuff - 2))*leftpages;
+	}
+	int numbuckets = HybridHashJoin.numBuckets(numbuff);
+	double bucketpages = rightpages / numbuckets;
+	int spilled = 0;
+	while(spilled < numbuckets && (numbuckets - spilled)*bucketpages + spilled > numbuff - 2){
+	    spilled++;
+	}
+	double fraction = spilled / (double) numbuckets;
+	return (1 + fraction)*(leftpages + rightpages)
+	    + spilled*hybridHashCost(leftpages / numbuckets,bucketpages,numbuff,level+1);
+    }
+
+
+
     /** Find number of incoming tuples, Using the selectivity find # of output tuples
-     ** And statistics about the attributes
+     ** And statistics about the attributes, see Cardinality
      ** Selection is performed on the fly, so no cost involved
+     ** except for an IndexScan
      **/
 
     protected int getStatistics(Select node){
 	//System.out.println("PlanCost: here at line 127");
-	int intuples = calculateCost(node.getBase());
+
+	/** the conditions of a chain of selections are estimated
+	 ** together, as they may be on the same attributes
+	 **/
+	Vector conditions = new Vector(node.getConditions());
+	Operator base = node.getBase();
+	if(!(node instanceof IndexScan)){
+	    while(base.getOpType() == OpType.SELECT && !(base instanceof IndexScan)){
+		conditions.addAll(((Select) base).getConditions());
+		base = ((Select) base).getBase();
+	    }
+	}
+	int intuples = calculateCost(base);
 
 	if(isFeasible==false){
 	    return Integer.MAX_VALUE;
 	}
 
-	Condition con = node.getCondition();
 	Schema schema = node.getSchema();
 
-	Attribute attr = con.getLhs();
-
-	int index = schema.indexOf(attr);
-	Attribute fullattr = schema.getAttribute(index);
+	/** calculate the number of tuples in result from all the
+	 ** conditions, and the number of distinct values of each
+	 ** attribute in it
+	 **/
+	int outtuples = card.select(schema,conditions,intuples);
 
-	int exprtype = con.getExprType();
+	if(node instanceof IndexScan){
+	    cost = cost + indexScanCost((IndexScan) node,intuples,outtuples);
+	    if(isFeasible==false){
+		return Integer.MAX_VALUE;
+	    }
+	}
 
+	//System.out.println("PlanCost: line 164: outtuples="+outtuples);
+	return outtuples;
+    }
 
-	/** Get number of distinct values of selection attributes **/
 
-	Integer temp =(Integer)ht.get(fullattr);
-	int numdistinct = temp.intValue();
-	//int numdistinct = ((Integer)ht.get(fullattr)).intValue();
-	int outtuples;
+    /** I/O of an IndexScan in place of the scan of its table: the nodes
+     ** on the path to a leaf, the leaves holding the qualifying entries,
+     ** and every table page holding a qualifying tuple, read once
+     **/
 
-	/** calculate the number of tuples in result **/
-	if(exprtype==Condition.EQUAL){
-	    outtuples = (int) Math.ceil((double)intuples/(double)numdistinct);
-	}else if(exprtype==Condition.NOTEQUAL){
-	    outtuples= (int) Math.ceil(intuples - ((double) intuples/(double) numdistinct));
-	}else{
-	    outtuples=(int) Math.ceil(0.5*intuples);
+    protected int indexScanCost(IndexScan node, int intuples, int outtuples){
+	String idxfile = IndexScan.indexFileOf(node.getBase(),node.getCondition());
+	if(idxfile == null){
+	    isFeasible = false;
+	    return 0;
 	}
-
-	/** Modify the number of distinct values of each attribute
-	 ** Assuming the values are distributed uniformly along entire
-	 ** relation
-	 **/
-	for(int i=0;i<schema.getNumCols();i++){
-	    Attribute attri = schema.getAttribute(i);
-	    int oldvalue = ((Integer)ht.get(attri)).intValue();
-	    int newvalue = (int) Math.ceil(((double) outtuples/(double) intuples)*oldvalue);
-	    ht.put(attri,new Integer(outtuples));
+	BPlusTree tree;
+	try{
+	    tree = new BPlusTree(idxfile);
+	}catch(IOException io){
+	    isFeasible = false;
+	    return 0;
 	}
-	//System.out.println("PlanCost: line 164: outtuples="+outtuples);
-	return outtuples;
+	/** the pages charged to the scan of the table are given back **/
+	int tablepages = scanPages((Scan) node.getBase(),intuples);
+	int leaves = (int) Math.ceil(((double) outtuples*tree.getNumNodes())/(double) Math.max(1,tree.getNumEntries()));
+	int pages = Math.min(outtuples,tablepages);
+	return Math.max(0,tree.getHeight() + leaves + pages) - tablepages;
     }
 
 
 
-    /**  the statistics file <tablename>.stat to find the statistics
-     ** about that table;
-     ** This table contains number of tuples in the table
-     ** number of distinct values of each attribute
+    /** the statistics of the table, from the Catalog, give the
+     ** number of tuples in the table, the number of distinct
+     ** values of each attribute and, if the table is analyzed,
+     ** the distribution of the values
      **/
 
     protected int getStatistics(Scan node) {
-	String tablename = node.getTabName();
-	String filename = tablename+".stat";
 	Schema schema = node.getSchema();
 	int numAttr = schema.getNumCols();
-	BufferedReader in=null;
-	try{
-	    in = new BufferedReader(new FileReader(filename));
-	}catch(IOException io){
-	    System.out.println("Error in opening file"+filename);
-	    System.exit(1);
-	}
-	String line=null;
+	Catalog.TableStats stats = Catalog.lookup(node.getTabName(),numAttr);
 
-	// First line = number of tuples
-	try{
-	   line = in.readLine();
-	}catch(IOException io){
-	    System.out.println("Error in readin first line of "+filename);
-	    System.exit(1);
-	}
-	StringTokenizer tokenizer= new StringTokenizer(line);
-	if(tokenizer.countTokens() !=1){
-	    System.out.println("incorrect format of statastics file "+filename);
-	    System.exit(1);
-	}
+	/** number of tuples in this table; **/
+	int numtuples = card.scan(schema,stats);
 
+	int numpages = scanPages(node,numtuples);
+	cost = cost+numpages;
 
-	String temp = tokenizer.nextToken();
-	/** number of tuples in this table; **/
-	int numtuples = Integer.parseInt(temp);
+	//System.out.println("Scan: tablename="+node.getTabName()+"pres cost="+numpages+"total cost="+cost);
+	return numtuples;
+    }
 
 
+    /** number of pages read by the scan of a table with the given
+     ** number of tuples: the pages of the table file if it is in pages
+     ** of this size, otherwise the pages the tuples fill
+     **/
 
-	try{
-	    line = in.readLine();
-	}catch(IOException io){
-	    System.out.println("error in reading second line of "+filename);
-	    System.exit(1);
-	}
-	tokenizer = new StringTokenizer(line);
-	if(tokenizer.countTokens() != numAttr){
-	    System.out.println("incorrect format of statastics file "+filename);
-	    System.exit(1);
-	}
+    protected int scanPages(Scan node, int numtuples){
+	Schema schema = node.getSchema();
+	Catalog.TableStats stats = Catalog.lookup(node.getTabName(),schema.getNumCols());
 
-	for(int i=0;i<numAttr;i++){
-	    Attribute attr = schema.getAttribute(i);
-	    temp = tokenizer.nextToken();
-	    Integer distinctValues = Integer.valueOf(temp);
-	    ht.put(attr,distinctValues);
-	}
 	/** number of tuples per page**/
 
 	int tuplesize = schema.getTupleSize();
 	int pagesize= Batch.getPageSize()/tuplesize;
 	//Batch.capacity();
 	int numpages= (int) Math.ceil((double) numtuples/(double) pagesize);
-	cost = cost+numpages;
-	try{
-	    in.close();
-	}catch(IOException io){
-	    System.out.println("error in closing the file "+filename);
-	    System.exit(1);
+	if(stats.getNumPages(Batch.getPageSize()) > 0){
+	    /** the table file is in pages of this size **/
+	    numpages = stats.getNumPages(Batch.getPageSize());
+	}
+	return numpages;
+    }
+
+
+    /** The signature of a subtree: two subtrees with the same signature
+     ** have the same cost and statistics. Null for the subtrees that
+     ** are not costed
+     **/
+
+    private String sign(Operator node){
+	String sig = null;
+	switch(node.getOpType()){
+	case OpType.JOIN:
+	    Join jn = (Join) node;
+	    String left = sign(jn.getLeft());
+	    String right = sign(jn.getRight());
+	    if(left != null && right != null){
+		sig = "J"+jn.getJoinType()+"["+sign(jn.getCondition())+"]("+left+","+right+")";
+	    }
+	    break;
+	case OpType.SELECT:
+	    Select sel = (Select) node;
+	    String base = sign(sel.getBase());
+	    if(base != null){
+		sig = (node instanceof IndexScan ? "I[" : "S[");
+		Vector conditions = sel.getConditions();
+		for(int i=0;i<conditions.size();i++){
+		    sig = sig+sign((Condition) conditions.elementAt(i))+";";
+		}
+		sig = sig+"]("+base+")";
+	    }
+	    break;
+	case OpType.PROJECT:
+	    base = sign(((Project) node).getBase());
+	    if(base != null){
+		sig = "P"+sign(node.getSchema())+"("+base+")";
+	    }
+	    break;
+	case OpType.DISTINCT:
+	    Distinct dn = (Distinct) node;
+	    base = sign(dn.getBase());
+	    if(base != null){
+		sig = "D"+dn.getDistinctType()+sign(node.getSchema())+"("+base+")";
+	    }
+	    break;
+	case OpType.GROUPBY:
+	    GroupBy gb = (GroupBy) node;
+	    base = sign(gb.getBase());
+	    if(base != null){
+		Vector groupbylist = gb.getGroupByList();
+		sig = "G"+gb.getGroupByType()+"[";
+		for(int i=0;i<groupbylist.size();i++){
+		    sig = sig+sign((Attribute) groupbylist.elementAt(i))+",";
+		}
+		sig = sig+"]"+sign(node.getSchema())+"("+base+")";
+	    }
+	    break;
+	case OpType.SCAN:
+	    sig = "T"+((Scan) node).getTabName();
+	    break;
 	}
+	if(sig != null){
+	    signatures.put(node,sig);
+	}
+	return sig;
+    }
+
+    private static String sign(Schema schema){
+	String sig = "[";
+	for(int i=0;i<schema.getNumCols();i++){
+	    sig = sig+sign(schema.getAttribute(i))+",";
+	}
+	return sig+"]";
+    }
 
+    private static String sign(Attribute attr){
+	String sig = attr.getTabName()+"."+attr.getColName();
+	if(attr.isAggregate()){
+	    sig = Attribute.aggName(attr.getAggType())+"("+sig+")";
+	}
+	return sig;
+    }
 
-	//System.out.println("Scan: tablename="+tablename+"pres cost="+numpages+"total cost="+cost);
-	return numtuples;
+    private static String sign(Condition con){
+	Object rhs = con.getRhs();
+	String sig = sign(con.getLhs())+" "+con.getExprType()+" ";
+	if(rhs instanceof Attribute){
+	    return sig+sign((Attribute) rhs);
+	}
+	return sig+"'"+rhs+"'";
+    }
+
+
+    /** cost of a subtree and the statistics of its result **/
+
+    static class SubPlan{
+	int cost;          // I/O cost of the subtree
+	int numtuples;     // Number of tuples in the result
+	boolean feasible;  // Whether the buffers are enough for the subtree
+	int[] distinct;    // Number of distinct values of each column, -1 if not known
+	ColumnStats[] columns;  // Distribution of each column in its table, if analyzed
+    }
+
+
+    /** the costed subtrees, shared by all the PlanCost objects, in least
+     ** recently used order
+     **/
+
+    static final int MEMO_SIZE = 4096;
+
+    static LinkedHashMap<String,SubPlan> memo = new LinkedHashMap<String,SubPlan>(MEMO_SIZE,0.75f,true){
+	    protected boolean removeEldestEntry(Map.Entry<String,SubPlan> eldest){
+		return size() > MEMO_SIZE;
+	    }
+	};
+
+    /** page size, buffers and catalog version of the memo entries **/
+
+    static String memocontext = "";
+
+
+    private static synchronized SubPlan recall(String sig){
+	return memo.get(sig);
+    }
+
+    private static synchronized void remember(String sig, SubPlan sub){
+	memo.put(sig,sub);
+    }
+
+    /** the memo is emptied when the costs of the entries change **/
+
+    private static synchronized void checkMemo(){
+	String context = Batch.getPageSize()+"/"+BufferManager.getBuffersPerJoin()+"/"+Catalog.getVersion();
+	if(!context.equals(memocontext)){
+	    memo.clear();
+	    memocontext = context;
+	}
     }
 
 }
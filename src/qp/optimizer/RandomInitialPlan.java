@@ -58,6 +58,28 @@ public class RandomInitialPlan{
 	if(numJoin !=0){
 	    createJoinOp();
 	}
+	createGroupByOp();
+	createProjectOp();
+	return root;
+    }
+
+
+    /** the scans and selections of every table, by table name, for an
+     ** optimizer that orders the joins itself
+     **/
+
+    public Hashtable prepareAccessPlans(){
+	tab_op_hash = new Hashtable();
+	createScanOp();
+	createSelectOp();
+	return tab_op_hash;
+    }
+
+    /** puts the grouping and the projection on top of the given joins **/
+
+    public Operator completePlan(Operator joins){
+	root = joins;
+	createGroupByOp();
 	createProjectOp();
 	return root;
     }
@@ -78,7 +100,12 @@ public class RandomInitialPlan{
 
 
 	    String tabname = (String) fromlist.elementAt(i);
-	    Scan op1 = new Scan(tabname,OpType.SCAN);
+	    Scan op1;
+	    if(ParallelScan.isWorthwhile(tabname)){
+		op1 = new ParallelScan(tabname,OpType.SCAN);
+	    }else{
+		op1 = new Scan(tabname,OpType.SCAN);
+	    }
             tempop = op1;
 
 
@@ -119,11 +146,17 @@ public class RandomInitialPlan{
 
     public void createSelectOp(){
 	Select op1 = null;
-     
+
+	/** the indexed condition chosen for each table is applied first **/
+	Vector indexed = createIndexScanOp();
+	for(int j=0;j<indexed.size();j++){
+	    op1 = (Select) indexed.elementAt(j);
+	}
+
 	for(int j=0;j<selectionlist.size();j++){
 
 	    Condition cn = (Condition) selectionlist.elementAt(j);
-	    if(cn.getOpType() == Condition.SELECT){
+	    if(cn.getOpType() == Condition.SELECT && !isIndexScanned(indexed,cn)){
 		String tabname = cn.getLhs().getTabName();
 		//System.out.println("RandomInitial:-------------Select-------:"+tabname);
 
@@ -144,6 +177,53 @@ public class RandomInitialPlan{
 	    root = op1;
     }
 
+
+    /** For every table, the selection condition with an index on its
+     ** column is read with an IndexScan if that is cheaper than scanning
+     ** the table. Of several such conditions the cheapest one is used.
+     ** Returns the IndexScan operators created
+     **/
+
+    private Vector createIndexScanOp(){
+	Vector indexed = new Vector();
+	for(int i=0;i<fromlist.size();i++){
+	    String tabname = (String) fromlist.elementAt(i);
+	    Operator tempop = (Operator) tab_op_hash.get(tabname);
+	    IndexScan best = null;
+	    int bestcost = Integer.MAX_VALUE;
+	    for(int j=0;j<selectionlist.size();j++){
+		Condition cn = (Condition) selectionlist.elementAt(j);
+		if(cn.getOpType() != Condition.SELECT || !cn.getLhs().getTabName().equals(tabname)
+		   || IndexScan.indexFileOf(tempop,cn) == null){
+		    continue;
+		}
+		Select sel = new Select(tempop,cn,OpType.SELECT);
+		sel.setSchema(tempop.getSchema());
+		IndexScan is = new IndexScan((Scan) tempop,cn,OpType.SELECT);
+		is.setSchema(tempop.getSchema());
+		int indexcost = new PlanCost().getCost(is);
+		if(indexcost < new PlanCost().getCost(sel) && indexcost < bestcost){
+		    best = is;
+		    bestcost = indexcost;
+		}
+	    }
+	    if(best != null){
+		modifyHashtable(tempop,best);
+		indexed.add(best);
+	    }
+	}
+	return indexed;
+    }
+
+    private boolean isIndexScanned(Vector indexed, Condition cn){
+	for(int i=0;i<indexed.size();i++){
+	    if(((IndexScan) indexed.elementAt(i)).getCondition() == cn){
+		return true;
+	    }
+	}
+	return false;
+    }
+
 	/** create join operators **/
 
     public void createJoinOp(){
@@ -174,6 +254,10 @@ public class RandomInitialPlan{
 	    /** randomly select a join type**/
 	    int numJMeth = JoinType.numJoinTypes();
 	    int joinMeth = RandNumb.randInt(0,numJMeth-1);
+	    /** index nested join needs an index on the right table **/
+	    if(joinMeth == JoinType.INDEXNESTED && IndexNestedJoin.indexFileOf(right,(Attribute) cn.getRhs()) == null){
+		joinMeth = JoinType.BLOCKNESTED;
+	    }
 	    jn.setJoinType(joinMeth);
 
 	    modifyHashtable(left,jn);
@@ -193,6 +277,72 @@ public class RandomInitialPlan{
 
 
 
+    /** Create the grouping operator if there is a group by clause
+     ** or an aggregate in the select clause
+     **/
+
+    public void createGroupByOp(){
+	boolean hasAggregate = false;
+	if(projectlist != null){
+	    for(int i=0;i<projectlist.size();i++){
+		if(((Attribute) projectlist.elementAt(i)).isAggregate()){
+		    hasAggregate = true;
+		}
+	    }
+	}
+	if((groupbylist == null || groupbylist.isEmpty()) && !hasAggregate){
+	    return;
+	}
+	if(groupbylist == null){
+	    groupbylist = new Vector();
+	}
+
+	/** select * outputs the grouping attributes **/
+	Vector attrlist = projectlist;
+	if(attrlist == null || attrlist.isEmpty()){
+	    attrlist = groupbylist;
+	}
+
+	Schema baseschema = root.getSchema();
+	for(int i=0;i<groupbylist.size();i++){
+	    Attribute attr = (Attribute) groupbylist.elementAt(i);
+	    if(!baseschema.contains(attr)){
+		System.out.println("unknown group by attribute: "+attr.getTabName()+"."+attr.getColName());
+		System.exit(1);
+	    }
+	}
+	for(int i=0;i<attrlist.size();i++){
+	    Attribute attr = (Attribute) attrlist.elementAt(i);
+	    Attribute baseattr = (Attribute) attr.clone();
+	    baseattr.setAggType(Attribute.NONE);
+	    if(!baseschema.contains(baseattr)){
+		System.out.println("unknown attribute: "+attr.getTabName()+"."+attr.getColName());
+		System.exit(1);
+	    }
+	    if(!attr.isAggregate()){
+		boolean grouped = false;
+		for(int j=0;j<groupbylist.size();j++){
+		    if(attr.equals((Attribute) groupbylist.elementAt(j))){
+			grouped = true;
+		    }
+		}
+		if(!grouped){
+		    System.out.println(attr.getTabName()+"."+attr.getColName()+" must appear in the group by clause or an aggregate");
+		    System.exit(1);
+		}
+	    }else if((attr.getAggType() == Attribute.SUM || attr.getAggType() == Attribute.AVG)
+		     && baseschema.typeOf(baseattr) == Attribute.STRING){
+		System.out.println(Attribute.aggName(attr.getAggType())+" is not defined on the string attribute "+attr.getTabName()+"."+attr.getColName());
+		System.exit(1);
+	    }
+	}
+
+	GroupBy op = new GroupBy(root,groupbylist,attrlist,OpType.GROUPBY);
+	op.setSchema(GroupBy.groupSchema(baseschema,attrlist));
+	root = op;
+    }
+
+
     public void createProjectOp(){
 		System.out.println("executed");
 	Operator base = root;
@@ -200,7 +350,15 @@ public class RandomInitialPlan{
             projectlist = new Vector();
 
 	if(!projectlist.isEmpty()){
-		if(!sqlquery.isDistinct()){
+		if(base.getOpType() == OpType.GROUPBY){
+			/** the grouping already outputs the attributes of the select clause **/
+			if(sqlquery.isDistinct()){
+				root = new Distinct(base, projectlist, OpType.DISTINCT);
+				Schema newSchema = base.getSchema().subSchema(projectlist);
+				root.setSchema(newSchema);
+			}
+		}
+		else if(!sqlquery.isDistinct()){
 			root = new Project(base, projectlist, OpType.PROJECT);
 			Schema newSchema = base.getSchema().subSchema(projectlist);
 			root.setSchema(newSchema);
@@ -20,6 +20,10 @@ public class RandomOptimizer{
 
     public static final int NUMCHOICES = 3;
 
+    /** Smallest join, in pages of its inputs, that is run on several threads **/
+
+    public static final int MIN_PARALLEL_PAGES = 64;
+
 
     SQLQuery sqlquery;     // Vector of Vectors of Select + From + Where + GroupBy
     int numJoin;          // Number of joins in this query plan
@@ -68,7 +72,54 @@ public class RandomOptimizer{
      */
     public Operator getOptimizedPlan() {
         Operator initPlan = iterativeImprovement();
-        return simulatedAnnealing(initPlan);
+        Operator finalPlan = simulatedAnnealing(initPlan);
+        if(finalPlan != null){
+            chooseOperatorTypes(finalPlan);
+        }
+        return finalPlan;
+    }
+
+    /** The duplicate elimination and the grouping are on top of the
+     ** joins, so their types do not depend on the join order and are
+     ** chosen once for the final plan by trying every type
+     **/
+
+    protected static void chooseOperatorTypes(Operator root){
+        Operator node = root;
+        while(node.getOpType() == OpType.DISTINCT || node.getOpType() == OpType.GROUPBY
+              || node.getOpType() == OpType.PROJECT){
+            if(node.getOpType() == OpType.DISTINCT){
+                Distinct dn = (Distinct) node;
+                int mincost = Integer.MAX_VALUE;
+                int mintype = DistinctType.SORT;
+                for(int i=0;i<DistinctType.numDistinctTypes();i++){
+                    dn.setDistinctType(i);
+                    int cost = new PlanCost().getCost(root);
+                    if(cost < mincost){
+                        mincost = cost;
+                        mintype = i;
+                    }
+                }
+                dn.setDistinctType(mintype);
+                node = dn.getBase();
+            }else if(node.getOpType() == OpType.GROUPBY){
+                GroupBy gb = (GroupBy) node;
+                int mincost = Integer.MAX_VALUE;
+                int mintype = GroupByType.SORT;
+                for(int i=0;i<GroupByType.numGroupByTypes();i++){
+                    gb.setGroupByType(i);
+                    int cost = new PlanCost().getCost(root);
+                    if(cost < mincost){
+                        mincost = cost;
+                        mintype = i;
+                    }
+                }
+                gb.setGroupByType(mintype);
+                node = gb.getBase();
+            }else{
+                node = ((Project) node).getBase();
+            }
+        }
     }
 
     /** implementation of Iterative Improvement Algorithm
@@ -439,6 +490,8 @@ public class RandomOptimizer{
 	    return findNodeAt(((Project)node).getBase(),joinNum);
 	}else if(node.getOpType()==OpType.DISTINCT){
 		return findNodeAt(((Distinct)node).getBase(),joinNum);
+	}else if(node.getOpType()==OpType.GROUPBY){
+	    return findNodeAt(((GroupBy)node).getBase(),joinNum);
 	}else{
 	    return null;
 	}
@@ -471,6 +524,11 @@ public class RandomOptimizer{
 		modifySchema(base);
 		Vector attrlist = ((Distinct)node).getProjAttr();
 		node.setSchema(base.getSchema().subSchema(attrlist));
+	}else if(node.getOpType()==OpType.GROUPBY){
+	    Operator base = ((GroupBy)node).getBase();
+	    modifySchema(base);
+	    Vector attrlist = ((GroupBy)node).getProjAttr();
+	    node.setSchema(GroupBy.groupSchema(base.getSchema(),attrlist));
 	}
     }
 
@@ -497,9 +555,6 @@ public class RandomOptimizer{
 		nj.setNumBuff(numbuff);
 		return nj;
 
-	    /** Temporarity used simple nested join,
-	    	replace with hasjoin, if implemented **/
-
 	    case JoinType.BLOCKNESTED:
 
 		BlockNestedJoin bj = new BlockNestedJoin((Join) node);
@@ -518,9 +573,27 @@ public class RandomOptimizer{
 
 	    case JoinType.HASHJOIN:
 
-		NestedJoin hj = new NestedJoin((Join) node);
-                /* + other code */
+		HashJoin hj = new HashJoin((Join) node);
+		hj.setLeft(left);
+		hj.setRight(right);
+		hj.setNumBuff(numbuff);
 		return hj;
+
+	    case JoinType.HYBRIDHASH:
+
+		HybridHashJoin hh = new HybridHashJoin((Join) node);
+		hh.setLeft(left);
+		hh.setRight(right);
+		hh.setNumBuff(numbuff);
+		return hh;
+
+	    case JoinType.INDEXNESTED:
+
+		IndexNestedJoin ij = new IndexNestedJoin((Join) node);
+		ij.setLeft(left);
+		ij.setRight(right);
+		ij.setNumBuff(numbuff);
+		return ij;
 	    default:
 		return node;
 	    }
@@ -533,12 +606,221 @@ public class RandomOptimizer{
 	    ((Project)node).setBase(base);
 	    return node;
 	}else if(node.getOpType() == OpType.DISTINCT){
-		Operator base = makeExecPlan(((Distinct)node).getBase());
-		((Distinct)node).setBase(base);
+	    Operator base = makeExecPlan(((Distinct)node).getBase());
+	    ((Distinct)node).setBase(base);
+	    int numbuff = BufferManager.getBuffersPerJoin();
+	    switch(((Distinct)node).getDistinctType()){
+	    case DistinctType.HASH:
+
+		HashDistinct hd = new HashDistinct((Distinct) node);
+		hd.setNumBuff(numbuff);
+		return hd;
+
+	    case DistinctType.SORT:
+
+		SortDistinct sd = new SortDistinct((Distinct) node);
+		sd.setNumBuff(numbuff);
+		return sd;
+	    default:
+		return node;
+	    }
+	}else if(node.getOpType() == OpType.GROUPBY){
+	    Operator base = makeExecPlan(((GroupBy)node).getBase());
+	    ((GroupBy)node).setBase(base);
+	    int numbuff = BufferManager.getBuffersPerJoin();
+	    switch(((GroupBy)node).getGroupByType()){
+	    case GroupByType.HASH:
+
+		HashAggregate ha = new HashAggregate((GroupBy) node);
+		ha.setNumBuff(numbuff);
+		return ha;
+
+	    case GroupByType.SORT:
+
+		SortAggregate sa = new SortAggregate((GroupBy) node);
+		sa.setNumBuff(numbuff);
+		return sa;
+	    default:
+		return node;
+	    }
+	}else{
+	    return node;
+	}
+    }
+
+
+    /** Rewrites the execution plan so that every chain of Selects is
+     ** applied by one Select with all the conditions, and such a chain
+     ** right under a Project is fused with it into a FilterProject
+     **/
+
+    public static Operator fuseSelectProject(Operator node){
+	if(node.getOpType()==OpType.JOIN){
+	    ((Join)node).setLeft(fuseSelectProject(((Join)node).getLeft()));
+	    ((Join)node).setRight(fuseSelectProject(((Join)node).getRight()));
+	    return node;
+	}else if(node.getOpType()==OpType.SELECT){
+	    if(node instanceof IndexScan){
+		return node;
+	    }
+	    Vector conditions = new Vector();
+	    Operator input = selectChain(node,conditions);
+	    input = fuseSelectProject(input);
+	    if(conditions.size() == 1){
+		((Select)node).setBase(input);
 		return node;
+	    }
+	    Select sel = new Select(input,conditions,OpType.SELECT);
+	    sel.setSchema(node.getSchema());
+	    return sel;
+	}else if(node.getOpType()==OpType.PROJECT){
+	    Operator base = ((Project)node).getBase();
+	    if(base.getOpType()==OpType.SELECT && !(base instanceof IndexScan)){
+		Vector conditions = new Vector();
+		Operator input = fuseSelectProject(selectChain(base,conditions));
+		FilterProject fp = new FilterProject(input,conditions,((Project)node).getProjAttr(),OpType.PROJECT);
+		fp.setSchema(node.getSchema());
+		return fp;
+	    }
+	    ((Project)node).setBase(fuseSelectProject(base));
+	    return node;
+	}else if(node.getOpType()==OpType.DISTINCT){
+	    ((Distinct)node).setBase(fuseSelectProject(((Distinct)node).getBase()));
+	    return node;
+	}else if(node.getOpType()==OpType.GROUPBY){
+	    ((GroupBy)node).setBase(fuseSelectProject(((GroupBy)node).getBase()));
+	    return node;
+	}
+	return node;
+    }
+
+    /** Rewrites the execution plan so that every hash join and block
+     ** nested join large enough runs on degree threads: both inputs are
+     ** repartitioned on the join key, a copy of the join with its share
+     ** of the buffers joins each pair of partitions, and a gather
+     ** collects the results. The right input of a block nested join is
+     ** broadcast instead if it is small beside the left one. The
+     ** semi-join filter of a copy is applied by the exchange of its
+     ** left input to the tuples of its partition
+     **/
+
+    public static Operator parallelize(Operator node, int degree){
+	if(node.getOpType()==OpType.JOIN){
+	    Join join = (Join) node;
+	    /** the sizes are estimated before the inputs are rewritten **/
+	    int leftpages = estimatePages(join.getLeft());
+	    int rightpages = estimatePages(join.getRight());
+	    join.setLeft(parallelize(join.getLeft(),degree));
+	    join.setRight(parallelize(join.getRight(),degree));
+	    if(!(join instanceof HashJoin) && !(join instanceof HybridHashJoin) && !(join instanceof BlockNestedJoin)){
+		return node;
+	    }
+	    int numparts = Math.min(degree,join.getNumBuff()/3);
+	    for(;numparts >= 2;numparts--){
+		int buff = partBuffers(join.getNumBuff(),numparts,isBroadcast(join,numparts,leftpages,rightpages));
+		if(buff < 3)
+		    continue;
+		/** a partition of the right input must still fit into the
+		 ** hash tables of one partitioning pass with the smaller
+		 ** share of the buffers, or it is rescanned in chunks
+		 **/
+		if(join instanceof HashJoin && (rightpages + numparts - 1)/numparts > (buff-1)*(buff-2))
+		    continue;
+		break;
+	    }
+	    if(numparts < 2 || leftpages + rightpages < MIN_PARALLEL_PAGES){
+		return node;
+	    }
+	    return partitionJoin(join,numparts,isBroadcast(join,numparts,leftpages,rightpages));
+	}else if(node.getOpType()==OpType.SELECT){
+	    ((Select)node).setBase(parallelize(((Select)node).getBase(),degree));
+	    return node;
+	}else if(node.getOpType()==OpType.PROJECT){
+	    ((Project)node).setBase(parallelize(((Project)node).getBase(),degree));
+	    return node;
+	}else if(node.getOpType()==OpType.DISTINCT){
+	    ((Distinct)node).setBase(parallelize(((Distinct)node).getBase(),degree));
+	    return node;
+	}else if(node.getOpType()==OpType.GROUPBY){
+	    ((GroupBy)node).setBase(parallelize(((GroupBy)node).getBase(),degree));
+	    return node;
+	}
+	return node;
+    }
+
+    private static Operator partitionJoin(Join join, int numparts, boolean broadcast){
+	Condition con = join.getCondition();
+	Operator left = join.getLeft();
+	Operator right = join.getRight();
+	int leftindex = left.getSchema().indexOf(con.getLhs());
+	int rightindex = right.getSchema().indexOf((Attribute) con.getRhs());
+
+	Exchange[] leftparts = Exchange.repartition(left,leftindex,numparts);
+	Exchange[] rightparts;
+	if(broadcast){
+	    rightparts = Exchange.broadcast(right,numparts);
 	}else{
+	    rightparts = Exchange.repartition(right,rightindex,numparts);
+	}
+	Operator[] parts = new Operator[numparts];
+	for(int i=0;i<numparts;i++){
+	    Join part;
+	    if(join instanceof HashJoin){
+		part = new HashJoin(join);
+	    }else if(join instanceof HybridHashJoin){
+		part = new HybridHashJoin(join);
+	    }else{
+		part = new BlockNestedJoin(join);
+	    }
+	    part.setLeft(leftparts[i]);
+	    part.setRight(rightparts[i]);
+	    part.setNumBuff(partBuffers(join.getNumBuff(),numparts,broadcast));
+	    parts[i] = part;
+	}
+	return Exchange.gather(parts);
+    }
+
+    /** the right input of a block nested join is broadcast if it is
+     ** small beside the left one
+     **/
+
+    private static boolean isBroadcast(Join join, int numparts, int leftpages, int rightpages){
+	return join instanceof BlockNestedJoin && rightpages*numparts <= leftpages;
+    }
+
+    /** buffers of each copy of a join run on numparts threads: the
+     ** pages held by the exchanges of the inputs and of the gather are
+     ** taken out of the buffers of the join, and the copies share the rest
+     **/
+
+    private static int partBuffers(int numbuff, int numparts, boolean broadcast){
+	int exchange = Exchange.bufferPages(Exchange.REPARTITION,1,numparts)
+	    + Exchange.bufferPages(broadcast ? Exchange.BROADCAST : Exchange.REPARTITION,1,numparts)
+	    + Exchange.bufferPages(Exchange.GATHER,numparts,1);
+	return (numbuff - exchange)/numparts;
+    }
+
+    /** estimated number of pages of the result of the plan **/
+
+    private static int estimatePages(Operator node){
+	PlanCost pc = new PlanCost();
+	pc.getCost(node);
+	int capacity = Math.max(1,Batch.getPageSize()/node.getSchema().getTupleSize());
+	return (int) Math.ceil((double) pc.getNumTuples()/(double) capacity);
+    }
+
+    /** Adds the conditions of the chain of Selects starting at the node
+     ** to the vector, the lowest first, and returns the operator under
+     ** the chain
+     **/
+
+    private static Operator selectChain(Operator node, Vector conditions){
+	if(node.getOpType()!=OpType.SELECT || node instanceof IndexScan){
 	    return node;
 	}
+	Operator input = selectChain(((Select)node).getBase(),conditions);
+	conditions.addAll(((Select)node).getConditions());
+	return input;
     }
 }
 
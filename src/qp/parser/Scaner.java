@@ -232,22 +232,22 @@ public class Scaner implements java_cup.runtime.Scanner {
 		/* 19 */ YY_NO_ANCHOR,
 		/* 20 */ YY_NO_ANCHOR,
 		/* 21 */ YY_NO_ANCHOR,
-		/* 22 */ YY_NOT_ACCEPT,
+		/* 22 */ YY_NO_ANCHOR,
 		/* 23 */ YY_NO_ANCHOR,
-		/* 24 */ YY_NOT_ACCEPT,
+		/* 24 */ YY_NO_ANCHOR,
 		/* 25 */ YY_NO_ANCHOR,
-		/* 26 */ YY_NOT_ACCEPT,
+		/* 26 */ YY_NO_ANCHOR,
 		/* 27 */ YY_NO_ANCHOR,
-		/* 28 */ YY_NOT_ACCEPT,
-		/* 29 */ YY_NO_ANCHOR,
-		/* 30 */ YY_NOT_ACCEPT,
-		/* 31 */ YY_NO_ANCHOR,
+		/* 28 */ YY_NO_ANCHOR,
+		/* 29 */ YY_NOT_ACCEPT,
+		/* 30 */ YY_NO_ANCHOR,
+		/* 31 */ YY_NOT_ACCEPT,
 		/* 32 */ YY_NO_ANCHOR,
-		/* 33 */ YY_NO_ANCHOR,
+		/* 33 */ YY_NOT_ACCEPT,
 		/* 34 */ YY_NO_ANCHOR,
-		/* 35 */ YY_NO_ANCHOR,
+		/* 35 */ YY_NOT_ACCEPT,
 		/* 36 */ YY_NO_ANCHOR,
-		/* 37 */ YY_NO_ANCHOR,
+		/* 37 */ YY_NOT_ACCEPT,
 		/* 38 */ YY_NO_ANCHOR,
 		/* 39 */ YY_NO_ANCHOR,
 		/* 40 */ YY_NO_ANCHOR,
@@ -262,34 +262,57 @@ public class Scaner implements java_cup.runtime.Scanner {
 		/* 49 */ YY_NO_ANCHOR,
 		/* 50 */ YY_NO_ANCHOR,
 		/* 51 */ YY_NO_ANCHOR,
-		/* 52 */ YY_NO_ANCHOR
+		/* 52 */ YY_NO_ANCHOR,
+		/* 53 */ YY_NO_ANCHOR,
+		/* 54 */ YY_NO_ANCHOR,
+		/* 55 */ YY_NO_ANCHOR,
+		/* 56 */ YY_NO_ANCHOR,
+		/* 57 */ YY_NO_ANCHOR,
+		/* 58 */ YY_NO_ANCHOR,
+		/* 59 */ YY_NO_ANCHOR,
+		/* 60 */ YY_NO_ANCHOR,
+		/* 61 */ YY_NO_ANCHOR,
+		/* 62 */ YY_NO_ANCHOR,
+		/* 63 */ YY_NO_ANCHOR,
+		/* 64 */ YY_NO_ANCHOR,
+		/* 65 */ YY_NO_ANCHOR,
+		/* 66 */ YY_NO_ANCHOR,
+		/* 67 */ YY_NO_ANCHOR,
+		/* 68 */ YY_NO_ANCHOR,
+		/* 69 */ YY_NO_ANCHOR
 	};
 	private int yy_cmap[] = unpackFromString(1,130,
-"0:9,21:2,0,21:2,0:18,25,26,24,27:3,36,29,27:2,20,27,31,27,38,27,23:10,27,33" +
-",34,32,35,27:2,22,15,4,17,2,6,12,11,18,22:2,3,9,19,8,14,22,7,1,5,13,22,10,2" +
-"2,16,22,27,28,27:2,22,27,22:13,30,22:5,30,22:6,27,37,27:2,0,39:2")[0];
+"0:9,26:2,0,26:2,0:18,30,31,29,32:3,41,34,23,24,25,32,36,32,43,32,28:10,32,3" +
+"8,39,37,40,32:2,20,15,4,17,2,6,12,11,18,27:2,3,9,19,8,14,27,7,1,5,13,22,10," +
+"21,16,27,32,33,32:2,27,32,27:13,35,27:5,35,27:6,32,42,32:2,0,44:2")[0];
 
-	private int yy_rmap[] = unpackFromString(1,53,
-"0,1,2,3,2:3,4,5,2:8,6:5,7,8,9,10,11,12,13,14,15,16,17,18,19,20,21,22,23,24," +
-"25,26,27,28,6,29,30,31,32,33,6,34,35")[0];
+	private int yy_rmap[] = unpackFromString(1,70,
+"0,1,2:3,3,2:3,4,5,2:8,6:10,7,8,9,6,10,11,12,13,14,15,16,17,18,19,20,21,22,2" +
+"3,24,25,26,27,28,29,30,31,32,33,34,35,6,36,37,38,39,40,41,42,43,44,45")[0];
 
-	private int yy_nxt[][] = unpackFromString(36,40,
-"-1,1,50:4,37,50:3,42,50,51,50:4,52,50:2,2,3,50,-1,22,3,24,-1:3,50,4,5,6,7,8" +
-",26,28,9,10,-1,50,43,50:17,-1:2,50,44,-1:6,50,-1:70,3,-1:3,3,-1:46,13,-1:39" +
-",14,-1:8,50:19,-1:2,50,44,-1:6,50,-1:10,22:20,-1,22:2,11,22:3,30,-1,22:9,-1" +
-":2,50:8,17,50:10,-1:2,50,44,-1:6,50,-1:41,12,-1:8,50,18,50:17,-1:2,50,44,-1" +
-":6,50,-1:45,15,-1:4,50:4,19,50:14,-1:2,50,44,-1:6,50,-1:46,16,-1:3,50:15,20" +
-",50:3,-1:2,50,44,-1:6,50,-1:33,22,-1:3,22:3,-1:10,50:4,21,50:14,-1:2,50,44," +
-"-1:6,50,-1:10,50:7,23,50:11,-1:2,50,44,-1:6,50,-1:10,50:6,25,50:12,-1:2,50," +
-"44,-1:6,50,-1:10,50:3,27,50:15,-1:2,50,44,-1:6,50,-1:10,50:14,29,50:4,-1:2," +
-"50,44,-1:6,50,-1:10,50:3,31,50:15,-1:2,50,44,-1:6,50,-1:10,50:6,32,50:12,-1" +
-":2,50,44,-1:6,50,-1:10,50,33,50:17,-1:2,50,44,-1:6,50,-1:10,50,34,50:17,-1:" +
-"2,50,44,-1:6,50,-1:10,50:13,35,50:5,-1:2,50,44,-1:6,50,-1:10,50:18,36,-1:2," +
-"50,44,-1:6,50,-1:10,50:10,38,50:8,-1:2,50,44,-1:6,50,-1:10,50:2,39,50:16,-1" +
-":2,50,44,-1:6,50,-1:10,50:7,47,50:11,-1:2,50,44,-1:6,50,-1:10,48,50:18,-1:2" +
-",50,44,-1:6,50,-1:10,50:12,40,50:6,-1:2,50,44,-1:6,50,-1:10,50:4,49,50:14,-" +
-"1:2,50,44,-1:6,50,-1:10,50:17,41,50,-1:2,50,44,-1:6,50,-1:10,50:6,45,50:12," +
-"-1:2,50,44,-1:6,50,-1:10,50:17,46,50,-1:2,50,44,-1:6,50,-1:9");
+	private int yy_nxt[][] = unpackFromString(46,45,
+"-1,1,59:2,62,59,63,59:2,64,65,59,66,59:4,67,59:2,68,59:2,2,3,4,5,59,-1,29,5" +
+",31,-1:3,59,6,7,8,9,10,33,35,11,12,-1,59,69,59:10,30,59:9,-1:4,59,32,-1:6,5" +
+"9,-1:80,5,-1:3,5,-1:51,15,-1:44,16,-1:8,59:22,-1:4,59,32,-1:6,59,-1:10,29:2" +
+"5,-1,29:2,13,29:3,37,-1,29:9,-1:2,59:8,19,59:13,-1:4,59,32,-1:6,59,-1:46,14" +
+",-1:48,17,-1:4,59:12,43,59:9,-1:4,59,32,-1:6,59,-1:51,18,-1:3,59:7,44,59:14" +
+",-1:4,59,32,-1:6,59,-1:38,29,-1:3,29:3,-1:10,59:18,20,59:3,-1:4,59,32,-1:6," +
+"59,-1:10,59:20,21,59,-1:4,59,32,-1:6,59,-1:10,59,45,59:20,-1:4,59,32,-1:6,5" +
+"9,-1:10,47,59:21,-1:4,59,32,-1:6,59,-1:10,59:11,22,59:10,-1:4,59,32,-1:6,59" +
+",-1:10,59:18,49,59:3,-1:4,59,32,-1:6,59,-1:10,59:8,23,59:13,-1:4,59,32,-1:6" +
+",59,-1:10,59:6,50,59:15,-1:4,59,32,-1:6,59,-1:10,59:12,51,59:9,-1:4,59,32,-" +
+"1:6,59,-1:10,59:4,52,59:17,-1:4,59,32,-1:6,59,-1:10,59:3,53,59:18,-1:4,59,3" +
+"2,-1:6,59,-1:10,59:4,24,59:17,-1:4,59,32,-1:6,59,-1:10,59,25,59:20,-1:4,59," +
+"32,-1:6,59,-1:10,59:13,54,59:8,-1:4,59,32,-1:6,59,-1:10,59:17,55,59:4,-1:4," +
+"59,32,-1:6,59,-1:10,59:4,26,59:17,-1:4,59,32,-1:6,59,-1:10,59:14,56,59:7,-1" +
+":4,59,32,-1:6,59,-1:10,59:18,57,59:3,-1:4,59,32,-1:6,59,-1:10,59:15,27,59:6" +
+",-1:4,59,32,-1:6,59,-1:10,59:3,58,59:18,-1:4,59,32,-1:6,59,-1:10,59:4,28,59" +
+":17,-1:4,59,32,-1:6,59,-1:10,59:7,46,59:14,-1:4,59,32,-1:6,59,-1:10,59,48,5" +
+"9:20,-1:4,59,32,-1:6,59,-1:10,59:7,34,59:14,-1:4,59,32,-1:6,59,-1:10,59:6,3" +
+"6,59:15,-1:4,59,32,-1:6,59,-1:10,59:17,38,59,39,59:2,-1:4,59,32,-1:6,59,-1:" +
+"10,59:10,40,59:11,-1:4,59,32,-1:6,59,-1:10,59:6,60,59:15,-1:4,59,32,-1:6,59" +
+",-1:10,59:17,41,59:4,-1:4,59,32,-1:6,59,-1:10,59:21,42,-1:4,59,32,-1:6,59,-" +
+"1:10,59:2,61,59:19,-1:4,59,32,-1:6,59,-1:9");
 
 	public java_cup.runtime.Symbol next_token ()
 		throws java.io.IOException {
@@ -346,209 +369,209 @@ public class Scaner implements java_cup.runtime.Scanner {
 					case 2:
 						{
     yybegin(YYINITIAL);
-    return new Symbol(sym.STAR,yyline,yychar,new TokenValue(yytext()));
+    return new Symbol(sym.LPAREN,yyline,yychar,new TokenValue(yytext()));
 }
 					case -3:
 						break;
 					case 3:
-						{ 
+						{
+    yybegin(YYINITIAL);
+    return new Symbol(sym.RPAREN,yyline,yychar,new TokenValue(yytext()));
 }
 					case -4:
 						break;
 					case 4:
 						{
-  yybegin(NEGATE); 
-  return new Symbol(sym.COMMA, yyline,yychar,new TokenValue(yytext())); 
+    yybegin(YYINITIAL);
+    return new Symbol(sym.STAR,yyline,yychar,new TokenValue(yytext()));
 }
 					case -5:
 						break;
 					case 5:
-						{
-  yybegin(NEGATE); 
-  return new Symbol(sym.EQUAL, yyline,yychar,new TokenValue(yytext()));
+						{ 
 }
 					case -6:
 						break;
 					case 6:
 						{
-  yybegin(YYINITIAL); 
-  return new Symbol(sym.SEMI, yyline,yychar,new TokenValue(yytext()));
+  yybegin(NEGATE); 
+  return new Symbol(sym.COMMA, yyline,yychar,new TokenValue(yytext())); 
 }
 					case -7:
 						break;
 					case 7:
-						{ 
-  yybegin(NEGATE);
-  return new Symbol(sym.LESSTHAN,yyline,yychar,new TokenValue(yytext()));
+						{
+  yybegin(NEGATE); 
+  return new Symbol(sym.EQUAL, yyline,yychar,new TokenValue(yytext()));
 }
 					case -8:
 						break;
 					case 8:
-						{ 
-  yybegin(NEGATE);
-  return new Symbol(sym.GREATERTHAN,yyline,yychar,new TokenValue(yytext()));
+						{
+  yybegin(YYINITIAL); 
+  return new Symbol(sym.SEMI, yyline,yychar,new TokenValue(yytext()));
 }
 					case -9:
 						break;
 					case 9:
-						{
-  yybegin(YYINITIAL);
-   return new Symbol(sym.DOT,yyline,yychar,new TokenValue(yytext()));
+						{ 
+  yybegin(NEGATE);
+  return new Symbol(sym.LESSTHAN,yyline,yychar,new TokenValue(yytext()));
 }
 					case -10:
 						break;
 					case 10:
-						
+						{ 
+  yybegin(NEGATE);
+  return new Symbol(sym.GREATERTHAN,yyline,yychar,new TokenValue(yytext()));
+}
 					case -11:
 						break;
 					case 11:
-						{ 
-  yybegin(YYINITIAL); 
-    return new Symbol(sym.STRINGLIT,yyline,yychar, new TokenValue(yytext().substring(1,yytext().length()-1))); 
-  }
+						{
+  yybegin(YYINITIAL);
+   return new Symbol(sym.DOT,yyline,yychar,new TokenValue(yytext()));
+}
 					case -12:
 						break;
 					case 12:
-						{ 
-  yybegin(NEGATE);
-  return new Symbol(sym.NOTEQUAL, yyline,yychar,new TokenValue(yytext()));
-}
+						
 					case -13:
 						break;
 					case 13:
 						{ 
-  yybegin(NEGATE);
-  return new Symbol(sym.LTOE,yyline,yychar,new TokenValue(yytext()));
-}
+  yybegin(YYINITIAL); 
+    return new Symbol(sym.STRINGLIT,yyline,yychar, new TokenValue(yytext().substring(1,yytext().length()-1))); 
+  }
 					case -14:
 						break;
 					case 14:
 						{ 
   yybegin(NEGATE);
-  return new Symbol(sym.GTOE, yyline,yychar,new TokenValue(yytext()));
+  return new Symbol(sym.NOTEQUAL, yyline,yychar,new TokenValue(yytext()));
 }
 					case -15:
 						break;
 					case 15:
 						{ 
   yybegin(NEGATE);
-  return new Symbol(sym.AND, yyline,yychar,new TokenValue(yytext()));
+  return new Symbol(sym.LTOE,yyline,yychar,new TokenValue(yytext()));
 }
 					case -16:
 						break;
 					case 16:
 						{ 
   yybegin(NEGATE);
-  return new Symbol(sym.OR,yyline,yychar,new TokenValue(yytext()));
+  return new Symbol(sym.GTOE, yyline,yychar,new TokenValue(yytext()));
 }
 					case -17:
 						break;
 					case 17:
-						{
-  yybegin(YYINITIAL);
-  return new Symbol(sym.FROM,yyline,yychar,new TokenValue(yytext()));
+						{ 
+  yybegin(NEGATE);
+  return new Symbol(sym.AND, yyline,yychar,new TokenValue(yytext()));
 }
 					case -18:
 						break;
 					case 18:
-						{
-  yybegin(YYINITIAL);
-  return new Symbol(sym.WHERE,yyline,yychar,new TokenValue(yytext()));
+						{ 
+  yybegin(NEGATE);
+  return new Symbol(sym.OR,yyline,yychar,new TokenValue(yytext()));
 }
 					case -19:
 						break;
 					case 19:
 						{
   yybegin(YYINITIAL);
-  return new Symbol(sym.SELECT,yyline,yychar,new TokenValue(yytext()));
+  return new Symbol(sym.SUM,yyline,yychar,new TokenValue(yytext()));
 }
 					case -20:
 						break;
 					case 20:
 						{
   yybegin(YYINITIAL);
-  return new Symbol(sym.GROUPBY,yyline,yychar,new TokenValue(yytext()));
+  return new Symbol(sym.MIN,yyline,yychar,new TokenValue(yytext()));
 }
 					case -21:
 						break;
 					case 21:
 						{
   yybegin(YYINITIAL);
-  return new Symbol(sym.DISTINCT,yyline,yychar,new TokenValue(yytext()));
+  return new Symbol(sym.MAX,yyline,yychar,new TokenValue(yytext()));
 }
 					case -22:
 						break;
-					case 23:
-						{ 
+					case 22:
+						{
   yybegin(YYINITIAL);
-  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+  return new Symbol(sym.AVG,yyline,yychar,new TokenValue(yytext()));
 }
 					case -23:
 						break;
-					case 25:
-						{ 
+					case 23:
+						{
   yybegin(YYINITIAL);
-  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+  return new Symbol(sym.FROM,yyline,yychar,new TokenValue(yytext()));
 }
 					case -24:
 						break;
-					case 27:
-						{ 
+					case 24:
+						{
   yybegin(YYINITIAL);
-  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+  return new Symbol(sym.COUNT,yyline,yychar,new TokenValue(yytext()));
 }
 					case -25:
 						break;
-					case 29:
-						{ 
+					case 25:
+						{
   yybegin(YYINITIAL);
-  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+  return new Symbol(sym.WHERE,yyline,yychar,new TokenValue(yytext()));
 }
 					case -26:
 						break;
-					case 31:
-						{ 
+					case 26:
+						{
   yybegin(YYINITIAL);
-  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+  return new Symbol(sym.SELECT,yyline,yychar,new TokenValue(yytext()));
 }
 					case -27:
 						break;
-					case 32:
-						{ 
+					case 27:
+						{
   yybegin(YYINITIAL);
-  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+  return new Symbol(sym.GROUPBY,yyline,yychar,new TokenValue(yytext()));
 }
 					case -28:
 						break;
-					case 33:
-						{ 
+					case 28:
+						{
   yybegin(YYINITIAL);
-  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+  return new Symbol(sym.DISTINCT,yyline,yychar,new TokenValue(yytext()));
 }
 					case -29:
 						break;
-					case 34:
+					case 30:
 						{ 
   yybegin(YYINITIAL);
   return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
 }
 					case -30:
 						break;
-					case 35:
+					case 32:
 						{ 
   yybegin(YYINITIAL);
   return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
 }
 					case -31:
 						break;
-					case 36:
+					case 34:
 						{ 
   yybegin(YYINITIAL);
   return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
 }
 					case -32:
 						break;
-					case 37:
+					case 36:
 						{ 
   yybegin(YYINITIAL);
   return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
@@ -660,6 +683,125 @@ public class Scaner implements java_cup.runtime.Scanner {
 }
 					case -48:
 						break;
+					case 53:
+						{ 
+  yybegin(YYINITIAL);
+  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+}
+					case -49:
+						break;
+					case 54:
+						{ 
+  yybegin(YYINITIAL);
+  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+}
+					case -50:
+						break;
+					case 55:
+						{ 
+  yybegin(YYINITIAL);
+  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+}
+					case -51:
+						break;
+					case 56:
+						{ 
+  yybegin(YYINITIAL);
+  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+}
+					case -52:
+						break;
+					case 57:
+						{ 
+  yybegin(YYINITIAL);
+  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+}
+					case -53:
+						break;
+					case 58:
+						{ 
+  yybegin(YYINITIAL);
+  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+}
+					case -54:
+						break;
+					case 59:
+						{ 
+  yybegin(YYINITIAL);
+  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+}
+					case -55:
+						break;
+					case 60:
+						{ 
+  yybegin(YYINITIAL);
+  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+}
+					case -56:
+						break;
+					case 61:
+						{ 
+  yybegin(YYINITIAL);
+  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+}
+					case -57:
+						break;
+					case 62:
+						{ 
+  yybegin(YYINITIAL);
+  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+}
+					case -58:
+						break;
+					case 63:
+						{ 
+  yybegin(YYINITIAL);
+  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+}
+					case -59:
+						break;
+					case 64:
+						{ 
+  yybegin(YYINITIAL);
+  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+}
+					case -60:
+						break;
+					case 65:
+						{ 
+  yybegin(YYINITIAL);
+  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+}
+					case -61:
+						break;
+					case 66:
+						{ 
+  yybegin(YYINITIAL);
+  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+}
+					case -62:
+						break;
+					case 67:
+						{ 
+  yybegin(YYINITIAL);
+  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+}
+					case -63:
+						break;
+					case 68:
+						{ 
+  yybegin(YYINITIAL);
+  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+}
+					case -64:
+						break;
+					case 69:
+						{ 
+  yybegin(YYINITIAL);
+  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+}
+					case -65:
+						break;
 					default:
 						yy_error(YY_E_INTERNAL,false);
 					case -1:
@@ -1,16 +1,17 @@
 
 //----------------------------------------------------
 // The following code was generated by CUP v0.10k
-// Mon Mar 25 17:05:38 SGT 2019
+// Sat Oct 17 19:21:18 UTC 2026
 //----------------------------------------------------
 
 package qp.parser;
+
 import java_cup.runtime.*;
 import java.util.*;
 import qp.utils.*;
 
 /** CUP v0.10k generated parser.
-  * @version Mon Mar 25 17:05:38 SGT 2019
+  * @version Sat Oct 17 19:21:18 UTC 2026
   */
 public class parser extends java_cup.runtime.lr_parser {
 
@@ -23,15 +24,18 @@ public class parser extends java_cup.runtime.lr_parser {
   /** Production table. */
   protected static final short _production_table[][] = 
     unpackFromStrings(new String[] {
-    "\000\034\000\002\003\005\000\002\002\004\000\002\003" +
+    "\000\045\000\002\003\005\000\002\002\004\000\002\003" +
     "\010\000\002\003\010\000\002\003\006\000\002\003\006" +
     "\000\002\003\011\000\002\003\011\000\002\003\007\000" +
     "\002\003\007\000\002\004\005\000\002\004\003\000\002" +
-    "\006\005\000\002\006\003\000\002\007\005\000\002\007" +
-    "\003\000\002\010\005\000\002\010\005\000\002\010\004" +
-    "\000\002\010\004\000\002\005\005\000\002\005\004\000" +
-    "\002\011\003\000\002\011\003\000\002\011\003\000\002" +
-    "\011\003\000\002\011\003\000\002\011\003" });
+    "\006\005\000\002\006\003\000\002\007\003\000\002\007" +
+    "\006\000\002\010\003\000\002\010\003\000\002\010\003" +
+    "\000\002\010\003\000\002\010\003\000\002\011\005\000" +
+    "\002\011\003\000\002\012\005\000\002\012\003\000\002" +
+    "\013\005\000\002\013\005\000\002\013\004\000\002\013" +
+    "\004\000\002\005\005\000\002\005\004\000\002\014\003" +
+    "\000\002\014\003\000\002\014\003\000\002\014\003\000" +
+    "\002\014\003\000\002\014\003" });
 
   /** Access to production table. */
   public short[][] production_table() {return _production_table;}
@@ -39,45 +43,54 @@ public class parser extends java_cup.runtime.lr_parser {
   /** Parse-action table. */
   protected static final short[][] _action_table = 
     unpackFromStrings(new String[] {
-    "\000\065\000\004\021\005\001\002\000\006\002\066\024" +
-    "\065\001\002\000\010\004\007\010\010\025\006\001\002" +
-    "\000\006\004\007\010\053\001\002\000\006\003\050\007" +
-    "\051\001\002\000\004\022\044\001\002\000\006\005\013" +
-    "\022\014\001\002\000\012\002\ufff6\005\ufff6\022\ufff6\024" +
-    "\ufff6\001\002\000\004\004\007\001\002\000\004\004\015" +
-    "\001\002\000\012\002\ufff4\005\ufff4\023\ufff4\024\ufff4\001" +
-    "\002\000\012\002\ufffd\005\017\023\020\024\ufffd\001\002" +
-    "\000\004\004\042\001\002\000\006\003\022\004\007\001" +
-    "\002\000\010\002\uffff\005\040\024\uffff\001\002\000\004" +
-    "\026\037\001\002\000\020\003\026\011\030\012\032\013" +
-    "\033\014\025\015\027\016\031\001\002\000\010\002\ufff2" +
-    "\005\ufff2\024\ufff2\001\002\000\006\004\uffe8\026\uffe8\001" +
-    "\002\000\010\002\uffef\005\uffef\024\uffef\001\002\000\006" +
-    "\004\uffe6\026\uffe6\001\002\000\006\004\uffeb\026\uffeb\001" +
-    "\002\000\006\004\uffe7\026\uffe7\001\002\000\006\004\uffea" +
-    "\026\uffea\001\002\000\006\004\uffe9\026\uffe9\001\002\000" +
-    "\006\004\007\026\036\001\002\000\010\002\ufff0\005\ufff0" +
-    "\024\ufff0\001\002\000\010\002\ufff1\005\ufff1\024\ufff1\001" +
-    "\002\000\010\002\uffee\005\uffee\024\uffee\001\002\000\006" +
-    "\003\022\004\007\001\002\000\010\002\ufff3\005\ufff3\024" +
-    "\ufff3\001\002\000\012\002\ufff5\005\ufff5\023\ufff5\024\ufff5" +
-    "\001\002\000\012\002\ufff7\005\ufff7\022\ufff7\024\ufff7\001" +
-    "\002\000\004\004\015\001\002\000\012\002\ufffc\005\017" +
-    "\023\046\024\ufffc\001\002\000\006\003\022\004\007\001" +
-    "\002\000\010\002\ufffe\005\040\024\ufffe\001\002\000\030" +
-    "\002\uffec\003\uffec\005\uffec\011\uffec\012\uffec\013\uffec\014" +
-    "\uffec\015\uffec\016\uffec\022\uffec\024\uffec\001\002\000\004" +
-    "\004\052\001\002\000\030\002\uffed\003\uffed\005\uffed\011" +
-    "\uffed\012\uffed\013\uffed\014\uffed\015\uffed\016\uffed\022\uffed" +
-    "\024\uffed\001\002\000\004\022\061\001\002\000\006\005" +
-    "\013\022\055\001\002\000\004\004\015\001\002\000\012" +
-    "\002\ufff9\005\017\023\057\024\ufff9\001\002\000\006\003" +
-    "\022\004\007\001\002\000\010\002\ufffb\005\040\024\ufffb" +
-    "\001\002\000\004\004\015\001\002\000\012\002\ufff8\005" +
-    "\017\023\063\024\ufff8\001\002\000\006\003\022\004\007" +
-    "\001\002\000\010\002\ufffa\005\040\024\ufffa\001\002\000" +
-    "\004\004\007\001\002\000\004\002\000\001\002\000\010" +
-    "\002\001\005\013\024\001\001\002" });
+    "\000\102\000\004\021\005\001\002\000\006\002\100\024" +
+    "\077\001\002\000\022\004\020\010\016\025\017\030\014" +
+    "\031\021\032\010\033\012\034\006\001\002\000\004\026" +
+    "\uffed\001\002\000\004\026\074\001\002\000\004\026\uffef" +
+    "\001\002\000\006\005\ufff3\022\ufff3\001\002\000\004\026" +
+    "\uffee\001\002\000\006\005\056\022\070\001\002\000\004" +
+    "\026\ufff1\001\002\000\006\005\ufff4\022\ufff4\001\002\000" +
+    "\004\022\064\001\002\000\020\004\020\010\026\030\014" +
+    "\031\021\032\010\033\012\034\006\001\002\000\006\003" +
+    "\022\007\023\001\002\000\004\026\ufff0\001\002\000\032" +
+    "\002\uffe3\003\uffe3\005\uffe3\011\uffe3\012\uffe3\013\uffe3\014" +
+    "\uffe3\015\uffe3\016\uffe3\022\uffe3\024\uffe3\027\uffe3\001\002" +
+    "\000\004\004\024\001\002\000\032\002\uffe4\003\uffe4\005" +
+    "\uffe4\011\uffe4\012\uffe4\013\uffe4\014\uffe4\015\uffe4\016\uffe4" +
+    "\022\uffe4\024\uffe4\027\uffe4\001\002\000\006\005\056\022" +
+    "\057\001\002\000\004\022\027\001\002\000\004\004\030" +
+    "\001\002\000\012\002\uffeb\005\uffeb\023\uffeb\024\uffeb\001" +
+    "\002\000\012\002\ufff8\005\032\023\033\024\ufff8\001\002" +
+    "\000\004\004\055\001\002\000\006\003\035\004\020\001" +
+    "\002\000\010\002\ufffa\005\053\024\ufffa\001\002\000\004" +
+    "\035\052\001\002\000\020\003\041\011\043\012\045\013" +
+    "\046\014\040\015\042\016\044\001\002\000\010\002\uffe9" +
+    "\005\uffe9\024\uffe9\001\002\000\006\004\uffdf\035\uffdf\001" +
+    "\002\000\010\002\uffe6\005\uffe6\024\uffe6\001\002\000\006" +
+    "\004\uffdd\035\uffdd\001\002\000\006\004\uffe2\035\uffe2\001" +
+    "\002\000\006\004\uffde\035\uffde\001\002\000\006\004\uffe1" +
+    "\035\uffe1\001\002\000\006\004\uffe0\035\uffe0\001\002\000" +
+    "\006\004\020\035\051\001\002\000\010\002\uffe7\005\uffe7" +
+    "\024\uffe7\001\002\000\010\002\uffe8\005\uffe8\024\uffe8\001" +
+    "\002\000\010\002\uffe5\005\uffe5\024\uffe5\001\002\000\006" +
+    "\003\035\004\020\001\002\000\010\002\uffea\005\uffea\024" +
+    "\uffea\001\002\000\012\002\uffec\005\uffec\023\uffec\024\uffec" +
+    "\001\002\000\016\004\020\030\014\031\021\032\010\033" +
+    "\012\034\006\001\002\000\004\004\030\001\002\000\012" +
+    "\002\ufff9\005\032\023\061\024\ufff9\001\002\000\006\003" +
+    "\035\004\020\001\002\000\010\002\ufffb\005\053\024\ufffb" +
+    "\001\002\000\006\005\ufff5\022\ufff5\001\002\000\004\004" +
+    "\030\001\002\000\012\002\ufffc\005\032\023\066\024\ufffc" +
+    "\001\002\000\006\003\035\004\020\001\002\000\010\002" +
+    "\ufffe\005\053\024\ufffe\001\002\000\004\004\030\001\002" +
+    "\000\012\002\ufffd\005\032\023\072\024\ufffd\001\002\000" +
+    "\006\003\035\004\020\001\002\000\010\002\uffff\005\053" +
+    "\024\uffff\001\002\000\004\004\020\001\002\000\004\027" +
+    "\076\001\002\000\006\005\ufff2\022\ufff2\001\002\000\004" +
+    "\004\020\001\002\000\004\002\000\001\002\000\010\002" +
+    "\001\005\103\024\001\001\002\000\010\002\ufff6\005\ufff6" +
+    "\024\ufff6\001\002\000\004\004\020\001\002\000\010\002" +
+    "\ufff7\005\ufff7\024\ufff7\001\002" });
 
   /** Access to parse-action table. */
   public short[][] action_table() {return _action_table;}
@@ -85,27 +98,33 @@ public class parser extends java_cup.runtime.lr_parser {
   /** <code>reduce_goto</code> table. */
   protected static final short[][] _reduce_table = 
     unpackFromStrings(new String[] {
-    "\000\065\000\004\003\003\001\001\000\002\001\001\000" +
-    "\006\004\010\005\011\001\001\000\006\004\053\005\011" +
+    "\000\102\000\004\003\003\001\001\000\002\001\001\000" +
+    "\012\005\010\006\012\007\014\010\006\001\001\000\002" +
     "\001\001\000\002\001\001\000\002\001\001\000\002\001" +
-    "\001\000\002\001\001\000\004\005\042\001\001\000\004" +
-    "\006\015\001\001\000\002\001\001\000\002\001\001\000" +
-    "\002\001\001\000\010\005\022\007\020\010\023\001\001" +
-    "\000\002\001\001\000\002\001\001\000\004\011\033\001" +
     "\001\000\002\001\001\000\002\001\001\000\002\001\001" +
-    "\000\002\001\001\000\002\001\001\000\002\001\001\000" +
-    "\002\001\001\000\002\001\001\000\004\005\034\001\001" +
-    "\000\002\001\001\000\002\001\001\000\002\001\001\000" +
-    "\006\005\022\010\040\001\001\000\002\001\001\000\002" +
-    "\001\001\000\002\001\001\000\004\006\044\001\001\000" +
-    "\002\001\001\000\010\005\022\007\046\010\023\001\001" +
-    "\000\002\001\001\000\002\001\001\000\002\001\001\000" +
-    "\002\001\001\000\002\001\001\000\002\001\001\000\004" +
-    "\006\055\001\001\000\002\001\001\000\010\005\022\007" +
-    "\057\010\023\001\001\000\002\001\001\000\004\006\061" +
-    "\001\001\000\002\001\001\000\010\005\022\007\063\010" +
-    "\023\001\001\000\002\001\001\000\006\004\066\005\011" +
-    "\001\001\000\002\001\001\000\002\001\001" });
+    "\000\002\001\001\000\002\001\001\000\012\005\010\006" +
+    "\024\007\014\010\006\001\001\000\002\001\001\000\002" +
+    "\001\001\000\002\001\001\000\002\001\001\000\002\001" +
+    "\001\000\002\001\001\000\002\001\001\000\004\011\030" +
+    "\001\001\000\002\001\001\000\002\001\001\000\002\001" +
+    "\001\000\010\005\035\012\033\013\036\001\001\000\002" +
+    "\001\001\000\002\001\001\000\004\014\046\001\001\000" +
+    "\002\001\001\000\002\001\001\000\002\001\001\000\002" +
+    "\001\001\000\002\001\001\000\002\001\001\000\002\001" +
+    "\001\000\002\001\001\000\004\005\047\001\001\000\002" +
+    "\001\001\000\002\001\001\000\002\001\001\000\006\005" +
+    "\035\013\053\001\001\000\002\001\001\000\002\001\001" +
+    "\000\010\005\010\007\062\010\006\001\001\000\004\011" +
+    "\057\001\001\000\002\001\001\000\010\005\035\012\061" +
+    "\013\036\001\001\000\002\001\001\000\002\001\001\000" +
+    "\004\011\064\001\001\000\002\001\001\000\010\005\035" +
+    "\012\066\013\036\001\001\000\002\001\001\000\004\011" +
+    "\070\001\001\000\002\001\001\000\010\005\035\012\072" +
+    "\013\036\001\001\000\002\001\001\000\004\005\074\001" +
+    "\001\000\002\001\001\000\002\001\001\000\006\004\100" +
+    "\005\101\001\001\000\002\001\001\000\002\001\001\000" +
+    "\002\001\001\000\004\005\103\001\001\000\002\001\001" +
+    "" });
 
   /** Access to <code>reduce_goto</code> table. */
   public short[][] reduce_table() {return _reduce_table;}
@@ -197,73 +216,73 @@ class CUP$parser$actions {
       switch (CUP$parser$act_num)
         {
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 27: // op ::= EQUAL 
+          case 36: // op ::= EQUAL 
             {
               Condition RESULT = null;
 		
 	 RESULT=new Condition(Condition.EQUAL);
 	
-              CUP$parser$result = new java_cup.runtime.Symbol(7/*op*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(10/*op*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 26: // op ::= NOTEQUAL 
+          case 35: // op ::= NOTEQUAL 
             {
               Condition RESULT = null;
 			
 	  RESULT = new Condition(Condition.NOTEQUAL);
 	
-              CUP$parser$result = new java_cup.runtime.Symbol(7/*op*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(10/*op*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 25: // op ::= GTOE 
+          case 34: // op ::= GTOE 
             {
               Condition RESULT = null;
 		
 	RESULT=new Condition(Condition.GTOE);
 	
-              CUP$parser$result = new java_cup.runtime.Symbol(7/*op*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(10/*op*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 24: // op ::= LTOE 
+          case 33: // op ::= LTOE 
             {
               Condition RESULT = null;
 		
 	RESULT=new Condition(Condition.LTOE);
 	
-              CUP$parser$result = new java_cup.runtime.Symbol(7/*op*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(10/*op*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 23: // op ::= GREATERTHAN 
+          case 32: // op ::= GREATERTHAN 
             {
               Condition RESULT = null;
 		
 	RESULT=new Condition(Condition.GREATERTHAN);
 	
-              CUP$parser$result = new java_cup.runtime.Symbol(7/*op*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(10/*op*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 22: // op ::= LESSTHAN 
+          case 31: // op ::= LESSTHAN 
             {
               Condition RESULT = null;
 		
 	RESULT=new Condition(Condition.LESSTHAN);
 	
-              CUP$parser$result = new java_cup.runtime.Symbol(7/*op*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(10/*op*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 21: // attribute ::= ID error 
+          case 30: // attribute ::= ID error 
             {
               Attribute RESULT = null;
 		int ileft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-1)).left;
@@ -281,7 +300,7 @@ class CUP$parser$actions {
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 20: // attribute ::= ID DOT ID 
+          case 29: // attribute ::= ID DOT ID 
             {
               Attribute RESULT = null;
 		int i1left = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left;
@@ -298,7 +317,7 @@ class CUP$parser$actions {
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 19: // condition ::= error STRINGLIT 
+          case 28: // condition ::= error STRINGLIT 
             {
               Condition RESULT = null;
 		int pleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-1)).left;
@@ -311,12 +330,12 @@ class CUP$parser$actions {
 		System.out.println("syntax error: incorrect condition:"+s.text());
 		System.exit(0);
 		
-              CUP$parser$result = new java_cup.runtime.Symbol(6/*condition*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-1)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(9/*condition*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-1)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 18: // condition ::= attribute error 
+          case 27: // condition ::= attribute error 
             {
               Condition RESULT = null;
 		int atleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-1)).left;
@@ -329,12 +348,12 @@ class CUP$parser$actions {
 		System.out.println("syntax error: incorrect condition");
 		System.exit(0);
 		
-              CUP$parser$result = new java_cup.runtime.Symbol(6/*condition*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-1)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(9/*condition*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-1)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 17: // condition ::= attribute op attribute 
+          case 26: // condition ::= attribute op attribute 
             {
               Condition RESULT = null;
 		int a1left = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left;
@@ -351,12 +370,12 @@ class CUP$parser$actions {
 		c.setOpType(Condition.JOIN);
 		RESULT=c;
 	      
-              CUP$parser$result = new java_cup.runtime.Symbol(6/*condition*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(9/*condition*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 16: // condition ::= attribute op STRINGLIT 
+          case 25: // condition ::= attribute op STRINGLIT 
             {
               Condition RESULT = null;
 		int atleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left;
@@ -374,12 +393,12 @@ class CUP$parser$actions {
 		RESULT=c;
 
 	     
-              CUP$parser$result = new java_cup.runtime.Symbol(6/*condition*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(9/*condition*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 15: // conditionlist ::= condition 
+          case 24: // conditionlist ::= condition 
             {
               Vector RESULT = null;
 		int cleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left;
@@ -390,12 +409,12 @@ class CUP$parser$actions {
 		clist.add(c);
 	        RESULT=clist;
 		
-              CUP$parser$result = new java_cup.runtime.Symbol(5/*conditionlist*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(8/*conditionlist*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 14: // conditionlist ::= conditionlist COMMA condition 
+          case 23: // conditionlist ::= conditionlist COMMA condition 
             {
               Vector RESULT = null;
 		int clistleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left;
@@ -408,12 +427,12 @@ class CUP$parser$actions {
 		clist.add(c);
 		RESULT=clist;
 		
-              CUP$parser$result = new java_cup.runtime.Symbol(5/*conditionlist*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(8/*conditionlist*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 13: // tablelist ::= ID 
+          case 22: // tablelist ::= ID 
             {
               Vector RESULT = null;
 		int ileft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left;
@@ -424,12 +443,12 @@ class CUP$parser$actions {
 		tlist.add(i.text());
 		RESULT=tlist;
 	      
-              CUP$parser$result = new java_cup.runtime.Symbol(4/*tablelist*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(7/*tablelist*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 12: // tablelist ::= tablelist COMMA ID 
+          case 21: // tablelist ::= tablelist COMMA ID 
             {
               Vector RESULT = null;
 		int tlistleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left;
@@ -442,7 +461,128 @@ class CUP$parser$actions {
 		tlist.add(i.text());
 		RESULT=tlist;
 	       
-              CUP$parser$result = new java_cup.runtime.Symbol(4/*tablelist*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(7/*tablelist*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+            }
+          return CUP$parser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 20: // aggregate ::= AVG 
+            {
+              Integer RESULT = null;
+		
+	RESULT=new Integer(Attribute.AVG);
+	
+              CUP$parser$result = new java_cup.runtime.Symbol(6/*aggregate*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+            }
+          return CUP$parser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 19: // aggregate ::= COUNT 
+            {
+              Integer RESULT = null;
+		
+	RESULT=new Integer(Attribute.COUNT);
+	
+              CUP$parser$result = new java_cup.runtime.Symbol(6/*aggregate*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+            }
+          return CUP$parser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 18: // aggregate ::= SUM 
+            {
+              Integer RESULT = null;
+		
+	RESULT=new Integer(Attribute.SUM);
+	
+              CUP$parser$result = new java_cup.runtime.Symbol(6/*aggregate*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+            }
+          return CUP$parser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 17: // aggregate ::= MIN 
+            {
+              Integer RESULT = null;
+		
+	RESULT=new Integer(Attribute.MIN);
+	
+              CUP$parser$result = new java_cup.runtime.Symbol(6/*aggregate*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+            }
+          return CUP$parser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 16: // aggregate ::= MAX 
+            {
+              Integer RESULT = null;
+		
+	RESULT=new Integer(Attribute.MAX);
+	
+              CUP$parser$result = new java_cup.runtime.Symbol(6/*aggregate*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+            }
+          return CUP$parser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 15: // selectattr ::= aggregate LPAREN attribute RPAREN 
+            {
+              Attribute RESULT = null;
+		int gleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-3)).left;
+		int gright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-3)).right;
+		Integer g = (Integer)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-3)).value;
+		int aleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-1)).left;
+		int aright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-1)).right;
+		Attribute a = (Attribute)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-1)).value;
+		
+		a.setAggType(g.intValue());
+		RESULT=a;
+		
+              CUP$parser$result = new java_cup.runtime.Symbol(5/*selectattr*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-3)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+            }
+          return CUP$parser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 14: // selectattr ::= attribute 
+            {
+              Attribute RESULT = null;
+		int aleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left;
+		int aright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right;
+		Attribute a = (Attribute)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-0)).value;
+		
+		RESULT=a;
+		
+              CUP$parser$result = new java_cup.runtime.Symbol(5/*selectattr*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+            }
+          return CUP$parser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 13: // selectlist ::= selectattr 
+            {
+              Vector RESULT = null;
+		int atleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left;
+		int atright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right;
+		Attribute at = (Attribute)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-0)).value;
+		
+		Vector v = new Vector();
+		v.add(at);
+		RESULT = v;
+		
+              CUP$parser$result = new java_cup.runtime.Symbol(4/*selectlist*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+            }
+          return CUP$parser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 12: // selectlist ::= selectlist COMMA selectattr 
+            {
+              Vector RESULT = null;
+		int asleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left;
+		int asright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).right;
+		Vector as = (Vector)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-2)).value;
+		int aleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left;
+		int aright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right;
+		Attribute a = (Attribute)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-0)).value;
+		
+		  as.add(a);
+		  RESULT=as;
+		  
+              CUP$parser$result = new java_cup.runtime.Symbol(4/*selectlist*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
@@ -499,7 +639,7 @@ class CUP$parser$actions {
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 8: // sqlquery ::= SELECT DISTINCT attlist FROM tablelist 
+          case 8: // sqlquery ::= SELECT DISTINCT selectlist FROM tablelist 
             {
               SQLQuery RESULT = null;
 		int aleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left;
@@ -541,7 +681,7 @@ class CUP$parser$actions {
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 6: // sqlquery ::= SELECT DISTINCT attlist FROM tablelist WHERE conditionlist 
+          case 6: // sqlquery ::= SELECT DISTINCT selectlist FROM tablelist WHERE conditionlist 
             {
               SQLQuery RESULT = null;
 		int aleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-4)).left;
@@ -582,7 +722,7 @@ class CUP$parser$actions {
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 4: // sqlquery ::= SELECT attlist FROM tablelist 
+          case 4: // sqlquery ::= SELECT selectlist FROM tablelist 
             {
               SQLQuery RESULT = null;
 		int aleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left;
@@ -622,7 +762,7 @@ class CUP$parser$actions {
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 2: // sqlquery ::= SELECT attlist FROM tablelist WHERE conditionlist 
+          case 2: // sqlquery ::= SELECT selectlist FROM tablelist WHERE conditionlist 
             {
               SQLQuery RESULT = null;
 		int aleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-4)).left;
@@ -0,0 +1,120 @@
+/** reads a file of binary pages ahead of its user **/
+
+package qp.utils;
+
+import java.io.*;
+import java.util.ArrayDeque;
+
+/**
+ * PageReader that reads and decodes up to depth pages ahead on the
+ * IOThreads, so that the next page is usually ready when readBatch is
+ * called and the user computes while the file is read. The pages are
+ * read in order by one task at a time. As with PageReader, reading past
+ * the last page throws EOFException.
+ */
+
+public class AsyncPageReader extends PageReader{
+
+    boolean async;           // Whether the pages are read in the background
+    int depth;               // Number of pages read ahead
+    ArrayDeque<Batch> ready; // Pages read and not taken yet
+    boolean reading;         // Whether a task is reading
+    boolean closed;
+    IOException failed;      // End of the file or error, after the ready pages
+
+
+    public AsyncPageReader(String filename, Schema schema, int depth) throws IOException{
+	super(filename,schema);
+	this.depth = Math.max(1,depth);
+	ready = new ArrayDeque<>();
+	async = IOThreads.PARALLEL;
+	if(async){
+	    synchronized(this){
+		schedule();
+	    }
+	}
+    }
+
+
+    /** the next page of the file, waiting for it if it is not read yet **/
+
+    public synchronized Batch readBatch() throws IOException{
+	if(!async){
+	    return super.readBatch();
+	}
+	while(ready.isEmpty()){
+	    if(failed != null){
+		throw failed;
+	    }
+	    schedule();
+	    try{
+		wait();
+	    }catch(InterruptedException e){
+		throw new InterruptedIOException("AsyncPageReader: interrupted reading "+filename);
+	    }
+	}
+	Batch page = ready.poll();
+	schedule();
+	return page;
+    }
+
+    /** waits for the task reading, if any, before closing the file **/
+
+    public void close() throws IOException{
+	synchronized(this){
+	    closed = true;
+	    while(reading){
+		try{
+		    wait();
+		}catch(InterruptedException e){
+		    break;
+		}
+	    }
+	}
+	super.close();
+    }
+
+
+    /** starts a task to read the next pages unless one is running or
+     ** enough pages are read already. Called with the lock held
+     **/
+
+    private void schedule(){
+	if(reading || closed || failed != null || ready.size() >= depth){
+	    return;
+	}
+	reading = true;
+	IOThreads.execute(new Runnable(){
+		public void run(){
+		    readAhead();
+		}
+	    });
+    }
+
+    private void readAhead(){
+	while(true){
+	    Batch page = null;
+	    IOException error = null;
+	    try{
+		page = AsyncPageReader.super.readBatch();
+	    }catch(IOException io){
+		error = io;
+	    }
+	    synchronized(this){
+		if(page != null){
+		    ready.add(page);
+		}else{
+		    failed = error;
+		}
+		if(closed || failed != null || ready.size() >= depth){
+		    reading = false;
+		}
+		notifyAll();
+		if(!reading){
+		    return;
+		}
+	    }
+	}
+    }
+
+}
@@ -0,0 +1,105 @@
+/** writes a file of binary pages behind its user **/
+
+package qp.utils;
+
+import java.io.*;
+import java.util.ArrayDeque;
+
+/**
+ * PageWriter that hands the encoded pages to the IOThreads, which write
+ * them to the file in order while the user goes on. At most depth pages
+ * wait to be written; a user getting ahead of the disk waits for the
+ * oldest one. An error of the writes is thrown by the next call of the
+ * user, and close returns once all the pages are written.
+ */
+
+public class AsyncPageWriter extends PageWriter{
+
+    boolean async;             // Whether the pages are written in the background
+    int depth;                 // Number of pages that may wait
+    ArrayDeque<byte[]> behind; // Pages encoded and not written yet
+    boolean writing;           // Whether a task is writing
+    IOException failed;        // Error of a write
+
+
+    public AsyncPageWriter(String filename, Schema schema, int depth) throws IOException{
+	super(filename,schema);
+	this.depth = Math.max(1,depth);
+	behind = new ArrayDeque<>();
+	async = IOThreads.PARALLEL;
+    }
+
+
+    /** queues a copy of the encoded page **/
+
+    protected synchronized void writeFrame(byte[] frame, int length) throws IOException{
+	if(!async){
+	    super.writeFrame(frame,length);
+	    return;
+	}
+	while(failed == null && behind.size() >= depth){
+	    waitForWrites();
+	}
+	if(failed != null){
+	    throw failed;
+	}
+	byte[] copy = new byte[length];
+	System.arraycopy(frame,0,copy,0,length);
+	behind.add(copy);
+	if(!writing){
+	    writing = true;
+	    IOThreads.execute(new Runnable(){
+		    public void run(){
+			writeBehind();
+		    }
+		});
+	}
+    }
+
+    public void close() throws IOException{
+	flush();
+	synchronized(this){
+	    while(writing){
+		waitForWrites();
+	    }
+	    if(failed != null){
+		throw failed;
+	    }
+	}
+	super.close();
+    }
+
+
+    private void waitForWrites() throws IOException{
+	try{
+	    wait();
+	}catch(InterruptedException e){
+	    throw new InterruptedIOException("AsyncPageWriter: interrupted writing "+filename);
+	}
+    }
+
+    private void writeBehind(){
+	while(true){
+	    byte[] page;
+	    synchronized(this){
+		page = behind.poll();
+		if(page == null || failed != null){
+		    writing = false;
+		    notifyAll();
+		    return;
+		}
+	    }
+	    try{
+		AsyncPageWriter.super.writeFrame(page,page.length);
+	    }catch(IOException io){
+		synchronized(this){
+		    failed = io;
+		}
+	    }
+	    synchronized(this){
+		notifyAll();
+	    }
+	}
+    }
+
+}
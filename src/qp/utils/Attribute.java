@@ -6,6 +6,11 @@ import java.io.Serializable;
 
 public class Attribute implements Serializable{
 
+    /** kept from before aggtype was added, so that the schemas
+     ** in existing .md files can still be read
+     **/
+    private static final long serialVersionUID = -8745428824512213992L;
+
 	/** enumerating type of attribute **/
     public static final int INT=1;
     public static final int STRING=2;
@@ -16,12 +21,22 @@ public class Attribute implements Serializable{
     public static final int PK=1;   // primary key
     public static final int FK=2;   // Foreign key
 
+	/** enumeration of aggregate functions on an attribute **/
+
+    public static final int NONE=0;
+    public static final int MAX=1;
+    public static final int MIN=2;
+    public static final int SUM=3;
+    public static final int COUNT=4;
+    public static final int AVG=5;
+
 
     String tblname;        //tabel to which this attribute belongs
     String colname;         //name of the attribute **/
     int type;  // whether integer or real or string
     int key=-1;   // type of the key
     int attrsize;   // Number of bytes for this attribute
+    int aggtype=NONE;   // aggregate function applied to this attribute
 
 
     public Attribute(String tbl, String col){
@@ -97,6 +112,31 @@ public class Attribute implements Serializable{
 	return colname;
     }
 
+    public void setAggType(int agg){
+	aggtype = agg;
+    }
+
+    public int getAggType(){
+	return aggtype;
+    }
+
+    public boolean isAggregate(){
+	return aggtype != NONE;
+    }
+
+    /** name of the aggregate function, null if there is none **/
+
+    public static String aggName(int agg){
+	switch(agg){
+	case MAX: return "MAX";
+	case MIN: return "MIN";
+	case SUM: return "SUM";
+	case COUNT: return "COUNT";
+	case AVG: return "AVG";
+	}
+	return null;
+    }
+
     public void setType(int typ){
 	type=typ;
     }
@@ -106,7 +146,7 @@ public class Attribute implements Serializable{
     }
 
     public boolean equals(Attribute attr){
-	if(this.tblname.equals(attr.getTabName()) && this.colname.equals(attr.getColName()))
+	if(this.tblname.equals(attr.getTabName()) && this.colname.equals(attr.getColName()) && this.aggtype == attr.getAggType())
 	    return true;
 	else
 	    return false;
@@ -119,6 +159,7 @@ public class Attribute implements Serializable{
 	newattr.setType(type);
 	newattr.setKeyType(key);
 	newattr.setAttrSize(attrsize);
+	newattr.setAggType(aggtype);
 	return newattr;
     }
 
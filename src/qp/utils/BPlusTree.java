@@ -0,0 +1,411 @@
+/** disk resident B+ tree index on a column of a table **/
+
+package qp.utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * B+ tree over one column of a table stored as a HeapFile. Every entry of
+ * a leaf holds a key and the record id (page number and slot) of a tuple
+ * with that key in the heap file; the leaves are linked from left to right
+ * so that the entries can be read in key order. Duplicate keys may span
+ * several leaves.
+ *
+ * The tree is bulk loaded once from the entries in key order and is read
+ * only afterwards. The file is <tablename>.<colname>.idx and holds nodes
+ * of a fixed number of bytes: page 0 is the header, every other page is a
+ * leaf or an internal node. The file is mapped into memory for reading.
+ */
+
+public class BPlusTree{
+
+    public static final int MAGIC = 0x51504249;   // "QPBI"
+    public static final int DEFAULT_NODE_SIZE = 4096;
+
+    static final byte LEAF = 0;
+    static final byte INTERNAL = 1;
+    static final int NODE_HEADER = 9;   // kind, number of keys, next leaf
+
+    String filename;
+    MappedByteBuffer map;
+    int nodesize;
+    int keytype;       // Attribute.INT/REAL/STRING
+    int root;          // page of the root node
+    int height;        // number of levels, 1 if the root is a leaf
+    int numentries;
+    int firstleaf;
+    int numnodes;
+    long nodereads;    // number of nodes read so far
+
+
+    /** opens an index file written by bulkLoad **/
+
+    public BPlusTree(String filename) throws IOException{
+	this.filename = filename;
+	RandomAccessFile file = new RandomAccessFile(filename,"r");
+	try{
+	    FileChannel channel = file.getChannel();
+	    if(channel.size() < 32 || file.readInt() != MAGIC){
+		throw new IOException("BPlusTree: "+filename+" is not an index file");
+	    }
+	    map = channel.map(FileChannel.MapMode.READ_ONLY,0,channel.size());
+	}finally{
+	    file.close();
+	}
+	nodesize = map.getInt(4);
+	keytype = map.getInt(8);
+	root = map.getInt(12);
+	height = map.getInt(16);
+	numentries = map.getInt(20);
+	firstleaf = map.getInt(24);
+	numnodes = map.getInt(28);
+    }
+
+    /** name of the index file on the given column of the table **/
+
+    public static String indexFileName(String tabname, String colname){
+	return tabname + "." + colname + ".idx";
+    }
+
+    /** whether there is an index on the given column of the table **/
+
+    public static boolean exists(String tabname, String colname){
+	return new File(indexFileName(tabname,colname)).exists();
+    }
+
+    public String getFileName(){
+	return filename;
+    }
+
+    public int getKeyType(){
+	return keytype;
+    }
+
+    public int getHeight(){
+	return height;
+    }
+
+    public int getNumEntries(){
+	return numentries;
+    }
+
+    /** number of nodes, without the header page **/
+
+    public int getNumNodes(){
+	return numnodes;
+    }
+
+    public long getNodeReads(){
+	return nodereads;
+    }
+
+
+    /** record ids of the tuples with the given key **/
+
+    public ArrayList<Entry> search(Object key){
+	ArrayList<Entry> result = new ArrayList<>();
+	Cursor cursor = seek(key,true);
+	Entry e;
+	while((e = cursor.next()) != null && compare(e.key,key) == 0){
+	    result.add(e);
+	}
+	return result;
+    }
+
+    /** cursor on the entries in key order, starting at the first entry
+     ** with a key greater than (or equal to, if inclusive) the given key
+     **/
+
+    public Cursor seek(Object key, boolean inclusive){
+	int page = root;
+	for(int level=1;level<height;level++){
+	    ByteBuffer node = node(page);
+	    int numkeys = node.getInt(1);
+	    node.position(NODE_HEADER);
+	    int child = node.getInt();
+	    for(int i=0;i<numkeys;i++){
+		Object sep = decodeKey(node);
+		int next = node.getInt();
+		/** equal keys may also be in the child left of the separator **/
+		if(compare(sep,key) < 0 || (!inclusive && compare(sep,key) == 0)){
+		    child = next;
+		}else{
+		    break;
+		}
+	    }
+	    page = child;
+	}
+	Cursor cursor = new Cursor(page);
+	cursor.skipTo(key,inclusive);
+	return cursor;
+    }
+
+    /** cursor on all the entries in key order **/
+
+    public Cursor first(){
+	return new Cursor(firstleaf);
+    }
+
+
+    private ByteBuffer node(int page){
+	nodereads++;
+	ByteBuffer buf = map.duplicate();
+	buf.position(page*nodesize);
+	return buf.slice();
+    }
+
+    private Object decodeKey(ByteBuffer buf){
+	return decodeKey(buf,keytype);
+    }
+
+    public int compare(Object left, Object right){
+	return compareKeys(left,right,keytype);
+    }
+
+
+    /** Writes the index file from the entries in key order, filling
+     ** every node as far as it goes
+     **/
+
+    public static void bulkLoad(String filename, int keytype, int nodesize, Iterator<Entry> entries) throws IOException{
+	RandomAccessFile file = new RandomAccessFile(filename,"rw");
+	file.setLength(0);
+	FileChannel channel = file.getChannel();
+	ByteBuffer buf = ByteBuffer.allocate(nodesize);
+	int nextpage = 1;
+	int numentries = 0;
+
+	/** the leaves, each remembered by its page and first key **/
+	ArrayList<Integer> pages = new ArrayList<>();
+	ArrayList<Object> firstkeys = new ArrayList<>();
+	ArrayList<Entry> leaf = new ArrayList<>();
+	int used = NODE_HEADER;
+	Entry pending = entries.hasNext() ? entries.next() : null;
+	while(pending != null || pages.isEmpty()){
+	    leaf.clear();
+	    used = NODE_HEADER;
+	    while(pending != null && used + keySize(pending.key,keytype) + 8 <= nodesize){
+		leaf.add(pending);
+		used += keySize(pending.key,keytype) + 8;
+		pending = entries.hasNext() ? entries.next() : null;
+	    }
+	    if(leaf.isEmpty() && pending != null){
+		file.close();
+		throw new IOException("BPlusTree: key does not fit a node of "+nodesize+" bytes");
+	    }
+	    buf.clear();
+	    buf.put(LEAF);
+	    buf.putInt(leaf.size());
+	    buf.putInt(pending != null ? nextpage+1 : -1);
+	    for(int i=0;i<leaf.size();i++){
+		Entry e = leaf.get(i);
+		encodeKey(e.key,keytype,buf);
+		buf.putInt(e.pageno);
+		buf.putInt(e.slot);
+	    }
+	    writeNode(channel,buf,nextpage,nodesize);
+	    pages.add(Integer.valueOf(nextpage));
+	    firstkeys.add(leaf.isEmpty() ? null : leaf.get(0).key);
+	    nextpage++;
+	    numentries += leaf.size();
+	}
+	int firstleaf = pages.get(0).intValue();
+
+	/** internal levels, until a single node is left **/
+	int height = 1;
+	while(pages.size() > 1){
+	    ArrayList<Integer> uppages = new ArrayList<>();
+	    ArrayList<Object> upkeys = new ArrayList<>();
+	    int child = 0;
+	    while(child < pages.size()){
+		buf.clear();
+		buf.put(INTERNAL);
+		buf.putInt(0);
+		buf.putInt(-1);
+		buf.putInt(pages.get(child).intValue());
+		upkeys.add(firstkeys.get(child));
+		child++;
+		int numkeys = 0;
+		used = NODE_HEADER + 4;
+		while(child < pages.size() && used + keySize(firstkeys.get(child),keytype) + 4 <= nodesize){
+		    encodeKey(firstkeys.get(child),keytype,buf);
+		    buf.putInt(pages.get(child).intValue());
+		    used += keySize(firstkeys.get(child),keytype) + 4;
+		    numkeys++;
+		    child++;
+		}
+		buf.putInt(1,numkeys);
+		writeNode(channel,buf,nextpage,nodesize);
+		uppages.add(Integer.valueOf(nextpage));
+		nextpage++;
+	    }
+	    pages = uppages;
+	    firstkeys = upkeys;
+	    height++;
+	}
+
+	buf.clear();
+	buf.putInt(MAGIC);
+	buf.putInt(nodesize);
+	buf.putInt(keytype);
+	buf.putInt(pages.get(0).intValue());
+	buf.putInt(height);
+	buf.putInt(numentries);
+	buf.putInt(firstleaf);
+	buf.putInt(nextpage-1);
+	writeNode(channel,buf,0,nodesize);
+	file.close();
+    }
+
+    private static void writeNode(FileChannel channel, ByteBuffer buf, int page, int nodesize) throws IOException{
+	while(buf.position() < nodesize){
+	    buf.put((byte) 0);
+	}
+	buf.flip();
+	long offset = (long) page*nodesize;
+	while(buf.hasRemaining()){
+	    offset += channel.write(buf,offset);
+	}
+    }
+
+
+    /** key encoding, as the columns of PageCodec **/
+
+    static int keySize(Object key, int keytype){
+	if(keytype == Attribute.STRING){
+	    return 2 + ((String) key).getBytes(StandardCharsets.UTF_8).length;
+	}
+	return 4;
+    }
+
+    static void encodeKey(Object key, int keytype, ByteBuffer buf){
+	if(keytype == Attribute.INT){
+	    buf.putInt(((Integer) key).intValue());
+	}else if(keytype == Attribute.REAL){
+	    buf.putFloat(((Float) key).floatValue());
+	}else{
+	    byte[] bytes = ((String) key).getBytes(StandardCharsets.UTF_8);
+	    buf.putShort((short) bytes.length);
+	    buf.put(bytes);
+	}
+    }
+
+    static Object decodeKey(ByteBuffer buf, int keytype){
+	if(keytype == Attribute.INT){
+	    return Integer.valueOf(buf.getInt());
+	}else if(keytype == Attribute.REAL){
+	    return Float.valueOf(buf.getFloat());
+	}else{
+	    int length = buf.getShort() & 0xFFFF;
+	    byte[] bytes = new byte[length];
+	    buf.get(bytes);
+	    return new String(bytes,StandardCharsets.UTF_8);
+	}
+    }
+
+    public static int compareKeys(Object left, Object right, int keytype){
+	if(keytype == Attribute.INT){
+	    return ((Integer) left).compareTo((Integer) right);
+	}else if(keytype == Attribute.REAL){
+	    return ((Float) left).compareTo((Float) right);
+	}else{
+	    return ((String) left).compareTo((String) right);
+	}
+    }
+
+
+    /** a key and the record id of a tuple with that key **/
+
+    public static class Entry{
+	Object key;
+	int pageno;   // page of the tuple in the heap file
+	int slot;     // position of the tuple in the page
+
+	public Entry(Object key, int pageno, int slot){
+	    this.key = key;
+	    this.pageno = pageno;
+	    this.slot = slot;
+	}
+
+	public Object getKey(){
+	    return key;
+	}
+
+	public int getPageNo(){
+	    return pageno;
+	}
+
+	public int getSlot(){
+	    return slot;
+	}
+    }
+
+
+    /** reads the entries of the leaves in key order **/
+
+    public class Cursor{
+	ByteBuffer leaf;   // leaf being read
+	int numkeys;       // number of entries in the leaf
+	int curs;          // next entry of the leaf
+
+	Cursor(int page){
+	    load(page);
+	}
+
+	private void load(int page){
+	    leaf = node(page);
+	    numkeys = leaf.getInt(1);
+	    leaf.position(NODE_HEADER);
+	    curs = 0;
+	}
+
+	/** the next entry, null after the last one **/
+
+	public Entry next(){
+	    while(curs >= numkeys){
+		int next = leaf.getInt(5);
+		if(next == -1){
+		    return null;
+		}
+		load(next);
+	    }
+	    Object key = decodeKey(leaf);
+	    int pageno = leaf.getInt();
+	    int slot = leaf.getInt();
+	    curs++;
+	    return new Entry(key,pageno,slot);
+	}
+
+	/** moves to the first entry not smaller than (or greater than,
+	 ** if not inclusive) the key
+	 **/
+
+	void skipTo(Object key, boolean inclusive){
+	    while(true){
+		while(curs < numkeys){
+		    int mark = leaf.position();
+		    Object k = decodeKey(leaf);
+		    int c = compare(k,key);
+		    if(c > 0 || (inclusive && c == 0)){
+			leaf.position(mark);
+			return;
+		    }
+		    leaf.position(leaf.position()+8);
+		    curs++;
+		}
+		int next = leaf.getInt(5);
+		if(next == -1){
+		    return;
+		}
+		load(next);
+	    }
+	}
+    }
+
+}
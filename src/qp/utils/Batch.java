@@ -85,6 +85,25 @@ public class Batch implements Serializable{
 	else
 	    return false;
     }
+
+
+    /** value in the given column of the i-th tuple **/
+
+    public Object dataAt(int i, int col){
+	return elementAt(i).dataAt(col);
+    }
+
+    /** the first tuple at or after the i-th one whose value in the
+     ** given column equals the key, size() if there is none
+     **/
+
+    public int nextMatch(int i, int col, Object key){
+	for(;i<size();i++){
+	    if(elementAt(i).dataAt(col).equals(key))
+		return i;
+	}
+	return size();
+    }
 }
 
 
@@ -9,8 +9,8 @@ import java.io.Serializable;
  */
 
 public class Block implements Serializable {
-    int MAX_SIZE;  // Number of tuples per page
-    int pageSize;  /* Number of bytes per page**/
+    int MAX_SIZE;  // Number of pages per block
+    int pageSize;  // Number of tuples per page
 
     Vector tuples; // The tuples in the page
     Vector batches; // The pages in the block
@@ -18,7 +18,7 @@ public class Block implements Serializable {
     public Block(int numPages, int pageSize) {
         MAX_SIZE = numPages;
         this.pageSize = pageSize;
-        tuples = new Vector<>(MAX_SIZE * numPages);
+        tuples = new Vector<>(numPages * pageSize);
         batches = new Vector(MAX_SIZE);
     }
 
@@ -48,7 +48,7 @@ public class Block implements Serializable {
     }
 
     public boolean isFull() {
-        return size() == capacity();
+        return batches.size() == capacity();
     }
 
     public boolean isEmpty() {
@@ -0,0 +1,123 @@
+/** a set of join keys that may report false positives **/
+
+package qp.utils;
+
+import java.util.Arrays;
+
+/**
+ * Bloom filter on the values of a join key: every key sets NUM_HASHES
+ * bits of a bit array, chosen from a 64 bit hash of its hashCode, and a
+ * value whose bits are not all set is certainly not a key. With
+ * BITS_PER_KEY bits per key about 1% of the other values are reported
+ * as keys all the same.
+ *
+ * The keys are hashed on hashCode, so that an INT or REAL column of a
+ * ColumnBatch is tested without boxing its values: the hash of an int
+ * is the int itself and the one of a float is Float.floatToIntBits.
+ * Since the size of the filter depends on the number of keys, the keys
+ * are first gathered by a Builder.
+ */
+
+public class BloomFilter{
+
+    public static final int BITS_PER_KEY = 10;
+    public static final int NUM_HASHES = 7;
+
+    long[] bits;
+    int mask;    // number of bits - 1, a power of two
+
+
+    /** a filter for the given number of keys **/
+
+    public BloomFilter(int numkeys){
+	long numbits = Math.max(64L,(long) numkeys * BITS_PER_KEY);
+	numbits = Math.min(1L << 30,Long.highestOneBit(numbits - 1) << 1);
+	bits = new long[(int) (numbits >>> 6)];
+	mask = (int) numbits - 1;
+    }
+
+
+    /** the hash of a value as tested by the filter **/
+
+    public static int hashOf(Object key){
+	return (key == null) ? 0 : key.hashCode();
+    }
+
+
+    public void add(Object key){
+	addHash(hashOf(key));
+    }
+
+    public void addHash(int hash){
+	long h = mix(hash);
+	int h1 = (int) h;
+	int h2 = (int) (h >>> 32) | 1;
+	for(int i=0;i<NUM_HASHES;i++){
+	    int bit = (h1 + i*h2) & mask;
+	    bits[bit >>> 6] |= 1L << bit;
+	}
+    }
+
+
+    /** false if the value is not one of the keys **/
+
+    public boolean mightContain(Object key){
+	return mightContainHash(hashOf(key));
+    }
+
+    public boolean mightContainHash(int hash){
+	long h = mix(hash);
+	int h1 = (int) h;
+	int h2 = (int) (h >>> 32) | 1;
+	for(int i=0;i<NUM_HASHES;i++){
+	    int bit = (h1 + i*h2) & mask;
+	    if((bits[bit >>> 6] & (1L << bit)) == 0){
+		return false;
+	    }
+	}
+	return true;
+    }
+
+
+    /** the finalizer of MurmurHash3 spreads the bits, as in HyperLogLog **/
+
+    static long mix(int hash){
+	long h = hash;
+	h ^= (h >>> 33);
+	h *= 0xff51afd7ed558ccdL;
+	h ^= (h >>> 33);
+	h *= 0xc4ceb9fe1a85ec53L;
+	h ^= (h >>> 33);
+	return h;
+    }
+
+
+    /** Gathers the hashes of the keys and makes a filter of
+     ** the right size for them
+     **/
+
+    public static class Builder{
+	int[] hashes = new int[1024];
+	int numkeys = 0;
+
+	public void add(Object key){
+	    if(numkeys == hashes.length){
+		hashes = Arrays.copyOf(hashes,2*numkeys);
+	    }
+	    hashes[numkeys++] = hashOf(key);
+	}
+
+	public int getNumKeys(){
+	    return numkeys;
+	}
+
+	public BloomFilter build(){
+	    BloomFilter filter = new BloomFilter(numkeys);
+	    for(int i=0;i<numkeys;i++){
+		filter.addHash(hashes[i]);
+	    }
+	    hashes = null;
+	    return filter;
+	}
+    }
+}
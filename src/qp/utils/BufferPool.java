@@ -0,0 +1,384 @@
+/** pool of page frames shared by the operators **/
+
+package qp.utils;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * A fixed number of frames, each holding one page of a HeapFile. An
+ * operator pins the page it wants to read; the page is taken from the
+ * pool if it is there (a hit) and read from the file otherwise (a miss),
+ * reusing the frame chosen by the replacement policy. A pinned page is
+ * never evicted, so every pin has to be followed by an unpin once the
+ * operator is done with the page. A page that is changed by its user is
+ * unpinned as dirty and written back to its file before its frame is
+ * reused.
+ *
+ * A user reading the pages of a file in order can ask for the next ones
+ * to be prefetched: they are read on the IOThreads into frames that are
+ * free or can be evicted, so that they are usually hits when pinned.
+ */
+
+public class BufferPool{
+
+    /** replacement policies **/
+
+    public static final int LRU = 0;
+    public static final int CLOCK = 1;
+    public static final int MRU = 2;
+
+    public static int numPolicies(){
+	return 3;
+    }
+
+    public static String policyName(int policy){
+	switch(policy){
+	case LRU: return "LRU";
+	case CLOCK: return "CLOCK";
+	case MRU: return "MRU";
+	}
+	return null;
+    }
+
+    /** the policy of the given name, or -1 if there is none **/
+
+    public static int policyOf(String name){
+	for(int i=0;i<numPolicies();i++){
+	    if(policyName(i).equalsIgnoreCase(name)){
+		return i;
+	    }
+	}
+	return -1;
+    }
+
+    public static ReplacementPolicy newPolicy(int policy){
+	switch(policy){
+	case CLOCK: return new ClockPolicy();
+	case MRU: return new MRUPolicy();
+	}
+	return new LRUPolicy();
+    }
+
+
+    int numFrames;
+    int policytype;
+    ReplacementPolicy policy;
+
+    HeapFile[] files;     // file of the page in every frame, null if the frame is free
+    int[] pagenos;        // number of the page in every frame
+    Batch[] pages;        // the page in every frame
+    int[] pinCount;       // number of users of every frame
+    boolean[] dirty;      // whether the page is changed since it was read
+    HashMap<PageId,Integer> frameOf;   // frame holding a page
+    HashSet<PageId> prefetching;       // pages being prefetched
+
+    long hits;
+    long misses;
+    long evictions;
+    long writes;
+    long prefetches;
+
+
+    public BufferPool(int numFrames, int policytype){
+	this.numFrames = numFrames;
+	this.policytype = policytype;
+	policy = newPolicy(policytype);
+	policy.init(numFrames);
+	files = new HeapFile[numFrames];
+	pagenos = new int[numFrames];
+	pages = new Batch[numFrames];
+	pinCount = new int[numFrames];
+	dirty = new boolean[numFrames];
+	frameOf = new HashMap<>();
+	prefetching = new HashSet<>();
+    }
+
+    public int getNumFrames(){
+	return numFrames;
+    }
+
+    public int getPolicy(){
+	return policytype;
+    }
+
+    /** returns the page pinned in the pool, reading it from the file
+     ** if it is not in the pool yet
+     **/
+
+    public synchronized Batch pin(HeapFile file, int pageno){
+	PageId id = new PageId(file.getFileName(),pageno);
+	/** a page being prefetched is not read a second time **/
+	while(prefetching.contains(id)){
+	    try{
+		wait();
+	    }catch(InterruptedException e){
+		break;
+	    }
+	}
+	Integer found = frameOf.get(id);
+	if(found != null){
+	    int frame = found.intValue();
+	    hits++;
+	    pinCount[frame]++;
+	    policy.pinned(frame);
+	    return pages[frame];
+	}
+
+	misses++;
+	int frame = freeFrame();
+	if(frame == -1){
+	    frame = policy.victim(this);
+	    if(frame == -1){
+		System.err.println("BufferPool: all the "+numFrames+" frames are pinned");
+		System.exit(1);
+	    }
+	    evict(frame);
+	}
+	files[frame] = file;
+	pagenos[frame] = pageno;
+	pages[frame] = file.readPage(pageno);
+	pinCount[frame] = 1;
+	dirty[frame] = false;
+	frameOf.put(id,Integer.valueOf(frame));
+	policy.pinned(frame);
+	return pages[frame];
+    }
+
+    /** reads up to count pages from the given one into the pool in
+     ** the background, leaving out those already there or being read.
+     ** The pages prefetched at once take at most half of the frames
+     **/
+
+    public synchronized void prefetch(final HeapFile file, int first, int count){
+	if(!IOThreads.PARALLEL){
+	    return;
+	}
+	int last = Math.min(file.getNumPages(), first + Math.min(count, numFrames/2));
+	final ArrayList<PageId> ids = new ArrayList<>();
+	for(int pageno=Math.max(0,first);pageno<last;pageno++){
+	    PageId id = new PageId(file.getFileName(),pageno);
+	    if(!frameOf.containsKey(id) && prefetching.add(id)){
+		ids.add(id);
+	    }
+	}
+	if(ids.isEmpty()){
+	    return;
+	}
+	IOThreads.execute(new Runnable(){
+		public void run(){
+		    for(int i=0;i<ids.size();i++){
+			load(file,ids.get(i));
+		    }
+		}
+	    });
+    }
+
+    /** decodes the page outside the lock and puts it into a frame
+     ** that is free or can be evicted, if there is one
+     **/
+
+    private void load(HeapFile file, PageId id){
+	synchronized(this){
+	    if(!prefetching.contains(id)){
+		return;
+	    }
+	}
+	Batch page = file.readPage(id.pageno);
+	synchronized(this){
+	    /** a page of a discarded file is no longer in the set **/
+	    boolean wanted = prefetching.remove(id);
+	    notifyAll();
+	    if(!wanted || frameOf.containsKey(id)){
+		return;
+	    }
+	    int frame = freeFrame();
+	    if(frame == -1){
+		frame = policy.victim(this);
+		if(frame == -1){
+		    return;
+		}
+		evict(frame);
+	    }
+	    files[frame] = file;
+	    pagenos[frame] = id.pageno;
+	    pages[frame] = page;
+	    pinCount[frame] = 0;
+	    dirty[frame] = false;
+	    frameOf.put(id,Integer.valueOf(frame));
+	    policy.pinned(frame);
+	    policy.unpinned(frame);
+	    prefetches++;
+	}
+    }
+
+    /** releases a page pinned before; isDirty tells whether the
+     ** user changed the page
+     **/
+
+    public synchronized boolean unpin(HeapFile file, int pageno, boolean isDirty){
+	Integer found = frameOf.get(new PageId(file.getFileName(),pageno));
+	if(found == null || pinCount[found.intValue()] == 0){
+	    System.err.println("BufferPool: page "+pageno+" of "+file.getFileName()+" is not pinned");
+	    return false;
+	}
+	int frame = found.intValue();
+	dirty[frame] = dirty[frame] || isDirty;
+	pinCount[frame]--;
+	if(pinCount[frame] == 0){
+	    policy.unpinned(frame);
+	}
+	return true;
+    }
+
+    /** writes the dirty pages of the file back to it **/
+
+    public synchronized boolean flush(String filename){
+	for(int i=0;i<numFrames;i++){
+	    if(files[i] != null && files[i].getFileName().equals(filename)){
+		if(!writeBack(i)){
+		    return false;
+		}
+	    }
+	}
+	return true;
+    }
+
+    public synchronized boolean flushAll(){
+	for(int i=0;i<numFrames;i++){
+	    if(files[i] != null && !writeBack(i)){
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /** drops the pages of the file from the pool without writing
+     ** them back, as when the file is deleted
+     **/
+
+    public synchronized void discard(String filename){
+	for(int i=0;i<numFrames;i++){
+	    if(files[i] != null && files[i].getFileName().equals(filename)){
+		dirty[i] = false;
+		free(i);
+	    }
+	}
+	prefetching.removeIf(id -> id.filename.equals(filename));
+	notifyAll();
+    }
+
+    /** whether the page of the frame can be evicted **/
+
+    public boolean isEvictable(int frame){
+	return files[frame] != null && pinCount[frame] == 0;
+    }
+
+    public long getHits(){
+	return hits;
+    }
+
+    public long getMisses(){
+	return misses;
+    }
+
+    public long getEvictions(){
+	return evictions;
+    }
+
+    /** number of pages read in by a prefetch **/
+
+    public long getPrefetches(){
+	return prefetches;
+    }
+
+    /** number of dirty pages written back **/
+
+    public long getWrites(){
+	return writes;
+    }
+
+    public synchronized void resetStats(){
+	hits = 0;
+	misses = 0;
+	evictions = 0;
+	writes = 0;
+	prefetches = 0;
+    }
+
+    public void printStats(){
+	long requests = hits + misses;
+	double hitratio = requests == 0 ? 0 : (double) hits / requests;
+	System.out.println("BufferPool("+policyName(policytype)+", "+numFrames+" frames): hits = "+hits
+			   +" misses = "+misses+" evictions = "+evictions+" writes = "+writes+" prefetches = "+prefetches
+			   +" hit ratio = "+hitratio);
+    }
+
+
+    private int freeFrame(){
+	for(int i=0;i<numFrames;i++){
+	    if(files[i] == null){
+		return i;
+	    }
+	}
+	return -1;
+    }
+
+    private void evict(int frame){
+	if(!writeBack(frame)){
+	    System.exit(1);
+	}
+	evictions++;
+	free(frame);
+    }
+
+    private void free(int frame){
+	frameOf.remove(new PageId(files[frame].getFileName(),pagenos[frame]));
+	files[frame] = null;
+	pages[frame] = null;
+	pinCount[frame] = 0;
+    }
+
+    private boolean writeBack(int frame){
+	if(!dirty[frame]){
+	    return true;
+	}
+	try{
+	    files[frame].writePage(pagenos[frame],pages[frame]);
+	}catch(IOException io){
+	    System.err.println("BufferPool: error in writing page "+pagenos[frame]+" of "+files[frame].getFileName());
+	    return false;
+	}
+	dirty[frame] = false;
+	writes++;
+	return true;
+    }
+
+
+    /** identifies a page by its file and page number **/
+
+    static class PageId{
+	String filename;
+	int pageno;
+
+	PageId(String filename, int pageno){
+	    this.filename = filename;
+	    this.pageno = pageno;
+	}
+
+	public boolean equals(Object o){
+	    if(!(o instanceof PageId)){
+		return false;
+	    }
+	    PageId other = (PageId) o;
+	    return pageno == other.pageno && filename.equals(other.filename);
+	}
+
+	public int hashCode(){
+	    return filename.hashCode() * 31 + pageno;
+	}
+    }
+
+}
@@ -0,0 +1,46 @@
+/** clock (second chance) page replacement **/
+
+package qp.utils;
+
+/**
+ * Approximates LRU with a reference bit per frame. The clock hand sweeps
+ * over the frames, clearing the bits that are set and evicting the first
+ * unpinned frame whose bit is already clear.
+ */
+
+public class ClockPolicy implements ReplacementPolicy{
+
+    boolean[] referenced;
+    int hand;
+
+
+    public void init(int numFrames){
+	referenced = new boolean[numFrames];
+	hand = 0;
+    }
+
+    public void pinned(int frame){
+	referenced[frame] = true;
+    }
+
+    public void unpinned(int frame){
+    }
+
+    public int victim(BufferPool pool){
+	/** after one round all the bits of unpinned frames are clear **/
+	for(int i=0;i<2*referenced.length;i++){
+	    int frame = hand;
+	    hand = (hand + 1) % referenced.length;
+	    if(!pool.isEvictable(frame)){
+		continue;
+	    }
+	    if(referenced[frame]){
+		referenced[frame] = false;
+	    }else{
+		return frame;
+	    }
+	}
+	return -1;
+    }
+
+}
@@ -0,0 +1,483 @@
+/** a page of tuples stored column by column **/
+
+package qp.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Vector;
+
+/**
+ * Batch that keeps every column in one array instead of one Tuple per
+ * row: an int[] for an INT column, a float[] for a REAL column, and for
+ * a STRING column the UTF-8 bytes of all the values one after the other
+ * in a byte[], with an int[] of the offset where every value starts.
+ *
+ * The rows of the batch are the ones listed in the selection vector, in
+ * its order; without a selection vector all the rows are in the batch.
+ * Filtering a batch only narrows its selection vector, and a projection
+ * is a view on a subset of the columns, so neither of them copies or
+ * allocates anything per row.
+ *
+ * For the operators that work on tuples, elementAt builds the Tuple of a
+ * row the first time it is asked for and keeps it for the next calls.
+ */
+
+public class ColumnBatch extends Batch{
+
+    private static final long serialVersionUID = 1L;
+
+    int[] types;        // data type of every column
+    Object[] columns;   // int[], float[] or byte[] of every column
+    int[][] offsets;    // start of every value of a STRING column, and the end of the last one
+    int numrows;        // number of rows stored in the columns
+
+    int[] sel;          // rows of the batch, null if all the rows are
+    int numsel;         // number of rows in sel
+
+    transient Tuple[] rowcache;   // Tuples of the rows built so far
+
+
+    public ColumnBatch(int[] types, int numtuple){
+	super(0);
+	MAX_SIZE = numtuple;
+	tuples = null;
+	this.types = types;
+	columns = new Object[types.length];
+	offsets = new int[types.length][];
+	int length = Math.max(1,numtuple);
+	for(int i=0;i<types.length;i++){
+	    if(types[i] == Attribute.INT){
+		columns[i] = new int[length];
+	    }else if(types[i] == Attribute.REAL){
+		columns[i] = new float[length];
+	    }else{
+		columns[i] = new byte[16*length];
+		offsets[i] = new int[length+1];
+	    }
+	}
+    }
+
+    public ColumnBatch(Schema schema, int numtuple){
+	this(typesOf(schema),numtuple);
+    }
+
+    /** view of the given columns of the batch, for projection **/
+
+    private ColumnBatch(ColumnBatch base, int[] colindex, int numtuple){
+	super(0);
+	MAX_SIZE = numtuple;
+	tuples = null;
+	types = new int[colindex.length];
+	columns = new Object[colindex.length];
+	offsets = new int[colindex.length][];
+	for(int i=0;i<colindex.length;i++){
+	    types[i] = base.types[colindex[i]];
+	    columns[i] = base.columns[colindex[i]];
+	    offsets[i] = base.offsets[colindex[i]];
+	}
+	numrows = base.numrows;
+	sel = base.sel;
+	numsel = base.numsel;
+    }
+
+    public static int[] typesOf(Schema schema){
+	int[] types = new int[schema.getNumCols()];
+	for(int i=0;i<types.length;i++){
+	    types[i] = schema.typeOf(i);
+	}
+	return types;
+    }
+
+
+    public int getNumCols(){
+	return types.length;
+    }
+
+    public int typeOf(int col){
+	return types[col];
+    }
+
+    /** number of rows stored, including the ones not selected **/
+
+    public int getNumRows(){
+	return numrows;
+    }
+
+    /** the stored row that is the i-th row of the batch **/
+
+    public int rowAt(int i){
+	return sel == null ? i : sel[i];
+    }
+
+    public int[] getIntColumn(int col){
+	return (int[]) columns[col];
+    }
+
+    public float[] getFloatColumn(int col){
+	return (float[]) columns[col];
+    }
+
+    public int getInt(int col, int row){
+	return ((int[]) columns[col])[row];
+    }
+
+    public float getFloat(int col, int row){
+	return ((float[]) columns[col])[row];
+    }
+
+    public String getString(int col, int row){
+	int[] off = offsets[col];
+	return new String((byte[]) columns[col],off[row],off[row+1]-off[row],StandardCharsets.UTF_8);
+    }
+
+    /** Compares the string of the stored row with the UTF-8 bytes of
+     ** a string without decoding it, as String.compareTo does
+     **/
+
+    public int compareString(int col, int row, byte[] key){
+	byte[] data = (byte[]) columns[col];
+	int start = offsets[col][row];
+	int length = offsets[col][row+1] - start;
+	int n = Math.min(length,key.length);
+	for(int i=0;i<n;i++){
+	    int b1 = data[start+i] & 0xFF;
+	    int b2 = key[i] & 0xFF;
+	    if(b1 != b2){
+		/** UTF-8 bytes are in the order of the code points, which is
+		 ** the order of String.compareTo only below U+E000
+		 **/
+		if(b1 >= 0xEE || b2 >= 0xEE){
+		    return getString(col,row).compareTo(new String(key,StandardCharsets.UTF_8));
+		}
+		return b1 - b2;
+	    }
+	}
+	return length - key.length;
+    }
+
+    /** the value in the given column of the i-th row, without building the row **/
+
+    public Object dataAt(int i, int col){
+	int row = rowAt(i);
+	if(types[col] == Attribute.INT){
+	    return Integer.valueOf(getInt(col,row));
+	}else if(types[col] == Attribute.REAL){
+	    return Float.valueOf(getFloat(col,row));
+	}
+	return getString(col,row);
+    }
+
+
+    /** Keeps only the rows whose stored row number is in the first n
+     ** elements of the array; the batch takes over the array
+     **/
+
+    public void select(int[] rows, int n){
+	sel = rows;
+	numsel = n;
+    }
+
+    /** The stored row numbers of the rows of the batch, in an array the
+     ** caller may overwrite to narrow the selection with select
+     **/
+
+    public int[] selection(){
+	if(sel == null){
+	    int[] rows = new int[numrows];
+	    for(int i=0;i<numrows;i++){
+		rows[i] = i;
+	    }
+	    return rows;
+	}
+	return sel;
+    }
+
+    /** batch of the given columns of this batch, sharing its arrays **/
+
+    public ColumnBatch project(int[] colindex, int numtuple){
+	return new ColumnBatch(this,colindex,numtuple);
+    }
+
+
+    /** appends the rows from..from+count-1 of the other batch, which has
+     ** columns of the same types
+     **/
+
+    public void append(ColumnBatch src, int from, int count){
+	ensureCapacity(numrows+count);
+	for(int c=0;c<types.length;c++){
+	    if(src.sel == null && types[c] != Attribute.STRING){
+		System.arraycopy(src.columns[c],from,columns[c],numrows,count);
+		continue;
+	    }
+	    for(int i=from;i<from+count;i++){
+		copyValue(src,c,src.rowAt(i),numrows+i-from);
+	    }
+	}
+	if(sel != null){
+	    for(int i=0;i<count;i++){
+		sel[numsel++] = numrows+i;
+	    }
+	}
+	numrows += count;
+    }
+
+    private void copyValue(ColumnBatch src, int col, int srcrow, int row){
+	if(types[col] == Attribute.INT){
+	    ((int[]) columns[col])[row] = src.getInt(col,srcrow);
+	}else if(types[col] == Attribute.REAL){
+	    ((float[]) columns[col])[row] = src.getFloat(col,srcrow);
+	}else{
+	    int start = src.offsets[col][srcrow];
+	    int length = src.offsets[col][srcrow+1] - start;
+	    putBytes(col,row,(byte[]) src.columns[col],start,length);
+	}
+    }
+
+    private void putBytes(int col, int row, byte[] bytes, int start, int length){
+	int[] off = offsets[col];
+	int end = off[row] + length;
+	byte[] data = (byte[]) columns[col];
+	if(end > data.length){
+	    byte[] newdata = new byte[Math.max(end,2*data.length)];
+	    System.arraycopy(data,0,newdata,0,off[row]);
+	    columns[col] = data = newdata;
+	}
+	System.arraycopy(bytes,start,data,off[row],length);
+	off[row+1] = end;
+    }
+
+    /** decodes a row written by PageCodec.encodeTuple **/
+
+    public void appendRow(ByteBuffer buf){
+	ensureCapacity(numrows+1);
+	for(int c=0;c<types.length;c++){
+	    if(types[c] == Attribute.INT){
+		((int[]) columns[c])[numrows] = buf.getInt();
+	    }else if(types[c] == Attribute.REAL){
+		((float[]) columns[c])[numrows] = buf.getFloat();
+	    }else{
+		int length = buf.getShort() & 0xFFFF;
+		int[] off = offsets[c];
+		int end = off[numrows] + length;
+		byte[] data = (byte[]) columns[c];
+		if(end > data.length){
+		    byte[] newdata = new byte[Math.max(end,2*data.length)];
+		    System.arraycopy(data,0,newdata,0,off[numrows]);
+		    columns[c] = data = newdata;
+		}
+		buf.get(data,off[numrows],length);
+		off[numrows+1] = end;
+	    }
+	}
+	if(sel != null){
+	    sel[numsel++] = numrows;
+	}
+	numrows++;
+    }
+
+    private void ensureCapacity(int rows){
+	int length = lengthOf(0);
+	if(rows > length){
+	    int newlength = Math.max(rows,2*length);
+	    for(int c=0;c<types.length;c++){
+		if(types[c] == Attribute.INT){
+		    int[] col = new int[newlength];
+		    System.arraycopy(columns[c],0,col,0,numrows);
+		    columns[c] = col;
+		}else if(types[c] == Attribute.REAL){
+		    float[] col = new float[newlength];
+		    System.arraycopy(columns[c],0,col,0,numrows);
+		    columns[c] = col;
+		}else{
+		    int[] off = new int[newlength+1];
+		    System.arraycopy(offsets[c],0,off,0,numrows+1);
+		    offsets[c] = off;
+		}
+	    }
+	    if(rowcache != null){
+		Tuple[] cache = new Tuple[newlength];
+		System.arraycopy(rowcache,0,cache,0,numrows);
+		rowcache = cache;
+	    }
+	}
+	int selneeded = numsel + rows - numrows;
+	if(sel != null && selneeded > sel.length){
+	    int[] newsel = new int[Math.max(selneeded,2*sel.length)];
+	    System.arraycopy(sel,0,newsel,0,numsel);
+	    sel = newsel;
+	}
+    }
+
+    private int lengthOf(int col){
+	if(types[col] == Attribute.INT){
+	    return ((int[]) columns[col]).length;
+	}else if(types[col] == Attribute.REAL){
+	    return ((float[]) columns[col]).length;
+	}
+	return offsets[col].length - 1;
+    }
+
+
+    /** the row number of the first row at or after the i-th row whose
+     ** value in the column equals the key, size() if there is none
+     **/
+
+    public int nextMatch(int i, int col, Object key){
+	int n = size();
+	/** a key of another type equals no value, as with equals **/
+	if(!(types[col] == Attribute.INT ? key instanceof Integer
+	     : types[col] == Attribute.REAL ? key instanceof Float : key instanceof String)){
+	    return n;
+	}
+	if(types[col] == Attribute.INT){
+	    int k = ((Integer) key).intValue();
+	    int[] data = (int[]) columns[col];
+	    for(;i<n;i++){
+		if(data[rowAt(i)] == k) return i;
+	    }
+	}else if(types[col] == Attribute.REAL){
+	    float k = ((Float) key).floatValue();
+	    float[] data = (float[]) columns[col];
+	    for(;i<n;i++){
+		/** as Float.equals **/
+		if(Float.floatToIntBits(data[rowAt(i)]) == Float.floatToIntBits(k)) return i;
+	    }
+	}else{
+	    byte[] k = ((String) key).getBytes(StandardCharsets.UTF_8);
+	    for(;i<n;i++){
+		if(compareString(col,rowAt(i),k) == 0) return i;
+	    }
+	}
+	return n;
+    }
+
+
+    /** Operations of Batch **/
+
+    public void add(Tuple t){
+	ensureCapacity(numrows+1);
+	for(int c=0;c<types.length;c++){
+	    Object data = t.dataAt(c);
+	    if(types[c] == Attribute.INT){
+		((int[]) columns[c])[numrows] = ((Integer) data).intValue();
+	    }else if(types[c] == Attribute.REAL){
+		((float[]) columns[c])[numrows] = ((Float) data).floatValue();
+	    }else{
+		byte[] bytes = ((String) data).getBytes(StandardCharsets.UTF_8);
+		putBytes(c,numrows,bytes,0,bytes.length);
+	    }
+	}
+	if(rowcache != null){
+	    rowcache[numrows] = t;
+	}
+	if(sel != null){
+	    sel[numsel++] = numrows;
+	}
+	numrows++;
+    }
+
+    public Tuple elementAt(int i){
+	int row = rowAt(i);
+	if(rowcache == null){
+	    rowcache = new Tuple[lengthOf(0)];
+	}
+	Tuple t = rowcache[row];
+	if(t == null){
+	    Vector data = new Vector(types.length);
+	    for(int c=0;c<types.length;c++){
+		if(types[c] == Attribute.INT){
+		    data.add(Integer.valueOf(getInt(c,row)));
+		}else if(types[c] == Attribute.REAL){
+		    data.add(Float.valueOf(getFloat(c,row)));
+		}else{
+		    data.add(getString(c,row));
+		}
+	    }
+	    t = new Tuple(data);
+	    rowcache[row] = t;
+	}
+	return t;
+    }
+
+    public int size(){
+	return sel == null ? numrows : numsel;
+    }
+
+    public boolean isEmpty(){
+	return size() == 0;
+    }
+
+    public void clear(){
+	numrows = 0;
+	sel = null;
+	numsel = 0;
+	rowcache = null;
+	for(int c=0;c<types.length;c++){
+	    if(offsets[c] != null){
+		offsets[c][0] = 0;
+	    }
+	}
+    }
+
+    public boolean contains(Tuple t){
+	return indexOf(t) != -1;
+    }
+
+    public int indexOf(Tuple t){
+	for(int i=0;i<size();i++){
+	    if(elementAt(i) == t){
+		return i;
+	    }
+	}
+	return -1;
+    }
+
+    /** The rows of a column batch are not moved around in its columns:
+     ** these operations append the new row, if any, and rearrange the
+     ** selection vector
+     **/
+
+    public void insertElementAt(Tuple t, int i){
+	if(i < 0 || i > size()){
+	    throw new ArrayIndexOutOfBoundsException(i);
+	}
+	copySelection();
+	add(t);
+	int row = sel[numsel-1];
+	System.arraycopy(sel,i,sel,i+1,numsel-1-i);
+	sel[i] = row;
+    }
+
+    public void remove(int i){
+	if(i < 0 || i >= size()){
+	    throw new ArrayIndexOutOfBoundsException(i);
+	}
+	copySelection();
+	System.arraycopy(sel,i+1,sel,i,numsel-1-i);
+	numsel--;
+    }
+
+    public void setElementAt(Tuple t, int i){
+	if(i < 0 || i >= size()){
+	    throw new ArrayIndexOutOfBoundsException(i);
+	}
+	copySelection();
+	add(t);
+	sel[i] = sel[--numsel];
+    }
+
+    /** a selection vector of its own with room for one more row, since
+     ** the array may be shared with a projection of the batch
+     **/
+
+    private void copySelection(){
+	int n = size();
+	int[] rows = new int[n+1];
+	for(int j=0;j<n;j++){
+	    rows[j] = rowAt(j);
+	}
+	sel = rows;
+	numsel = n;
+    }
+}
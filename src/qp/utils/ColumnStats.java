@@ -0,0 +1,440 @@
+/** statistics of the values of a column, kept in the catalog **/
+
+package qp.utils;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Distribution of the values of one column of a table: the number of
+ * distinct values and of nulls, the least and greatest values, the most
+ * common values with their number of occurrences, and an equi-depth
+ * histogram of the remaining values. Each bucket of the histogram,
+ * bounds[i] to bounds[i+1], holds the same number of tuples.
+ *
+ * The statistics may be built from a sample of the column; the counts
+ * are then scaled to the whole table. The estimates are fractions of
+ * the tuples of the table.
+ */
+
+public class ColumnStats implements Serializable{
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int NUM_BUCKETS = 32;   // Buckets of the histogram
+    public static final int NUM_MCVS = 16;      // Most common values kept
+
+    int type;           // Type of the column, as in Attribute
+    int numtuples;      // Number of tuples in the table
+    int numnulls;       // Number of tuples where the column is null
+    int numdistinct;    // Number of distinct values
+    Object min;         // Least value, null if there is none
+    Object max;         // Greatest value
+    Object[] mcvs;      // The most common values
+    int[] mcvcounts;    // Number of tuples holding each of them
+    Object[] bounds;    // Bounds of the buckets of the other values
+
+
+    private ColumnStats(int type, int numtuples, int numnulls, int numdistinct){
+	this.type = type;
+	this.numtuples = numtuples;
+	this.numnulls = numnulls;
+	this.numdistinct = numdistinct;
+    }
+
+
+    /** Builds the statistics from the first numvalues values of the
+     ** array, which are the non null values of the column or a uniform
+     ** sample of them. numtuples, numnulls and numdistinct are of the
+     ** whole table. The array is sorted
+     **/
+
+    public static ColumnStats build(int type, Object[] values, int numvalues, int numtuples, int numnulls, int numdistinct){
+	ColumnStats stats = new ColumnStats(type,numtuples,numnulls,Math.max(0,numdistinct));
+	Arrays.sort(values,0,numvalues,ORDER);
+	if(numvalues == 0){
+	    stats.mcvs = new Object[0];
+	    stats.mcvcounts = new int[0];
+	    stats.bounds = new Object[0];
+	    return stats;
+	}
+	stats.min = values[0];
+	stats.max = values[numvalues-1];
+	double scale = ((double) (numtuples - numnulls))/numvalues;
+
+	/** runs of equal values in the sorted values **/
+	int numruns = 0;
+	int[] runstart = new int[numvalues+1];
+	for(int i=0;i<numvalues;i++){
+	    if(i == 0 || ORDER.compare(values[i-1],values[i]) != 0){
+		runstart[numruns++] = i;
+	    }
+	}
+	runstart[numruns] = numvalues;
+
+	/** a value is common if it occurs more often than the average
+	 ** value; all are kept if there are few values
+	 **/
+	Integer[] runs = new Integer[numruns];
+	for(int i=0;i<numruns;i++){
+	    runs[i] = Integer.valueOf(i);
+	}
+	final int[] start = runstart;
+	Arrays.sort(runs,new Comparator<Integer>(){
+		public int compare(Integer a, Integer b){
+		    int lena = start[a.intValue()+1] - start[a.intValue()];
+		    int lenb = start[b.intValue()+1] - start[b.intValue()];
+		    return (lena != lenb) ? lenb - lena : a.intValue() - b.intValue();
+		}
+	    });
+	double average = ((double) numvalues)/numruns;
+	int nummcvs = 0;
+	boolean[] common = new boolean[numruns];
+	while(nummcvs < Math.min(NUM_MCVS,numruns)){
+	    int run = runs[nummcvs].intValue();
+	    int length = runstart[run+1] - runstart[run];
+	    if(numruns > NUM_MCVS && (length < 2 || length <= 1.25*average)){
+		break;
+	    }
+	    common[run] = true;
+	    nummcvs++;
+	}
+	stats.mcvs = new Object[nummcvs];
+	stats.mcvcounts = new int[nummcvs];
+	for(int i=0;i<nummcvs;i++){
+	    int run = runs[i].intValue();
+	    stats.mcvs[i] = values[runstart[run]];
+	    stats.mcvcounts[i] = (int) Math.round((runstart[run+1] - runstart[run])*scale);
+	}
+
+	/** the histogram of the values that are not common **/
+	Object[] rest = new Object[numvalues];
+	int numrest = 0;
+	for(int run=0;run<numruns;run++){
+	    if(!common[run]){
+		for(int i=runstart[run];i<runstart[run+1];i++){
+		    rest[numrest++] = values[i];
+		}
+	    }
+	}
+	int numbuckets = Math.min(NUM_BUCKETS,numrest-1);
+	if(numbuckets < 1){
+	    stats.bounds = new Object[0];
+	}else{
+	    stats.bounds = new Object[numbuckets+1];
+	    for(int i=0;i<=numbuckets;i++){
+		stats.bounds[i] = rest[(int) (((long) i*(numrest-1))/numbuckets)];
+	    }
+	}
+	return stats;
+    }
+
+
+    /** the least and greatest values, when they are known exactly while
+     ** the statistics are built from a sample
+     **/
+
+    public void setRange(Object min, Object max){
+	this.min = min;
+	this.max = max;
+    }
+
+
+    public int getType(){
+	return type;
+    }
+
+    public int getNumTuples(){
+	return numtuples;
+    }
+
+    public int getNumNulls(){
+	return numnulls;
+    }
+
+    public int getNumDistinct(){
+	return numdistinct;
+    }
+
+    public Object getMin(){
+	return min;
+    }
+
+    public Object getMax(){
+	return max;
+    }
+
+    public Object[] getMostCommonValues(){
+	return mcvs;
+    }
+
+    public int[] getMostCommonCounts(){
+	return mcvcounts;
+    }
+
+    public Object[] getBounds(){
+	return bounds;
+    }
+
+
+    /** The constant of a condition as a value of the column, null if
+     ** it is not one
+     **/
+
+    public Object valueOf(String constant){
+	try{
+	    switch(type){
+	    case Attribute.INT:
+		return Integer.valueOf(constant);
+	    case Attribute.REAL:
+		return Float.valueOf(constant);
+	    default:
+		return constant;
+	    }
+	}catch(NumberFormatException e){
+	    return null;
+	}
+    }
+
+
+    /** fraction of the tuples that are null **/
+
+    public double nullFraction(){
+	return (numtuples == 0) ? 0 : ((double) numnulls)/numtuples;
+    }
+
+
+    /** fraction of the tuples holding one of the most common values **/
+
+    public double commonFraction(){
+	if(numtuples == 0){
+	    return 0;
+	}
+	long count = 0;
+	for(int i=0;i<mcvcounts.length;i++){
+	    count += mcvcounts[i];
+	}
+	return Math.min(1.0,((double) count)/numtuples);
+    }
+
+
+    /** fraction of the tuples holding any one value that is not common **/
+
+    private double otherValueFraction(){
+	double rest = Math.max(0,1.0 - nullFraction() - commonFraction());
+	return rest / Math.max(1,numdistinct - mcvs.length);
+    }
+
+
+    /** Fraction of the tuples whose value v satisfies v op value, where
+     ** op is one of the expression types of Condition
+     **/
+
+    public double selectivity(int exprtype, Object value){
+	if(numtuples == 0){
+	    return 0;
+	}
+	if(exprtype == Condition.EQUAL){
+	    return equalFraction(value);
+	}
+	if(exprtype == Condition.NOTEQUAL){
+	    return Math.max(0,1.0 - nullFraction() - equalFraction(value));
+	}
+
+	boolean less = (exprtype == Condition.LESSTHAN || exprtype == Condition.LTOE);
+	boolean equal = (exprtype == Condition.LTOE || exprtype == Condition.GTOE);
+
+	/** the common values satisfying the condition **/
+	double sel = 0;
+	for(int i=0;i<mcvs.length;i++){
+	    int cmp = ORDER.compare(mcvs[i],value);
+	    if((less && cmp < 0) || (!less && cmp > 0) || (equal && cmp == 0)){
+		sel += ((double) mcvcounts[i])/numtuples;
+	    }
+	}
+
+	/** and the fraction of the other values below the constant **/
+	double rest = Math.max(0,1.0 - nullFraction() - commonFraction());
+	double below = histogramBelow(value);
+	double at = isCommon(value) ? 0 : Math.min(otherValueFraction(),rest*(1.0-below));
+	if(less){
+	    sel += rest*below + (equal ? at : 0);
+	}else{
+	    sel += Math.max(0,rest*(1.0-below) - at) + (equal ? at : 0);
+	}
+	return Math.min(1.0,sel);
+    }
+
+
+    /** fraction of the tuples equal to the value **/
+
+    private double equalFraction(Object value){
+	for(int i=0;i<mcvs.length;i++){
+	    if(ORDER.compare(mcvs[i],value) == 0){
+		return ((double) mcvcounts[i])/numtuples;
+	    }
+	}
+	if(min == null || ORDER.compare(value,min) < 0 || ORDER.compare(value,max) > 0){
+	    return 0;
+	}
+	return otherValueFraction();
+    }
+
+
+    private boolean isCommon(Object value){
+	for(int i=0;i<mcvs.length;i++){
+	    if(ORDER.compare(mcvs[i],value) == 0){
+		return true;
+	    }
+	}
+	return false;
+    }
+
+
+    /** Fraction of the values in the histogram below the value; the
+     ** values in a bucket are taken as spread evenly between its bounds
+     **/
+
+    private double histogramBelow(Object value){
+	int numbuckets = bounds.length - 1;
+	if(numbuckets < 1){
+	    if(min == null){
+		return 0;
+	    }
+	    return (ORDER.compare(value,min) <= 0) ? 0 : (ORDER.compare(value,max) > 0) ? 1 : within(min,max,value);
+	}
+	if(ORDER.compare(value,bounds[0]) <= 0){
+	    return 0;
+	}
+	if(ORDER.compare(value,bounds[numbuckets]) > 0){
+	    return 1;
+	}
+	/** the bucket whose upper bound is the first not below the value **/
+	int lo = 1, hi = numbuckets;
+	while(lo < hi){
+	    int mid = (lo + hi) / 2;
+	    if(ORDER.compare(bounds[mid],value) < 0){
+		lo = mid + 1;
+	    }else{
+		hi = mid;
+	    }
+	}
+	return (lo - 1 + within(bounds[lo-1],bounds[lo],value)) / numbuckets;
+    }
+
+
+    /** position of the value between the two bounds, from 0 to 1 **/
+
+    private static double within(Object low, Object high, Object value){
+	if(value instanceof Number){
+	    double l = ((Number) low).doubleValue();
+	    double h = ((Number) high).doubleValue();
+	    if(h <= l){
+		return 0.5;
+	    }
+	    return Math.max(0,Math.min(1,(((Number) value).doubleValue() - l)/(h - l)));
+	}
+	return 0.5;
+    }
+
+
+    /** Fraction of the pairs of tuples of the two columns that have the
+     ** same value. Only the values in the range common to both columns
+     ** can match; of these, the common values of both columns are
+     ** matched and the other values are taken as spread evenly over the
+     ** distinct values
+     **/
+
+    public static double joinSelectivity(ColumnStats left, ColumnStats right){
+	if(left.numtuples == 0 || right.numtuples == 0 || left.min == null || right.min == null){
+	    return 0;
+	}
+	Object low = (ORDER.compare(left.min,right.min) >= 0) ? left.min : right.min;
+	Object high = (ORDER.compare(left.max,right.max) <= 0) ? left.max : right.max;
+	if(ORDER.compare(low,high) > 0){
+	    return 0;
+	}
+
+	boolean[] matchedleft = new boolean[left.mcvs.length];
+	boolean[] matchedright = new boolean[right.mcvs.length];
+	double matchprod = 0;
+	int nummatches = 0;
+	for(int i=0;i<left.mcvs.length;i++){
+	    for(int j=0;j<right.mcvs.length;j++){
+		if(!matchedright[j] && ORDER.compare(left.mcvs[i],right.mcvs[j]) == 0){
+		    matchprod += (((double) left.mcvcounts[i])/left.numtuples)*(((double) right.mcvcounts[j])/right.numtuples);
+		    matchedleft[i] = true;
+		    matchedright[j] = true;
+		    nummatches++;
+		    break;
+		}
+	    }
+	}
+	double unmatchleft = left.unmatchedFraction(matchedleft,low,high);
+	double unmatchright = right.unmatchedFraction(matchedright,low,high);
+
+	/** the other values in the common range, and their number **/
+	double inleft = left.otherInRange(low,high);
+	double inright = right.otherInRange(low,high);
+	double otherleft = Math.max(0,1.0 - left.nullFraction() - left.commonFraction())*inleft;
+	double otherright = Math.max(0,1.0 - right.nullFraction() - right.commonFraction())*inright;
+	double ndotherleft = Math.max(0,left.numdistinct - left.mcvs.length)*inleft;
+	double ndotherright = Math.max(0,right.numdistinct - right.mcvs.length)*inright;
+
+	double selleft = matchprod;
+	if(ndotherright > 0){
+	    selleft += unmatchleft*otherright/Math.max(1,ndotherright);
+	}
+	if(right.mcvs.length + ndotherright > nummatches){
+	    selleft += otherleft*(otherright + unmatchright)/Math.max(1,right.mcvs.length + ndotherright - nummatches);
+	}
+	double selright = matchprod;
+	if(ndotherleft > 0){
+	    selright += unmatchright*otherleft/Math.max(1,ndotherleft);
+	}
+	if(left.mcvs.length + ndotherleft > nummatches){
+	    selright += otherright*(otherleft + unmatchleft)/Math.max(1,left.mcvs.length + ndotherleft - nummatches);
+	}
+	return Math.max(0,Math.min(1.0,Math.min(selleft,selright)));
+    }
+
+
+    /** fraction of the tuples holding a common value, not matched, from
+     ** low to high
+     **/
+
+    private double unmatchedFraction(boolean[] matched, Object low, Object high){
+	double fraction = 0;
+	for(int i=0;i<mcvs.length;i++){
+	    if(!matched[i] && ORDER.compare(mcvs[i],low) >= 0 && ORDER.compare(mcvs[i],high) <= 0){
+		fraction += ((double) mcvcounts[i])/numtuples;
+	    }
+	}
+	return fraction;
+    }
+
+
+    /** fraction of the values that are not common from low to high **/
+
+    private double otherInRange(Object low, Object high){
+	double fraction = histogramBelow(high) - histogramBelow(low);
+	if(numdistinct > mcvs.length){
+	    fraction += 1.0/(numdistinct - mcvs.length);
+	}
+	return Math.max(0,Math.min(1.0,fraction));
+    }
+
+
+    /** order of the values of a column: Integer, Float or String **/
+
+    @SuppressWarnings("unchecked")
+    static final Comparator<Object> ORDER = new Comparator<Object>(){
+	    public int compare(Object a, Object b){
+		if(a instanceof Number && b instanceof Number){
+		    return Double.compare(((Number) a).doubleValue(),((Number) b).doubleValue());
+		}
+		return ((Comparable<Object>) a).compareTo(b);
+	    }
+	};
+}
@@ -0,0 +1,152 @@
+/** heap file of a base table, read through memory mapping **/
+
+package qp.utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Vector;
+
+/**
+ * A table file of fixed size pages written by PageWriter. The file is
+ * mapped into memory with FileChannel.map, so any page can be read by
+ * its number without a copy of the file data and without a file pointer:
+ * readPage decodes the tuples straight from the mapping, and several
+ * threads may read pages of the same HeapFile at the same time.
+ *
+ * Page p starts at byte HEADER_SIZE + p * pagesize of the file. Files
+ * larger than what one mapping can hold are mapped in segments of
+ * whole pages. A heap file opened as writable can also overwrite its
+ * pages in place, which the BufferPool uses to write back dirty pages.
+ */
+
+public class HeapFile{
+
+    String filename;
+    Schema schema;
+    PageCodec codec;
+    int pagesize;     // number of bytes per page
+    int numpages;     // number of pages in the file
+    int pagesPerSegment;
+    MappedByteBuffer[] segments;
+    boolean writable;
+
+
+    public HeapFile(String filename, Schema schema) throws IOException{
+	this(filename,schema,false);
+    }
+
+    public HeapFile(String filename, Schema schema, boolean writable) throws IOException{
+	this.filename = filename;
+	this.schema = schema;
+	this.writable = writable;
+	RandomAccessFile file = new RandomAccessFile(filename,writable ? "rw" : "r");
+	try{
+	    FileChannel channel = file.getChannel();
+	    long length = channel.size();
+	    if(length < PageWriter.HEADER_SIZE || file.readInt() != PageWriter.MAGIC){
+		throw new IOException("HeapFile: "+filename+" is not a page file");
+	    }
+	    pagesize = file.readInt();
+	    codec = new PageCodec(schema,pagesize);
+	    numpages = (int) ((length - PageWriter.HEADER_SIZE) / pagesize);
+
+	    pagesPerSegment = Math.max(1, Integer.MAX_VALUE / pagesize);
+	    int numsegments = (numpages + pagesPerSegment - 1) / pagesPerSegment;
+	    segments = new MappedByteBuffer[numsegments];
+	    for(int i=0;i<numsegments;i++){
+		long start = PageWriter.HEADER_SIZE + (long) i * pagesPerSegment * pagesize;
+		int pages = Math.min(pagesPerSegment, numpages - i*pagesPerSegment);
+		FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+		segments[i] = channel.map(mode,start,(long) pages * pagesize);
+	    }
+	}finally{
+	    /** the mappings stay valid after the file is closed **/
+	    file.close();
+	}
+    }
+
+    public String getFileName(){
+	return filename;
+    }
+
+    public Schema getSchema(){
+	return schema;
+    }
+
+    public boolean isWritable(){
+	return writable;
+    }
+
+    public int getNumPages(){
+	return numpages;
+    }
+
+    /** number of bytes per page of this file **/
+
+    public int getPageSize(){
+	return pagesize;
+    }
+
+    /** read-only view of the bytes of the page, positioned at its start **/
+
+    public ByteBuffer getPageBuffer(int pageno){
+	if(pageno < 0 || pageno >= numpages){
+	    throw new IndexOutOfBoundsException("HeapFile: page "+pageno+" of "+filename);
+	}
+	ByteBuffer buf = segments[pageno / pagesPerSegment].duplicate();
+	buf.position((pageno % pagesPerSegment) * pagesize);
+	return buf;
+    }
+
+    /** decodes the tuples of the given page into a ColumnBatch **/
+
+    public Batch readPage(int pageno){
+	return codec.decodeColumns(getPageBuffer(pageno));
+    }
+
+    /** the tuple in the given slot of the given page **/
+
+    public Tuple readTuple(int pageno, int slot){
+	ByteBuffer buf = getPageBuffer(pageno);
+	int numtuples = buf.getInt();
+	if(slot < 0 || slot >= numtuples){
+	    throw new IndexOutOfBoundsException("HeapFile: slot "+slot+" of page "+pageno+" of "+filename);
+	}
+	for(int i=0;i<slot;i++){
+	    codec.decodeTuple(buf);
+	}
+	return codec.decodeTuple(buf);
+    }
+
+    /** overwrites the given page with the tuples of the batch **/
+
+    public void writePage(int pageno, Batch page) throws IOException{
+	if(!writable){
+	    throw new IOException("HeapFile: "+filename+" is not opened for writing");
+	}
+	Vector tuples = new Vector(page.size());
+	int size = 0;
+	for(int i=0;i<page.size();i++){
+	    tuples.add(page.elementAt(i));
+	    size += codec.encodedSize(page.elementAt(i));
+	}
+	if(size > codec.getFrameCapacity()){
+	    throw new IOException("HeapFile: page of "+size+" bytes does not fit a page of "+pagesize+" bytes");
+	}
+	ByteBuffer buf = getPageBuffer(pageno);
+	codec.encodeFrame(tuples,0,tuples.size(),buf);
+    }
+
+    /** forces the pages written so far to the disk **/
+
+    public void force(){
+	if(writable){
+	    for(int i=0;i<segments.length;i++){
+		segments[i].force();
+	    }
+	}
+    }
+
+}
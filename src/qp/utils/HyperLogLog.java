@@ -0,0 +1,94 @@
+/** estimates the number of distinct values in a stream **/
+
+package qp.utils;
+
+/**
+ * HyperLogLog sketch: every value is hashed to 64 bits, the first bits
+ * choose one of 2^precision registers and the register keeps the
+ * largest number of leading zeros seen in the rest of the hash. The
+ * harmonic mean of the registers gives the number of distinct values
+ * with a relative error of about 1.04/sqrt(2^precision), in 2^precision
+ * bytes whatever the number of values. Small counts are estimated from
+ * the number of empty registers instead (linear counting).
+ */
+
+public class HyperLogLog{
+
+    public static final int DEFAULT_PRECISION = 12;   // 4096 registers, about 1.6% error
+
+    int precision;
+    byte[] registers;
+
+
+    public HyperLogLog(){
+	this(DEFAULT_PRECISION);
+    }
+
+    public HyperLogLog(int precision){
+	this.precision = precision;
+	registers = new byte[1 << precision];
+    }
+
+
+    /** adds a value: Integer, Float or String **/
+
+    public void add(Object value){
+	long h = hash(value);
+	int register = (int) (h >>> (64 - precision));
+	/** leading zeros of the remaining bits, plus one **/
+	long rest = (h << precision) | (1L << (precision - 1));
+	int rank = Long.numberOfLeadingZeros(rest) + 1;
+	if(rank > registers[register]){
+	    registers[register] = (byte) rank;
+	}
+    }
+
+
+    /** the estimated number of distinct values added **/
+
+    public long estimate(){
+	int m = registers.length;
+	double sum = 0;
+	int empty = 0;
+	for(int i=0;i<m;i++){
+	    sum += 1.0 / (1L << registers[i]);
+	    if(registers[i] == 0){
+		empty++;
+	    }
+	}
+	double alpha = 0.7213 / (1 + 1.079 / m);
+	double estimate = alpha * m * m / sum;
+	if(estimate <= 2.5 * m && empty > 0){
+	    estimate = m * Math.log((double) m / empty);
+	}
+	return Math.round(estimate);
+    }
+
+
+    /** 64 bit hash of the value; the strings are hashed on all of
+     ** their characters, not on String.hashCode
+     **/
+
+    static long hash(Object value){
+	long h;
+	if(value instanceof String){
+	    String s = (String) value;
+	    h = 0xcbf29ce484222325L;
+	    for(int i=0;i<s.length();i++){
+		h ^= s.charAt(i);
+		h *= 0x100000001b3L;
+	    }
+	}else if(value instanceof Float){
+	    h = Float.floatToIntBits(((Float) value).floatValue());
+	}else{
+	    h = value.hashCode();
+	}
+	/** the finalizer of MurmurHash3 spreads the bits **/
+	h ^= (h >>> 33);
+	h *= 0xff51afd7ed558ccdL;
+	h ^= (h >>> 33);
+	h *= 0xc4ceb9fe1a85ec53L;
+	h ^= (h >>> 33);
+	return h;
+    }
+}
@@ -0,0 +1,41 @@
+/** threads doing the file reads and writes in the background **/
+
+package qp.utils;
+
+import java.util.concurrent.*;
+
+/**
+ * A small pool of daemon threads shared by the readers that read ahead,
+ * the writers that write behind and the prefetches of the BufferPool.
+ * The tasks never wait for the operators: a task reads or writes the
+ * pages it can and ends, so the pool is never blocked by a slow user.
+ *
+ * With a single processor the background threads could only take turns
+ * with the user, so the readers and writers then do their work
+ * themselves, as PageReader and PageWriter do.
+ */
+
+class IOThreads{
+
+    static final int NUM_THREADS = Math.max(2,Runtime.getRuntime().availableProcessors());
+
+    /** whether the work in the background can overlap with the user **/
+
+    static final boolean PARALLEL = Runtime.getRuntime().availableProcessors() > 1;
+
+    static ExecutorService pool;
+
+    static synchronized void execute(Runnable task){
+	if(pool == null){
+	    pool = Executors.newFixedThreadPool(NUM_THREADS, new ThreadFactory(){
+		    public Thread newThread(Runnable r){
+			Thread t = new Thread(r,"IOThread");
+			t.setDaemon(true);
+			return t;
+		    }
+		});
+	}
+	pool.execute(task);
+    }
+
+}
@@ -0,0 +1,38 @@
+/** least recently used page replacement **/
+
+package qp.utils;
+
+/**
+ * Evicts the unpinned page that has not been used for the longest time.
+ */
+
+public class LRUPolicy implements ReplacementPolicy{
+
+    long[] lastUse;   // time of the last unpin of every frame
+    long clock;
+
+
+    public void init(int numFrames){
+	lastUse = new long[numFrames];
+	clock = 0;
+    }
+
+    public void pinned(int frame){
+    }
+
+    public void unpinned(int frame){
+	clock++;
+	lastUse[frame] = clock;
+    }
+
+    public int victim(BufferPool pool){
+	int victim = -1;
+	for(int i=0;i<lastUse.length;i++){
+	    if(pool.isEvictable(i) && (victim == -1 || lastUse[i] < lastUse[victim])){
+		victim = i;
+	    }
+	}
+	return victim;
+    }
+
+}
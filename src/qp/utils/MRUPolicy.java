@@ -0,0 +1,24 @@
+/** most recently used page replacement **/
+
+package qp.utils;
+
+/**
+ * Evicts the unpinned page that was used last. When a file larger than
+ * the pool is scanned over and over, as the inner file of a nested loops
+ * join, LRU evicts every page just before it is needed again (sequential
+ * flooding) while MRU keeps the first pages of the file in the pool.
+ */
+
+public class MRUPolicy extends LRUPolicy{
+
+    public int victim(BufferPool pool){
+	int victim = -1;
+	for(int i=0;i<lastUse.length;i++){
+	    if(pool.isEvictable(i) && (victim == -1 || lastUse[i] > lastUse[victim])){
+		victim = i;
+	    }
+	}
+	return victim;
+    }
+
+}
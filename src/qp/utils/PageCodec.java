@@ -0,0 +1,155 @@
+/** encodes pages of tuples into a compact binary format **/
+
+package qp.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Vector;
+
+/**
+ * Schema driven binary format of a page. A page is a frame of a fixed
+ * number of bytes that holds the number of tuples followed by the tuples;
+ * the rest of the frame is left empty.
+ *
+ * Every tuple is written column after column as a raw int (INT), a raw
+ * float (REAL) or a length prefixed UTF-8 string (STRING), without any
+ * class descriptors or boxing as in Java serialization.
+ */
+
+public class PageCodec{
+
+    int[] types;     // data type of every column
+    int frameSize;   // number of bytes of a page frame
+
+
+    public PageCodec(Schema schema, int frameSize){
+	types = new int[schema.getNumCols()];
+	for(int i=0;i<types.length;i++){
+	    types[i] = schema.typeOf(i);
+	}
+	this.frameSize = frameSize;
+    }
+
+    public int getFrameSize(){
+	return frameSize;
+    }
+
+    public int getNumCols(){
+	return types.length;
+    }
+
+    /** number of bytes the tuple takes in a frame **/
+
+    public int encodedSize(Tuple t){
+	int size = 0;
+	for(int i=0;i<types.length;i++){
+	    if(types[i] == Attribute.STRING){
+		size += 2 + utf8Length((String) t.dataAt(i));
+	    }else{
+		size += 4;
+	    }
+	}
+	return size;
+    }
+
+    /** bytes left for tuples in an empty frame **/
+
+    public int getFrameCapacity(){
+	return frameSize - 4;
+    }
+
+    /** writes the tuples t[from] .. t[to-1] as one frame, padding the
+     ** rest of the frame with zeros
+     **/
+
+    public void encodeFrame(Vector tuples, int from, int to, ByteBuffer frame){
+	int start = frame.position();
+	frame.putInt(to - from);
+	for(int i=from;i<to;i++){
+	    encodeTuple((Tuple) tuples.elementAt(i), frame);
+	}
+	while(frame.position() < start + frameSize){
+	    frame.put((byte) 0);
+	}
+    }
+
+    public void encodeTuple(Tuple t, ByteBuffer buf){
+	for(int i=0;i<types.length;i++){
+	    Object data = t.dataAt(i);
+	    if(types[i] == Attribute.INT){
+		buf.putInt(((Integer) data).intValue());
+	    }else if(types[i] == Attribute.REAL){
+		buf.putFloat(((Float) data).floatValue());
+	    }else{
+		byte[] bytes = ((String) data).getBytes(StandardCharsets.UTF_8);
+		buf.putShort((short) bytes.length);
+		buf.put(bytes);
+	    }
+	}
+    }
+
+    /** reads the frame starting at the position of the buffer,
+     ** and leaves the position at the end of the frame
+     **/
+
+    public Batch decodeFrame(ByteBuffer frame){
+	int start = frame.position();
+	int numtuples = frame.getInt();
+	Batch page = new Batch(numtuples);
+	for(int i=0;i<numtuples;i++){
+	    page.add(decodeTuple(frame));
+	}
+	frame.position(start + frameSize);
+	return page;
+    }
+
+    /** reads the frame as decodeFrame does, into the columns of a ColumnBatch **/
+
+    public ColumnBatch decodeColumns(ByteBuffer frame){
+	int start = frame.position();
+	int numtuples = frame.getInt();
+	ColumnBatch page = new ColumnBatch(types,numtuples);
+	for(int i=0;i<numtuples;i++){
+	    page.appendRow(frame);
+	}
+	frame.position(start + frameSize);
+	return page;
+    }
+
+    public Tuple decodeTuple(ByteBuffer buf){
+	Vector data = new Vector(types.length);
+	for(int i=0;i<types.length;i++){
+	    if(types[i] == Attribute.INT){
+		data.add(Integer.valueOf(buf.getInt()));
+	    }else if(types[i] == Attribute.REAL){
+		data.add(Float.valueOf(buf.getFloat()));
+	    }else{
+		int length = buf.getShort() & 0xFFFF;
+		byte[] bytes = new byte[length];
+		buf.get(bytes);
+		data.add(new String(bytes, StandardCharsets.UTF_8));
+	    }
+	}
+	return new Tuple(data);
+    }
+
+
+    private static int utf8Length(String s){
+	int length = 0;
+	for(int i=0;i<s.length();i++){
+	    char c = s.charAt(i);
+	    if(c < 0x80){
+		length += 1;
+	    }else if(c < 0x800){
+		length += 2;
+	    }else if(Character.isHighSurrogate(c)){
+		length += 4;
+		i++;
+	    }else{
+		length += 3;
+	    }
+	}
+	return length;
+    }
+
+}
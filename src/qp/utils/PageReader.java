@@ -0,0 +1,90 @@
+/** reads a file of binary pages sequentially **/
+
+package qp.utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads back the pages of a file written by PageWriter, one page at a time.
+ * Like ObjectInputStream, reading past the last page throws EOFException.
+ */
+
+public class PageReader{
+
+    String filename;
+    DataInputStream in;
+    PageCodec codec;
+    ByteBuffer frame;
+
+
+    public PageReader(String filename, Schema schema) throws IOException{
+	this.filename = filename;
+	in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)));
+	int magic;
+	int pagesize;
+	try{
+	    magic = in.readInt();
+	    pagesize = in.readInt();
+	}catch(EOFException e){
+	    in.close();
+	    throw new IOException("PageReader: "+filename+" is not a page file");
+	}
+	if(magic != PageWriter.MAGIC){
+	    in.close();
+	    throw new IOException("PageReader: "+filename+" is not a page file");
+	}
+	codec = new PageCodec(schema,pagesize);
+	frame = ByteBuffer.allocate(pagesize);
+    }
+
+    /** number of bytes per page of this file **/
+
+    public int getPageSize(){
+	return codec.getFrameSize();
+    }
+
+    /** reads the next page of the file **/
+
+    public Batch readBatch() throws IOException{
+	in.readFully(frame.array(),0,codec.getFrameSize());
+	frame.clear();
+	return codec.decodeFrame(frame);
+    }
+
+    /** Whether the last page has been read; looks at the next byte
+     ** of the stream without reading a page
+     **/
+
+    public boolean atEnd() throws IOException{
+	in.mark(1);
+	int b = in.read();
+	in.reset();
+	return b == -1;
+    }
+
+    public void close() throws IOException{
+	in.close();
+    }
+
+
+    /** Whether the file is written by PageWriter, files written
+     ** with Java serialization start with a different magic number
+     **/
+
+    public static boolean isPageFile(String filename){
+	try{
+	    DataInputStream in = new DataInputStream(new FileInputStream(filename));
+	    int magic;
+	    try{
+		magic = in.readInt();
+	    }finally{
+		in.close();
+	    }
+	    return magic == PageWriter.MAGIC;
+	}catch(IOException io){
+	    return false;
+	}
+    }
+
+}
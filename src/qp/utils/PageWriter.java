@@ -0,0 +1,106 @@
+/** writes a file of binary pages **/
+
+package qp.utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Vector;
+
+/**
+ * Writes tuples into a file of fixed size pages in the format of PageCodec.
+ * The file starts with a header holding a magic number and the page size,
+ * so that the file can be read back whatever page size is used by then.
+ *
+ * write(Batch) keeps the page boundaries of the batch: the tuples of one
+ * batch go to one page, unless they do not fit in it. add(Tuple) fills
+ * up the pages one tuple after the other.
+ */
+
+public class PageWriter{
+
+    public static final int MAGIC = 0x51504731;   // "QPG1"
+    public static final int HEADER_SIZE = 8;
+
+    String filename;
+    DataOutputStream out;
+    PageCodec codec;
+    ByteBuffer frame;      // frame being encoded
+    Vector pending;        // tuples of the page being filled
+    int pendingBytes;      // encoded size of the pending tuples
+    int numPages;          // number of pages written so far
+
+
+    /** pages of Batch.getPageSize() bytes **/
+
+    public PageWriter(String filename, Schema schema) throws IOException{
+	this(filename,schema,Batch.getPageSize());
+    }
+
+    public PageWriter(String filename, Schema schema, int pagesize) throws IOException{
+	this.filename = filename;
+	codec = new PageCodec(schema,pagesize);
+	frame = ByteBuffer.allocate(pagesize);
+	pending = new Vector();
+	pendingBytes = 0;
+	numPages = 0;
+	out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename),Math.max(pagesize,8192)));
+	out.writeInt(MAGIC);
+	out.writeInt(pagesize);
+    }
+
+    public int getNumPages(){
+	return numPages;
+    }
+
+    /** appends a tuple to the current page, starting a new
+     ** page if it does not fit any more
+     **/
+
+    public void add(Tuple t) throws IOException{
+	int size = codec.encodedSize(t);
+	if(size > codec.getFrameCapacity()){
+	    throw new IOException("PageWriter: tuple of "+size+" bytes does not fit a page of "+codec.getFrameSize()+" bytes");
+	}
+	if(pendingBytes + size > codec.getFrameCapacity()){
+	    flush();
+	}
+	pending.add(t);
+	pendingBytes += size;
+    }
+
+    /** writes the batch as a page of its own **/
+
+    public void write(Batch b) throws IOException{
+	flush();
+	for(int i=0;i<b.size();i++){
+	    add(b.elementAt(i));
+	}
+	flush();
+    }
+
+    /** writes out the page being filled, if any **/
+
+    public void flush() throws IOException{
+	if(pending.isEmpty()){
+	    return;
+	}
+	frame.clear();
+	codec.encodeFrame(pending,0,pending.size(),frame);
+	writeFrame(frame.array(),codec.getFrameSize());
+	numPages++;
+	pending.clear();
+	pendingBytes = 0;
+    }
+
+    /** writes an encoded page to the file **/
+
+    protected void writeFrame(byte[] frame, int length) throws IOException{
+	out.write(frame,0,length);
+    }
+
+    public void close() throws IOException{
+	flush();
+	out.close();
+    }
+
+}
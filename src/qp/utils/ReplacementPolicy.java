@@ -0,0 +1,30 @@
+/** page replacement policy of the buffer pool **/
+
+package qp.utils;
+
+/**
+ * Chooses the frame of the BufferPool whose page is evicted when a page
+ * that is not in the pool is requested. The policy is told about every
+ * pin of a frame and picks the victim among the frames that are not
+ * pinned at the moment.
+ */
+
+public interface ReplacementPolicy{
+
+    /** called once with the number of frames of the pool **/
+
+    public void init(int numFrames);
+
+    /** the page in the frame is pinned, either after a hit or a load **/
+
+    public void pinned(int frame);
+
+    /** the frame is unpinned by its last user **/
+
+    public void unpinned(int frame);
+
+    /** the frame to be reused, or -1 if all of the frames are pinned **/
+
+    public int victim(BufferPool pool);
+
+}
@@ -0,0 +1,139 @@
+import java.io.*;
+import java.util.*;
+import qp.utils.*;
+import qp.operators.*;
+import qp.optimizer.Catalog;
+/*
+  computes the statistics of a table and stores them in the system
+  catalog (see qp.optimizer.Catalog), where the optimizer finds them in
+  place of the <tablename>.stat file
+
+  the table file <tablename>.tbl, in binary pages or serialized, is read
+  once. the number of tuples and pages, and the nulls, least and
+  greatest value of every column are counted exactly; the number of
+  distinct values is estimated with a HyperLogLog sketch per column, and
+  the most common values and the histogram of every column are built
+  from a uniform sample of [samplesize] tuples kept with reservoir
+  sampling. the memory used does not depend on the size of the table
+*/
+
+public class Analyze {
+
+  static final int DEFAULT_SAMPLE_SIZE = 10000;
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1 || args.length > 2) {
+      System.out.println("usage: java Analyze <tablename> [samplesize] \n stores the statistics of the table in "+Catalog.SYSTEM_CATALOG);
+      System.exit(1);
+    }
+    String tblname = args[0];
+    int samplesize = DEFAULT_SAMPLE_SIZE;
+    if (args.length == 2) {
+      samplesize = Integer.parseInt(args[1]);
+    }
+
+    Schema schema = ConvertTxtToTbl.readSchema(tblname+".md");
+    int numcols = schema.getNumCols();
+
+    String tblfile = tblname+".tbl";
+    int pagesize = ConvertTxtToTbl.DEFAULT_PAGE_SIZE;
+    int numpages = 0;
+    if (PageReader.isPageFile(tblfile)) {
+      HeapFile heapfile = new HeapFile(tblfile,schema);
+      pagesize = heapfile.getPageSize();
+      numpages = heapfile.getNumPages();
+    }
+    Batch.setPageSize(pagesize);
+
+    Scan scan = new Scan(tblname,OpType.SCAN);
+    scan.setSchema(schema);
+    if (!scan.open()) {
+      System.out.println("error in reading "+tblfile);
+      System.exit(1);
+    }
+
+    /** the sample holds the first samplesize tuples, and then the
+     ** i-th tuple replaces a random one with probability samplesize/i
+     **/
+    Random random = new Random(tblname.hashCode());
+    Tuple[] sample = new Tuple[samplesize];
+    HyperLogLog[] sketches = new HyperLogLog[numcols];
+    int[] nulls = new int[numcols];
+    Object[] min = new Object[numcols];
+    Object[] max = new Object[numcols];
+    for (int c = 0; c < numcols; c++) {
+      sketches[c] = new HyperLogLog();
+    }
+    int numtuples = 0;
+    Batch batch;
+    while ((batch = scan.next()) != null) {
+      for (int i = 0; i < batch.size(); i++) {
+	Tuple t = batch.elementAt(i);
+	for (int c = 0; c < numcols; c++) {
+	  Object value = t.dataAt(c);
+	  if (value == null) {
+	    nulls[c]++;
+	    continue;
+	  }
+	  sketches[c].add(value);
+	  if (min[c] == null || compare(value,min[c]) < 0)
+	    min[c] = value;
+	  if (max[c] == null || compare(value,max[c]) > 0)
+	    max[c] = value;
+	}
+	if (numtuples < samplesize) {
+	  sample[numtuples] = t;
+	} else {
+	  int r = random.nextInt(numtuples+1);
+	  if (r < samplesize)
+	    sample[r] = t;
+	}
+	numtuples++;
+      }
+    }
+    scan.close();
+    if (numpages == 0) {
+      /** a serialized file is read in pages of the default size **/
+      int capacity = Math.max(1,pagesize/schema.getTupleSize());
+      numpages = (numtuples + capacity - 1) / capacity;
+    }
+
+    int numsampled = Math.min(numtuples,samplesize);
+    ColumnStats[] columns = new ColumnStats[numcols];
+    for (int c = 0; c < numcols; c++) {
+      Object[] values = new Object[numsampled];
+      int numvalues = 0;
+      for (int i = 0; i < numsampled; i++) {
+	Object value = sample[i].dataAt(c);
+	if (value != null)
+	  values[numvalues++] = value;
+      }
+      int nonnull = numtuples - nulls[c];
+      long distinct;
+      if (numsampled == numtuples) {
+	/** the sample is the whole table **/
+	distinct = new HashSet<Object>(Arrays.asList(values).subList(0,numvalues)).size();
+      } else {
+	distinct = Math.min(nonnull,sketches[c].estimate());
+      }
+      columns[c] = ColumnStats.build(schema.typeOf(c),values,numvalues,numtuples,nulls[c],(int) distinct);
+      columns[c].setRange(min[c],max[c]);
+
+      Attribute attr = schema.getAttribute(c);
+      System.out.println(attr.getColName()+": "+distinct+" distinct, "+nulls[c]+" nulls, "
+			 +columns[c].getMostCommonValues().length+" common values, range "+min[c]+" to "+max[c]);
+    }
+
+    Catalog.TableStats stats = new Catalog.TableStats(numtuples,columns);
+    stats.setPages(numpages,pagesize);
+    Catalog.store(tblname,stats);
+    System.out.println(tblname+": "+numtuples+" tuples, "+numpages+" pages of "+pagesize+" bytes, sample of "+numsampled);
+  }
+
+
+  @SuppressWarnings("unchecked")
+  static int compare(Object a, Object b) {
+    return ((Comparable<Object>) a).compareTo(b);
+  }
+
+}
@@ -0,0 +1,74 @@
+
+import java.io.*;
+import java.util.*;
+import qp.utils.*;
+/*
+  builds a B+ tree index on one column of a table. the table file
+  <tablename>.tbl must be written in binary pages (see ConvertTxtToTbl);
+  the index is written to <tablename>.<colname>.idx next to it, with
+  nodes of [nodesize] bytes
+
+  the record ids of the tuples are sorted on the column in memory and
+  the tree is bulk loaded from them, so the index has to be built again
+  whenever the table file is rewritten
+*/
+
+public class BuildIndex {
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2 || args.length > 3) {
+      System.out.println("usage: java BuildIndex <tablename> <colname> [nodesize] \n creates <tablename>.<colname>.idx file");
+      System.exit(1);
+    }
+    String tblname = args[0];
+    String colname = args[1];
+    int nodesize = BPlusTree.DEFAULT_NODE_SIZE;
+    if (args.length == 3) {
+      nodesize = Integer.parseInt(args[2]);
+    }
+
+    Schema schema = ConvertTxtToTbl.readSchema(tblname+".md");
+    int colindex = schema.indexOf(new Attribute(tblname,colname));
+    if (colindex == -1) {
+	System.out.println(colname+" is not a column of "+tblname);
+	System.exit(1);
+    }
+    final int keytype = schema.typeOf(colindex);
+
+    String tblfile = tblname+".tbl";
+    if (!PageReader.isPageFile(tblfile)) {
+	System.out.println(tblfile+" is not in binary pages, convert it with ConvertTxtToTbl -convert");
+	System.exit(1);
+    }
+    HeapFile heapfile = new HeapFile(tblfile,schema);
+
+    /** collect the key and record id of every tuple **/
+    ArrayList<BPlusTree.Entry> entries = new ArrayList<>();
+    for (int p = 0; p < heapfile.getNumPages(); p++) {
+	Batch page = heapfile.readPage(p);
+	for (int s = 0; s < page.size(); s++) {
+	    entries.add(new BPlusTree.Entry(page.elementAt(s).dataAt(colindex),p,s));
+	}
+    }
+
+    /** sort on the key, equal keys in the order of the file **/
+    Collections.sort(entries, new Comparator<BPlusTree.Entry>() {
+	public int compare(BPlusTree.Entry e1, BPlusTree.Entry e2) {
+	    int c = BPlusTree.compareKeys(e1.getKey(),e2.getKey(),keytype);
+	    if (c != 0)
+		return c;
+	    if (e1.getPageNo() != e2.getPageNo())
+		return e1.getPageNo() < e2.getPageNo() ? -1 : 1;
+	    return e1.getSlot() - e2.getSlot();
+	}
+      });
+
+    String idxfile = BPlusTree.indexFileName(tblname,colname);
+    BPlusTree.bulkLoad(idxfile,keytype,nodesize,entries.iterator());
+
+    BPlusTree tree = new BPlusTree(idxfile);
+    System.out.println(idxfile+": "+tree.getNumEntries()+" entries, "
+		       +tree.getNumNodes()+" nodes, height "+tree.getHeight());
+  }
+
+}
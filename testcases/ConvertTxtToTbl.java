@@ -6,25 +6,51 @@ import qp.utils.*;
   attributes of the relation. each subsequent line represents 1
   tuple of the relation. also assume that the fields of each line
   is delimited by tabs ("\t")
+
+  the .tbl file is written as binary pages of <pagesize> bytes (see
+  qp.utils.PageWriter); -serialized writes it with Java serialization
+  as before, and -convert rewrites an existing serialized .tbl file
+  as binary pages
 */
 
 public class ConvertTxtToTbl {
 
+  static final int DEFAULT_PAGE_SIZE = 4096;
+
   public static void main(String[] args) throws IOException {
     // check the arguments
-    if (args.length != 1) {
-      System.out.println("usage: java ConvertTxtToTbl <tablename> \n creats <tablename>.tbl files");
+    boolean serialized = false;
+    boolean convert = false;
+    int argi = 0;
+    if (args.length > 0 && args[0].equals("-serialized")) {
+      serialized = true;
+      argi++;
+    } else if (args.length > 0 && args[0].equals("-convert")) {
+      convert = true;
+      argi++;
+    }
+    if (args.length - argi < 1 || args.length - argi > 2 || (serialized && args.length - argi != 1)) {
+      System.out.println("usage: java ConvertTxtToTbl [-serialized | -convert] <tablename> [pagesize] \n creats <tablename>.tbl files");
       System.exit(1);
     }
-    String tblname= args[0];
+    String tblname= args[argi];
     String mdfile = tblname+".md";
     String tblfile = tblname+".tbl";
+    int pagesize = DEFAULT_PAGE_SIZE;
+    if (args.length - argi == 2) {
+      pagesize = Integer.parseInt(args[argi+1]);
+    }
 
+    if (convert) {
+      convertTbl(tblname, pagesize);
+      return;
+    }
 
 	/** open the input and output streams **/
     BufferedReader in = new BufferedReader(new FileReader(tblname+".txt"));
     //ObjectOutputStream outmd = new ObjectOutputStream(new FileOutputStream(mdfile));
-    ObjectOutputStream outtbl = new ObjectOutputStream(new FileOutputStream(tblfile));
+    ObjectOutputStream outtbl = null;
+    PageWriter pagetbl = null;
 
     /** First Line is METADATA **/
     int linenum=0;
@@ -109,14 +135,12 @@ public class ConvertTxtToTbl {
 	int numCols = schema.getNumCols();
 
 	**/
-	Schema schema=null;
-try{
-   ObjectInputStream ins = new ObjectInputStream(new FileInputStream(mdfile));
-	 schema= (Schema) ins.readObject();
-}catch(ClassNotFoundException ce){
-	System.out.println("class not found exception --- error in schema object file");
-	System.exit(1);
-}
+	Schema schema = readSchema(mdfile);
+	if(serialized){
+	    outtbl = new ObjectOutputStream(new FileOutputStream(tblfile));
+	}else{
+	    pagetbl = new PageWriter(tblfile,schema,pagesize);
+	}
 
 	boolean flag=false;
 	StringTokenizer tokenizer;
@@ -151,12 +175,69 @@ try{
 		attrIndex++;
 	    }
 	    Tuple tuple = new Tuple(data);
-	    outtbl.writeObject(tuple);
+	    if(serialized){
+		outtbl.writeObject(tuple);
+	    }else{
+		pagetbl.add(tuple);
+	    }
+	}
+	if(serialized){
+	    outtbl.close();
+	}else{
+	    pagetbl.close();
 	}
-	outtbl.close();
 
 	in.close();
   }
+
+
+  static Schema readSchema(String mdfile) throws IOException {
+    Schema schema=null;
+    try{
+	ObjectInputStream ins = new ObjectInputStream(new FileInputStream(mdfile));
+	schema= (Schema) ins.readObject();
+	ins.close();
+    }catch(ClassNotFoundException ce){
+	System.out.println("class not found exception --- error in schema object file");
+	System.exit(1);
+    }
+    return schema;
+  }
+
+
+  /** rewrites the serialized tuples of <tablename>.tbl as binary pages **/
+
+  static void convertTbl(String tblname, int pagesize) throws IOException {
+    String tblfile = tblname+".tbl";
+    String tmpfile = tblname+".tbl.tmp";
+    Schema schema = readSchema(tblname+".md");
+    if(PageReader.isPageFile(tblfile)){
+	System.out.println(tblfile+" is already in binary pages");
+	return;
+    }
+
+    ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(tblfile)));
+    PageWriter out = new PageWriter(tmpfile,schema,pagesize);
+    try{
+	while(true){
+	    out.add((Tuple) in.readObject());
+	}
+    }catch(EOFException eof){
+	// all the tuples are read
+    }catch(ClassNotFoundException ce){
+	System.out.println("class not found exception --- error in table file");
+	System.exit(1);
+    }
+    in.close();
+    out.close();
+
+    File newfile = new File(tmpfile);
+    File oldfile = new File(tblfile);
+    if(!oldfile.delete() || !newfile.renameTo(oldfile)){
+	System.out.println("error in replacing "+tblfile);
+	System.exit(1);
+    }
+  }
 }
 
 
@@ -0,0 +1,159 @@
+import java.io.*;
+import java.util.*;
+import qp.utils.*;
+import qp.operators.*;
+import qp.optimizer.*;
+import qp.parser.*;
+/*
+  compares the number of tuples estimated by the optimizer with the
+  number of tuples actually produced, for every operator of the plan
+  of a query on the tables in the current directory
+
+  the plan is chosen as by QueryMain, and every subtree of it is costed
+  with PlanCost and run on its own. the q-error of an estimate is the
+  larger of estimate/actual and actual/estimate (1 is exact); the
+  largest and the geometric mean over the operators are printed last.
+  the tables are read with the statistics they have: run Analyze on
+  them first to check the estimates from the system catalog
+*/
+
+public class EstimateCheck {
+
+  static double maxerror = 1;
+  static double logsum = 0;
+  static int numops = 0;
+
+  public static void main(String[] args) throws Exception {
+    if (args.length != 3) {
+      System.out.println("usage: java EstimateCheck <queryfilename> <pagesize> <numbuffers>");
+      System.exit(1);
+    }
+    Batch.setPageSize(Integer.parseInt(args[1]));
+
+    parser p = new parser();
+    p.setScanner(new Scaner(new FileInputStream(args[0])));
+    try {
+      p.parse();
+    } catch (Exception e) {
+      System.out.println("Exception occured while parsing");
+      System.exit(1);
+    }
+    SQLQuery sqlquery = p.getSQLQuery();
+
+    /** the buffers are shared as in QueryMain **/
+    int numBuffOps = sqlquery.getNumJoin();
+    if (sqlquery.isDistinct())
+      numBuffOps++;
+    if (sqlquery.getGroupByList() != null && !sqlquery.getGroupByList().isEmpty())
+      numBuffOps++;
+    new BufferManager(Integer.parseInt(args[2]),Math.max(1,numBuffOps));
+
+    PrintStream out = System.out;
+    System.setOut(new PrintStream(new ByteArrayOutputStream()));
+    Operator root = new DynamicOptimizer(sqlquery).getOptimizedPlan();
+    System.setOut(out);
+
+    System.out.println("estimated\tactual\tq-error\toperator");
+    check(root,0);
+    System.out.println();
+    System.out.printf("operators %d, max q-error %.2f, mean q-error %.2f%n",numops,maxerror,Math.exp(logsum/Math.max(1,numops)));
+  }
+
+
+  /** prints the estimate and the actual count of the node, then of
+   ** its inputs
+   **/
+
+  static void check(Operator node, int depth) {
+    PlanCost pc = new PlanCost();
+    pc.getCost(node);
+    int estimated = pc.getNumTuples();
+    int actual = run((Operator) node.clone());
+
+    double error = ((double) Math.max(1,Math.max(estimated,actual))) / Math.max(1,Math.min(estimated,actual));
+    maxerror = Math.max(maxerror,error);
+    logsum += Math.log(error);
+    numops++;
+
+    System.out.printf("%d\t%d\t%.2f\t",estimated,actual,error);
+    for (int i = 0; i < depth; i++)
+      System.out.print("  ");
+    System.out.print(label(node));
+    System.out.println();
+
+    switch (node.getOpType()) {
+    case OpType.JOIN:
+      check(((Join) node).getLeft(),depth+1);
+      check(((Join) node).getRight(),depth+1);
+      break;
+    case OpType.SELECT:
+      check(((Select) node).getBase(),depth+1);
+      break;
+    case OpType.PROJECT:
+      check(((Project) node).getBase(),depth+1);
+      break;
+    case OpType.DISTINCT:
+      check(((Distinct) node).getBase(),depth+1);
+      break;
+    case OpType.GROUPBY:
+      check(((GroupBy) node).getBase(),depth+1);
+      break;
+    }
+  }
+
+
+  /** number of tuples of the subtree when it is run **/
+
+  static int run(Operator node) {
+    Operator root = RandomOptimizer.makeExecPlan(node);
+    if (!root.open()) {
+      System.out.println("EstimateCheck: error in opening the plan");
+      System.exit(1);
+    }
+    int count = 0;
+    Batch batch;
+    while ((batch = root.next()) != null)
+      count += batch.size();
+    root.close();
+    return count;
+  }
+
+
+  static String label(Operator node) {
+    PrintStream out = System.out;
+    ByteArrayOutputStream text = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(text));
+    switch (node.getOpType()) {
+    case OpType.JOIN:
+      System.out.print("Join ");
+      Debug.PPrint(((Join) node).getCondition());
+      break;
+    case OpType.SELECT:
+      System.out.print("Select");
+      Vector conditions = ((Select) node).getConditions();
+      for (int i = 0; i < conditions.size(); i++) {
+	System.out.print(" ");
+	Debug.PPrint((Condition) conditions.elementAt(i));
+      }
+      break;
+    case OpType.SCAN:
+      System.out.print("Scan "+((Scan) node).getTabName());
+      break;
+    case OpType.PROJECT:
+      System.out.print("Project");
+      break;
+    case OpType.DISTINCT:
+      System.out.print("Distinct");
+      break;
+    case OpType.GROUPBY:
+      System.out.print("GroupBy");
+      break;
+    default:
+      System.out.print("operator "+node.getOpType());
+    }
+    System.out.flush();
+    System.setOut(out);
+    return text.toString();
+  }
+
+}